@@ -0,0 +1,140 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.benchmark;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Base class for benchmarks. A benchmark executes a number of rounds; the
+ * first rounds warm up the JIT compiler and are not measured. Reports the
+ * best and average time per operation and the heap growth over all measured
+ * rounds.
+ * @author Andreas Kirschbaum
+ */
+public abstract class AbstractBenchmark {
+
+    /**
+     * The default number of rounds that are not measured.
+     */
+    public static final int DEFAULT_WARMUP_ROUNDS = 5;
+
+    /**
+     * The default number of measured rounds.
+     */
+    public static final int DEFAULT_ROUNDS = 10;
+
+    /**
+     * The name of the benchmark.
+     */
+    @NotNull
+    private final String name;
+
+    /**
+     * The number of operations per round.
+     */
+    private final int operations;
+
+    /**
+     * Creates a new instance.
+     * @param name the name of the benchmark
+     * @param operations the number of operations per round
+     */
+    protected AbstractBenchmark(@NotNull final String name, final int operations) {
+        this.name = name;
+        this.operations = operations;
+    }
+
+    /**
+     * Returns the name of the benchmark.
+     * @return the name
+     */
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Runs the benchmark using the default number of rounds and prints the
+     * results.
+     * @return the best time per operation in nanoseconds
+     */
+    public long run() {
+        return run(DEFAULT_WARMUP_ROUNDS, DEFAULT_ROUNDS);
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param warmupRounds the number of rounds that are not measured
+     * @param rounds the number of measured rounds
+     * @return the best time per operation in nanoseconds
+     */
+    public long run(final int warmupRounds, final int rounds) {
+        setUp();
+        try {
+            for (int i = 0; i < warmupRounds; i++) {
+                runRound(i);
+            }
+
+            final Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            final long memoryBefore = runtime.totalMemory()-runtime.freeMemory();
+            long bestTime = Long.MAX_VALUE;
+            long totalTime = 0;
+            for (int i = 0; i < rounds; i++) {
+                final long start = System.nanoTime();
+                runRound(warmupRounds+i);
+                final long time = System.nanoTime()-start;
+                bestTime = Math.min(bestTime, time);
+                totalTime += time;
+            }
+            System.gc();
+            final long memoryAfter = runtime.totalMemory()-runtime.freeMemory();
+
+            System.out.println(name+": best "+bestTime/operations+" ns/op, average "+totalTime/rounds/operations+" ns/op");
+            System.out.println(name+": heap growth "+(memoryAfter-memoryBefore)/1024+" KiB after "+rounds*operations+" ops");
+            return bestTime/operations;
+        } finally {
+            tearDown();
+        }
+    }
+
+    /**
+     * Prepares the benchmark. Called before the first round. The default
+     * implementation does nothing.
+     */
+    protected void setUp() {
+    }
+
+    /**
+     * Releases resources allocated by {@link #setUp()}. Called after the last
+     * round. The default implementation does nothing.
+     */
+    protected void tearDown() {
+    }
+
+    /**
+     * Executes one round of operations.
+     * @param seed a value to vary the operations between rounds
+     */
+    protected abstract void runRound(final int seed);
+
+}
@@ -0,0 +1,176 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.benchmark;
+
+import com.realtime.wograld.jxclient.faces.AbstractFacesManager;
+import com.realtime.wograld.jxclient.faces.Face;
+import com.realtime.wograld.jxclient.faces.FaceCache;
+import com.realtime.wograld.jxclient.faces.FaceImages;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import javax.swing.ImageIcon;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link AbstractFacesManager faces manager} that does not load any files
+ * or ask the server for images. Instead it generates images for all faces of
+ * the {@link FaceCache}: faces with even face numbers are opaque like floor
+ * and wall tiles, faces with odd numbers are mostly transparent like objects.
+ * @author Andreas Kirschbaum
+ */
+public class BenchmarkFacesManager extends AbstractFacesManager {
+
+    /**
+     * The size of generated face images.
+     */
+    public static final int SIZE = 64;
+
+    /**
+     * The images used for the special faces: blocked, darkness and fog of
+     * war.
+     */
+    @NotNull
+    private final FaceImages specialImages;
+
+    /**
+     * Creates a new instance.
+     * @param faceCache the face cache to use
+     */
+    public BenchmarkFacesManager(@NotNull final FaceCache faceCache) {
+        super(faceCache);
+        specialImages = newFaceImages(Color.BLACK, true);
+    }
+
+    /**
+     * The offset of the face numbers of top parts as sent by "image3"
+     * commands.
+     */
+    private static final int TOP_PART_OFFSET = 10000;
+
+    /**
+     * Adds faces and their top parts to a face cache.
+     * @param faceCache the face cache
+     * @param faces the number of faces to add; the face numbers start at 1
+     */
+    public static void addFaces(@NotNull final FaceCache faceCache, final int faces) {
+        for (int i = 1; i <= faces; i++) {
+            faceCache.addFace(new Face(i, "face"+i, 0));
+            faceCache.addFace(new Face(TOP_PART_OFFSET+i, "face"+i+"ceil", 0));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    protected FaceImages getFaceImages(final int faceNum, @Nullable final boolean[] isUnknownImage) {
+        if (isUnknownImage != null) {
+            isUnknownImage[0] = false;
+        }
+        final Face face = lookupFace(faceNum);
+        final FaceImages faceImages = face.getFaceImages();
+        if (faceImages != null) {
+            return faceImages;
+        }
+
+        final FaceImages newFaceImages = newFaceImages(new Color(Color.HSBtoRGB((faceNum*0.618034F)%1.0F, 0.6F, 0.8F)), faceNum%2 == 0);
+        face.setFaceImages(newFaceImages);
+        return newFaceImages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    protected FaceImages getSpellFaceImages(final int faceNum, @Nullable final boolean[] isUnknownImage) {
+        return getFaceImages(faceNum, isUnknownImage);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FaceImages getBlockedImages() {
+        return specialImages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FaceImages getDark1Images() {
+        return specialImages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FaceImages getDark2Images() {
+        return specialImages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FaceImages getDark3Images() {
+        return specialImages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FaceImages getFogofwarImages() {
+        return specialImages;
+    }
+
+    /**
+     * Creates the images for a face.
+     * @param color the main color of the face
+     * @param opaque whether the face should be opaque
+     * @return the face images
+     */
+    @NotNull
+    private static FaceImages newFaceImages(@NotNull final Color color, final boolean opaque) {
+        final BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(color);
+            if (opaque) {
+                g.fillRect(0, 0, SIZE, SIZE);
+            } else {
+                g.fillOval(SIZE/4, SIZE/4, SIZE/2, SIZE/2);
+            }
+        } finally {
+            g.dispose();
+        }
+        final ImageIcon imageIcon = new ImageIcon(image);
+        return new FaceImages(imageIcon, imageIcon);
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.benchmark;
+
+import com.realtime.wograld.jxclient.gui.map.GUIMapRenderBenchmark;
+import com.realtime.wograld.jxclient.map.CfMapScrollBenchmark;
+import com.realtime.wograld.jxclient.server.wograld.PacketStreamBenchmark;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs all benchmarks.
+ * @author Andreas Kirschbaum
+ */
+public class Benchmarks {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Benchmarks() {
+    }
+
+    /**
+     * Runs all benchmarks.
+     * @param args the command line arguments: an optional file containing a
+     * recorded packet stream for {@link PacketStreamBenchmark}
+     * @throws IOException if the packet stream cannot be read
+     */
+    public static void main(@NotNull final String[] args) throws IOException {
+        CfMapScrollBenchmark.main(new String[0]);
+        PacketStreamBenchmark.main(args);
+        GUIMapRenderBenchmark.main(new String[0]);
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.gui.map;
+
+import com.realtime.wograld.jxclient.benchmark.AbstractBenchmark;
+import com.realtime.wograld.jxclient.benchmark.BenchmarkFacesManager;
+import com.realtime.wograld.jxclient.faces.FaceCache;
+import com.realtime.wograld.jxclient.faces.FacesManager;
+import com.realtime.wograld.jxclient.faces.OriginalFacesProvider;
+import com.realtime.wograld.jxclient.faces.SmoothFaces;
+import com.realtime.wograld.jxclient.gui.gui.GUIElementListener;
+import com.realtime.wograld.jxclient.gui.gui.Gui;
+import com.realtime.wograld.jxclient.gui.gui.TooltipManager;
+import com.realtime.wograld.jxclient.map.CfMap;
+import com.realtime.wograld.jxclient.mapupdater.MapUpdaterState;
+import com.realtime.wograld.jxclient.server.wograld.DefaultWograldServerConnection;
+import com.realtime.wograld.jxclient.server.wograld.messages.Map2;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Measures painting complete {@link GUIMap} frames into an offscreen image for
+ * canned map states. Each operation redraws the whole map view into the back
+ * buffer and copies it to the offscreen image.
+ * @author Andreas Kirschbaum
+ */
+public class GUIMapRenderBenchmark extends AbstractBenchmark {
+
+    /**
+     * The width and height of the visible map area.
+     */
+    private static final int MAP_SIZE = 25;
+
+    /**
+     * The width of the map view in pixels.
+     */
+    private static final int WIDTH = 1024;
+
+    /**
+     * The height of the map view in pixels.
+     */
+    private static final int HEIGHT = 768;
+
+    /**
+     * The number of frames per round.
+     */
+    private static final int FRAMES = 20;
+
+    /**
+     * The number of generated faces.
+     */
+    private static final int FACES = 64;
+
+    /**
+     * The number of floors of the building.
+     */
+    private static final int FLOORS = Map2.NUM_LAYERS/3;
+
+    /**
+     * The {@link GUIElementListener} for the map view.
+     */
+    @NotNull
+    private static final GUIElementListener ELEMENT_LISTENER = new GUIElementListener() {
+
+        @Override
+        public void raiseDialog(@NotNull final Gui gui) {
+            // ignore
+        }
+
+    };
+
+    /**
+     * Whether the map contains a multi-storey building; if unset only the
+     * ground floor is filled.
+     */
+    private final boolean building;
+
+    /**
+     * The offscreen image the frames are painted into.
+     */
+    @NotNull
+    private final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+    /**
+     * The map view being painted.
+     */
+    @Nullable
+    private GUIMap guiMap = null;
+
+    /**
+     * Creates a new instance.
+     * @param building whether the map should contain a multi-storey building
+     */
+    public GUIMapRenderBenchmark(final boolean building) {
+        super(building ? "render building" : "render field", FRAMES);
+        this.building = building;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the command line arguments; ignored
+     */
+    public static void main(@NotNull final String[] args) {
+        new GUIMapRenderBenchmark(false).run();
+        new GUIMapRenderBenchmark(true).run();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() {
+        final DefaultWograldServerConnection connection;
+        try {
+            connection = new DefaultWograldServerConnection(null, "benchmark", null);
+        } catch (final IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        final FaceCache faceCache = new FaceCache();
+        BenchmarkFacesManager.addFaces(faceCache, FACES);
+        final FacesManager facesManager = new BenchmarkFacesManager(faceCache);
+        final MapUpdaterState mapUpdaterState = new MapUpdaterState(facesManager, null);
+        mapUpdaterState.newMap(MAP_SIZE, MAP_SIZE);
+        fill(mapUpdaterState.getMap(), faceCache);
+        guiMap = new GUIMap(new TooltipManager(), ELEMENT_LISTENER, "map", mapUpdaterState, new OriginalFacesProvider(facesManager), connection, new SmoothFaces(connection), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() {
+        assert guiMap != null;
+        System.out.println(getName()+": "+guiMap.getSkippedFragments()+" hidden fragments skipped");
+        guiMap.dispose();
+        guiMap = null;
+    }
+
+    /**
+     * Paints a number of complete frames.
+     * @param seed ignored
+     */
+    @Override
+    protected void runRound(final int seed) {
+        assert guiMap != null;
+        for (int i = 0; i < FRAMES; i++) {
+            guiMap.setBounds(0, 0, WIDTH, HEIGHT);
+            final Graphics2D g = image.createGraphics();
+            try {
+                guiMap.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+
+    /**
+     * Fills the map. The ground floor is covered with floor tiles and
+     * objects. If {@link #building} is set, a building of {@link #FLOORS}
+     * floors having walls along its edges is placed in the middle of the map.
+     * @param map the map to fill
+     * @param faceCache the face cache defining the faces
+     */
+    private void fill(@NotNull final CfMap map, @NotNull final FaceCache faceCache) {
+        synchronized (map) {
+            for (int y = 0; y < MAP_SIZE; y++) {
+                for (int x = 0; x < MAP_SIZE; x++) {
+                    map.setFace(x, y, 0, faceCache.getFace(2+2*((x+y)%4)));
+                    if ((x*y)%7 == 1) {
+                        map.setFace(x, y, 1, faceCache.getFace(1+2*((x+y)%8)));
+                    }
+                }
+            }
+            if (!building) {
+                return;
+            }
+
+            final int min = MAP_SIZE/4;
+            final int max = MAP_SIZE-MAP_SIZE/4;
+            for (int floor = 1; floor < FLOORS; floor++) {
+                for (int y = min; y < max; y++) {
+                    for (int x = min; x < max; x++) {
+                        map.setFace(x, y, 3*floor, faceCache.getFace(2+2*(floor%8)));
+                        if (x == min || y == min || x == max-1 || y == max-1) {
+                            map.setFace(x, y, 3*floor+2, faceCache.getFace(18+2*(floor%8)));
+                        } else if ((x+y+floor)%5 == 0) {
+                            map.setFace(x, y, 3*floor+1, faceCache.getFace(1+2*((x+y)%8)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
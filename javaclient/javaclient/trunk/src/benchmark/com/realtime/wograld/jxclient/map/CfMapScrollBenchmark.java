@@ -0,0 +1,126 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.map;
+
+import com.realtime.wograld.jxclient.benchmark.AbstractBenchmark;
+import com.realtime.wograld.jxclient.faces.Face;
+import com.realtime.wograld.jxclient.server.wograld.messages.Map2;
+import java.util.Random;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Measures {@link CfMap#processMapScroll(int, int, int, int)} for sequences of
+ * single-square scrolls on a map having all floors filled. Reports the time
+ * per scroll and the heap growth over all measured scrolls.
+ * @author Andreas Kirschbaum
+ */
+public class CfMapScrollBenchmark extends AbstractBenchmark {
+
+    /**
+     * The width and height of the visible map area.
+     */
+    private static final int MAP_SIZE = 25;
+
+    /**
+     * The number of scrolls per round.
+     */
+    private static final int SCROLLS = 2000;
+
+    /**
+     * The faces to fill the map with.
+     */
+    @NotNull
+    private final Face[] faces = new Face[16];
+
+    /**
+     * The map being scrolled.
+     */
+    @NotNull
+    private final CfMap map = new CfMap();
+
+    /**
+     * Creates a new instance.
+     */
+    public CfMapScrollBenchmark() {
+        super("scroll", SCROLLS);
+        for (int i = 0; i < faces.length; i++) {
+            faces[i] = new Face(i+1, "face"+i, 0);
+        }
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the command line arguments; ignored
+     */
+    public static void main(@NotNull final String[] args) {
+        new CfMapScrollBenchmark().run();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() {
+        synchronized (map) {
+            map.reset(MAP_SIZE, MAP_SIZE);
+        }
+    }
+
+    /**
+     * Executes one round of scrolls. Each scroll is followed by filling the
+     * newly visible squares and collecting the dirty squares, similar to
+     * processing a "map2" command.
+     * @param seed the seed for the scroll directions
+     */
+    @Override
+    protected void runRound(final int seed) {
+        final Random random = new Random(seed);
+        synchronized (map) {
+            for (int i = 0; i < SCROLLS; i++) {
+                final int dx = random.nextInt(3)-1;
+                final int dy = random.nextInt(3)-1;
+                map.processMapScroll(dx, dy, MAP_SIZE, MAP_SIZE);
+                fill(dx, dy, i);
+                map.getDirtyMapSquares();
+            }
+        }
+    }
+
+    /**
+     * Sets faces on all floors for the squares exposed by a scroll.
+     * @param dx the x-distance of the scroll
+     * @param dy the y-distance of the scroll
+     * @param n a value to vary the faces
+     */
+    private void fill(final int dx, final int dy, final int n) {
+        for (int y = 0; y < MAP_SIZE; y++) {
+            for (int x = 0; x < MAP_SIZE; x++) {
+                if ((dx > 0 && x == MAP_SIZE-1) || (dx < 0 && x == 0) || (dy > 0 && y == MAP_SIZE-1) || (dy < 0 && y == 0)) {
+                    for (int layer = 0; layer < Map2.NUM_LAYERS; layer++) {
+                        map.setFace(x, y, layer, faces[(x+y+layer+n)%faces.length]);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,420 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.server.wograld;
+
+import com.realtime.wograld.jxclient.benchmark.AbstractBenchmark;
+import com.realtime.wograld.jxclient.benchmark.BenchmarkFacesManager;
+import com.realtime.wograld.jxclient.faces.FaceCache;
+import com.realtime.wograld.jxclient.faces.FaceImagesUtils;
+import com.realtime.wograld.jxclient.guistate.GuiStateManager;
+import com.realtime.wograld.jxclient.items.ItemSet;
+import com.realtime.wograld.jxclient.items.ItemsManager;
+import com.realtime.wograld.jxclient.mapupdater.CfMapUpdater;
+import com.realtime.wograld.jxclient.mapupdater.MapUpdaterState;
+import com.realtime.wograld.jxclient.server.socket.UnknownCommandException;
+import com.realtime.wograld.jxclient.server.wograld.messages.Map2;
+import com.realtime.wograld.jxclient.skills.SkillSet;
+import com.realtime.wograld.jxclient.stats.ExperienceTable;
+import com.realtime.wograld.jxclient.stats.Stats;
+import com.realtime.wograld.jxclient.util.ByteBufferImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Measures the processing of a server packet stream by {@link
+ * DefaultWograldServerConnection} with the map, item and face listeners of the
+ * client attached. The stream is either read from a file or generated: the
+ * generated stream walks across a multi-floor map, each step consisting of a
+ * "map2" command with a scroll and the newly visible squares, an "upper1c"
+ * command for the upper floor, an "item2" command for the floor items, an
+ * "image2" command, and a "tick" command.
+ * <p/>
+ * Recorded streams use the wire format: each packet is preceded by its length
+ * as a two byte big endian value.
+ * @author Andreas Kirschbaum
+ */
+public class PacketStreamBenchmark extends AbstractBenchmark {
+
+    /**
+     * The width and height of the visible map area.
+     */
+    private static final int MAP_SIZE = 25;
+
+    /**
+     * The number of steps per generated round.
+     */
+    private static final int STEPS = 200;
+
+    /**
+     * The number of generated faces.
+     */
+    private static final int FACES = 64;
+
+    /**
+     * The number of distinct floor items.
+     */
+    private static final int ITEMS = 50;
+
+    /**
+     * The {@link Charset} for encoding strings.
+     */
+    @NotNull
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    /**
+     * The packets of one round.
+     */
+    @NotNull
+    private final List<ByteBuffer> packets;
+
+    /**
+     * The {@link WograldUpdateFaceListener} decoding received images like
+     * {@link com.realtime.wograld.jxclient.faces.AskfaceFaceQueue} does.
+     */
+    @NotNull
+    private final WograldUpdateFaceListener wograldUpdateFaceListener = new WograldUpdateFaceListener() {
+
+        @Override
+        public void updateFace(final int faceNum, final int faceSetNum, @NotNull final ByteBuffer packet) {
+            final BufferedImage image;
+            try {
+                // ImageIO.read() closes the stream
+                image = ImageIO.read(new ByteBufferImageInputStream(packet));
+            } catch (final IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            if (image == null) {
+                throw new IllegalStateException("invalid .png data for face "+faceNum);
+            }
+            FaceImagesUtils.newFaceImages(new ImageIcon(image));
+        }
+
+    };
+
+    /**
+     * The connection processing the packets.
+     */
+    @Nullable
+    private DefaultWograldServerConnection connection = null;
+
+    /**
+     * Creates a new instance.
+     * @param packets the packets of one round
+     */
+    public PacketStreamBenchmark(@NotNull final List<ByteBuffer> packets) {
+        super("packets", packets.size());
+        this.packets = packets;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the command line arguments: an optional file containing a
+     * recorded packet stream
+     * @throws IOException if the packet stream cannot be read
+     */
+    public static void main(@NotNull final String[] args) throws IOException {
+        final List<ByteBuffer> packets = args.length > 0 ? readPackets(new File(args[0])) : generatePackets();
+        new PacketStreamBenchmark(packets).run();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() {
+        try {
+            connection = new DefaultWograldServerConnection(null, "benchmark", null);
+        } catch (final IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        final GuiStateManager guiStateManager = new GuiStateManager(connection);
+        final SkillSet skillSet = new SkillSet(connection, guiStateManager);
+        final Stats stats = new Stats(connection, new ExperienceTable(connection), skillSet, guiStateManager);
+        final FaceCache faceCache = new FaceCache(connection);
+        final BenchmarkFacesManager facesManager = new BenchmarkFacesManager(faceCache);
+        new ItemsManager(connection, facesManager, stats, skillSet, guiStateManager, new ItemSet());
+        final MapUpdaterState mapUpdaterState = new MapUpdaterState(facesManager, guiStateManager);
+        new CfMapUpdater(mapUpdaterState, connection, facesManager, guiStateManager);
+        connection.addWograldUpdateFaceListener(wograldUpdateFaceListener);
+        mapUpdaterState.newMap(MAP_SIZE, MAP_SIZE);
+        BenchmarkFacesManager.addFaces(faceCache, FACES);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() {
+        connection = null;
+    }
+
+    /**
+     * Processes all packets of the stream once.
+     * @param seed ignored
+     */
+    @Override
+    protected void runRound(final int seed) {
+        assert connection != null;
+        for (final ByteBuffer packet : packets) {
+            packet.rewind();
+            try {
+                connection.processPacket(packet);
+            } catch (final UnknownCommandException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Reads a recorded packet stream.
+     * @param file the file to read
+     * @return the packets
+     * @throws IOException if the file cannot be read
+     */
+    @NotNull
+    private static List<ByteBuffer> readPackets(@NotNull final File file) throws IOException {
+        final List<ByteBuffer> result = new ArrayList<ByteBuffer>();
+        final DataInputStream dis = new DataInputStream(new FileInputStream(file));
+        try {
+            while (true) {
+                final int length;
+                try {
+                    length = dis.readUnsignedShort();
+                } catch (final EOFException ignored) {
+                    break;
+                }
+                final byte[] data = new byte[length];
+                dis.readFully(data);
+                result.add(ByteBuffer.wrap(data));
+            }
+        } finally {
+            dis.close();
+        }
+        return result;
+    }
+
+    /**
+     * Generates the packets of one round.
+     * @return the packets
+     * @throws IOException if an image cannot be encoded
+     */
+    @NotNull
+    private static List<ByteBuffer> generatePackets() throws IOException {
+        final byte[] png = createPng();
+        final List<ByteBuffer> result = new ArrayList<ByteBuffer>();
+        for (int step = 0; step < STEPS; step++) {
+            final int dx = step/MAP_SIZE%2 == 0 ? 1 : -1;
+            result.add(createMap2(step, dx));
+            result.add(createUpper1c(step, dx));
+            result.add(createItem2(step));
+            result.add(createImage2(1+step%FACES, png));
+            result.add(createTick(step));
+        }
+        return result;
+    }
+
+    /**
+     * Creates a "map2" command that scrolls the map horizontally and sets the
+     * newly visible column on the ground floor.
+     * @param step the step number
+     * @param dx the scroll distance
+     * @return the packet
+     * @throws IOException if the packet cannot be created
+     */
+    @NotNull
+    private static ByteBuffer createMap2(final int step, final int dx) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = newPacket(baos, "map2");
+        putCoordinate(dos, dx, 0, Map2.TYPE_SCROLL);
+        final int x = dx > 0 ? MAP_SIZE-1 : 0;
+        for (int y = 0; y < MAP_SIZE; y++) {
+            putCoordinate(dos, x, y, Map2.TYPE_COORDINATE);
+            dos.writeByte((1<<5)|Map2.COORD_DARKNESS);
+            dos.writeByte(128+(x+y+step)%128);
+            for (int layer = 0; layer < 3; layer++) {
+                putFace(dos, layer, 1+(x+y+step+layer)%FACES);
+            }
+            dos.writeByte(0xFF);
+        }
+        return ByteBuffer.wrap(baos.toByteArray());
+    }
+
+    /**
+     * Creates an "upper1c" command that sets the newly visible column on the
+     * first upper floor.
+     * @param step the step number
+     * @param dx the scroll distance of the preceding "map2" command
+     * @return the packet
+     * @throws IOException if the packet cannot be created
+     */
+    @NotNull
+    private static ByteBuffer createUpper1c(final int step, final int dx) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = newPacket(baos, "upper1c");
+        final int x = dx > 0 ? MAP_SIZE-1 : 0;
+        for (int y = 0; y < MAP_SIZE; y++) {
+            putCoordinate(dos, x, y, Map2.TYPE_COORDINATE);
+            if ((y+step)%4 == 0) {
+                dos.writeByte(Map2.COORD_CLEAR_SPACE);
+            } else {
+                putFace(dos, 0, 1+(x*y+step)%FACES);
+            }
+            dos.writeByte(0xFF);
+        }
+        return ByteBuffer.wrap(baos.toByteArray());
+    }
+
+    /**
+     * Creates an "item2" command that adds items to the floor.
+     * @param step the step number
+     * @return the packet
+     * @throws IOException if the packet cannot be created
+     */
+    @NotNull
+    private static ByteBuffer createItem2(final int step) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = newPacket(baos, "item2");
+        dos.writeInt(0);
+        for (int i = 0; i < 4; i++) {
+            final int tag = 1000+(step*4+i)%ITEMS;
+            final byte[] name = ("item "+tag+"\0items "+tag).getBytes(CHARSET);
+            dos.writeInt(tag);
+            dos.writeInt(0);
+            dos.writeInt(100+i);
+            dos.writeInt(1+tag%FACES);
+            dos.writeByte(name.length);
+            dos.write(name);
+            dos.writeShort(0);
+            dos.writeByte(0);
+            dos.writeInt(1+i);
+            dos.writeShort(tag%100);
+        }
+        return ByteBuffer.wrap(baos.toByteArray());
+    }
+
+    /**
+     * Creates an "image2" command.
+     * @param faceNum the face number
+     * @param png the image data
+     * @return the packet
+     * @throws IOException if the packet cannot be created
+     */
+    @NotNull
+    private static ByteBuffer createImage2(final int faceNum, @NotNull final byte[] png) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = newPacket(baos, "image2");
+        dos.writeInt(faceNum);
+        dos.writeByte(0);
+        dos.writeInt(png.length);
+        dos.write(png);
+        return ByteBuffer.wrap(baos.toByteArray());
+    }
+
+    /**
+     * Creates a "tick" command.
+     * @param tick the tick number
+     * @return the packet
+     * @throws IOException if the packet cannot be created
+     */
+    @NotNull
+    private static ByteBuffer createTick(final int tick) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = newPacket(baos, "tick");
+        dos.writeInt(tick);
+        return ByteBuffer.wrap(baos.toByteArray());
+    }
+
+    /**
+     * Starts a new packet.
+     * @param baos the stream to write the packet to
+     * @param command the command name
+     * @return the stream for writing the command's payload
+     * @throws IOException if the command cannot be written
+     */
+    @NotNull
+    private static DataOutputStream newPacket(@NotNull final ByteArrayOutputStream baos, @NotNull final String command) throws IOException {
+        final DataOutputStream dos = new DataOutputStream(baos);
+        dos.write((command+" ").getBytes(CHARSET));
+        return dos;
+    }
+
+    /**
+     * Writes a map2 coordinate.
+     * @param dos the stream to write to
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param type the coordinate type
+     * @throws IOException if the coordinate cannot be written
+     */
+    private static void putCoordinate(@NotNull final DataOutputStream dos, final int x, final int y, final int type) throws IOException {
+        dos.writeShort(((x+Map2.COORD_OFFSET)<<10)|((y+Map2.COORD_OFFSET)<<4)|type);
+    }
+
+    /**
+     * Writes a map2 layer sub-command.
+     * @param dos the stream to write to
+     * @param layer the layer between 0 and 2
+     * @param faceNum the face number
+     * @throws IOException if the sub-command cannot be written
+     */
+    private static void putFace(@NotNull final DataOutputStream dos, final int layer, final int faceNum) throws IOException {
+        dos.writeByte((2<<5)|(Map2.COORD_LAYER0+layer));
+        dos.writeShort(faceNum);
+    }
+
+    /**
+     * Creates the .png data for "image2" commands.
+     * @return the .png data
+     * @throws IOException if the image cannot be encoded
+     */
+    @NotNull
+    private static byte[] createPng() throws IOException {
+        final BufferedImage image = new BufferedImage(BenchmarkFacesManager.SIZE, BenchmarkFacesManager.SIZE, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.GREEN);
+            g.fillOval(0, 0, BenchmarkFacesManager.SIZE, BenchmarkFacesManager.SIZE);
+        } finally {
+            g.dispose();
+        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", baos);
+        return baos.toByteArray();
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.commands;
+
+import com.realtime.wograld.jxclient.history.HistoryMessage;
+import com.realtime.wograld.jxclient.history.MessageHistory;
+import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Implements the "history" command. It searches the {@link MessageHistory} for
+ * received messages containing all given words.
+ * @author Andreas Kirschbaum
+ */
+public class HistoryCommand extends AbstractCommand {
+
+    /**
+     * The maximum number of messages to display.
+     */
+    private static final int MAX_RESULTS = 50;
+
+    /**
+     * The {@link MessageHistory} to search.
+     */
+    @NotNull
+    private final MessageHistory messageHistory;
+
+    /**
+     * Creates a new instance.
+     * @param messageHistory the message history to search
+     * @param wograldServerConnection the connection instance
+     */
+    public HistoryCommand(@NotNull final MessageHistory messageHistory, @NotNull final WograldServerConnection wograldServerConnection) {
+        super("history", wograldServerConnection);
+        this.messageHistory = messageHistory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean allArguments() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(@NotNull final String args) {
+        if (args.length() == 0) {
+            drawInfoError("Which messages do you want to search for?");
+            return;
+        }
+
+        final List<HistoryMessage> messages;
+        try {
+            messages = messageHistory.search(args, MAX_RESULTS);
+        } catch (final IOException ex) {
+            drawInfoError("Cannot search message history: "+ex.getMessage());
+            return;
+        }
+
+        if (messages.isEmpty()) {
+            drawInfo("No messages found.");
+            return;
+        }
+
+        final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        drawInfo(messages.size() >= MAX_RESULTS ? "Last "+messages.size()+" matching messages:" : messages.size()+" matching messages:");
+        for (int i = messages.size()-1; i >= 0; i--) {
+            final HistoryMessage message = messages.get(i);
+            drawInfo(simpleDateFormat.format(new Date(message.getTime()))+" "+message.getText(), message.getColor());
+        }
+    }
+
+}
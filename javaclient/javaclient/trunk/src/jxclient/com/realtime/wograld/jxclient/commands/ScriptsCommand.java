@@ -70,8 +70,10 @@ public class ScriptsCommand extends AbstractCommand {
         }
 
         drawInfo("Running scripts:");
-        for (final Object scriptProcess : scriptProcesses) {
-            drawInfo("- "+scriptProcess);
+        for (final ScriptProcess scriptProcess : scriptProcesses) {
+            final int droppedMessages = scriptProcess.getDroppedMessages();
+            final long cpuTime = scriptProcess.getCpuTime();
+            drawInfo("- "+scriptProcess+" ["+scriptProcess.getPendingMessages()+" pending"+(droppedMessages > 0 ? ", "+droppedMessages+" dropped" : "")+(cpuTime >= 0 ? ", "+cpuTime/1000000L+" ms cpu" : "")+"]");
         }
     }
 
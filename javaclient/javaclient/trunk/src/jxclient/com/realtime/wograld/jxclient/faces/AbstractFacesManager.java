@@ -89,6 +89,15 @@ public abstract class AbstractFacesManager implements FacesManager {
         return getFaceImages(faceNum, isUnknownImage).getOriginalImageIcon();
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    public ImageIcon getMapImageIcon(final int faceNum, @Nullable final boolean[] isUnknownImage) {
+        return getFaceImages(faceNum, isUnknownImage, FacePriority.VISIBLE).getOriginalImageIcon();
+    }
+
     public ImageIcon getSpellImageIcon(final int faceNum, @Nullable final boolean[] isUnknownImage){
         return getSpellFaceImages(faceNum,isUnknownImage).getOriginalImageIcon();
     }
@@ -108,7 +117,7 @@ public abstract class AbstractFacesManager implements FacesManager {
     @NotNull
     @Override
     public ImageIcon getMagicMapImageIcon(final int faceNum, @Nullable final boolean[] isUnknownImage) {
-        return getFaceImages(faceNum, isUnknownImage).getMagicMapImageIcon();
+        return getFaceImages(faceNum, isUnknownImage, FacePriority.MAP).getMagicMapImageIcon();
     }
 
     /**
@@ -133,6 +142,21 @@ public abstract class AbstractFacesManager implements FacesManager {
     @NotNull
     protected abstract FaceImages getFaceImages(final int faceNum, @Nullable boolean[] isUnknownImage);
 
+    /**
+     * Returns the {@link FaceImages} information for a face ID. This function
+     * returns immediately even if the face is not loaded. A not loaded face
+     * will be updated as soon as loading has finished.
+     * @param faceNum the face ID
+     * @param isUnknownImage returns whether the returned face is the "unknown"
+     * face; ignored if <code>null</code>
+     * @param priority the priority for loading the face
+     * @return the face images information
+     */
+    @NotNull
+    protected FaceImages getFaceImages(final int faceNum, @Nullable final boolean[] isUnknownImage, @NotNull final FacePriority priority) {
+        return getFaceImages(faceNum, isUnknownImage);
+    }
+
     protected abstract FaceImages getSpellFaceImages(final int faceNum, @Nullable boolean[] isUnknownImage);
     
     /**
@@ -161,7 +185,7 @@ public abstract class AbstractFacesManager implements FacesManager {
             return null;
         }
 
-        getFaceImages(faceNum, null);
+        getFaceImages(faceNum, null, FacePriority.MAP);
         return faceCache.getFace(faceNum);
     }
 
@@ -23,11 +23,13 @@ package com.realtime.wograld.jxclient.faces;
 
 import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
 import com.realtime.wograld.jxclient.server.wograld.WograldUpdateFaceListener;
+import com.realtime.wograld.jxclient.util.ByteBufferImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -35,16 +37,40 @@ import org.jetbrains.annotations.Nullable;
 /**
  * A {@link FaceQueue} requesting faces by "askface" commands sent to the
  * Wograld server.
+ * <p/>
+ * Faces are requested in order of {@link FacePriority}. The number of
+ * concurrently sent "askface" commands adapts to the connection: the
+ * measured round-trip time is compared to the minimal round-trip time to
+ * estimate the number of faces queued in the server or network. The window
+ * grows while this number is small, i.e., while sending more commands
+ * increases the throughput, and shrinks when it is large.
  * @author Andreas Kirschbaum
  */
 public class AskfaceFaceQueue extends AbstractFaceQueue {
 
     /**
-     * The maximum number of concurrently sent "askface" commands. If more are
+     * The minimum number of concurrently sent "askface" commands. If more are
      * requested, the excess ones are put on hold until some face information is
      * received.
      */
-    private static final int CONCURRENT_ASKFACE_COMMANDS = 8;
+    private static final int MIN_CONCURRENT_ASKFACE_COMMANDS = 8;
+
+    /**
+     * The maximum number of concurrently sent "askface" commands.
+     */
+    private static final int MAX_CONCURRENT_ASKFACE_COMMANDS = 128;
+
+    /**
+     * The window is enlarged if fewer faces than this are estimated to be
+     * queued.
+     */
+    private static final int QUEUED_FACES_LOW = 2;
+
+    /**
+     * The window is reduced if more faces than this are estimated to be
+     * queued.
+     */
+    private static final int QUEUED_FACES_HIGH = 4;
 
     /**
      * The object use for synchronization.
@@ -67,17 +93,35 @@ public class AskfaceFaceQueue extends AbstractFaceQueue {
     private final Map<Integer, Face> pendingAskfaces = new HashMap<Integer, Face>();
 
     /**
-     * Face numbers for which an "askface" command should be sent. It includes
-     * all elements of {@link #pendingAskfaces}.
+     * The times the "askface" commands in {@link #pendingAskfaces} have been
+     * sent. Maps face ID to {@link System#nanoTime()} value.
      */
     @NotNull
-    private final Map<Integer, Face> pendingFaces = new HashMap<Integer, Face>();
+    private final Map<Integer, Long> pendingAskfacesTimes = new HashMap<Integer, Long>();
 
     /**
-     * The same elements as {@link #pendingFaces} in query order.
+     * Faces for which an "askface" command should be sent but that are not
+     * yet part of {@link #pendingAskfaces}.
      */
     @NotNull
-    private final List<Face> pendingFacesQueue = new LinkedList<Face>();
+    private final FacePriorityQueue pendingFaces = new FacePriorityQueue();
+
+    /**
+     * The maximum number of concurrently sent "askface" commands.
+     */
+    private int window = MIN_CONCURRENT_ASKFACE_COMMANDS;
+
+    /**
+     * The smoothed round-trip time of "askface" commands in nanoseconds;
+     * <code>0</code> if unknown.
+     */
+    private long smoothedRtt = 0;
+
+    /**
+     * The minimal round-trip time of "askface" commands in nanoseconds;
+     * <code>0</code> if unknown.
+     */
+    private long minRtt = 0;
 
     /**
      * The {@link WograldUpdateFaceListener} registered to {@link
@@ -112,8 +156,11 @@ public class AskfaceFaceQueue extends AbstractFaceQueue {
     public void reset() {
         synchronized (sync) {
             pendingAskfaces.clear();
+            pendingAskfacesTimes.clear();
             pendingFaces.clear();
-            pendingFacesQueue.clear();
+            window = MIN_CONCURRENT_ASKFACE_COMMANDS;
+            smoothedRtt = 0;
+            minRtt = 0;
         }
     }
 
@@ -121,37 +168,58 @@ public class AskfaceFaceQueue extends AbstractFaceQueue {
      * {@inheritDoc}
      */
     @Override
-    public void loadFace(@NotNull final Face face) {
+    public void loadFace(@NotNull final Face face, @NotNull final FacePriority priority) {
         final int faceNum = face.getFaceNum();
         if (faceNum <= 0 || faceNum > 65535) {
             fireFaceFailed(face);
             return;
         }
 
-        final Integer faceObject = faceNum;
         synchronized (sync) {
-            if (pendingFaces.put(faceObject, face) != null) {
-                // move image to front of queue
-                pendingFacesQueue.remove(face);
-                pendingFacesQueue.add(0, face);
+            if (pendingAskfaces.containsKey(faceNum)) {
                 return;
             }
-            pendingFacesQueue.add(0, face);
 
+            // an already pending face is moved to the front of the queue
+            pendingFaces.add(face, priority);
             sendAskface();
         }
     }
 
+    /**
+     * Updates the priority of a face if an "askface" command is pending for
+     * it.
+     * @param face the face
+     * @param priority the new priority; the priority is not lowered
+     * @return whether an "askface" command is pending for the face
+     */
+    public boolean updatePriority(@NotNull final Face face, @NotNull final FacePriority priority) {
+        synchronized (sync) {
+            if (pendingAskfaces.containsKey(face.getFaceNum())) {
+                return true;
+            }
+
+            if (!pendingFaces.contains(face)) {
+                return false;
+            }
+
+            pendingFaces.add(face, priority);
+            return true;
+        }
+    }
+
     /**
      * Sends some pending "askface" commands.
      */
     private void sendAskface() {
-        for (final Face face : pendingFacesQueue) {
-            if (pendingAskfaces.size() >= CONCURRENT_ASKFACE_COMMANDS) {
+        while (pendingAskfaces.size() < window) {
+            final Face face = pendingFaces.poll();
+            if (face == null) {
                 break;
             }
 
             int faceNum = face.getFaceNum();
+            pendingAskfacesTimes.put(faceNum, System.nanoTime());
             if (pendingAskfaces.put(faceNum, face) == null && wograldServerConnection != null) {
                 
                 if (face.getTopPartStatus() == true){
@@ -174,45 +242,75 @@ public class AskfaceFaceQueue extends AbstractFaceQueue {
     private void faceReceived(final int faceNum, final int faceSetNum, @NotNull final ByteBuffer packet) {
         final Integer faceObject = faceNum;
         synchronized (sync) {
+            final boolean windowFull = pendingAskfaces.size() >= window;
             final Face face = pendingAskfaces.remove(faceObject);
+            final Long sendTime = pendingAskfacesTimes.remove(faceObject);
             if (face == null) {
                 System.err.println("received unexpected image for face "+faceNum);
             } else {
-                if (pendingFaces.remove(faceObject) != face) {
-               //     assert false;
+                if (sendTime != null) {
+                    updateWindow(System.nanoTime()-sendTime, windowFull);
                 }
-                if (!pendingFacesQueue.remove(face)) {
-               //     assert false;
-                }
-
-                final byte[] data = new byte[packet.remaining()];
-                packet.get(data);
-                processFaceData(face, data);
+                processFaceData(face, packet);
             }
             sendAskface();
         }
     }
 
+    /**
+     * Updates the round-trip time estimates and the window size after a face
+     * has been received.
+     * @param rtt the round-trip time of the face in nanoseconds
+     * @param windowFull whether the window was full, i.e., whether the
+     * throughput was limited by the window size
+     */
+    private void updateWindow(final long rtt, final boolean windowFull) {
+        final long sample = Math.max(1, rtt);
+        if (minRtt == 0 || sample < minRtt) {
+            minRtt = sample;
+        }
+        smoothedRtt = smoothedRtt == 0 ? sample : smoothedRtt+(sample-smoothedRtt)/8;
+
+        // The expected throughput is window/minRtt, the actual throughput is
+        // window/smoothedRtt; their difference times minRtt estimates the
+        // number of faces queued in the server or network.
+        final long queuedFaces = window*(smoothedRtt-minRtt)/smoothedRtt;
+        if (queuedFaces < QUEUED_FACES_LOW) {
+            if (windowFull && window < MAX_CONCURRENT_ASKFACE_COMMANDS) {
+                window++;
+            }
+        } else if (queuedFaces > QUEUED_FACES_HIGH) {
+            if (window > MIN_CONCURRENT_ASKFACE_COMMANDS) {
+                window--;
+            }
+        }
+    }
+
     /**
      * Processes face information received from the server.
      * @param face the face
-     * @param data the face information; it is supposed to be a .png file
+     * @param packet the face information; it is supposed to be a .png file;
+     * it is decoded in place without copying
      */
-    private void processFaceData(@NotNull final Face face, @NotNull final byte[] data) {
-        final ImageIcon originalImageIcon;
+    private void processFaceData(@NotNull final Face face, @NotNull final ByteBuffer packet) {
+        final BufferedImage image;
         try {
-            originalImageIcon = new ImageIcon(data);
+            // ImageIO.read() closes the stream
+            image = ImageIO.read(new ByteBufferImageInputStream(packet));
+        } catch (final IOException ex) {
+            System.err.println("Invalid .png data for face "+face+": "+ex.getMessage());
+            return;
         } catch (final IllegalArgumentException ex) {
             System.err.println("Invalid .png data for face "+face+": "+ex.getMessage());
             return;
         }
 
-        if (originalImageIcon.getIconWidth() <= 0 || originalImageIcon.getIconHeight() <= 0) {
+        if (image == null || image.getWidth() <= 0 || image.getHeight() <= 0) {
             fireFaceFailed(face);
             return;
         }
 
-        fireFaceLoaded(face, FaceImagesUtils.newFaceImages(originalImageIcon));
+        fireFaceLoaded(face, FaceImagesUtils.newFaceImages(new ImageIcon(image)));
     }
 
 }
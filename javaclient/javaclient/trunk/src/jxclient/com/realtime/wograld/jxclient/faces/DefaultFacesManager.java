@@ -43,6 +43,12 @@ public class DefaultFacesManager extends AbstractFacesManager {
     @NotNull
     private final FaceQueue faceQueue;
 
+    /**
+     * The {@link FaceImagesPool} for sharing images of loaded faces.
+     */
+    @NotNull
+    private final FaceImagesPool faceImagesPool;
+
     /**
      * The unknown face.
      */
@@ -80,7 +86,7 @@ public class DefaultFacesManager extends AbstractFacesManager {
 
         @Override
         public void faceLoaded(@NotNull final Face face, @NotNull final FaceImages faceImages) {
-            face.setFaceImages(faceImages);
+            face.setFaceImages(faceImagesPool.intern(faceImages));
             fireFaceUpdated(face);
         }
 
@@ -96,11 +102,14 @@ public class DefaultFacesManager extends AbstractFacesManager {
      * Creates a new instance.
      * @param faceCache the face cache instance for storing in-memory faces
      * @param faceQueue the face queue to use
+     * @param faceImagesPool the face images pool for sharing images of loaded
+     * faces
      * @throws IOException if the unknown image resource cannot be loaded
      */
-    public DefaultFacesManager(@NotNull final FaceCache faceCache, @NotNull final FaceQueue faceQueue) throws IOException {
+    public DefaultFacesManager(@NotNull final FaceCache faceCache, @NotNull final FaceQueue faceQueue, @NotNull final FaceImagesPool faceImagesPool) throws IOException {
         super(faceCache);
         this.faceQueue = faceQueue;
+        this.faceImagesPool = faceImagesPool;
         faceQueue.addFaceQueueListener(faceQueueListener);
 
         emptyFaceImages = FaceImagesUtils.newEmptyFaceImages();
@@ -129,6 +138,15 @@ public class DefaultFacesManager extends AbstractFacesManager {
     @NotNull
     @Override
     protected FaceImages getFaceImages(final int faceNum, @Nullable final boolean[] isUnknownImage) {
+        return getFaceImages(faceNum, isUnknownImage, FacePriority.OTHER);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    protected FaceImages getFaceImages(final int faceNum, @Nullable final boolean[] isUnknownImage, @NotNull final FacePriority priority) {
         if (faceNum == 0) {
             if (isUnknownImage != null) {
                 isUnknownImage[0] = false;
@@ -146,7 +164,7 @@ public class DefaultFacesManager extends AbstractFacesManager {
             return faceImages;
         }
 
-        faceQueue.loadFace(face);
+        faceQueue.loadFace(face, priority);
         }
         if (isUnknownImage != null) {
             isUnknownImage[0] = true;
@@ -172,7 +190,7 @@ public class DefaultFacesManager extends AbstractFacesManager {
             return faceImages;
         }
 
-        faceQueue.loadFace(face);
+        faceQueue.loadFace(face, FacePriority.OTHER);
         
         if (isUnknownImage != null) {
             isUnknownImage[0] = true;
@@ -207,6 +225,7 @@ public class DefaultFacesManager extends AbstractFacesManager {
     public void reset() {
         super.reset();
         faceQueue.reset();
+        faceImagesPool.clear();
     }
 
 }
@@ -0,0 +1,162 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.faces;
+
+import java.awt.image.BufferedImage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Packs small images into large shared {@link BufferedImage BufferedImages}.
+ * Packed images are returned as sub-images sharing the pixel data of their
+ * page. This saves the per-image overhead and keeps the pixel data of
+ * faces displayed together close in memory.
+ * <p/>
+ * Pages are filled row by row ("shelf packing"); space of images no longer
+ * used is not reclaimed. Full pages are freed when no sub-image references
+ * them anymore.
+ * @author Andreas Kirschbaum
+ */
+public class FaceAtlas {
+
+    /**
+     * The width and height of a page.
+     */
+    public static final int PAGE_SIZE = 512;
+
+    /**
+     * The maximum width and height of images to pack.
+     */
+    public static final int MAX_IMAGE_SIZE = 64;
+
+    /**
+     * The page new images are added to or <code>null</code> if no page
+     * exists.
+     */
+    @Nullable
+    private Page page = null;
+
+    /**
+     * The number of pages created.
+     */
+    private int pages = 0;
+
+    /**
+     * Packs an image into the atlas.
+     * @param width the image width
+     * @param height the image height
+     * @param pixels the image pixels in ARGB format
+     * @return the packed image or <code>null</code> if the image is too large
+     */
+    @Nullable
+    public synchronized BufferedImage add(final int width, final int height, @NotNull final int[] pixels) {
+        if (width <= 0 || height <= 0 || width > MAX_IMAGE_SIZE || height > MAX_IMAGE_SIZE) {
+            return null;
+        }
+
+        if (page != null) {
+            final BufferedImage image = page.add(width, height, pixels);
+            if (image != null) {
+                return image;
+            }
+        }
+
+        page = new Page();
+        pages++;
+        final BufferedImage image = page.add(width, height, pixels);
+        assert image != null;
+        return image;
+    }
+
+    /**
+     * Forgets the current page. Images returned previously remain valid.
+     */
+    public synchronized void clear() {
+        page = null;
+    }
+
+    /**
+     * Returns the number of pages created.
+     * @return the number of pages
+     */
+    public synchronized int getPages() {
+        return pages;
+    }
+
+    /**
+     * One page of a {@link FaceAtlas}.
+     * @author Andreas Kirschbaum
+     */
+    private static class Page {
+
+        /**
+         * The page image.
+         */
+        @NotNull
+        private final BufferedImage image = new BufferedImage(PAGE_SIZE, PAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+
+        /**
+         * The top coordinate of the current shelf.
+         */
+        private int shelfY = 0;
+
+        /**
+         * The height of the current shelf.
+         */
+        private int shelfHeight = 0;
+
+        /**
+         * The left coordinate of the free space in the current shelf.
+         */
+        private int shelfX = 0;
+
+        /**
+         * Packs an image into this page.
+         * @param width the image width
+         * @param height the image height
+         * @param pixels the image pixels in ARGB format
+         * @return the packed image or <code>null</code> if the page has not
+         *         enough free space
+         */
+        @Nullable
+        public BufferedImage add(final int width, final int height, @NotNull final int[] pixels) {
+            if (shelfX+width > PAGE_SIZE || height > shelfHeight) {
+                // start a new shelf unless the current one is still empty
+                if (shelfX != 0) {
+                    shelfY += shelfHeight;
+                    shelfX = 0;
+                }
+                if (shelfY+height > PAGE_SIZE) {
+                    return null;
+                }
+                shelfHeight = height;
+            }
+
+            image.setRGB(shelfX, shelfY, width, height, pixels, 0, width);
+            final BufferedImage result = image.getSubimage(shelfX, shelfY, width, height);
+            shelfX += width;
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.faces;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.swing.ImageIcon;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shares {@link FaceImages} instances between faces having identical
+ * images. Many face numbers use byte-identical images, for example color
+ * variants or the "top part" faces; sharing the images saves memory and
+ * allows caches keyed by image, like the map view's fragment cache, to
+ * re-use their entries.
+ * <p/>
+ * Optionally the images of new faces are packed into a {@link FaceAtlas}.
+ * @author Andreas Kirschbaum
+ */
+public class FaceImagesPool {
+
+    /**
+     * The {@link FaceAtlas} for packing new images or <code>null</code> to
+     * not pack images.
+     */
+    @Nullable
+    private final FaceAtlas faceAtlas;
+
+    /**
+     * Maps hash value of an original image's pixels to the first {@link
+     * FaceImages} instance having these pixels.
+     */
+    @NotNull
+    private final Map<Long, FaceImages> faceImagesByHash = new HashMap<Long, FaceImages>();
+
+    /**
+     * The number of {@link FaceImages} instances replaced by shared
+     * instances.
+     */
+    private int duplicates = 0;
+
+    /**
+     * Creates a new instance.
+     * @param faceAtlas the face atlas for packing images or <code>null</code>
+     * to not pack images
+     */
+    public FaceImagesPool(@Nullable final FaceAtlas faceAtlas) {
+        this.faceAtlas = faceAtlas;
+    }
+
+    /**
+     * Returns a shared {@link FaceImages} instance having the same images as
+     * a given instance.
+     * @param faceImages the face images
+     * @return the shared face images; <code>faceImages</code> if no face
+     *         with identical images exists and images are not packed
+     */
+    @NotNull
+    public FaceImages intern(@NotNull final FaceImages faceImages) {
+        final BufferedImage image = getBufferedImage(faceImages.getOriginalImageIcon());
+        if (image == null) {
+            return faceImages;
+        }
+
+        final int[] pixels = getPixels(image);
+        final long hash = getHash(image.getWidth(), image.getHeight(), pixels);
+        synchronized (faceImagesByHash) {
+            final FaceImages sharedFaceImages = faceImagesByHash.get(hash);
+            if (sharedFaceImages != null) {
+                final BufferedImage sharedImage = getBufferedImage(sharedFaceImages.getOriginalImageIcon());
+                if (sharedImage != null && sharedImage.getWidth() == image.getWidth() && sharedImage.getHeight() == image.getHeight() && Arrays.equals(getPixels(sharedImage), pixels)) {
+                    duplicates++;
+                    return sharedFaceImages;
+                }
+
+                // hash collision: do not share
+                return faceImages;
+            }
+
+            final FaceImages newFaceImages = pack(faceImages, image.getWidth(), image.getHeight(), pixels);
+            faceImagesByHash.put(hash, newFaceImages);
+            return newFaceImages;
+        }
+    }
+
+    /**
+     * Forgets all shared instances.
+     */
+    public void clear() {
+        synchronized (faceImagesByHash) {
+            faceImagesByHash.clear();
+        }
+        if (faceAtlas != null) {
+            faceAtlas.clear();
+        }
+    }
+
+    /**
+     * Returns the number of {@link FaceImages} instances replaced by shared
+     * instances.
+     * @return the number of replaced instances
+     */
+    public int getDuplicates() {
+        synchronized (faceImagesByHash) {
+            return duplicates;
+        }
+    }
+
+    /**
+     * Packs the original image of a {@link FaceImages} instance into {@link
+     * #faceAtlas}.
+     * @param faceImages the face images
+     * @param width the width of the original image
+     * @param height the height of the original image
+     * @param pixels the pixels of the original image
+     * @return the face images using the packed original image;
+     *         <code>faceImages</code> if the image is not packed
+     */
+    @NotNull
+    private FaceImages pack(@NotNull final FaceImages faceImages, final int width, final int height, @NotNull final int[] pixels) {
+        if (faceAtlas == null) {
+            return faceImages;
+        }
+
+        final BufferedImage packedImage = faceAtlas.add(width, height, pixels);
+        if (packedImage == null) {
+            return faceImages;
+        }
+
+        return new FaceImages(new ImageIcon(packedImage), faceImages.getMagicMapImageIcon());
+    }
+
+    /**
+     * Returns the {@link BufferedImage} of an {@link ImageIcon}.
+     * @param imageIcon the image icon
+     * @return the buffered image or <code>null</code> if the image icon is
+     *         not backed by a fully loaded buffered image
+     */
+    @Nullable
+    private static BufferedImage getBufferedImage(@NotNull final ImageIcon imageIcon) {
+        final Image image = imageIcon.getImage();
+        if (!(image instanceof BufferedImage)) {
+            return null;
+        }
+
+        final BufferedImage bufferedImage = (BufferedImage)image;
+        return bufferedImage.getWidth() <= 0 || bufferedImage.getHeight() <= 0 ? null : bufferedImage;
+    }
+
+    /**
+     * Returns the pixels of an image.
+     * @param image the image
+     * @return the pixels in ARGB format
+     */
+    @NotNull
+    private static int[] getPixels(@NotNull final BufferedImage image) {
+        final int width = image.getWidth();
+        return image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
+    }
+
+    /**
+     * Returns a 64 bit hash value of an image.
+     * @param width the image width
+     * @param height the image height
+     * @param pixels the image pixels
+     * @return the hash value
+     */
+    private static long getHash(final int width, final int height, @NotNull final int[] pixels) {
+        long hash = 0xCBF29CE484222325L^((long)width<<16)^height;
+        for (final int pixel : pixels) {
+            hash ^= pixel;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+}
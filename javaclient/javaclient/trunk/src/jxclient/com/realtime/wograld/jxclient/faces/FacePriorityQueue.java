@@ -0,0 +1,276 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.faces;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A queue of {@link Face Faces} ordered by {@link FacePriority}. Faces of
+ * the same priority are ordered most recently added first. Faces are indexed
+ * by face number; adding a face that is already queued raises its priority
+ * and moves it to the front of its priority class. All operations take at
+ * most logarithmic time.
+ * @author Andreas Kirschbaum
+ */
+public class FacePriorityQueue {
+
+    /**
+     * The queued faces as a binary heap. The first {@link #size} entries are
+     * valid.
+     */
+    @NotNull
+    private Entry[] heap = new Entry[16];
+
+    /**
+     * The number of queued faces.
+     */
+    private int size = 0;
+
+    /**
+     * Maps face number to queued entry.
+     */
+    @NotNull
+    private final Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+
+    /**
+     * The sequence number for the next added or updated entry.
+     */
+    private long sequence = 0;
+
+    /**
+     * Adds a face to the queue. If the face is already queued, its priority
+     * is raised to <code>priority</code> and it is moved to the front of its
+     * priority class.
+     * @param face the face to add
+     * @param priority the priority
+     * @return whether the face has been added; <code>false</code> if it was
+     *         already queued
+     */
+    public boolean add(@NotNull final Face face, @NotNull final FacePriority priority) {
+        final Entry entry = entries.get(face.getFaceNum());
+        if (entry != null) {
+            if (priority.compareTo(entry.priority) < 0) {
+                entry.priority = priority;
+            }
+            entry.sequence = sequence++;
+            siftUp(entry.index);
+            return false;
+        }
+
+        if (size >= heap.length) {
+            heap = Arrays.copyOf(heap, heap.length*2);
+        }
+        final Entry newEntry = new Entry(face, priority, sequence++);
+        entries.put(face.getFaceNum(), newEntry);
+        newEntry.index = size;
+        heap[size++] = newEntry;
+        siftUp(newEntry.index);
+        return true;
+    }
+
+    /**
+     * Removes and returns the face of highest priority.
+     * @return the face or <code>null</code> if the queue is empty
+     */
+    @Nullable
+    public Face poll() {
+        if (size <= 0) {
+            return null;
+        }
+
+        final Entry entry = heap[0];
+        removeAt(0);
+        return entry.face;
+    }
+
+    /**
+     * Removes a face from the queue.
+     * @param face the face to remove
+     * @return whether the face was queued
+     */
+    public boolean remove(@NotNull final Face face) {
+        final Entry entry = entries.get(face.getFaceNum());
+        if (entry == null) {
+            return false;
+        }
+
+        removeAt(entry.index);
+        return true;
+    }
+
+    /**
+     * Returns whether a face is queued.
+     * @param face the face
+     * @return whether the face is queued
+     */
+    public boolean contains(@NotNull final Face face) {
+        return entries.containsKey(face.getFaceNum());
+    }
+
+    /**
+     * Returns the number of queued faces.
+     * @return the number of queued faces
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether no faces are queued.
+     * @return whether no faces are queued
+     */
+    public boolean isEmpty() {
+        return size <= 0;
+    }
+
+    /**
+     * Removes all faces.
+     */
+    public void clear() {
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+        entries.clear();
+    }
+
+    /**
+     * Removes the entry at a heap index.
+     * @param index the heap index
+     */
+    private void removeAt(final int index) {
+        final Entry entry = heap[index];
+        entries.remove(entry.face.getFaceNum());
+        size--;
+        if (index < size) {
+            heap[index] = heap[size];
+            heap[index].index = index;
+            heap[size] = null;
+            siftDown(index);
+            siftUp(index);
+        } else {
+            heap[size] = null;
+        }
+    }
+
+    /**
+     * Moves an entry towards the root until the heap condition holds.
+     * @param index the heap index of the entry
+     */
+    private void siftUp(final int index) {
+        final Entry entry = heap[index];
+        int i = index;
+        while (i > 0) {
+            final int parent = (i-1)/2;
+            if (!entry.isBefore(heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heap[i].index = i;
+            i = parent;
+        }
+        heap[i] = entry;
+        entry.index = i;
+    }
+
+    /**
+     * Moves an entry towards the leaves until the heap condition holds.
+     * @param index the heap index of the entry
+     */
+    private void siftDown(final int index) {
+        final Entry entry = heap[index];
+        int i = index;
+        while (true) {
+            int child = 2*i+1;
+            if (child >= size) {
+                break;
+            }
+            if (child+1 < size && heap[child+1].isBefore(heap[child])) {
+                child++;
+            }
+            if (!heap[child].isBefore(entry)) {
+                break;
+            }
+            heap[i] = heap[child];
+            heap[i].index = i;
+            i = child;
+        }
+        heap[i] = entry;
+        entry.index = i;
+    }
+
+    /**
+     * An entry of the queue.
+     * @author Andreas Kirschbaum
+     */
+    private static class Entry {
+
+        /**
+         * The queued face.
+         */
+        @NotNull
+        private final Face face;
+
+        /**
+         * The face's priority.
+         */
+        @NotNull
+        private FacePriority priority;
+
+        /**
+         * The sequence number of the last {@link FacePriorityQueue#add(Face,
+         * FacePriority)} call for the face.
+         */
+        private long sequence;
+
+        /**
+         * The index within {@link FacePriorityQueue#heap}.
+         */
+        private int index = 0;
+
+        /**
+         * Creates a new instance.
+         * @param face the queued face
+         * @param priority the face's priority
+         * @param sequence the sequence number
+         */
+        private Entry(@NotNull final Face face, @NotNull final FacePriority priority, final long sequence) {
+            this.face = face;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Returns whether this entry is to be returned before another entry.
+         * @param entry the other entry
+         * @return whether this entry is to be returned first
+         */
+        private boolean isBefore(@NotNull final Entry entry) {
+            final int cmp = priority.compareTo(entry.priority);
+            return cmp < 0 || (cmp == 0 && sequence > entry.sequence);
+        }
+
+    }
+
+}
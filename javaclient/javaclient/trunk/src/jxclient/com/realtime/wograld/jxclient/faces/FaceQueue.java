@@ -42,8 +42,9 @@ public interface FaceQueue {
      * FaceQueueListener#faceFailed(Face)} for the face. Faces re-requested
      * while still processing may be notified only once.
      * @param face the requested face
+     * @param priority the priority for loading the face
      */
-    void loadFace(@NotNull Face face);
+    void loadFace(@NotNull Face face, @NotNull FacePriority priority);
 
     /**
      * Adds a {@link FaceQueueListener} to be notified about processed faces.
@@ -47,6 +47,18 @@ public interface FacesManager {
      */
     @NotNull
     ImageIcon getOriginalImageIcon(int faceNum, @Nullable boolean[] isUnknownImage);
+
+    /**
+     * Returns the "original" face for a face ID displayed in the map view.
+     * Other than {@link #getOriginalImageIcon(int, boolean[])}, a not loaded
+     * face is requested with {@link FacePriority#VISIBLE}.
+     * @param faceNum the face ID
+     * @param isUnknownImage returns whether the returned face is the "unknown"
+     * face; ignored if <code>null</code>
+     * @return the face, or the "unknown" face if the face is not loaded
+     */
+    @NotNull
+    ImageIcon getMapImageIcon(int faceNum, @Nullable boolean[] isUnknownImage);
     
     ImageIcon getSpellImageIcon(int faceNum, @Nullable boolean[] isUnknownImage);
 
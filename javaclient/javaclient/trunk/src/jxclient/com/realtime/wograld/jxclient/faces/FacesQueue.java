@@ -22,6 +22,9 @@
 package com.realtime.wograld.jxclient.faces;
 
 import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -45,7 +48,15 @@ public class FacesQueue extends AbstractFaceQueue {
      * server.
      */
     @NotNull
-    private final FaceQueue askfaceFaceQueue;
+    private final AskfaceFaceQueue askfaceFaceQueue;
+
+    /**
+     * The priorities of the faces being loaded by {@link
+     * #fileCacheFaceQueue}. They are used when faces not in the file cache
+     * are requested from the server.
+     */
+    @NotNull
+    private final Map<Face, FacePriority> priorities = new HashMap<Face, FacePriority>();
 
     /**
      * The {@link FaceQueueListener} attached to {@link #fileCacheFaceQueue}.
@@ -55,13 +66,20 @@ public class FacesQueue extends AbstractFaceQueue {
 
         @Override
         public void faceLoaded(@NotNull final Face face, @NotNull final FaceImages faceImages) {
+            synchronized (priorities) {
+                priorities.remove(face);
+            }
             fireFaceLoaded(face, faceImages);
         }
 
         @Override
         public void faceFailed(@NotNull final Face face) {
         //    fireFaceFailed(face);
-            askfaceFaceQueue.loadFace(face);
+            final FacePriority priority;
+            synchronized (priorities) {
+                priority = priorities.remove(face);
+            }
+            askfaceFaceQueue.loadFace(face, priority == null ? FacePriority.OTHER : priority);
         }
 
     };
@@ -108,16 +126,40 @@ public class FacesQueue extends AbstractFaceQueue {
      */
     @Override
     public void reset() {
+        synchronized (priorities) {
+            priorities.clear();
+        }
         fileCacheFaceQueue.reset();
         askfaceFaceQueue.reset();
     }
 
+    /**
+     * Preloads faces from the file cache.
+     * @param faces the faces to preload
+     * @see FileCacheFaceQueue#preload(Collection)
+     */
+    public void preload(@NotNull final Collection<Face> faces) {
+        fileCacheFaceQueue.preload(faces);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public void loadFace(@NotNull final Face face) {
-        fileCacheFaceQueue.loadFace(face);
+    public void loadFace(@NotNull final Face face, @NotNull final FacePriority priority) {
+        // faces not in the file cache are not looked up again while they
+        // are requested from the server
+        if (askfaceFaceQueue.updatePriority(face, priority)) {
+            return;
+        }
+
+        synchronized (priorities) {
+            final FacePriority oldPriority = priorities.get(face);
+            if (oldPriority == null || priority.compareTo(oldPriority) < 0) {
+                priorities.put(face, priority);
+            }
+        }
+        fileCacheFaceQueue.loadFace(face, priority);
     }
 
 }
@@ -109,7 +109,12 @@ public class FileCache implements ImageCache {
      * @param imageIcon the image icon to store
      */
     public void save(@NotNull final String faceName, final int faceChecksum, @NotNull final Icon imageIcon) {
-        Images.saveImageIcon(getImageFileName(faceName, faceChecksum), imageIcon);
+        final File file = getImageFileName(faceName, faceChecksum);
+        final File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            System.err.println("Cannot create directory: "+dir);
+        }
+        Images.saveImageIcon(file, imageIcon);
     }
 
     /**
@@ -123,9 +128,6 @@ public class FileCache implements ImageCache {
         final String quotedFaceName = FilenameUtils.quoteName(faceName);
         final String dirName = quotedFaceName.substring(0, Math.min(2, quotedFaceName.length()));
         final File dir = new File(new File(cacheDir, dirName), quotedFaceName);
-        if (!dir.exists() && !dir.mkdirs()) {
-            System.err.println("Cannot create directory: "+dir);
-        }
         return new File(dir, Integer.toString(faceChecksum));
     }
 
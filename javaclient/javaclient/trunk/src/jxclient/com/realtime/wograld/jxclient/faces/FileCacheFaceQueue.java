@@ -22,18 +22,30 @@
 package com.realtime.wograld.jxclient.faces;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import javax.swing.ImageIcon;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A {@link FaceQueue} loading faces from {@link ImageCache} instances.
+ * <p/>
+ * Faces expected to be needed soon can be preloaded by {@link
+ * #preload(Collection)}. Preloaded faces are decoded in parallel and kept
+ * until they are requested by {@link #loadFace(Face, FacePriority)}.
  * @author Andreas Kirschbaum
  */
 public class FileCacheFaceQueue extends AbstractFaceQueue {
 
+    /**
+     * The number of threads used for preloading faces.
+     */
+    private static final int PRELOAD_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     /**
      * The object used for synchronization.
      */
@@ -66,7 +78,13 @@ public class FileCacheFaceQueue extends AbstractFaceQueue {
     private final ExecutorService executorService = Executors.newFixedThreadPool(1);
 
     /**
-     * The faces for which {@link #loadFace(Face)} has been called but that are
+     * The {@link ExecutorService} used to execute face preloading.
+     */
+    @NotNull
+    private final ExecutorService preloadExecutorService = Executors.newFixedThreadPool(PRELOAD_THREADS);
+
+    /**
+     * The faces for which {@link #loadFace(Face, FacePriority)} has been called but that are
      * not yet processed.
      */
     @NotNull
@@ -80,6 +98,19 @@ public class FileCacheFaceQueue extends AbstractFaceQueue {
      */
     private int id = 0;
 
+    /**
+     * The preloaded faces not yet requested by {@link #loadFace(Face, FacePriority)}. Maps
+     * key as returned by {@link #getKey(Face)} to face images.
+     */
+    @NotNull
+    private final Map<String, FaceImages> preloadedFaces = new HashMap<String, FaceImages>();
+
+    /**
+     * Counts the number of calls to {@link #preload(Collection)}. Preload
+     * tasks exit if this ID does not match the ID value at creation time.
+     */
+    private int preloadId = 0;
+
     /**
      * Creates a new instance.
      * @param imageCacheOriginal the image cache used for loading original image
@@ -107,10 +138,11 @@ public class FileCacheFaceQueue extends AbstractFaceQueue {
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc} Faces are loaded in request order; the priority is
+     * ignored.
      */
     @Override
-    public void loadFace(@NotNull final Face face) {
+    public void loadFace(@NotNull final Face face, @NotNull final FacePriority priority) {
         final boolean doAdd;
         synchronized (sync) {
             doAdd = pendingLoadFaces.add(face);
@@ -122,6 +154,23 @@ public class FileCacheFaceQueue extends AbstractFaceQueue {
         }
     }
 
+    /**
+     * Preloads faces from the caches. This function returns immediately; the
+     * faces are decoded asynchronously. Faces preloaded by previous calls
+     * but not yet requested are discarded.
+     * @param faces the faces to preload; faces earlier in the collection are
+     * loaded first
+     */
+    public void preload(@NotNull final Collection<Face> faces) {
+        synchronized (sync) {
+            preloadId++;
+            preloadedFaces.clear();
+        }
+        for (final Face face : faces) {
+            preloadExecutorService.submit(new PreloadTask(face));
+        }
+    }
+
     /**
      * Saves a face to the caches. This function returns immediately; the faces
      * are written asynchronously.
@@ -175,26 +224,19 @@ public class FileCacheFaceQueue extends AbstractFaceQueue {
                         return;
                     }
 
-                    final ImageIcon originalImageIcon = imageCacheOriginal.load(face);
-                    if (originalImageIcon == null) {
-                        fireFaceFailed(face);
-                        return;
+                    FaceImages faceImages;
+                    synchronized (sync) {
+                        faceImages = preloadedFaces.remove(getKey(face));
                     }
-
-                 /*   final ImageIcon scaledImageIcon = imageCacheScaled.load(face);
-                    if (scaledImageIcon == null) {
-                        fireFaceFailed(face);
-                        return;
-                    }  */
-
-                    final ImageIcon magicMapImageIcon = imageCacheMagicMap.load(face);
-                    if (magicMapImageIcon == null) {
-                        fireFaceFailed(face);
-                        return;
+                    if (faceImages == null) {
+                        faceImages = loadFaceImages(face);
+                        if (faceImages == null) {
+                            fireFaceFailed(face);
+                            return;
+                        }
                     }
 
-               //     fireFaceLoaded(face, new FaceImages(originalImageIcon, scaledImageIcon, magicMapImageIcon));
-                    fireFaceLoaded(face, new FaceImages(originalImageIcon, magicMapImageIcon));
+                    fireFaceLoaded(face, faceImages);
                 } finally {
                     synchronized (sync) {
                         pendingLoadFaces.remove(face);
@@ -207,6 +249,59 @@ public class FileCacheFaceQueue extends AbstractFaceQueue {
 
     }
 
+    /**
+     * A thread which preloads one face from the caches.
+     * @author Andreas Kirschbaum
+     */
+    private class PreloadTask implements Runnable {
+
+        /**
+         * The expected task {@link FileCacheFaceQueue#preloadId}. If it does
+         * not match the current id, the face is not loaded.
+         */
+        private final int taskId = preloadId;
+
+        /**
+         * The face to load.
+         */
+        @NotNull
+        private final Face face;
+
+        /**
+         * Creates a new instance.
+         * @param face the face to load
+         */
+        private PreloadTask(@NotNull final Face face) {
+            this.face = face;
+        }
+
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            final String name = thread.getName();
+            try {
+                thread.setName("JXClient:PreloadTask:face="+face.getFaceName());
+                if (taskId != preloadId) {
+                    return;
+                }
+
+                final FaceImages faceImages = loadFaceImages(face);
+                if (faceImages == null) {
+                    return;
+                }
+
+                synchronized (sync) {
+                    if (taskId == preloadId) {
+                        preloadedFaces.put(getKey(face), faceImages);
+                    }
+                }
+            } finally {
+                thread.setName(name);
+            }
+        }
+
+    }
+
     /**
      * A thread which saves one face to the caches.
      * @author Andreas Kirschbaum
@@ -251,4 +346,45 @@ public class FileCacheFaceQueue extends AbstractFaceQueue {
         }
     }
 
+    /**
+     * Loads the images of a face from the caches. A missing magic map image
+     * is calculated from the original image and added to the magic map
+     * cache.
+     * @param face the face to load
+     * @return the face images or <code>null</code> if the face is not cached
+     */
+    @Nullable
+    private FaceImages loadFaceImages(@NotNull final Face face) {
+        final ImageIcon originalImageIcon = imageCacheOriginal.load(face);
+        if (originalImageIcon == null) {
+            return null;
+        }
+
+     /* final ImageIcon scaledImageIcon = imageCacheScaled.load(face);
+        if (scaledImageIcon == null) {
+            return null;
+        }  */
+
+        ImageIcon magicMapImageIcon = imageCacheMagicMap.load(face);
+        if (magicMapImageIcon == null) {
+            magicMapImageIcon = new ImageScale8d(originalImageIcon).getScaledImage();
+            imageCacheMagicMap.save(face, magicMapImageIcon);
+        }
+
+     // return new FaceImages(originalImageIcon, scaledImageIcon, magicMapImageIcon);
+        return new FaceImages(originalImageIcon, magicMapImageIcon);
+    }
+
+    /**
+     * Returns the key of a face in {@link #preloadedFaces}. Faces are
+     * identified by name and checksum since face numbers are assigned by the
+     * server for each connection.
+     * @param face the face
+     * @return the key
+     */
+    @NotNull
+    private static String getKey(@NotNull final Face face) {
+        return face.getFaceName()+"/"+face.getFaceChecksum();
+    }
+
 }
@@ -64,7 +64,7 @@ public class OriginalFacesProvider implements FacesProvider {
     @NotNull
     @Override
     public ImageIcon getImageIcon(final int faceNum, @Nullable final boolean[] isUnknownImage) {
-        return facesManager.getOriginalImageIcon(faceNum, isUnknownImage);
+        return facesManager.getMapImageIcon(faceNum, isUnknownImage);
     }
     
     public ImageIcon getSpellImageIcon(final int faceNum, @Nullable final boolean[] isUnknownImage){
@@ -0,0 +1,639 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.faces;
+
+import com.realtime.wograld.jxclient.util.Images;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.swing.ImageIcon;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A disk based cache for image files that stores all images in one
+ * append-only data file. The file is read through a {@link MappedByteBuffer};
+ * an index mapping face name to the current image data is built when the file
+ * is opened.
+ * <p/>
+ * Each record consists of the face name, the face checksum, the .png data,
+ * and a CRC32 over all these. When opening the file all records are verified;
+ * the file is truncated at the first invalid record, for example a record
+ * partially written when the client was killed. Records replaced by newer
+ * records for the same face name are garbage; the file is compacted in place
+ * when opened if garbage makes up more than half of it. Truncation and
+ * compaction happen before the file is mapped since some platforms cannot
+ * change the size of mapped files.
+ * <p/>
+ * Several clients may share the data file. Appending, truncation, and
+ * compaction hold an exclusive lock on the file contents; each client holds a
+ * shared lock while the file is open. The file is compacted only if no other
+ * client has opened it since compaction moves records.
+ * <p/>
+ * Images not found are looked up in an optional fallback {@link ImageCache}
+ * and copied into this cache; images too large for a record are saved into
+ * the fallback instead. This allows to take over the images of a {@link
+ * FileCache} in the same directory.
+ * @author Andreas Kirschbaum
+ */
+public class PackedFileCache implements ImageCache {
+
+    /**
+     * The name of the data file within the cache directory.
+     */
+    @NotNull
+    public static final String DATA_FILE_NAME = "faces.dat";
+
+    /**
+     * The magic number at the start of the data file.
+     */
+    private static final int MAGIC = 0x4A584643;
+
+    /**
+     * The version number of the data file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the data file header: magic and version.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * The number of bytes of a record excluding face name and data: name
+     * length, checksum, data length, and CRC.
+     */
+    private static final int RECORD_OVERHEAD = 2+4+4+4;
+
+    /**
+     * The maximum size of image data. Larger values are treated as a
+     * corrupted record.
+     */
+    private static final int MAX_DATA_SIZE = 0x1000000;
+
+    /**
+     * The initial size of the buffer for reading records. It grows for larger
+     * records.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 0x10000;
+
+    /**
+     * The size of the file region locked while the file contents are
+     * modified. The region starts at offset zero.
+     */
+    private static final long CONTENTS_LOCK_SIZE = Long.MAX_VALUE-1;
+
+    /**
+     * The offset of the one-byte file region every client holds a shared lock
+     * on while the file is open. It does not overlap the contents region.
+     */
+    private static final long USERS_LOCK_POSITION = Long.MAX_VALUE-1;
+
+    /**
+     * The {@link Charset} for encoding face names.
+     */
+    @NotNull
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Orders {@link Record Records} by file offset.
+     */
+    @NotNull
+    private static final Comparator<Map.Entry<String, Record>> RECORD_OFFSET_COMPARATOR = new Comparator<Map.Entry<String, Record>>() {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(@NotNull final Map.Entry<String, Record> o1, @NotNull final Map.Entry<String, Record> o2) {
+            final int offset1 = o1.getValue().recordOffset;
+            final int offset2 = o2.getValue().recordOffset;
+            return offset1 < offset2 ? -1 : offset1 > offset2 ? 1 : 0;
+        }
+
+    };
+
+    /**
+     * The data file.
+     */
+    @NotNull
+    private final File dataFile;
+
+    /**
+     * The {@link ImageCache} to query for images not in this cache or
+     * <code>null</code>.
+     */
+    @Nullable
+    private final ImageCache fallback;
+
+    /**
+     * Maps face name to the current record of the face.
+     */
+    @NotNull
+    private final Map<String, Record> index = new HashMap<String, Record>();
+
+    /**
+     * The opened data file or <code>null</code> if the data file cannot be
+     * used.
+     */
+    @Nullable
+    private RandomAccessFile randomAccessFile = null;
+
+    /**
+     * The shared lock held while the data file is open or <code>null</code>.
+     */
+    @Nullable
+    private FileLock usersLock = null;
+
+    /**
+     * The mapped data file contents. May not include records appended since
+     * the file was mapped.
+     */
+    @Nullable
+    private MappedByteBuffer mappedByteBuffer = null;
+
+    /**
+     * The end of the last record in {@link #index}.
+     */
+    private long size = 0;
+
+    /**
+     * The size of all records replaced by newer records.
+     */
+    private long garbage = 0;
+
+    /**
+     * Creates a new instance.
+     * @param cacheDir the directory where the data file is saved
+     * @param fallback the image cache to query for images not in this cache
+     * or <code>null</code>
+     */
+    public PackedFileCache(@NotNull final File cacheDir, @Nullable final ImageCache fallback) {
+        this.fallback = fallback;
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            System.err.println(cacheDir+": cannot create directory");
+        }
+        dataFile = new File(cacheDir, DATA_FILE_NAME);
+        try {
+            open();
+        } catch (final IOException ex) {
+            System.err.println(dataFile+": "+ex.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    public ImageIcon load(@NotNull final Face face) {
+        final ImageIcon imageIcon = load(face.getFaceName(), face.getFaceChecksum());
+        if (imageIcon != null || fallback == null) {
+            return imageIcon;
+        }
+
+        final ImageIcon fallbackImageIcon = fallback.load(face);
+        if (fallbackImageIcon != null) {
+            save(face, fallbackImageIcon);
+        }
+        return fallbackImageIcon;
+    }
+
+    /**
+     * Retrieves an image from the cache.
+     * @param faceName the image name to retrieve
+     * @param faceChecksum the checksum to retrieve
+     * @return the image icon, or <code>null</code> if the cache does not
+     *         contain the image
+     */
+    @Nullable
+    private ImageIcon load(@NotNull final String faceName, final int faceChecksum) {
+        final byte[] data;
+        synchronized (index) {
+            final Record record = index.get(faceName);
+            if (record == null || record.faceChecksum != faceChecksum) {
+                return null;
+            }
+
+            try {
+                final ByteBuffer buffer = getMappedBuffer(record.recordOffset+record.recordLength);
+                data = new byte[record.dataLength];
+                buffer.position(record.recordOffset+record.recordLength-4-record.dataLength);
+                buffer.get(data);
+            } catch (final IOException ex) {
+                System.err.println(dataFile+": "+ex.getMessage());
+                return null;
+            }
+        }
+        final ImageIcon imageIcon = Images.decodeImageIcon(data);
+        return imageIcon == null || (imageIcon.getIconWidth() <= 0 && imageIcon.getIconHeight() <= 0) ? null : imageIcon;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(@NotNull final Face face, @NotNull final ImageIcon imageIcon) {
+        final byte[] data;
+        try {
+            data = Images.encodeImageIcon(imageIcon);
+        } catch (final IOException ex) {
+            System.err.println("Cannot encode face "+face.getFaceName()+": "+ex.getMessage());
+            return;
+        }
+        if (data.length >= MAX_DATA_SIZE) {
+            if (fallback != null) {
+                fallback.save(face, imageIcon);
+            }
+            return;
+        }
+        save(face.getFaceName(), face.getFaceChecksum(), data);
+    }
+
+    /**
+     * Appends a record to the data file.
+     * @param faceName the image name to save
+     * @param faceChecksum the checksum to save
+     * @param data the .png data to save
+     */
+    public void save(@NotNull final String faceName, final int faceChecksum, @NotNull final byte[] data) {
+        if (data.length >= MAX_DATA_SIZE) {
+            return;
+        }
+
+        final byte[] name = faceName.getBytes(CHARSET);
+        if (name.length > 0xFFFF) {
+            return;
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD+name.length+data.length);
+        record.putShort((short)name.length);
+        record.put(name);
+        record.putInt(faceChecksum);
+        record.putInt(data.length);
+        record.put(data);
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int)crc.getValue());
+        record.flip();
+
+        synchronized (index) {
+            if (randomAccessFile == null) {
+                return;
+            }
+
+            final long offset;
+            try {
+                final FileChannel channel = randomAccessFile.getChannel();
+                final FileLock lock = lockContents(channel);
+                try {
+                    // other clients may have appended records
+                    offset = channel.size();
+                    if (offset+record.limit() >= Integer.MAX_VALUE) {
+                        return;
+                    }
+                    write(channel, record, offset);
+                } finally {
+                    lock.release();
+                }
+            } catch (final IOException ex) {
+                System.err.println(dataFile+": "+ex.getMessage());
+                return;
+            }
+            size = offset+record.limit();
+            addRecord(faceName, faceChecksum, (int)offset, data.length, record.limit());
+        }
+    }
+
+    /**
+     * Closes the data file. Afterwards no images are loaded or saved.
+     */
+    public void close() {
+        synchronized (index) {
+            mappedByteBuffer = null;
+            index.clear();
+            if (randomAccessFile != null) {
+                try {
+                    // closing the file releases all locks
+                    randomAccessFile.close();
+                } catch (final IOException ex) {
+                    System.err.println(dataFile+": "+ex.getMessage());
+                }
+                randomAccessFile = null;
+            }
+            usersLock = null;
+        }
+    }
+
+    /**
+     * Opens the data file and builds the index. Invalid records at the end
+     * of the file are truncated. Compacts the data file if it contains too
+     * much garbage and no other client uses it. The data file is not mapped.
+     * @throws IOException if the data file cannot be opened
+     */
+    private void open() throws IOException {
+        randomAccessFile = new RandomAccessFile(dataFile, "rw");
+        index.clear();
+        garbage = 0;
+        mappedByteBuffer = null;
+        final FileChannel channel = randomAccessFile.getChannel();
+        final FileLock lock = lockContents(channel);
+        try {
+            final boolean exclusive = lockUsers(channel);
+            final long fileSize = channel.size();
+            if (fileSize >= Integer.MAX_VALUE) {
+                throw new IOException("file too large");
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+            if (fileSize < HEADER_SIZE || !checkHeader(channel, buffer)) {
+                if (fileSize > 0) {
+                    System.err.println(dataFile+": invalid header, discarding cached images");
+                }
+                channel.truncate(0);
+                buffer.clear();
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.flip();
+                write(channel, buffer, 0);
+                size = HEADER_SIZE;
+                return;
+            }
+
+            size = scanRecords(channel, fileSize, buffer);
+            if (size < fileSize) {
+                System.err.println(dataFile+": discarding "+(fileSize-size)+" bytes of invalid data");
+                channel.truncate(size);
+            }
+            if (exclusive && garbage*2 > size) {
+                compact(channel, buffer);
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Acquires the exclusive lock on the file contents.
+     * @param channel the data file channel
+     * @return the lock
+     * @throws IOException if the lock cannot be acquired
+     */
+    @NotNull
+    private static FileLock lockContents(@NotNull final FileChannel channel) throws IOException {
+        try {
+            return channel.lock(0, CONTENTS_LOCK_SIZE, false);
+        } catch (final OverlappingFileLockException ex) {
+            throw new IOException("data file is in use by another cache instance");
+        }
+    }
+
+    /**
+     * Acquires the shared lock held while the data file is open. Must be
+     * called while holding the contents lock.
+     * @param channel the data file channel
+     * @return whether no other client uses the data file
+     * @throws IOException if the lock cannot be acquired
+     */
+    private boolean lockUsers(@NotNull final FileChannel channel) throws IOException {
+        try {
+            final FileLock exclusiveLock = channel.tryLock(USERS_LOCK_POSITION, 1, false);
+            if (exclusiveLock != null) {
+                exclusiveLock.release();
+            }
+            usersLock = channel.lock(USERS_LOCK_POSITION, 1, true);
+            return exclusiveLock != null;
+        } catch (final OverlappingFileLockException ex) {
+            throw new IOException("data file is in use by another cache instance");
+        }
+    }
+
+    /**
+     * Checks the data file header.
+     * @param channel the data file channel
+     * @param buffer the buffer to use
+     * @return whether the header is valid
+     * @throws IOException if the data file cannot be read
+     */
+    private static boolean checkHeader(@NotNull final FileChannel channel, @NotNull final ByteBuffer buffer) throws IOException {
+        read(channel, buffer, 0, HEADER_SIZE);
+        return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION;
+    }
+
+    /**
+     * Adds all valid records to {@link #index}.
+     * @param channel the data file channel
+     * @param fileSize the data file size
+     * @param initialBuffer the buffer to use
+     * @return the end of the last valid record
+     * @throws IOException if the data file cannot be read
+     */
+    private long scanRecords(@NotNull final FileChannel channel, final long fileSize, @NotNull final ByteBuffer initialBuffer) throws IOException {
+        final CRC32 crc = new CRC32();
+        ByteBuffer buffer = initialBuffer;
+        int position = HEADER_SIZE;
+        while (fileSize-position >= RECORD_OVERHEAD) {
+            buffer = read(channel, buffer, position, 2);
+            final int nameLength = buffer.getShort(0)&0xFFFF;
+            if (fileSize-position < RECORD_OVERHEAD+nameLength) {
+                break;
+            }
+            buffer = read(channel, buffer, position, 2+nameLength+8);
+            final int dataLength = buffer.getInt(2+nameLength+4);
+            if (dataLength < 0 || dataLength >= MAX_DATA_SIZE || fileSize-position < RECORD_OVERHEAD+nameLength+dataLength) {
+                break;
+            }
+
+            final int recordLength = RECORD_OVERHEAD+nameLength+dataLength;
+            buffer = read(channel, buffer, position, recordLength);
+            crc.reset();
+            crc.update(buffer.array(), 0, recordLength-4);
+            if ((int)crc.getValue() != buffer.getInt(recordLength-4)) {
+                break;
+            }
+
+            final int faceChecksum = buffer.getInt(2+nameLength);
+            addRecord(new String(buffer.array(), 2, nameLength, CHARSET), faceChecksum, position, dataLength, recordLength);
+            position += recordLength;
+        }
+        return position;
+    }
+
+    /**
+     * Adds a record to {@link #index}. Updates {@link #garbage} if the record
+     * replaces another record of the same face name.
+     * @param faceName the face name
+     * @param faceChecksum the face checksum
+     * @param recordOffset the file offset of the record
+     * @param dataLength the length of the image data
+     * @param recordLength the length of the whole record
+     */
+    private void addRecord(@NotNull final String faceName, final int faceChecksum, final int recordOffset, final int dataLength, final int recordLength) {
+        final Record oldRecord = index.put(faceName, new Record(faceChecksum, recordOffset, dataLength, recordLength));
+        if (oldRecord != null) {
+            garbage += oldRecord.recordLength;
+        }
+    }
+
+    /**
+     * Rewrites the data file in place to contain only the current record of
+     * each face. Records are moved towards the start of the file, then the
+     * file is truncated. Must be called while holding the contents lock and
+     * before the data file is mapped.
+     * @param channel the data file channel
+     * @param initialBuffer the buffer to use
+     * @throws IOException if the data file cannot be rewritten
+     */
+    private void compact(@NotNull final FileChannel channel, @NotNull final ByteBuffer initialBuffer) throws IOException {
+        ByteBuffer buffer = initialBuffer;
+        final List<Map.Entry<String, Record>> entries = new ArrayList<Map.Entry<String, Record>>(index.entrySet());
+        Collections.sort(entries, RECORD_OFFSET_COMPARATOR);
+        int position = HEADER_SIZE;
+        for (final Map.Entry<String, Record> entry : entries) {
+            final Record record = entry.getValue();
+            if (record.recordOffset != position) {
+                buffer = read(channel, buffer, record.recordOffset, record.recordLength);
+                buffer.flip();
+                write(channel, buffer, position);
+                entry.setValue(new Record(record.faceChecksum, position, record.dataLength, record.recordLength));
+            }
+            position += record.recordLength;
+        }
+        channel.truncate(position);
+
+        final long oldSize = size;
+        size = position;
+        garbage = 0;
+        System.err.println(dataFile+": compacted from "+oldSize+" to "+size+" bytes");
+    }
+
+    /**
+     * Reads a part of the data file. Afterwards the returned buffer holds the
+     * data starting at index zero.
+     * @param channel the data file channel
+     * @param initialBuffer the buffer to read into if it is large enough
+     * @param position the file offset to read from
+     * @param length the number of bytes to read
+     * @return the buffer holding the data; a new buffer if
+     *         <code>initialBuffer</code> was too small
+     * @throws IOException if the data file cannot be read
+     */
+    @NotNull
+    private static ByteBuffer read(@NotNull final FileChannel channel, @NotNull final ByteBuffer initialBuffer, final long position, final int length) throws IOException {
+        final ByteBuffer buffer = initialBuffer.capacity() >= length ? initialBuffer : ByteBuffer.allocate(Math.max(length, initialBuffer.capacity()*2));
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position+buffer.position()) == -1) {
+                throw new EOFException();
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes the remaining contents of a buffer to the data file.
+     * @param channel the data file channel
+     * @param buffer the buffer to write
+     * @param position the file offset to write to
+     * @throws IOException if the data file cannot be written
+     */
+    private static void write(@NotNull final FileChannel channel, @NotNull final ByteBuffer buffer, final long position) throws IOException {
+        final int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position+buffer.position()-start);
+        }
+    }
+
+    /**
+     * Returns a mapped buffer of the data file that covers a given size.
+     * Re-maps the data file if records have been appended since it was
+     * mapped.
+     * @param minSize the minimum size to cover
+     * @return the mapped buffer
+     * @throws IOException if the data file cannot be mapped
+     */
+    @NotNull
+    private ByteBuffer getMappedBuffer(final int minSize) throws IOException {
+        if (mappedByteBuffer == null || mappedByteBuffer.limit() < minSize) {
+            assert randomAccessFile != null;
+            mappedByteBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return mappedByteBuffer;
+    }
+
+    /**
+     * The location of a record in the data file.
+     */
+    private static class Record {
+
+        /**
+         * The face checksum.
+         */
+        private final int faceChecksum;
+
+        /**
+         * The file offset of the record.
+         */
+        private final int recordOffset;
+
+        /**
+         * The length of the image data.
+         */
+        private final int dataLength;
+
+        /**
+         * The length of the whole record.
+         */
+        private final int recordLength;
+
+        /**
+         * Creates a new instance.
+         * @param faceChecksum the face checksum
+         * @param recordOffset the file offset of the record
+         * @param dataLength the length of the image data
+         * @param recordLength the length of the whole record
+         */
+        private Record(final int faceChecksum, final int recordOffset, final int dataLength, final int recordLength) {
+            this.faceChecksum = faceChecksum;
+            this.recordOffset = recordOffset;
+            this.dataLength = dataLength;
+            this.recordLength = recordLength;
+        }
+
+    }
+
+}
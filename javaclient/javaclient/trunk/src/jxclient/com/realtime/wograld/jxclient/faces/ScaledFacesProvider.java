@@ -65,7 +65,7 @@ public class ScaledFacesProvider implements FacesProvider {
     @Override
     public ImageIcon getImageIcon(final int faceNum, @Nullable final boolean[] isUnknownImage) {
       //  return facesManager.getScaledImageIcon(faceNum, isUnknownImage);
-        return facesManager.getOriginalImageIcon(faceNum, isUnknownImage);
+        return facesManager.getMapImageIcon(faceNum, isUnknownImage);
     }
     
     public ImageIcon getBlockedImageIcon() {
@@ -25,24 +25,29 @@ import com.realtime.wograld.jxclient.util.EventListenerList2;
 import java.awt.Color;
 import java.awt.font.FontRenderContext;
 import java.awt.geom.RectangularShape;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.concurrent.CopyOnWriteArrayList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
  * Manages the contents of the contents of a log window. It consists of a list
  * of {@link Line Lines}.
+ * <p/>
+ * The lines are kept in a ring buffer of fixed capacity; adding a line to a
+ * full buffer removes the oldest line. Lines are laid out lazily: until a line
+ * is laid out by {@link #getLineHeight(int)} its height is an estimate. Changing
+ * the render width invalidates all layouts.
  * @author Andreas Kirschbaum
  */
 public class Buffer {
 
     /**
-     * The maximum number of lines the buffer can hold.
+     * The default maximum number of lines the buffer can hold.
      */
     public static final int MAX_LINES = 250;
 
@@ -75,16 +80,57 @@ public class Buffer {
     private int renderWidth;
 
     /**
-     * The lines in display order.
+     * The lines in display order. Used as a ring buffer: the first line is at
+     * index {@link #start}; {@link #size} lines are valid.
      */
     @NotNull
-    private final List<Line> lines = new CopyOnWriteArrayList<Line>();
+    private final Line[] lines;
+
+    /**
+     * The index of the first line in {@link #lines}.
+     */
+    private int start = 0;
+
+    /**
+     * The number of lines in {@link #lines}.
+     */
+    private int size = 0;
+
+    /**
+     * A read-only view of {@link #lines} in display order.
+     */
+    @NotNull
+    private final List<Line> linesView = new AbstractList<Line>() {
+
+        @NotNull
+        @Override
+        public Line get(final int index) {
+            return getLine(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+    };
 
     /**
      * The total height of all {@link #lines}.
      */
     private int totalHeight = 0;
 
+    /**
+     * The current layout generation. Lines laid out for a different generation
+     * must be laid out again.
+     */
+    private int layoutGeneration = 0;
+
+    /**
+     * The height assumed for lines that have not yet been laid out.
+     */
+    private int estimatedHeight = MIN_LINE_HEIGHT;
+
     /**
      * Object to synchronized access to {@link #lines} and {@link
      * #totalHeight}.
@@ -110,35 +156,45 @@ public class Buffer {
     private String lastText = "";
 
     /**
-     * Creates a new instance.
+     * Creates a new instance holding at most {@link #MAX_LINES} lines.
      * @param fonts the <code>Fonts</code> instance for looking up fonts
      * @param context the <code>FontRenderContext</code> to use
      * @param renderWidth the width to render
      */
     public Buffer(@NotNull final Fonts fonts, @NotNull final FontRenderContext context, final int renderWidth) {
+        this(fonts, context, renderWidth, MAX_LINES);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param fonts the <code>Fonts</code> instance for looking up fonts
+     * @param context the <code>FontRenderContext</code> to use
+     * @param renderWidth the width to render
+     * @param maxLines the maximum number of lines the buffer can hold
+     */
+    public Buffer(@NotNull final Fonts fonts, @NotNull final FontRenderContext context, final int renderWidth, final int maxLines) {
+        if (maxLines < 1) {
+            throw new IllegalArgumentException("invalid number of lines: "+maxLines);
+        }
         this.fonts = fonts;
         this.context = context;
         this.renderWidth = renderWidth;
+        lines = new Line[maxLines];
     }
 
     /**
-     * Updates the width to render.
+     * Updates the width to render. All lines will be laid out again when
+     * needed.
      * @param renderWidth the width to render
      */
     public void setRenderWidth(final int renderWidth) {
-        if (this.renderWidth == renderWidth) {
-            return;
-        }
-
-        this.renderWidth = renderWidth;
-
         synchronized (sync) {
-            totalHeight = 0;
-            for (final Line line : lines) {
-                final int height = calculateHeight(line);
-                line.setHeight(height);
-                totalHeight += height;
+            if (this.renderWidth == renderWidth) {
+                return;
             }
+
+            this.renderWidth = renderWidth;
+            layoutGeneration++;
         }
     }
 
@@ -148,9 +204,13 @@ public class Buffer {
     public void clear() {
         final List<Line> removedLines;
         synchronized (sync) {
-            removedLines = new ArrayList<Line>(lines);
+            removedLines = new ArrayList<Line>(linesView);
             totalHeight = 0;
-            lines.clear();
+            for (int i = 0; i < size; i++) {
+                lines[(start+i)%lines.length] = null;
+            }
+            start = 0;
+            size = 0;
         }
         for (final BufferListener listener : listeners.getListeners()) {
             listener.linesRemoved(removedLines);
@@ -161,15 +221,35 @@ public class Buffer {
     }
 
     /**
-     * Appends a {@link Line} to the end of the buffer.
+     * Appends a {@link Line} to the end of the buffer. If the buffer is full,
+     * the first line is removed.
      * @param line the line to append
      */
     public void addLine(@NotNull final Line line) {
-        final int height = calculateHeight(line);
-        line.setHeight(height);
+        final Line removedLine;
         synchronized (sync) {
-            totalHeight += height;
-            lines.add(line);
+            if (size >= lines.length) {
+                removedLine = lines[start];
+                lines[start] = null;
+                start = (start+1)%lines.length;
+                size--;
+                totalHeight -= removedLine.getHeight();
+            } else {
+                removedLine = null;
+            }
+        }
+        if (removedLine != null) {
+            for (final BufferListener listener : listeners.getListeners()) {
+                listener.linesRemoved(Collections.singletonList(removedLine));
+            }
+        }
+
+        synchronized (sync) {
+            line.setHeight(estimatedHeight);
+            line.setLayoutGeneration(-1);
+            totalHeight += line.getHeight();
+            lines[(start+size)%lines.length] = line;
+            size++;
         }
 
         for (final BufferListener listener : listeners.getListeners()) {
@@ -182,13 +262,11 @@ public class Buffer {
      * @param line the replacing line
      */
     public void replaceLine(@NotNull final Line line) {
-        final int height = calculateHeight(line);
-        line.setHeight(height);
         synchronized (sync) {
-            totalHeight += height;
-            final int lastIndex = lines.size()-1;
-            totalHeight -= lines.get(lastIndex).getHeight();
-            lines.set(lastIndex, line);
+            final int lastIndex = (start+size-1)%lines.length;
+            line.setHeight(lines[lastIndex].getHeight());
+            line.setLayoutGeneration(-1);
+            lines[lastIndex] = line;
         }
 
         for (final BufferListener listener : listeners.getListeners()) {
@@ -197,42 +275,44 @@ public class Buffer {
     }
 
     /**
-     * Prunes excess lines.
+     * Returns one {@link Line} by line index. The first line has the index
+     * <code>0</code>. The line may not yet be laid out.
+     * @param line the line index
+     * @return the line
      */
-    public void prune() {
-        final List<Line> removedLines;
+    @NotNull
+    public Line getLine(final int line) {
         synchronized (sync) {
-            if (lines.size() <= MAX_LINES) {
-                return;
-            }
-
-            removedLines = new ArrayList<Line>(lines.size()-MAX_LINES);
-            while (lines.size() > MAX_LINES) {
-                final Line line = lines.remove(0);
-                removedLines.add(line);
-                totalHeight -= line.getHeight();
+            if (line < 0 || line >= size) {
+                throw new IndexOutOfBoundsException("line "+line+" of "+size);
             }
-        }
-        for (final BufferListener listener : listeners.getListeners()) {
-            listener.linesRemoved(removedLines);
+            return lines[(start+line)%lines.length];
         }
     }
 
     /**
-     * Returns one {@link Line} by line index. The first line has the index
-     * <code>0</code>.
+     * Returns the height of one {@link Line} by line index. The line is laid
+     * out if necessary.
      * @param line the line index
-     * @return the line
+     * @return the height in pixels
      */
-    @NotNull
-    public Line getLine(final int line) {
+    public int getLineHeight(final int line) {
         synchronized (sync) {
-            return lines.get(line);
+            final Line tmp = getLine(line);
+            if (tmp.getLayoutGeneration() != layoutGeneration) {
+                final int height = calculateHeight(tmp);
+                totalHeight += height-tmp.getHeight();
+                tmp.setHeight(height);
+                tmp.setLayoutGeneration(layoutGeneration);
+                estimatedHeight = height;
+            }
+            return tmp.getHeight();
         }
     }
 
     /**
-     * Returns the total height of all lines.
+     * Returns the total height of all lines. Lines not yet laid out contribute
+     * their estimated height.
      * @return the total height
      */
     public int getTotalHeight() {
@@ -249,7 +329,7 @@ public class Buffer {
     @NotNull
     public Iterator<Line> iterator() {
         assert Thread.holdsLock(sync);
-        return Collections.unmodifiableList(lines).iterator();
+        return Collections.unmodifiableList(linesView).iterator();
     }
 
     /**
@@ -260,7 +340,7 @@ public class Buffer {
     @NotNull
     public ListIterator<Line> listIterator(final int line) {
         assert Thread.holdsLock(sync);
-        return Collections.unmodifiableList(lines).listIterator(line);
+        return Collections.unmodifiableList(linesView).listIterator(line);
     }
 
     /**
@@ -269,10 +349,18 @@ public class Buffer {
      */
     public int size() {
         synchronized (sync) {
-            return lines.size();
+            return size;
         }
     }
 
+    /**
+     * Returns the maximum number of lines.
+     * @return the maximum number of lines
+     */
+    public int getMaxLines() {
+        return lines.length;
+    }
+
     /**
      * Determines the height of a {@link Line} in pixels.
      * @param line the line to process
@@ -63,7 +63,7 @@ public class GUILabelLog extends GUILog {
      * specifying a color
      */
     public GUILabelLog(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @Nullable final Image backgroundImage, @NotNull final Fonts fonts, @NotNull final Color defaultColor) {
-        super(tooltipManager, elementListener, name, backgroundImage, fonts);
+        super(tooltipManager, elementListener, name, backgroundImage, fonts, Buffer.MAX_LINES);
         this.defaultColor = defaultColor;
     }
 
@@ -36,7 +36,6 @@ import java.awt.Image;
 import java.awt.Transparency;
 import java.awt.font.FontRenderContext;
 import java.awt.image.BufferedImage;
-import java.util.ListIterator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -117,8 +116,9 @@ public abstract class GUILog extends AbstractGUIElement implements GUIScrollable
      * @param backgroundImage the background image; may be <code>null</code> if
      * unused
      * @param fonts the <code>Fonts</code> instance for looking up fonts
+     * @param maxLines the maximum number of lines to keep
      */
-    protected GUILog(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @Nullable final Image backgroundImage, @NotNull final Fonts fonts) {
+    protected GUILog(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @Nullable final Image backgroundImage, @NotNull final Fonts fonts, final int maxLines) {
         super(tooltipManager, elementListener, name, Transparency.TRANSLUCENT);
         this.backgroundImage = backgroundImage;
         this.fonts = fonts;
@@ -130,7 +130,7 @@ public abstract class GUILog extends AbstractGUIElement implements GUIScrollable
         } finally {
             g.dispose();
         }
-        buffer = new Buffer(fonts, context, getWidth());
+        buffer = new Buffer(fonts, context, getWidth(), maxLines);
         renderStateManager = new RenderStateManager(renderStateListener, buffer);
         renderStateManager.setHeight(getHeight());
     }
@@ -160,11 +160,11 @@ public abstract class GUILog extends AbstractGUIElement implements GUIScrollable
         int y = -renderStateManager.getTopOffset();
         final int topIndex = renderStateManager.getTopIndex();
         synchronized (buffer.getSyncObject()) {
-            final ListIterator<Line> it = buffer.listIterator(topIndex);
-            while (y < getHeight() && it.hasNext()) {
-                final Line line = it.next();
-                drawLine(g, y, line);
-                y += line.getHeight();
+            final int size = buffer.size();
+            for (int i = topIndex; y < getHeight() && i < size; i++) {
+                final int lineHeight = buffer.getLineHeight(i);
+                drawLine(g, y, buffer.getLine(i));
+                y += lineHeight;
             }
         }
     }
@@ -40,6 +40,11 @@ public class GUIMessageLog extends GUILog {
      */
     private static final long serialVersionUID = 1;
 
+    /**
+     * The default maximum number of lines to keep.
+     */
+    public static final int DEFAULT_MAX_LINES = 4000;
+
     /**
      * The message buffer updater for updating {@link #buffer}.
      */
@@ -57,9 +62,10 @@ public class GUIMessageLog extends GUILog {
      * @param fonts the <code>Fonts</code> instance for looking up fonts
      * @param defaultColor the default color to use for text message not
      * specifying a color
+     * @param maxLines the maximum number of lines to keep
      */
-    public GUIMessageLog(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @NotNull final WograldServerConnection wograldServerConnection, @Nullable final Image backgroundImage, @NotNull final Fonts fonts, @NotNull final Color defaultColor) {
-        super(tooltipManager, elementListener, name, backgroundImage, fonts);
+    public GUIMessageLog(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @NotNull final WograldServerConnection wograldServerConnection, @Nullable final Image backgroundImage, @NotNull final Fonts fonts, @NotNull final Color defaultColor, final int maxLines) {
+        super(tooltipManager, elementListener, name, backgroundImage, fonts, maxLines);
         messageBufferUpdater = new MessageBufferUpdater(wograldServerConnection, getBuffer(), defaultColor);
     }
 
@@ -49,6 +49,13 @@ public class Line implements Iterable<Segment> {
      */
     private int height = -1;
 
+    /**
+     * The layout generation of the {@link Buffer} this line was laid out for.
+     * Set to <code>-1</code> if not yet laid out; {@link #height} then is an
+     * estimate.
+     */
+    private int layoutGeneration = -1;
+
     /**
      * Appends a {@link Segment} to the end of the line.
      * @param text the text to display
@@ -104,6 +111,23 @@ public class Line implements Iterable<Segment> {
         this.height = height;
     }
 
+    /**
+     * Returns the layout generation this line was laid out for.
+     * @return the layout generation or <code>-1</code> if not laid out
+     */
+    int getLayoutGeneration() {
+        return layoutGeneration;
+    }
+
+    /**
+     * Sets the layout generation this line was laid out for.
+     * @param layoutGeneration the layout generation or <code>-1</code> if not
+     * laid out
+     */
+    void setLayoutGeneration(final int layoutGeneration) {
+        this.layoutGeneration = layoutGeneration;
+    }
+
     /**
      * Updates the cached attributes of some {@link Segment Segments}.
      * @param begin the index of the first segment to update
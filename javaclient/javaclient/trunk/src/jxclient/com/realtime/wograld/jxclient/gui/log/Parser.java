@@ -112,7 +112,6 @@ public class Parser {
         for (final String line : END_OF_LINE_PATTERN.split(text, -1)) {
             parseLine(line, defaultColor, buffer);
         }
-        buffer.prune();
     }
 
     /**
@@ -130,7 +129,6 @@ public class Parser {
         for (final String line : END_OF_LINE_PATTERN.split(text, -1)) {
             parseLineWithoutMediaTags(line, buffer);
         }
-        buffer.prune();
     }
 
     /**
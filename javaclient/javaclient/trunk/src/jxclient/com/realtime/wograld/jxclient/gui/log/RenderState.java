@@ -247,8 +247,8 @@ public class RenderState {
                 scrollPos = Math.max(Math.min(y, bufferHeight-height), 0);
                 topIndex = 0;
                 int yPos = scrollPos;
-                while (yPos > 0) {
-                    final int lineHeight = buffer.getLine(topIndex).getHeight();
+                while (yPos > 0 && topIndex+1 < buffer.size()) {
+                    final int lineHeight = buffer.getLineHeight(topIndex);
                     if (yPos < lineHeight) {
                         break;
                     }
@@ -257,9 +257,9 @@ public class RenderState {
                     topIndex++;
                 }
                 assert yPos >= 0;
-                topOffset = yPos;
+                topOffset = Math.min(yPos, buffer.getLineHeight(topIndex)-1);
                 canScrollUp = topIndex > 0 || topOffset > 0;
-                canScrollDown = y+height < bufferHeight;
+                canScrollDown = y+height < buffer.getTotalHeight();
                 //} else {
                 // ignore
             }
@@ -267,12 +267,19 @@ public class RenderState {
     }
 
     /**
-     * Sets the view area to the bottom-most value.
+     * Sets the view area to the bottom-most value. Only the lines visible at
+     * the bottom are laid out; the height of all other lines may be estimated.
      * @param buffer the displayed buffer
      */
     public void scrollToBottom(@NotNull final Buffer buffer) {
-        final int bufferHeight = buffer.getTotalHeight();
         synchronized (sync) {
+            int index = buffer.size();
+            int y = height;
+            while (y > 0 && index > 0) {
+                index--;
+                y -= buffer.getLineHeight(index);
+            }
+            final int bufferHeight = buffer.getTotalHeight();
             if (bufferHeight <= height) {
                 scrollPos = 0;
                 topIndex = 0;
@@ -281,13 +288,7 @@ public class RenderState {
                 canScrollDown = false;
             } else {
                 scrollPos = Math.max(bufferHeight-height, 0);
-                topIndex = buffer.size();
-                int y = height;
-                while (y > 0) {
-                    topIndex--;
-                    assert topIndex >= 0;
-                    y -= buffer.getLine(topIndex).getHeight();
-                }
+                topIndex = index;
                 topOffset = -y;
                 canScrollUp = topIndex > 0 || topOffset > 0;
                 canScrollDown = false;
@@ -40,6 +40,7 @@ import com.realtime.wograld.jxclient.mapupdater.NewmapListener;
 import com.realtime.wograld.jxclient.server.wograld.MapSizeListener;
 import com.realtime.wograld.jxclient.server.wograld.messages.Map2;
 import com.realtime.wograld.jxclient.util.MathUtils;
+import java.awt.AWTException;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
@@ -48,6 +49,8 @@ import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
+import java.awt.ImageCapabilities;
+import java.awt.Rectangle;
 // import java.awt.image.ImageFilter;
 // import java.awt.image.FilteredImageSource;
 import java.awt.image.WritableRaster;
@@ -58,6 +61,7 @@ import java.awt.image.PixelGrabber;
 // import java.awt.Polygon;
 import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 // import java.awt.Shape;
 import java.awt.HeadlessException;
 import java.util.ArrayDeque;
@@ -65,6 +69,7 @@ import java.util.ArrayDeque;
 // import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import javax.swing.ImageIcon;
@@ -108,8 +113,8 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
     protected final SmoothingRenderer smoothingRenderer;
 
     /**
-     * Synchronizes access to {@link #bufferedImage}, {@link #clearMapPending},
-     * and {@link #scrollMapPending}.
+     * Synchronizes access to {@link #bufferedImage}, {@link #volatileImage},
+     * {@link #clearMapPending}, and {@link #scrollMapPending}.
      */
     @NotNull
   //  private final Object bufferedImageSync = new Object();
@@ -122,6 +127,27 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
     @Nullable
     private transient BufferedImage bufferedImage = null;
 
+    /**
+     * Whether the map contents should be rendered into {@link
+     * #volatileImage} if the graphics hardware supports it.
+     */
+    private final boolean accelerated;
+
+    /**
+     * An accelerated {@link VolatileImage} having the size of this component.
+     * If set, it is used instead of {@link #bufferedImage}. Set to
+     * <code>null</code> if not in accelerated mode or if acceleration is not
+     * available.
+     */
+    @Nullable
+    private transient VolatileImage volatileImage = null;
+
+    /**
+     * Whether the contents of {@link #volatileImage} have been lost and must
+     * be redrawn.
+     */
+    private boolean volatileImageLost = false;
+
     /**
      * Whether the map area should be blanked.
      */
@@ -230,6 +256,40 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
     @NotNull
     private final Map<Color, Image> images = new HashMap<Color, Image>();
 
+    /**
+     * The {@link TileFragmentCache} holding the pre-scaled face fragments.
+     */
+    @NotNull
+    private final TileFragmentCache tileFragmentCache;
+
+    /**
+     * The {@link FragmentDrawList} that records the fragments of a frame to
+     * skip hidden fragments. Access is synchronized on {@link
+     * #bufferedImageSync}.
+     */
+    @NotNull
+    private final FragmentDrawList fragmentDrawList = new FragmentDrawList();
+
+    /**
+     * The map squares changed since the last frame has been painted. Access
+     * is synchronized on {@link #bufferedImageSync}.
+     */
+    @NotNull
+    private final Set<CfMapSquare> pendingSquares = new HashSet<CfMapSquare>();
+
+    /**
+     * The {@link MapFrameScheduler} that coalesces map changes into frames.
+     */
+    @NotNull
+    private final MapFrameScheduler frameScheduler = new MapFrameScheduler(MapFrameScheduler.getDisplayRefreshRate(), new Runnable() {
+
+        @Override
+        public void run() {
+            paintFrame();
+        }
+
+    });
+
     /**
      * The {@link MapListener} registered to receive map updates.
      */
@@ -246,6 +306,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             synchronized (bufferedImageSync) {
                 clearMapPending = true;
                 scrollMapPending.clear();
+                pendingSquares.clear();
             }
             setChanged();
         }
@@ -302,19 +363,24 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
      * @param facesProvider the faces provider for looking up faces
      * @param smoothingRenderer the smoothing renderer to use or
      * <code>null</code> to not draw smoothed faces
+     * @param accelerated whether to render into an accelerated back buffer
+     * if available
      */
-    protected AbstractGUIMap(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final FacesProvider facesProvider, @Nullable final SmoothingRenderer smoothingRenderer) {
+    protected AbstractGUIMap(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final FacesProvider facesProvider, @Nullable final SmoothingRenderer smoothingRenderer, final boolean accelerated) {
         super(tooltipManager, elementListener, name, Transparency.OPAQUE);
         this.smoothingRenderer = smoothingRenderer;
+        this.accelerated = accelerated;
         tileSize = facesProvider.getSize();
         assert tileSize > 0;
         this.mapUpdaterState = mapUpdaterState;
         this.facesProvider = facesProvider;
+        tileFragmentCache = new TileFragmentCache(accelerated);
         this.mapUpdaterState.addMapSizeListener(mapSizeListener);
         
         this.mapUpdaterState.addWograldNewmapListener(newmapListener);
         this.mapUpdaterState.addWograldMapScrollListener(mapscrollListener);
         setMapSize(this.mapUpdaterState.getMapWidth(), this.mapUpdaterState.getMapHeight());
+        frameScheduler.start();
     }
 
     /**
@@ -327,6 +393,92 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
         mapUpdaterState.removeWograldNewmapListener(newmapListener);
         mapUpdaterState.removeWograldMapScrollListener(mapscrollListener);
       //  mapUpdaterState.removeWograldMapListener(mapListener);
+        tileFragmentCache.clear();
+        frameScheduler.stop();
+    }
+
+    /**
+     * Records changed map squares and requests a frame to repaint them. All
+     * changes arriving before the frame is painted are merged into it.
+     * @param changedSquares the changed map squares
+     */
+    protected void scheduleFrame(@NotNull final Set<CfMapSquare> changedSquares) {
+        synchronized (bufferedImageSync) {
+            pendingSquares.addAll(changedSquares);
+        }
+        frameScheduler.trigger();
+    }
+
+    /**
+     * Paints one frame: applies pending scrolls and redraws all map squares
+     * changed since the last frame. Called from the {@link #frameScheduler}
+     * thread.
+     */
+    private void paintFrame() {
+        final CfMap map = mapUpdaterState.getMap();
+        final DamageRegion damageRegion = new DamageRegion();
+        final boolean fullFrame;
+        final int squares;
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (map) {
+            //noinspection NestedSynchronizedStatement
+            synchronized (bufferedImageSync) {
+                fullFrame = clearMapPending || !scrollMapPending.isEmpty() || volatileImageLost || (volatileImage != null && volatileImage.contentsLost());
+                final Set<CfMapSquare> changedSquares = new HashSet<CfMapSquare>(pendingSquares);
+                pendingSquares.clear();
+                for (final CfMapSquare mapSquare : changedSquares) {
+                    mapSquare.beginDraw();
+                }
+                final Graphics2D g = createBufferGraphics(map);
+                try {
+                    fragmentDrawList.begin();
+                    try {
+                        updateScrolledMap(g, map);
+                        redrawSquares(g, map, changedSquares, damageRegion);
+                    } finally {
+                        endFragments(g);
+                    }
+                    markPlayer(g, 0, 0);
+                } finally {
+                    g.dispose();
+                }
+                squares = changedSquares.size();
+            }
+        }
+        frameScheduler.frameFinished(squares);
+        if (fullFrame) {
+            setChanged();
+        } else {
+            for (final Rectangle rectangle : damageRegion.getRectangles()) {
+                repaint(rectangle);
+            }
+        }
+    }
+
+    /**
+     * Redraws changed map squares. Called with the map lock and {@link
+     * #bufferedImageSync} held.
+     * @param g the graphics to draw into
+     * @param map the map
+     * @param changedSquares the map squares to redraw
+     * @param damageRegion receives the screen areas that have been redrawn
+     */
+    protected abstract void redrawSquares(@NotNull final Graphics2D g, @NotNull final CfMap map, @NotNull final Set<CfMapSquare> changedSquares, @NotNull final DamageRegion damageRegion);
+
+    /**
+     * Returns the number of frames painted during the last second.
+     * @return the frame rate
+     */
+    public int getFramesPerSecond() {
+        return frameScheduler.getFramesPerSecond();
+    }
+
+    /**
+     * Returns the number of map squares redrawn in the last frame.
+     * @return the number of squares
+     */
+    public int getSquaresPerFrame() {
+        return frameScheduler.getSquaresPerFrame();
     }
 
     /**
@@ -340,7 +492,12 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             synchronized (bufferedImageSync) {
                 final Graphics g = createBufferGraphics(map);
                 try {
-                    redrawTiles(g, map, displayMinX, displayMinY, displayMaxX, displayMaxY);
+                    fragmentDrawList.begin();
+                    try {
+                        redrawTiles(g, map, displayMinX, displayMinY, displayMaxX, displayMaxY);
+                    } finally {
+                        endFragments(g);
+                    }
                     markPlayer(g, 0, 0);
                 } finally {
                     g.dispose();
@@ -735,7 +892,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
       
        
-      g.drawImage(imageIcon.getImage(), px, py, 96,96,null); 
+      paintFragment(g, imageIcon, TileFragment.FULL, px, py); 
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -745,7 +902,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
           if (!foundSquare){
               if(floor == 3){
                ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px, py);
               }
        
         //    paintSquareBackground(g, px, py, false, mapSquare);
@@ -790,7 +947,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
       
        
-      g.drawImage(imageIcon.getImage(), px, py, 96,96,null); 
+      paintFragment(g, imageIcon, TileFragment.FULL, px, py); 
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -800,7 +957,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
           if (!foundSquare){
               if(floor == 3){
                ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px, py);
               }
        
         //    paintSquareBackground(g, px, py, false, mapSquare);
@@ -845,7 +1002,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             
    
     
-        g.drawImage(imageIcon.getImage(), px+48, py+48, 96,96,null);    
+        paintFragment(g, imageIcon, TileFragment.FULL, px+48, py+48);    
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -855,7 +1012,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
                if(!foundSquare){
                    if(floor == 3){
                     ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px+48,py+48,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px+48, py+48);
                    }
        
        //     paintSquareBackground(g, px, py, false, mapSquare);
@@ -903,7 +1060,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             
    
     
-        g.drawImage(imageIcon.getImage(), px+48, py+48, 96,96,null);    
+        paintFragment(g, imageIcon, TileFragment.FULL, px+48, py+48);    
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -913,7 +1070,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
                if(!foundSquare){
                    if(floor == 3){
                     ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px+48,py+48,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px+48, py+48);
                    }
        
        //     paintSquareBackground(g, px, py, false, mapSquare);
@@ -963,7 +1120,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             ImageIcon imageIcon2 = facesProvider.getImageIcon(face.getFaceNum() + 10000,null);
   
             if(imageIcon2 != null){
-            g.drawImage(imageIcon2.getImage(), px, py, 96,96,null);
+            paintFragment(g, imageIcon2, TileFragment.FULL, px, py);
             
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -1007,7 +1164,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             ImageIcon imageIcon2 = facesProvider.getImageIcon(face.getFaceNum() + 10000,null);
   
             if(imageIcon2 != null){
-            g.drawImage(imageIcon2.getImage(), px, py, 96,96,null);
+            paintFragment(g, imageIcon2, TileFragment.FULL, px, py);
             
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -1050,7 +1207,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             ImageIcon imageIcon2 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
             if(imageIcon2 != null){
    
-           g.drawImage(imageIcon2.getImage(), px+48, py+48, 96,96,null); 
+           paintFragment(g, imageIcon2, TileFragment.FULL, px+48, py+48); 
            
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -1090,7 +1247,7 @@ public abstract class AbstractGUIMap extends AbstractGUIElement {
             ImageIcon imageIcon2 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
             if(imageIcon2 != null){
    
-           g.drawImage(imageIcon2.getImage(), px+48, py+48, 96,96,null); 
+           paintFragment(g, imageIcon2, TileFragment.FULL, px+48, py+48); 
            
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -1127,7 +1284,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
             ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     
       
-  g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px, py);
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -1138,7 +1295,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
        //     paintSquareBackground(g, px, py, false, mapSquare);
                     if(floor == 3){
                     ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                     }
        
         }
@@ -1209,7 +1366,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
     
       //   g.drawImage(imageIcon.getImage(), px, py, px+64, py+64, 0, 0, 128, 128, null);
        //     g.drawImage(imageIcon.getImage(),px,py,64,64,null);
-  g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px, py);
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -1220,7 +1377,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
        //     paintSquareBackground(g, px, py, false, mapSquare);
                     if(floor == 3){
                     ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                     }
         /*        Polygon q = new Polygon();
          
@@ -1318,7 +1475,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
             ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
       
    
-            g.drawImage(imageIcon.getImage(), px+48, py+48,96,96,null);
+            paintFragment(g, imageIcon, TileFragment.FULL, px+48, py+48);
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -1328,7 +1485,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
                 if (!foundSquare){
                     if(floor == 3){
                      ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px+48,py+48,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px+48, py+48);
                     }
         
         }
@@ -1396,7 +1553,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
     //     g.drawImage(imageIcon.getImage(), px+32, py+32, px+96, py+96, 0, 0, 128, 128, null);
      //    g.drawImage(imageIcon.getImage(), px+32, py+32, 64, 64, null);
     //       g.drawImage(imageIcon.getImage(), px+32, py+32,null);
-            g.drawImage(imageIcon.getImage(), px+48, py+48,96,96,null);
+            paintFragment(g, imageIcon, TileFragment.FULL, px+48, py+48);
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -1406,7 +1563,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
                 if (!foundSquare){
                     if(floor == 3){
                      ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px+48,py+48,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px+48, py+48);
                     }
            /*     Polygon q = new Polygon();
          q.addPoint(px+64,py+32);
@@ -1523,7 +1680,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
         
                 if (mapSquare.isFogOfWar(0)) {
                     ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px-48,py,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px-48, py);
          
                 } 
    
@@ -1551,7 +1708,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
         
                 if (mapSquare.isFogOfWar(0)) {
                     ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-  g.drawImage(imageIcon.getImage(),px,py+48,96,96,null);
+  paintFragment(g, imageIcon, TileFragment.FULL, px, py+48);
          
                 } 
    
@@ -1589,7 +1746,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
     if(imageIcon2 != null){
     //     g.drawImage(imageIcon2.getImage(), px, py, px+64, py+64, 0, 0, 128, 128, null);
  // g.drawImage(imageIcon2.getImage(), px, py, 64, 64, null);
-            g.drawImage(imageIcon2.getImage(), px, py, 96,96,null);
+            paintFragment(g, imageIcon2, TileFragment.FULL, px, py);
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -1647,7 +1804,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
     if(imageIcon2 != null){
     //     g.drawImage(imageIcon2.getImage(), px, py, px+64, py+64, 0, 0, 128, 128, null);
  // g.drawImage(imageIcon2.getImage(), px, py, 64, 64, null);
-            g.drawImage(imageIcon2.getImage(), px, py, 96,96,null);
+            paintFragment(g, imageIcon2, TileFragment.FULL, px, py);
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -1686,7 +1843,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
     //     g.drawImage(imageIcon2.getImage(), px+32, py+32, px+96, py+96, 0, 0, 128, 128, null);
  //   g.drawImage(imageIcon2.getImage(), px+32, py+32, 64, 64, null);
 //  g.drawImage(imageIcon2.getImage(), px+32, py+32, null);
-     g.drawImage(imageIcon2.getImage(), px+48, py+48, 96,96,null);       
+     paintFragment(g, imageIcon2, TileFragment.FULL, px+48, py+48);       
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -1743,7 +1900,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
     //     g.drawImage(imageIcon2.getImage(), px+32, py+32, px+96, py+96, 0, 0, 128, 128, null);
  //   g.drawImage(imageIcon2.getImage(), px+32, py+32, 64, 64, null);
 //  g.drawImage(imageIcon2.getImage(), px+32, py+32, null);
-     g.drawImage(imageIcon2.getImage(), px+48, py+48, 96,96,null);       
+     paintFragment(g, imageIcon2, TileFragment.FULL, px+48, py+48);       
              if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                 }
@@ -1819,6 +1976,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
                 }
                 paintImage(g, face, px, py, 0, 0);
                 if (smoothingRenderer != null) {
+                    flushFragments(g);
                     smoothingRenderer.paintSmooth(g, x, y, px, py, layer, map, tileSize);
                 }
             }
@@ -1853,9 +2011,56 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
        // final int sx = (imageIcon.getIconWidth()+imageIcon.getIconHeight())-offsetX -7;
          final int sy = imageIcon.getIconHeight()-offsetY;
       //  final int sy = (imageIcon.getIconHeight()-imageIcon.getIconWidth())-offsetY + 10;
+        flushFragments(g);
         g.drawImage(imageIcon.getImage(), px, py, px+tileSize, py+tileSize, sx-tileSize, sy-tileSize, sx, sy, null);
     }
 
+    /**
+     * Paints a pre-scaled fragment of a face. While a frame is painted the
+     * fragment is only recorded; it is painted when the frame's fragments are
+     * flushed unless fragments painted later hide it.
+     * @param g the graphics to paint into
+     * @param imageIcon the face to paint
+     * @param fragment the fragment of the face to paint
+     * @param x the x-coordinate to paint at
+     * @param y the y-coordinate to paint at
+     */
+    protected void paintFragment(@NotNull final Graphics g, @NotNull final ImageIcon imageIcon, @NotNull final TileFragment fragment, final int x, final int y) {
+        if (fragmentDrawList.isRecording()) {
+            final Image image = imageIcon.getImage();
+            fragmentDrawList.add(tileFragmentCache.getFragment(image, fragment), fragment, tileFragmentCache.getOpaqueCells(image, fragment), x, y);
+        } else {
+            tileFragmentCache.paint(g, imageIcon, fragment, x, y);
+        }
+    }
+
+    /**
+     * Paints all recorded fragments that are not hidden. Must be called
+     * before painting anything but fragments.
+     * @param g the graphics to paint into
+     */
+    protected void flushFragments(@NotNull final Graphics g) {
+        if (fragmentDrawList.isRecording()) {
+            fragmentDrawList.flush(g, offsetX, offsetY, getWidth(), getHeight());
+        }
+    }
+
+    /**
+     * Paints all recorded fragments that are not hidden and stops recording.
+     * @param g the graphics to paint into
+     */
+    private void endFragments(@NotNull final Graphics g) {
+        fragmentDrawList.end(g, offsetX, offsetY, getWidth(), getHeight());
+    }
+
+    /**
+     * Returns the number of hidden fragments that have not been painted.
+     * @return the number of skipped fragments
+     */
+    public long getSkippedFragments() {
+        return fragmentDrawList.getSkipped();
+    }
+
     /**
      * Paints the player location.
      * @param g the graphics to paint to
@@ -1871,7 +2076,16 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
     public void paintComponent(@NotNull final Graphics g) {
         super.paintComponent(g);
         synchronized (bufferedImageSync) {
-            g.drawImage(bufferedImage, 0, 0, null);
+            if (volatileImage == null) {
+                g.drawImage(bufferedImage, 0, 0, null);
+            } else {
+                g.drawImage(volatileImage, 0, 0, null);
+                if (volatileImage.contentsLost()) {
+                    // redrawing needs the map lock; let the next frame recover
+                    volatileImageLost = true;
+                    frameScheduler.trigger();
+                }
+            }
         }
     }
 
@@ -1908,13 +2122,87 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
         displayMaxOffsetY = MathUtils.mod(-displayMinOffsetY-getHeight(), tileSize);
         offsetY = displayMinOffsetY-displayMinY*tileSize;
 
-        final GraphicsEnvironment graphicsEnvironment = GraphicsEnvironment.getLocalGraphicsEnvironment();
-        final GraphicsDevice graphicsDevice = graphicsEnvironment.getDefaultScreenDevice();
-        final GraphicsConfiguration graphicsConfiguration = graphicsDevice.getDefaultConfiguration();
-        bufferedImage = graphicsConfiguration.createCompatibleImage(Math.max(1, getWidth()), Math.max(1, getHeight()), Transparency.OPAQUE);
+        if (GraphicsEnvironment.isHeadless()) {
+            synchronized (bufferedImageSync) {
+                volatileImage = null;
+                bufferedImage = new BufferedImage(Math.max(1, getWidth()), Math.max(1, getHeight()), BufferedImage.TYPE_INT_RGB);
+                volatileImageLost = false;
+            }
+        } else {
+            final GraphicsEnvironment graphicsEnvironment = GraphicsEnvironment.getLocalGraphicsEnvironment();
+            final GraphicsDevice graphicsDevice = graphicsEnvironment.getDefaultScreenDevice();
+            final GraphicsConfiguration graphicsConfiguration = graphicsDevice.getDefaultConfiguration();
+            synchronized (bufferedImageSync) {
+                volatileImage = accelerated ? createVolatileImage(graphicsConfiguration) : null;
+                bufferedImage = volatileImage == null ? graphicsConfiguration.createCompatibleImage(Math.max(1, getWidth()), Math.max(1, getHeight()), Transparency.OPAQUE) : null;
+                volatileImageLost = false;
+            }
+        }
         redrawAll();
     }
     
+    /**
+     * Creates an accelerated back buffer having the size of this component.
+     * @param graphicsConfiguration the graphics configuration to use
+     * @return the back buffer or <code>null</code> if acceleration is not
+     * available
+     */
+    @Nullable
+    private VolatileImage createVolatileImage(@NotNull final GraphicsConfiguration graphicsConfiguration) {
+        final VolatileImage result;
+        try {
+            result = graphicsConfiguration.createCompatibleVolatileImage(Math.max(1, getWidth()), Math.max(1, getHeight()), new ImageCapabilities(true), Transparency.OPAQUE);
+        } catch (final AWTException ignored) {
+            return null;
+        }
+        return result.getCapabilities().isAccelerated() ? result : null;
+    }
+
+    /**
+     * Makes sure {@link #volatileImage} can be drawn into. Recreates it if it
+     * has become incompatible with the screen, and falls back to {@link
+     * #bufferedImage} if acceleration is no longer available.
+     * @return whether the back buffer contents have been lost
+     */
+    private boolean validateVolatileImage() {
+        assert Thread.holdsLock(bufferedImageSync);
+        if (volatileImage == null) {
+            return false;
+        }
+
+        boolean lost = volatileImageLost;
+        volatileImageLost = false;
+        final GraphicsConfiguration graphicsConfiguration = getBufferGraphicsConfiguration();
+        switch (volatileImage.validate(graphicsConfiguration)) {
+        case VolatileImage.IMAGE_RESTORED:
+            lost = true;
+            break;
+
+        case VolatileImage.IMAGE_INCOMPATIBLE:
+            volatileImage = createVolatileImage(graphicsConfiguration);
+            if (volatileImage == null) {
+                bufferedImage = graphicsConfiguration.createCompatibleImage(Math.max(1, getWidth()), Math.max(1, getHeight()), Transparency.OPAQUE);
+            }
+            lost = true;
+            break;
+        }
+        return lost;
+    }
+
+    /**
+     * Returns the {@link GraphicsConfiguration} the back buffer must be
+     * compatible with.
+     * @return the graphics configuration
+     */
+    @NotNull
+    private GraphicsConfiguration getBufferGraphicsConfiguration() {
+        final GraphicsConfiguration graphicsConfiguration = getGraphicsConfiguration();
+        if (graphicsConfiguration != null) {
+            return graphicsConfiguration;
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
     // This method returns a buffered image with the contents of an image
    public static BufferedImage toBufferedImage(Image image) {
     if (image instanceof BufferedImage) {
@@ -2267,6 +2555,7 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
      * @param y the y-coordinate
      */
     protected void paintColoredSquare(@NotNull final Graphics g, @NotNull final Color color, final int x, final int y) {
+        flushFragments(g);
         Image image = images.get(color);
         if (image == null) {
             final BufferedImage tmp = new BufferedImage(tileSize, tileSize, color.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
@@ -2301,8 +2590,10 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
 
     /**
      * Returns a {@link Graphics} instance for painting into {@link
-     * #bufferedImage}. The returned value must be freed by calling {@link
-     * Graphics#dispose()} on the returned instance.
+     * #bufferedImage} or {@link #volatileImage}. If the contents of the
+     * accelerated back buffer have been lost, the whole map is redrawn first.
+     * The returned value must be freed by calling {@link Graphics#dispose()}
+     * on the returned instance.
      * @param map the map instance that is painted; must hold the lock
      * @return the graphics instance
      */
@@ -2310,12 +2601,26 @@ private void redrawSquare2L0(@NotNull final Graphics g, @NotNull final CfMap map
   //  private Graphics2D createBufferGraphics(@NotNull final CfMap map) {
      protected Graphics2D createBufferGraphics(@NotNull final CfMap map) {   
         assert Thread.holdsLock(bufferedImageSync);
-        assert bufferedImage != null;
-        final Graphics2D graphics = bufferedImage.createGraphics();
-        if (clearMapPending) {
+        final boolean lost = validateVolatileImage();
+        final Graphics2D graphics;
+        if (volatileImage != null) {
+            graphics = volatileImage.createGraphics();
+        } else {
+            assert bufferedImage != null;
+            graphics = bufferedImage.createGraphics();
+        }
+        if (clearMapPending || lost) {
             clearMapPending = false;
             clearMap(graphics);
         }
+        if (lost) {
+            fragmentDrawList.begin();
+            try {
+                redrawTiles(graphics, map, displayMinX, displayMinY, displayMaxX, displayMaxY);
+            } finally {
+                endFragments(graphics);
+            }
+        }
         
         return graphics;
     }
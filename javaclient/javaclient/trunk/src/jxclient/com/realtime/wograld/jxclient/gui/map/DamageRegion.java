@@ -0,0 +1,126 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.gui.map;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects the screen areas damaged by a map frame. Added rectangles are
+ * merged with all rectangles they overlap or touch so that each screen area is
+ * repainted only once. If too many separate areas accumulate, they are
+ * collapsed into their bounding box.
+ * @author Andreas Kirschbaum
+ */
+public class DamageRegion {
+
+    /**
+     * The maximum number of separate rectangles before collapsing them.
+     */
+    private static final int MAX_RECTANGLES = 8;
+
+    /**
+     * The damaged areas; the rectangles do not overlap or touch.
+     */
+    @NotNull
+    private final List<Rectangle> rectangles = new ArrayList<Rectangle>();
+
+    /**
+     * Adds a damaged area.
+     * @param x the left edge
+     * @param y the top edge
+     * @param width the width
+     * @param height the height
+     */
+    public void add(final int x, final int y, final int width, final int height) {
+        final Rectangle rectangle = new Rectangle(x, y, width, height);
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < rectangles.size(); i++) {
+                final Rectangle other = rectangles.get(i);
+                if (touches(rectangle, other)) {
+                    rectangle.add(other);
+                    rectangles.remove(i);
+                    merged = true;
+                    break;
+                }
+            }
+        }
+        rectangles.add(rectangle);
+        if (rectangles.size() > MAX_RECTANGLES) {
+            final Rectangle bounds = getBounds();
+            assert bounds != null;
+            rectangles.clear();
+            rectangles.add(bounds);
+        }
+    }
+
+    /**
+     * Returns whether no area has been damaged.
+     * @return whether the region is empty
+     */
+    public boolean isEmpty() {
+        return rectangles.isEmpty();
+    }
+
+    /**
+     * Returns the damaged areas.
+     * @return the damaged areas
+     */
+    @NotNull
+    public Collection<Rectangle> getRectangles() {
+        return rectangles;
+    }
+
+    /**
+     * Returns the bounding box of all damaged areas.
+     * @return the bounding box or <code>null</code> if empty
+     */
+    @Nullable
+    public Rectangle getBounds() {
+        Rectangle result = null;
+        for (final Rectangle rectangle : rectangles) {
+            if (result == null) {
+                result = new Rectangle(rectangle);
+            } else {
+                result.add(rectangle);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether two rectangles overlap or share an edge.
+     * @param r1 the first rectangle
+     * @param r2 the second rectangle
+     * @return whether the rectangles overlap or touch
+     */
+    private static boolean touches(@NotNull final Rectangle r1, @NotNull final Rectangle r2) {
+        return r1.x <= r2.x+r2.width && r2.x <= r1.x+r1.width && r1.y <= r2.y+r2.height && r2.y <= r1.y+r1.height;
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.gui.map;
+
+import com.realtime.wograld.jxclient.util.MathUtils;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Records the face fragments painted for one map frame and paints them in
+ * order when flushed, skipping fragments that are completely hidden by
+ * fragments painted later. The map view paints lower floors first and upper
+ * floors and walls last, so most lower-floor fragments inside buildings are
+ * covered by the time the frame is finished.
+ * <p/>
+ * Occlusion is tracked on a grid of {@link #CELL_SIZE} pixel cells aligned to
+ * the map view's tile origin; fragment images consist of whole cells. A
+ * fragment is hidden if each of its cells inside the view is covered by a
+ * fully opaque cell of a later fragment. Fragments not aligned to the grid
+ * are always painted and never hide other fragments.
+ * @author Andreas Kirschbaum
+ */
+public class FragmentDrawList {
+
+    /**
+     * The size of a grid cell in pixels.
+     */
+    public static final int CELL_SIZE = 48;
+
+    /**
+     * The initial capacity of the list.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The recorded fragment images.
+     */
+    @NotNull
+    private Image[] images = new Image[INITIAL_CAPACITY];
+
+    /**
+     * The x-coordinates of the recorded fragments.
+     */
+    @NotNull
+    private int[] xs = new int[INITIAL_CAPACITY];
+
+    /**
+     * The y-coordinates of the recorded fragments.
+     */
+    @NotNull
+    private int[] ys = new int[INITIAL_CAPACITY];
+
+    /**
+     * The {@link TileFragment TileFragments} of the recorded fragments.
+     */
+    @NotNull
+    private TileFragment[] tileFragments = new TileFragment[INITIAL_CAPACITY];
+
+    /**
+     * The opaque cell masks of the recorded fragments as returned by {@link
+     * TileFragmentCache#getOpaqueCells(Image, TileFragment)}.
+     */
+    @NotNull
+    private int[] opaqueCells = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of recorded fragments.
+     */
+    private int size = 0;
+
+    /**
+     * Whether fragments are currently being recorded.
+     */
+    private boolean recording = false;
+
+    /**
+     * The covered grid cells; re-used between flushes.
+     */
+    @NotNull
+    private boolean[] covered = new boolean[0];
+
+    /**
+     * Whether a recorded fragment is painted; re-used between flushes.
+     */
+    @NotNull
+    private boolean[] visible = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * The total number of fragments that have been skipped.
+     */
+    private long skipped = 0;
+
+    /**
+     * Starts recording fragments.
+     */
+    public void begin() {
+        size = 0;
+        recording = true;
+    }
+
+    /**
+     * Returns whether fragments are currently being recorded.
+     * @return whether fragments are being recorded
+     */
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Records a fragment.
+     * @param image the fragment image
+     * @param fragment the fragment
+     * @param opaqueCells the opaque cells of the fragment image
+     * @param x the x-coordinate to paint at
+     * @param y the y-coordinate to paint at
+     */
+    public void add(@NotNull final Image image, @NotNull final TileFragment fragment, final int opaqueCells, final int x, final int y) {
+        assert recording;
+        if (size >= images.length) {
+            grow();
+        }
+        images[size] = image;
+        tileFragments[size] = fragment;
+        this.opaqueCells[size] = opaqueCells;
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * Paints all recorded fragments that are not hidden and clears the list.
+     * Recording continues afterwards; this function must be called before
+     * painting anything else into the same graphics.
+     * @param g the graphics to paint into
+     * @param originX the x-coordinate of a grid cell corner
+     * @param originY the y-coordinate of a grid cell corner
+     * @param width the width of the visible area
+     * @param height the height of the visible area
+     */
+    public void flush(@NotNull final Graphics g, final int originX, final int originY, final int width, final int height) {
+        if (size == 0) {
+            return;
+        }
+
+        final int gridX = MathUtils.mod(originX, CELL_SIZE)-CELL_SIZE;
+        final int gridY = MathUtils.mod(originY, CELL_SIZE)-CELL_SIZE;
+        final int columns = MathUtils.divRoundUp(width-gridX, CELL_SIZE);
+        final int rows = MathUtils.divRoundUp(height-gridY, CELL_SIZE);
+        if (covered.length < columns*rows) {
+            covered = new boolean[columns*rows];
+        } else {
+            Arrays.fill(covered, 0, columns*rows, false);
+        }
+        if (visible.length < size) {
+            visible = new boolean[images.length];
+        }
+
+        for (int i = size-1; i >= 0; i--) {
+            final int dx = xs[i]-gridX;
+            final int dy = ys[i]-gridY;
+            if (MathUtils.mod(dx, CELL_SIZE) != 0 || MathUtils.mod(dy, CELL_SIZE) != 0) {
+                visible[i] = true;
+                continue;
+            }
+
+            final int column0 = MathUtils.div(dx, CELL_SIZE);
+            final int row0 = MathUtils.div(dy, CELL_SIZE);
+            final int fragmentColumns = tileFragments[i].getWidth()/CELL_SIZE;
+            final int fragmentRows = tileFragments[i].getHeight()/CELL_SIZE;
+            boolean isVisible = false;
+            for (int row = 0; row < fragmentRows; row++) {
+                final int gridRow = row0+row;
+                if (gridRow < 0 || gridRow >= rows) {
+                    continue;
+                }
+                for (int column = 0; column < fragmentColumns; column++) {
+                    final int gridColumn = column0+column;
+                    if (gridColumn < 0 || gridColumn >= columns) {
+                        continue;
+                    }
+                    final int index = gridRow*columns+gridColumn;
+                    if (!covered[index]) {
+                        isVisible = true;
+                        if ((opaqueCells[i]&(1<<(row*fragmentColumns+column))) != 0) {
+                            covered[index] = true;
+                        }
+                    }
+                }
+            }
+            visible[i] = isVisible;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (visible[i]) {
+                g.drawImage(images[i], xs[i], ys[i], null);
+            } else {
+                skipped++;
+            }
+            images[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Paints all recorded fragments that are not hidden and stops recording.
+     * @param g the graphics to paint into
+     * @param originX the x-coordinate of a grid cell corner
+     * @param originY the y-coordinate of a grid cell corner
+     * @param width the width of the visible area
+     * @param height the height of the visible area
+     */
+    public void end(@NotNull final Graphics g, final int originX, final int originY, final int width, final int height) {
+        flush(g, originX, originY, width, height);
+        recording = false;
+    }
+
+    /**
+     * Returns the total number of fragments that have been skipped because
+     * they were hidden.
+     * @return the number of skipped fragments
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Doubles the capacity of the list.
+     */
+    private void grow() {
+        final int capacity = images.length*2;
+        final Image[] newImages = new Image[capacity];
+        System.arraycopy(images, 0, newImages, 0, size);
+        images = newImages;
+        final TileFragment[] newTileFragments = new TileFragment[capacity];
+        System.arraycopy(tileFragments, 0, newTileFragments, 0, size);
+        tileFragments = newTileFragments;
+        opaqueCells = copyOf(opaqueCells, capacity);
+        xs = copyOf(xs, capacity);
+        ys = copyOf(ys, capacity);
+    }
+
+    /**
+     * Returns a copy of an array with a new length.
+     * @param array the array to copy
+     * @param length the new length
+     * @return the copy
+     */
+    @NotNull
+    private int[] copyOf(@NotNull final int[] array, final int length) {
+        final int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, size);
+        return result;
+    }
+
+}
@@ -124,20 +124,20 @@ public class GUIMap extends AbstractGUIMap {
 
         @Override
         public void mapChanged(@NotNull final CfMap map, @NotNull final Set<CfMapSquare> changedSquares) {
-            assert Thread.holdsLock(map);
-            synchronized (bufferedImageSync) {
+            scheduleFrame(changedSquares);
+        }
+
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void redrawSquares(@NotNull final Graphics2D g, @NotNull final CfMap map, @NotNull final Set<CfMapSquare> changedSquares, @NotNull final DamageRegion damageRegion) {
                 final int x0 = map.getOffsetX();
                 final int y0 = map.getOffsetY();
                 x2 = x0;
                 y2 = y0;
-                final Graphics2D g = createBufferGraphics(map);
-               updateScrolledMap( g, map);
-          //     Set<CfMapSquare> squares2 = map.getDirtyMapSquares();
-            //   squares2.addAll(changedSquares);
-        //   redrawAllUnlessDirty(g, map);
-               
-               
-                try {
                  
                        for(CfMapSquare mapSquare8: changedSquares){
                   //  for(CfMapSquare mapSquare8: squares2){
@@ -641,7 +641,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                     }
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 9, map, tileSize);
                                                     }
@@ -666,7 +666,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                     }
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 9, map, tileSize);
                                                     }
@@ -690,7 +690,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                         foundtile3 = true;
                                                     }
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 9, map, tileSize);
@@ -719,7 +719,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
           
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         //   g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -731,14 +731,14 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                 
 						// it is floor 3 
                                                 ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);   
+                                                 paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);   
                                             }
            
 				} // mapsquareJ behind current tile, not being drawn this mapchanged
                
 		}  else {
 			      ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                               g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);
+                               paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);
 
 		}
 // }
@@ -756,7 +756,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                     }
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -767,7 +767,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                 // it is floor 3
          
                                                 ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                 g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                                                 paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                          
                                                 
                                             }
@@ -775,7 +775,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
 			} // mapsquareK behind current square, not being drawn this mapchanged
                                         } else {
                                              ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                 g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null); 
+                                                 paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96); 
                                             
                                         }
 			// }
@@ -795,7 +795,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                     }
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 9, map, tileSize);
                                                     }
@@ -824,7 +824,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                     }
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 9, map, tileSize);
                                                     }
@@ -852,7 +852,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                         foundtile3 = true;
                                                     }
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -864,7 +864,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                 // it is floor 3
          
                                                 ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                          
                                                 
                                             }
@@ -872,7 +872,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                             
                                         } else {
                                              ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);  
+                                                paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);  
                                             
                                         }
 			// }
@@ -891,7 +891,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                     }
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 9, map, tileSize);
@@ -915,7 +915,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                     }
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -927,7 +927,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                 // it is floor 3
          
                                                 ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);  
+                                                paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);  
 
                                             }
                                             
@@ -936,7 +936,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                             
                                         } else {
                                             ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);  
+                                                paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);  
                                             
                                         }
                                         
@@ -954,7 +954,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                     }
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -968,7 +968,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                                 // it is floor 3
          
                                                 ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                                                paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                          
                                                 
                                             }
@@ -976,7 +976,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                                            
                                         } else {
                                             ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                                                paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                             
                                         }
 		//	}
@@ -997,7 +997,7 @@ CfMapSquare mapSquare9 = map.getMapSquare(tile_x, tile_y);
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -1022,7 +1022,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     }
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -1044,7 +1044,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     }
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -1057,13 +1057,13 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                 // it is floor 3, and the central square, so do it
          
                                                 ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                          
                                                 
                                             }
                                         } else {
                                             ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                         }
 
 
@@ -1082,7 +1082,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -1094,7 +1094,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                 // it is floor 3
          
                                                 ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+                                                paintFragment(g, imageIcon, TileFragment.TOP_LEFT, px+48, py+48);
                                          
                                                 
                                             }
@@ -1103,7 +1103,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                            
                                         } else {
                                              ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+                                                paintFragment(g, imageIcon, TileFragment.TOP_LEFT, px+48, py+48);
                                             
                                         }
 
@@ -1123,7 +1123,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     }
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -1134,14 +1134,14 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                 // it is floor 3
          
                                                 ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                                                paintFragment(g, imageIcon, TileFragment.TOP_RIGHT, px, py+48);
                                          
                                                 
                                             }
 		} // squareD is either not being drawn this mapchanged, or will be drawn later in it     
                                         } else {
                                              ImageIcon imageIcon = facesProvider.getBlockedImageIcon();
-                                                g.drawImage(imageIcon.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                                                paintFragment(g, imageIcon, TileFragment.TOP_RIGHT, px, py+48);
                                             
                                         }
 
@@ -1163,7 +1163,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -1192,7 +1192,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -1214,7 +1214,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      
                                                   ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
 				
                                                 }
@@ -1241,7 +1241,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -1269,7 +1269,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -1295,7 +1295,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                   ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                 }
@@ -1319,7 +1319,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                                                 }
@@ -1340,7 +1340,7 @@ if (mapSquare8 != null) {
                      
                                                  ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
                     
                                                     
@@ -1364,7 +1364,7 @@ if (mapSquare8 != null) {
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                            
                                                     if (smoothingRenderer != null) {
@@ -1390,7 +1390,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                  
@@ -1418,7 +1418,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                
@@ -1446,7 +1446,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -1471,7 +1471,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -1496,7 +1496,7 @@ if(mapSquare8.drawUnderLeft){
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                             
                                                     if (smoothingRenderer != null) {
@@ -1528,7 +1528,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -1555,7 +1555,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -1602,7 +1602,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 6, map, tileSize);
                                                     }
@@ -1624,7 +1624,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 6, map, tileSize);
                                                     }
@@ -1646,7 +1646,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                     
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 6, map, tileSize);
@@ -1673,7 +1673,7 @@ mapSquare8.floorDrawn();
           
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         //   g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -1697,7 +1697,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -1723,7 +1723,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 6, map, tileSize);
                                                     }
@@ -1750,7 +1750,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 6, map, tileSize);
                                                     }
@@ -1776,7 +1776,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                    
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -1799,7 +1799,7 @@ mapSquare8.floorDrawn();
                                                    
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 6, map, tileSize);
@@ -1821,7 +1821,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -1846,7 +1846,7 @@ mapSquare8.floorDrawn();
                                                   
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -1871,7 +1871,7 @@ mapSquare8.floorDrawn();
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -1892,7 +1892,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -1911,7 +1911,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -1935,7 +1935,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -1959,7 +1959,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -1988,7 +1988,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -2017,7 +2017,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -2039,7 +2039,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      
                                                   ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
 				
                                                 }
@@ -2066,7 +2066,7 @@ if(mapSquare8.drawLeft){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -2094,7 +2094,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -2120,7 +2120,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                                                   ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                 }
@@ -2144,7 +2144,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                                                 }
@@ -2165,7 +2165,7 @@ if (mapSquare8 != null) {
                      
                                                  ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
                     
                                                     
@@ -2189,7 +2189,7 @@ if (mapSquare8 != null) {
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                            
                                                     if (smoothingRenderer != null) {
@@ -2216,7 +2216,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                  
@@ -2243,7 +2243,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                
@@ -2271,7 +2271,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -2296,7 +2296,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -2321,7 +2321,7 @@ if(mapSquare8.drawUnderLeft){
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                             
                                                     if (smoothingRenderer != null) {
@@ -2353,7 +2353,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -2380,7 +2380,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -2427,7 +2427,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 3, map, tileSize);
                                                     }
@@ -2449,7 +2449,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 3, map, tileSize);
                                                     }
@@ -2471,7 +2471,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                     
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 3, map, tileSize);
@@ -2498,7 +2498,7 @@ mapSquare8.floorDrawn();
           
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         //   g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -2522,7 +2522,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -2548,7 +2548,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 3, map, tileSize);
                                                     }
@@ -2575,7 +2575,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 3, map, tileSize);
                                                     }
@@ -2601,7 +2601,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                    
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -2624,7 +2624,7 @@ mapSquare8.floorDrawn();
                                                    
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 3, map, tileSize);
@@ -2646,7 +2646,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -2671,7 +2671,7 @@ mapSquare8.floorDrawn();
                                                   
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -2696,7 +2696,7 @@ mapSquare8.floorDrawn();
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -2717,7 +2717,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -2736,7 +2736,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -2761,7 +2761,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -2785,7 +2785,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -2814,7 +2814,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -2843,7 +2843,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -2865,7 +2865,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      
                                                   ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
 				
                                                 }
@@ -2892,7 +2892,7 @@ if(mapSquare8.drawLeft){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -2920,7 +2920,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -2946,7 +2946,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                                                   ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                 }
@@ -2970,7 +2970,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                                                 }
@@ -2991,7 +2991,7 @@ if (mapSquare8 != null) {
                      
                                                  ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
                     
                                                     
@@ -3015,7 +3015,7 @@ if (mapSquare8 != null) {
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                            
                                                     if (smoothingRenderer != null) {
@@ -3042,7 +3042,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                  
@@ -3070,7 +3070,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                
@@ -3098,7 +3098,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -3123,7 +3123,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -3149,7 +3149,7 @@ if(mapSquare8.drawUnderLeft){
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                             
                                                     if (smoothingRenderer != null) {
@@ -3181,7 +3181,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -3208,7 +3208,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -3256,7 +3256,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 0, map, tileSize);
                                                     }
@@ -3278,7 +3278,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 0, map, tileSize);
                                                     }
@@ -3300,7 +3300,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                     
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 0, map, tileSize);
@@ -3327,7 +3327,7 @@ mapSquare8.floorDrawn();
           
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         //   g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -3351,7 +3351,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -3377,7 +3377,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 0, map, tileSize);
                                                     }
@@ -3404,7 +3404,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 0, map, tileSize);
                                                     }
@@ -3430,7 +3430,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                    
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -3453,7 +3453,7 @@ mapSquare8.floorDrawn();
                                                    
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 0, map, tileSize);
@@ -3475,7 +3475,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -3500,7 +3500,7 @@ mapSquare8.floorDrawn();
                                                   
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -3525,7 +3525,7 @@ mapSquare8.floorDrawn();
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -3546,7 +3546,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -3565,7 +3565,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -3590,7 +3590,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -3614,7 +3614,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -3643,7 +3643,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -3672,7 +3672,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -3694,7 +3694,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      
                                                   ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
 				
                                                 }
@@ -3721,7 +3721,7 @@ if(mapSquare8.drawLeft){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -3749,7 +3749,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -3775,7 +3775,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                                                   ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                 }
@@ -3799,7 +3799,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                                                 }
@@ -3820,7 +3820,7 @@ if (mapSquare8 != null) {
                      
                                                  ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
                     
                                                     
@@ -3844,7 +3844,7 @@ if (mapSquare8 != null) {
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                            
                                                     if (smoothingRenderer != null) {
@@ -3871,7 +3871,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                  
@@ -3899,7 +3899,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                
@@ -3927,7 +3927,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -3952,7 +3952,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -3978,7 +3978,7 @@ if(mapSquare8.drawUnderLeft){
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                             
                                                     if (smoothingRenderer != null) {
@@ -4010,7 +4010,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -4037,7 +4037,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -4083,7 +4083,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 12, map, tileSize);
                                                     }
@@ -4105,7 +4105,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 12, map, tileSize);
                                                     }
@@ -4127,7 +4127,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                     
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 12, map, tileSize);
@@ -4154,7 +4154,7 @@ mapSquare8.floorDrawn();
           
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         //   g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -4178,7 +4178,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -4204,7 +4204,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 12, map, tileSize);
                                                     }
@@ -4231,7 +4231,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 12, map, tileSize);
                                                     }
@@ -4257,7 +4257,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                    
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -4280,7 +4280,7 @@ mapSquare8.floorDrawn();
                                                    
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 12, map, tileSize);
@@ -4302,7 +4302,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -4327,7 +4327,7 @@ mapSquare8.floorDrawn();
                                                   
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -4352,7 +4352,7 @@ mapSquare8.floorDrawn();
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -4373,7 +4373,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -4392,7 +4392,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -4417,7 +4417,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -4441,7 +4441,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -4470,7 +4470,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -4499,7 +4499,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -4521,7 +4521,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      
                                                   ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
 				
                                                 }
@@ -4548,7 +4548,7 @@ if(mapSquare8.drawLeft){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -4576,7 +4576,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -4602,7 +4602,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                                                   ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                 }
@@ -4626,7 +4626,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                                                 }
@@ -4647,7 +4647,7 @@ if (mapSquare8 != null) {
                      
                                                  ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
                     
                                                     
@@ -4671,7 +4671,7 @@ if (mapSquare8 != null) {
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                            
                                                     if (smoothingRenderer != null) {
@@ -4698,7 +4698,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                  
@@ -4726,7 +4726,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                
@@ -4754,7 +4754,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -4779,7 +4779,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -4805,7 +4805,7 @@ if(mapSquare8.drawUnderLeft){
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                             
                                                     if (smoothingRenderer != null) {
@@ -4837,7 +4837,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -4864,7 +4864,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -4911,7 +4911,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 15, map, tileSize);
                                                     }
@@ -4933,7 +4933,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 15, map, tileSize);
                                                     }
@@ -4955,7 +4955,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                     
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 15, map, tileSize);
@@ -4982,7 +4982,7 @@ mapSquare8.floorDrawn();
           
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         //   g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -5006,7 +5006,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -5032,7 +5032,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 15, map, tileSize);
                                                     }
@@ -5059,7 +5059,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 15, map, tileSize);
                                                     }
@@ -5085,7 +5085,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                    
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -5108,7 +5108,7 @@ mapSquare8.floorDrawn();
                                                    
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 15, map, tileSize);
@@ -5130,7 +5130,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -5155,7 +5155,7 @@ mapSquare8.floorDrawn();
                                                   
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -5180,7 +5180,7 @@ mapSquare8.floorDrawn();
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -5201,7 +5201,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -5220,7 +5220,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -5245,7 +5245,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -5269,7 +5269,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -5298,7 +5298,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -5327,7 +5327,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -5349,7 +5349,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      
                                                   ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
 				
                                                 }
@@ -5376,7 +5376,7 @@ if(mapSquare8.drawLeft){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -5404,7 +5404,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -5430,7 +5430,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                                                   ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                 }
@@ -5454,7 +5454,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                                                 }
@@ -5475,7 +5475,7 @@ if (mapSquare8 != null) {
                      
                                                  ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
                     
                                                     
@@ -5499,7 +5499,7 @@ if (mapSquare8 != null) {
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                            
                                                     if (smoothingRenderer != null) {
@@ -5526,7 +5526,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                  
@@ -5554,7 +5554,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                
@@ -5582,7 +5582,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -5607,7 +5607,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -5633,7 +5633,7 @@ if(mapSquare8.drawUnderLeft){
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                             
                                                     if (smoothingRenderer != null) {
@@ -5665,7 +5665,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -5692,7 +5692,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -5740,7 +5740,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 18, map, tileSize);
                                                     }
@@ -5762,7 +5762,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 18, map, tileSize);
                                                     }
@@ -5784,7 +5784,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                     
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 18, map, tileSize);
@@ -5811,7 +5811,7 @@ mapSquare8.floorDrawn();
           
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
         //   g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                                  
+            paintFragment(g, imageIcon, TileFragment.BOTTOM_RIGHT, px, py-96);                                  
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -5835,7 +5835,7 @@ mapSquare8.floorDrawn();
                                                     
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-  g.drawImage(imageIcon.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+  paintFragment(g, imageIcon, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -5861,7 +5861,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 18, map, tileSize);
                                                     }
@@ -5888,7 +5888,7 @@ mapSquare8.floorDrawn();
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 18, map, tileSize);
                                                     }
@@ -5914,7 +5914,7 @@ mapSquare8.floorDrawn();
                                                 if (face != null) {
                                                    
                              ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
-                                                 g.drawImage(imageIcon.getImage(),px,py-96,96,96,null);
+                                                 paintFragment(g, imageIcon, TileFragment.FULL, px, py-96);
                                            
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -5937,7 +5937,7 @@ mapSquare8.floorDrawn();
                                                    
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, 18, map, tileSize);
@@ -5959,7 +5959,7 @@ mapSquare8.floorDrawn();
                                                    
                               ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
          //  g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,64,0,128,128,null);
-            g.drawImage(imageIcon.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);                                   
+            paintFragment(g, imageIcon, TileFragment.RIGHT_HALF, px, py-48);                                   
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -5984,7 +5984,7 @@ mapSquare8.floorDrawn();
                                                   
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
     //      g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,64,128,null);
-         g.drawImage(imageIcon.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+         paintFragment(g, imageIcon, TileFragment.LEFT_HALF, px+48, py-48);
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
                                                     }
@@ -6009,7 +6009,7 @@ mapSquare8.floorDrawn();
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -6030,7 +6030,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -6049,7 +6049,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                 ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum(), null);
                                                   
-                        g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                        paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                
                                                     if (smoothingRenderer != null) {
             //        smoothingRenderer.paintSmooth(g, newx, newy, px+16, py+16, layer, map, tileSize);
@@ -6074,7 +6074,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);  
                                             
                          //     g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-              g.drawImage(imageIcon2.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);
+              paintFragment(g, imageIcon2, TileFragment.TOP_LEFT, px+48, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -6098,7 +6098,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                    
                           ImageIcon imageIcon2 = facesProvider.getImageIcon(face2.getFaceNum(), null);          
                         //     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                     g.drawImage(imageIcon2.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                     paintFragment(g, imageIcon2, TileFragment.TOP_RIGHT, px, py+48);
                                                     if (smoothingRenderer != null) {
             
                                                     }
@@ -6127,7 +6127,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -6156,7 +6156,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -6178,7 +6178,7 @@ if((!mapSquareD.isChanged())||(mapSquareD.wasDrawn())){
                      
                                                   ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
 				
                                                 }
@@ -6205,7 +6205,7 @@ if(mapSquare8.drawLeft){
                                                     
                                                     if(imageIcon4 != null){
                    //    g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,64,64,128,128,null);
-                       g.drawImage(imageIcon4.getImage(),px,py-96,px+48,py-48,32,32,64,64,null);                     
+                       paintFragment(g, imageIcon4, TileFragment.BOTTOM_RIGHT, px, py-96);                     
                                                     }
 				
                                                 }
@@ -6233,7 +6233,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon5 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon5 != null){
                    //   g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,64,64,128,null);
-                      g.drawImage(imageIcon5.getImage(),px+48,py-96,px+96,py-48,0,32,32,64,null);
+                      paintFragment(g, imageIcon5, TileFragment.BOTTOM_LEFT, px+48, py-96);
                                                     }
 
                                                 }
@@ -6259,7 +6259,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                                                   ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                 }
@@ -6283,7 +6283,7 @@ CfMapSquare mapSquareC = map.getMapSquare(tile_x+1, tile_y);
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                                                 }
@@ -6304,7 +6304,7 @@ if (mapSquare8 != null) {
                      
                                                  ImageIcon imageIcon6 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon6 != null){
-                                                    g.drawImage(imageIcon6.getImage(),px,py-96,96,96,null);
+                                                    paintFragment(g, imageIcon6, TileFragment.FULL, px, py-96);
 							  }
                     
                                                     
@@ -6328,7 +6328,7 @@ if (mapSquare8 != null) {
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                            
                                                     if (smoothingRenderer != null) {
@@ -6355,7 +6355,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon3 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon3 != null){
                    
-                        g.drawImage(imageIcon3.getImage(),px+48,py-48,px+96,py+48,0,0,32,64,null);
+                        paintFragment(g, imageIcon3, TileFragment.LEFT_HALF, px+48, py-48);
    
                                                     }
                                                  
@@ -6383,7 +6383,7 @@ if (mapSquare8 != null) {
                      ImageIcon imageIcon7 = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon7 != null){
                    
-                    g.drawImage(imageIcon7.getImage(),px,py-48,px+48,py+48,32,0,64,64,null);
+                    paintFragment(g, imageIcon7, TileFragment.RIGHT_HALF, px, py-48);
                                                     }
                                                  
                
@@ -6411,7 +6411,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -6436,7 +6436,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -6462,7 +6462,7 @@ if(mapSquare8.drawUnderLeft){
                                                     
                    ImageIcon imageIcon = facesProvider.getImageIcon(face.getFaceNum()+10000, null);
                                                     if(imageIcon != null){
-                                                      g.drawImage(imageIcon.getImage(),px,py,96,96,null);
+                                                      paintFragment(g, imageIcon, TileFragment.FULL, px, py);
                                                     }
                             
                                                     if (smoothingRenderer != null) {
@@ -6494,7 +6494,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon8 != null){
                                               
                  //   g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,64,0,128,64,null);
-                    g.drawImage(imageIcon8.getImage(),px,py+48,px+48,py+96,32,0,64,32,null);
+                    paintFragment(g, imageIcon8, TileFragment.TOP_RIGHT, px, py+48);
                                                     }
                
                                                 }                                 
@@ -6521,7 +6521,7 @@ if(mapSquare8.drawUnderLeft){
                                                     if(imageIcon9 != null){
            
                      //   g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,64,64,null);
-                         g.drawImage(imageIcon9.getImage(),px+48,py+48,px+96,py+96,0,0,32,32,null);                          
+                         paintFragment(g, imageIcon9, TileFragment.TOP_LEFT, px+48, py+48);                          
                                                     }
                                                 }
                
@@ -6544,16 +6544,12 @@ mapSquare8.finishDraw();
            
                       
             
-                    markPlayer(g, 0, 0);
-                   
-                } finally {
-                    g.dispose();
-                }
-            }
-            setChanged();
+        for (final CfMapSquare mapSquare : changedSquares) {
+            final int tileX = mapSquare.getX()+x0;
+            final int tileY = mapSquare.getY()+y0;
+            damageRegion.add(offsetX+(tileX+tileY-9)*48, offsetY+(tileY-tileX+8)*48-96, 96, 192);
         }
-
-    };
+    }
 
     /**
      * Creates a new instance.
@@ -6564,9 +6560,11 @@ mapSquare8.finishDraw();
      * @param facesProvider the faces provider for looking up faces
      * @param wograldServerConnection the server connection to monitor
      * @param smoothFaces the smooth faces to use
+     * @param accelerated whether to render into an accelerated back buffer
+     * if available
      */
-    public GUIMap(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final FacesProvider facesProvider, @NotNull final WograldServerConnection wograldServerConnection, @NotNull final SmoothFaces smoothFaces) {
-        super(tooltipManager, elementListener, name, mapUpdaterState, facesProvider, new SmoothingRenderer(smoothFaces, facesProvider));
+    public GUIMap(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final FacesProvider facesProvider, @NotNull final WograldServerConnection wograldServerConnection, @NotNull final SmoothFaces smoothFaces, final boolean accelerated) {
+        super(tooltipManager, elementListener, name, mapUpdaterState, facesProvider, new SmoothingRenderer(smoothFaces, facesProvider), accelerated);
         this.wograldServerConnection = wograldServerConnection;
         this.mapUpdaterState = mapUpdaterState;
         this.mapUpdaterState.addWograldMapListener(mapListener);
@@ -130,18 +130,18 @@ public class GUIMiniMap extends AbstractGUIMap {
 
         @Override
         public void mapChanged(@NotNull final CfMap map, @NotNull final Set<CfMapSquare> changedSquares) {
-            assert Thread.holdsLock(map);
-            synchronized (bufferedImageSync) {
+            scheduleFrame(changedSquares);
+        }
+
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void redrawSquares(@NotNull final Graphics2D g, @NotNull final CfMap map, @NotNull final Set<CfMapSquare> changedSquares, @NotNull final DamageRegion damageRegion) {
                 final int x0 = map.getOffsetX();
-                final int y0 = map.getOffsetY();  
-                final Graphics2D g = createBufferGraphics(map);
-               updateScrolledMap( g, map);
-          //     Set<CfMapSquare> squares2 = map.getDirtyMapSquares();
-            //   squares2.addAll(changedSquares);
-        //   redrawAllUnlessDirty(g, map);
-               
-               
-                try {
+                final int y0 = map.getOffsetY();
                  
                        for(CfMapSquare mapSquare8: changedSquares){
                   //  for(CfMapSquare mapSquare8: squares2){
@@ -196,16 +196,12 @@ mapSquare8.finishDraw();
            
                       
             
-                    markPlayer(g, 0, 0);
-                   
-                } finally {
-                    g.dispose();
-                }
-            }
-            setChanged();
+        for (final CfMapSquare mapSquare : changedSquares) {
+            final int tileX = mapSquare.getX()+x0;
+            final int tileY = mapSquare.getY()+y0;
+            damageRegion.add(offsetX+(tileX+tileY-9)*4, offsetY+(tileY-tileX+8)*4, 8, 8);
         }
-
-    };
+    }
 
     /**
      * Creates a new instance.
@@ -218,7 +214,7 @@ mapSquare8.finishDraw();
      * @param height the map height in squares
      */
     public GUIMiniMap(@NotNull final TooltipManager tooltipManager, @NotNull final GUIElementListener elementListener, @NotNull final String name, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final FacesProvider facesProvider, final int width, final int height) {
-        super(tooltipManager, elementListener, name, mapUpdaterState, facesProvider, null);
+        super(tooltipManager, elementListener, name, mapUpdaterState, facesProvider, null, false);
         this.mapUpdaterState = mapUpdaterState;
         this.mapUpdaterState.addWograldMapListener(mapListener);
         this.width = width;
@@ -0,0 +1,270 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.gui.map;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Coalesces map repaint requests into frames. Requests are triggered by
+ * calling {@link #trigger()}; any number of requests arriving while a frame is
+ * pending are merged into that frame. Frames are delivered by calling {@link
+ * #frameCallback} from a dedicated thread, but not faster than once per {@link
+ * #frameInterval}. The scheduler also collects frame statistics.
+ * @author Andreas Kirschbaum
+ */
+public class MapFrameScheduler {
+
+    /**
+     * The frame rate to use if the display refresh rate is unknown.
+     */
+    private static final int DEFAULT_FRAMES_PER_SECOND = 60;
+
+    /**
+     * The length of the window for measuring the frame rate in milliseconds.
+     */
+    private static final long STATISTICS_WINDOW = 1000L;
+
+    /**
+     * The minimum delay between two frames in milliseconds.
+     */
+    private final long frameInterval;
+
+    /**
+     * The {@link Runnable} that paints one frame.
+     */
+    @NotNull
+    private final Runnable frameCallback;
+
+    /**
+     * The object used to synchronize access to {@link #framePending} and
+     * {@link #nextFrameNotBefore}.
+     */
+    @NotNull
+    private final Object sync = new Object();
+
+    /**
+     * The thread running {@link #runnable}.
+     */
+    @NotNull
+    private final Thread thread;
+
+    /**
+     * Whether a frame has been requested.
+     */
+    private boolean framePending = false;
+
+    /**
+     * The minimum timestamp for the next frame.
+     */
+    private long nextFrameNotBefore = 0;
+
+    /**
+     * The object used to synchronize access to the statistics.
+     */
+    @NotNull
+    private final Object statisticsSync = new Object();
+
+    /**
+     * The start of the current statistics window.
+     */
+    private long statisticsWindowStart = System.currentTimeMillis();
+
+    /**
+     * The number of frames in the current statistics window.
+     */
+    private int statisticsWindowFrames = 0;
+
+    /**
+     * The number of frames in the last complete statistics window.
+     */
+    private int framesPerSecond = 0;
+
+    /**
+     * The number of squares redrawn in the last frame.
+     */
+    private int squaresPerFrame = 0;
+
+    /**
+     * The total number of frames.
+     */
+    private long totalFrames = 0;
+
+    /**
+     * The total number of redrawn squares.
+     */
+    private long totalSquares = 0;
+
+    /**
+     * The {@link Runnable} delivering frames through {@link #frameCallback}.
+     */
+    @NotNull
+    private final Runnable runnable = new Runnable() {
+
+        @Override
+        public void run() {
+            // the number of consecutive frames that failed to paint; only
+            // the first failure is reported
+            int failedFrames = 0;
+            while (true) {
+                try {
+                    synchronized (sync) {
+                        if (!framePending) {
+                            sync.wait();
+                            continue;
+                        }
+                        final long delay = nextFrameNotBefore-System.currentTimeMillis();
+                        if (delay > 0) {
+                            sync.wait(delay);
+                            continue;
+                        }
+                        framePending = false;
+                    }
+
+                    try {
+                        frameCallback.run();
+                        if (failedFrames > 0) {
+                            System.err.println("map frames painted again after "+failedFrames+" failed frames");
+                            failedFrames = 0;
+                        }
+                    } catch (final RuntimeException ex) {
+                        // keep delivering frames; the next frame may succeed
+                        if (failedFrames == 0) {
+                            System.err.println("cannot paint map frame: "+ex);
+                        }
+                        failedFrames++;
+                    }
+                    synchronized (sync) {
+                        nextFrameNotBefore = System.currentTimeMillis()+frameInterval;
+                    }
+                } catch (final InterruptedException ignored) {
+                    thread.interrupt();
+                    break;
+                }
+            }
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param framesPerSecond the maximum number of frames per second
+     * @param frameCallback the callback painting one frame
+     */
+    public MapFrameScheduler(final int framesPerSecond, @NotNull final Runnable frameCallback) {
+        frameInterval = 1000L/Math.max(1, framesPerSecond);
+        this.frameCallback = frameCallback;
+        thread = new Thread(runnable, "JXClient:MapFrameScheduler");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Activates this instance.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Deactivates this instance. Pending frames are dropped.
+     */
+    public void stop() {
+        thread.interrupt();
+    }
+
+    /**
+     * Requests a frame. The frame will be painted as soon as the frame rate
+     * limit allows.
+     */
+    public void trigger() {
+        synchronized (sync) {
+            if (!framePending) {
+                framePending = true;
+                sync.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Records statistics for a painted frame.
+     * @param squares the number of squares that were redrawn
+     */
+    public void frameFinished(final int squares) {
+        final long now = System.currentTimeMillis();
+        synchronized (statisticsSync) {
+            if (now-statisticsWindowStart >= STATISTICS_WINDOW) {
+                framesPerSecond = (int)(statisticsWindowFrames*STATISTICS_WINDOW/(now-statisticsWindowStart));
+                statisticsWindowStart = now;
+                statisticsWindowFrames = 0;
+            }
+            statisticsWindowFrames++;
+            squaresPerFrame = squares;
+            totalFrames++;
+            totalSquares += squares;
+        }
+    }
+
+    /**
+     * Returns the number of frames painted during the last second.
+     * @return the frame rate
+     */
+    public int getFramesPerSecond() {
+        synchronized (statisticsSync) {
+            return System.currentTimeMillis()-statisticsWindowStart >= 2*STATISTICS_WINDOW ? 0 : framesPerSecond;
+        }
+    }
+
+    /**
+     * Returns the number of squares redrawn in the last frame.
+     * @return the number of squares
+     */
+    public int getSquaresPerFrame() {
+        synchronized (statisticsSync) {
+            return squaresPerFrame;
+        }
+    }
+
+    /**
+     * Returns the average number of squares redrawn per frame.
+     * @return the average number of squares
+     */
+    public float getAverageSquaresPerFrame() {
+        synchronized (statisticsSync) {
+            return totalFrames == 0 ? 0F : (float)totalSquares/totalFrames;
+        }
+    }
+
+    /**
+     * Returns the refresh rate of the default screen device.
+     * @return the refresh rate in frames per second
+     */
+    public static int getDisplayRefreshRate() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return DEFAULT_FRAMES_PER_SECOND;
+        }
+        final DisplayMode displayMode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+        final int refreshRate = displayMode.getRefreshRate();
+        return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_FRAMES_PER_SECOND : refreshRate;
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.gui.map;
+
+/**
+ * The parts of a face image that are painted into the isometric map view. All
+ * fragments are scaled from the 64x64 pixel face images to the 96x96 pixel
+ * diamond cells of {@link GUIMap}; one source quadrant of 32x32 pixels becomes
+ * 48x48 pixels on screen.
+ * @author Andreas Kirschbaum
+ */
+public enum TileFragment {
+
+    /**
+     * The whole face image.
+     */
+    FULL(-1, -1, -1, -1, 96, 96),
+
+    /**
+     * The left half of the face image.
+     */
+    LEFT_HALF(0, 0, 32, 64, 48, 96),
+
+    /**
+     * The right half of the face image.
+     */
+    RIGHT_HALF(32, 0, 64, 64, 48, 96),
+
+    /**
+     * The top left quadrant of the face image.
+     */
+    TOP_LEFT(0, 0, 32, 32, 48, 48),
+
+    /**
+     * The top right quadrant of the face image.
+     */
+    TOP_RIGHT(32, 0, 64, 32, 48, 48),
+
+    /**
+     * The bottom left quadrant of the face image.
+     */
+    BOTTOM_LEFT(0, 32, 32, 64, 48, 48),
+
+    /**
+     * The bottom right quadrant of the face image.
+     */
+    BOTTOM_RIGHT(32, 32, 64, 64, 48, 48);
+
+    /**
+     * The left source coordinate or <code>-1</code> for the whole image.
+     */
+    private final int sx1;
+
+    /**
+     * The top source coordinate or <code>-1</code> for the whole image.
+     */
+    private final int sy1;
+
+    /**
+     * The right source coordinate or <code>-1</code> for the whole image.
+     */
+    private final int sx2;
+
+    /**
+     * The bottom source coordinate or <code>-1</code> for the whole image.
+     */
+    private final int sy2;
+
+    /**
+     * The width of the fragment on screen.
+     */
+    private final int width;
+
+    /**
+     * The height of the fragment on screen.
+     */
+    private final int height;
+
+    /**
+     * Creates a new instance.
+     * @param sx1 the left source coordinate
+     * @param sy1 the top source coordinate
+     * @param sx2 the right source coordinate
+     * @param sy2 the bottom source coordinate
+     * @param width the width on screen
+     * @param height the height on screen
+     */
+    TileFragment(final int sx1, final int sy1, final int sx2, final int sy2, final int width, final int height) {
+        this.sx1 = sx1;
+        this.sy1 = sy1;
+        this.sx2 = sx2;
+        this.sy2 = sy2;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns whether this fragment covers the whole face image.
+     * @return whether the whole image is used
+     */
+    public boolean isFull() {
+        return sx1 < 0;
+    }
+
+    /**
+     * Returns the left source coordinate.
+     * @return the left source coordinate
+     */
+    public int getSx1() {
+        return sx1;
+    }
+
+    /**
+     * Returns the top source coordinate.
+     * @return the top source coordinate
+     */
+    public int getSy1() {
+        return sy1;
+    }
+
+    /**
+     * Returns the right source coordinate.
+     * @return the right source coordinate
+     */
+    public int getSx2() {
+        return sx2;
+    }
+
+    /**
+     * Returns the bottom source coordinate.
+     * @return the bottom source coordinate
+     */
+    public int getSy2() {
+        return sy2;
+    }
+
+    /**
+     * Returns the width of the fragment on screen.
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the fragment on screen.
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+}
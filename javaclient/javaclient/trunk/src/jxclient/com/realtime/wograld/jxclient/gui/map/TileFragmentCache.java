@@ -0,0 +1,243 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.gui.map;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.ImageIcon;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches pre-scaled and pre-cropped {@link TileFragment TileFragments} of face
+ * images. Each fragment is rendered once into a compatible image of its
+ * on-screen size so that painting the map view only needs unscaled 1:1 blits.
+ * Entries are keyed by the face's image; since a face receives a new image
+ * when it is loaded, stale fragments of the "unknown" image are never used
+ * for a loaded face, and fragments of faces no longer referenced are dropped
+ * by the garbage collector.
+ * @author Andreas Kirschbaum
+ */
+public class TileFragmentCache {
+
+    /**
+     * Maps face image to cached fragments. The fragments are indexed by
+     * {@link TileFragment#ordinal()}; not yet created fragments are
+     * <code>null</code>.
+     */
+    @NotNull
+    private final Map<Image, Image[]> fragments = new WeakHashMap<Image, Image[]>();
+
+    /**
+     * Maps face image to the opaque cells of its fragments. The masks are
+     * indexed by {@link TileFragment#ordinal()}; not yet computed masks are
+     * <code>-1</code>.
+     */
+    @NotNull
+    private final Map<Image, int[]> opaqueCells = new WeakHashMap<Image, int[]>();
+
+    /**
+     * The {@link GraphicsConfiguration} for creating compatible images or
+     * <code>null</code> when running headless.
+     */
+    @Nullable
+    private final GraphicsConfiguration graphicsConfiguration;
+
+    /**
+     * Whether fragments should be kept in video memory with high priority.
+     */
+    private final boolean accelerated;
+
+    /**
+     * Creates a new instance.
+     * @param accelerated whether the fragments are painted into an
+     * accelerated back buffer
+     */
+    public TileFragmentCache(final boolean accelerated) {
+        this.accelerated = accelerated;
+        graphicsConfiguration = GraphicsEnvironment.isHeadless() ? null : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
+    /**
+     * Paints a fragment of a face.
+     * @param g the graphics to paint into
+     * @param imageIcon the face to paint
+     * @param fragment the fragment to paint
+     * @param x the x-coordinate to paint at
+     * @param y the y-coordinate to paint at
+     */
+    public void paint(@NotNull final Graphics g, @NotNull final ImageIcon imageIcon, @NotNull final TileFragment fragment, final int x, final int y) {
+        g.drawImage(getFragment(imageIcon.getImage(), fragment), x, y, null);
+    }
+
+    /**
+     * Returns a fragment of a face image. The fragment is created if it does
+     * not yet exist.
+     * @param image the face image
+     * @param fragment the fragment to return
+     * @return the fragment image
+     */
+    @NotNull
+    public Image getFragment(@NotNull final Image image, @NotNull final TileFragment fragment) {
+        synchronized (fragments) {
+            Image[] images = fragments.get(image);
+            if (images == null) {
+                images = new Image[TileFragment.values().length];
+                fragments.put(image, images);
+            }
+            final int index = fragment.ordinal();
+            Image result = images[index];
+            if (result == null) {
+                result = createFragment(image, fragment);
+                images[index] = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the fully opaque {@link FragmentDrawList#CELL_SIZE} pixel cells
+     * of a fragment of a face image. Bit <code>row*columns+column</code> is
+     * set if the respective cell has no transparent pixels.
+     * @param image the face image
+     * @param fragment the fragment
+     * @return the opaque cells
+     */
+    public int getOpaqueCells(@NotNull final Image image, @NotNull final TileFragment fragment) {
+        synchronized (fragments) {
+            int[] masks = opaqueCells.get(image);
+            if (masks == null) {
+                masks = new int[TileFragment.values().length];
+                Arrays.fill(masks, -1);
+                opaqueCells.put(image, masks);
+            }
+            final int index = fragment.ordinal();
+            int result = masks[index];
+            if (result == -1) {
+                result = calculateOpaqueCells(getFragment(image, fragment), fragment);
+                masks[index] = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Forgets all cached fragments.
+     */
+    public void clear() {
+        synchronized (fragments) {
+            fragments.clear();
+            opaqueCells.clear();
+        }
+    }
+
+    /**
+     * Renders a new fragment image.
+     * @param image the face image
+     * @param fragment the fragment to render
+     * @return the fragment image
+     */
+    @NotNull
+    private Image createFragment(@NotNull final Image image, @NotNull final TileFragment fragment) {
+        final int width = fragment.getWidth();
+        final int height = fragment.getHeight();
+        final BufferedImage result = graphicsConfiguration == null ? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB) : graphicsConfiguration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        final Graphics2D g = result.createGraphics();
+        try {
+            paintScaled(g, image, fragment);
+        } finally {
+            g.dispose();
+        }
+        if (accelerated) {
+            result.setAccelerationPriority(1.0F);
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the fully opaque cells of a fragment image.
+     * @param image the fragment image
+     * @param fragment the fragment
+     * @return the opaque cells
+     */
+    private static int calculateOpaqueCells(@NotNull final Image image, @NotNull final TileFragment fragment) {
+        if (!(image instanceof BufferedImage)) {
+            return 0;
+        }
+
+        final BufferedImage bufferedImage = (BufferedImage)image;
+        final int columns = fragment.getWidth()/FragmentDrawList.CELL_SIZE;
+        final int rows = fragment.getHeight()/FragmentDrawList.CELL_SIZE;
+        if (bufferedImage.getTransparency() == Transparency.OPAQUE) {
+            return (1<<(rows*columns))-1;
+        }
+
+        final int[] pixels = new int[FragmentDrawList.CELL_SIZE*FragmentDrawList.CELL_SIZE];
+        int result = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                bufferedImage.getRGB(column*FragmentDrawList.CELL_SIZE, row*FragmentDrawList.CELL_SIZE, FragmentDrawList.CELL_SIZE, FragmentDrawList.CELL_SIZE, pixels, 0, FragmentDrawList.CELL_SIZE);
+                if (isOpaque(pixels)) {
+                    result |= 1<<(row*columns+column);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether all pixels are fully opaque.
+     * @param pixels the pixels in ARGB format
+     * @return whether all pixels are opaque
+     */
+    private static boolean isOpaque(@NotNull final int[] pixels) {
+        for (final int pixel : pixels) {
+            if ((pixel>>>24) != 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Paints the scaled source area of a fragment.
+     * @param g the graphics to paint into
+     * @param image the source image
+     * @param fragment the fragment to paint
+     */
+    private static void paintScaled(@NotNull final Graphics g, @NotNull final Image image, @NotNull final TileFragment fragment) {
+        if (fragment.isFull()) {
+            g.drawImage(image, 0, 0, fragment.getWidth(), fragment.getHeight(), null);
+        } else {
+            g.drawImage(image, 0, 0, fragment.getWidth(), fragment.getHeight(), fragment.getSx1(), fragment.getSy1(), fragment.getSx2(), fragment.getSy2(), null);
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.history;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A text message stored in the {@link MessageHistory}.
+ * @author Andreas Kirschbaum
+ */
+public class HistoryMessage {
+
+    /**
+     * The time the message was received in milliseconds since the epoch.
+     */
+    private final long time;
+
+    /**
+     * The message color.
+     */
+    private final int color;
+
+    /**
+     * The message type; <code>0</code> for "drawinfo" messages.
+     */
+    private final int type;
+
+    /**
+     * The message subtype; <code>0</code> for "drawinfo" messages.
+     */
+    private final int subtype;
+
+    /**
+     * The message text.
+     */
+    @NotNull
+    private final String text;
+
+    /**
+     * Creates a new instance.
+     * @param time the time the message was received in milliseconds since the
+     * epoch
+     * @param color the message color
+     * @param type the message type
+     * @param subtype the message subtype
+     * @param text the message text
+     */
+    public HistoryMessage(final long time, final int color, final int type, final int subtype, @NotNull final String text) {
+        this.time = time;
+        this.color = color;
+        this.type = type;
+        this.subtype = subtype;
+        this.text = text;
+    }
+
+    /**
+     * Returns the time the message was received.
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the message color.
+     * @return the message color
+     */
+    public int getColor() {
+        return color;
+    }
+
+    /**
+     * Returns the message type.
+     * @return the message type
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the message subtype.
+     * @return the message subtype
+     */
+    public int getSubtype() {
+        return subtype;
+    }
+
+    /**
+     * Returns the message text.
+     * @return the message text
+     */
+    @NotNull
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    public String toString() {
+        return time+":"+color+":"+type+"/"+subtype+":"+text;
+    }
+
+}
@@ -0,0 +1,533 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One segment of a {@link MessageHistory}. A segment consists of an
+ * append-only data file and an index file.
+ * <p/>
+ * The data file starts with a header (magic and version) followed by blocks.
+ * Each block holds a number of {@link HistoryMessage HistoryMessages}
+ * compressed as one unit; it consists of the compressed length, the number of
+ * messages, a CRC32 of the compressed data, and the compressed data.
+ * <p/>
+ * The index file records the offsets of all blocks and, for each word, the
+ * blocks containing messages with that word. It is written when the segment is
+ * closed; it is rebuilt from the data file if it is missing or does not cover
+ * the whole data file, for example when the client was killed.
+ * @author Andreas Kirschbaum
+ */
+public class HistorySegment {
+
+    /**
+     * The magic number at the start of the data file.
+     */
+    private static final int DATA_MAGIC = 0x4A584D48;
+
+    /**
+     * The magic number at the start of the index file.
+     */
+    private static final int INDEX_MAGIC = 0x4A584D49;
+
+    /**
+     * The version number of the file formats.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the data file header: magic and version.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * The size of a block header: compressed length, message count, and CRC.
+     */
+    private static final int BLOCK_HEADER_SIZE = 12;
+
+    /**
+     * The maximum compressed size of a block.
+     */
+    private static final int MAX_BLOCK_SIZE = 0x100000;
+
+    /**
+     * The {@link Charset} for encoding message texts.
+     */
+    @NotNull
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * The data file.
+     */
+    @NotNull
+    private final File dataFile;
+
+    /**
+     * The index file.
+     */
+    @NotNull
+    private final File indexFile;
+
+    /**
+     * The offsets of all blocks in {@link #dataFile}.
+     */
+    @NotNull
+    private final List<Long> blockOffsets = new ArrayList<Long>();
+
+    /**
+     * Maps word to the indices into {@link #blockOffsets} of all blocks
+     * containing the word.
+     */
+    @NotNull
+    private final Map<String, BitSet> words = new HashMap<String, BitSet>();
+
+    /**
+     * The size of {@link #dataFile} covered by {@link #blockOffsets}.
+     */
+    private long size = HEADER_SIZE;
+
+    /**
+     * Whether the index differs from {@link #indexFile}.
+     */
+    private boolean modified = false;
+
+    /**
+     * Creates a new instance. The files are not accessed.
+     * @param dataFile the data file
+     * @param indexFile the index file
+     */
+    private HistorySegment(@NotNull final File dataFile, @NotNull final File indexFile) {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Creates a new segment. Existing files are overwritten.
+     * @param dataFile the data file
+     * @param indexFile the index file
+     * @return the segment
+     * @throws IOException if the data file cannot be created
+     */
+    @NotNull
+    public static HistorySegment create(@NotNull final File dataFile, @NotNull final File indexFile) throws IOException {
+        final HistorySegment segment = new HistorySegment(dataFile, indexFile);
+        final DataOutputStream dos = new DataOutputStream(new FileOutputStream(dataFile));
+        try {
+            dos.writeInt(DATA_MAGIC);
+            dos.writeInt(VERSION);
+        } finally {
+            dos.close();
+        }
+        if (!indexFile.delete() && indexFile.exists()) {
+            throw new IOException("cannot delete "+indexFile);
+        }
+        segment.modified = true;
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment. The index is read from the index file or
+     * rebuilt from the data file if the index file is unusable.
+     * @param dataFile the data file
+     * @param indexFile the index file
+     * @return the segment
+     * @throws IOException if the data file cannot be read
+     */
+    @NotNull
+    public static HistorySegment open(@NotNull final File dataFile, @NotNull final File indexFile) throws IOException {
+        final HistorySegment segment = new HistorySegment(dataFile, indexFile);
+        if (!segment.readIndex()) {
+            segment.rebuildIndex();
+        }
+        return segment;
+    }
+
+    /**
+     * Returns the data file.
+     * @return the data file
+     */
+    @NotNull
+    public File getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Returns the size of the data file.
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns whether the segment contains no messages.
+     * @return whether the segment is empty
+     */
+    public boolean isEmpty() {
+        return blockOffsets.isEmpty();
+    }
+
+    /**
+     * Appends one block of messages to the data file.
+     * @param messages the messages to append
+     * @throws IOException if the data file cannot be written
+     */
+    public void append(@NotNull final List<HistoryMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final Deflater deflater = new Deflater();
+        try {
+            final DataOutputStream dos = new DataOutputStream(new DeflaterOutputStream(baos, deflater));
+            for (final HistoryMessage message : messages) {
+                writeMessage(dos, message);
+            }
+            dos.close();
+        } finally {
+            deflater.end();
+        }
+        final byte[] data = baos.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(dataFile, "rw");
+        try {
+            randomAccessFile.setLength(size);
+            randomAccessFile.seek(size);
+            randomAccessFile.writeInt(data.length);
+            randomAccessFile.writeInt(messages.size());
+            randomAccessFile.writeInt((int)crc.getValue());
+            randomAccessFile.write(data);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        addBlock(size, messages);
+        size += BLOCK_HEADER_SIZE+data.length;
+    }
+
+    /**
+     * Writes the index file if the index has changed.
+     * @throws IOException if the index file cannot be written
+     */
+    public void writeIndex() throws IOException {
+        if (!modified) {
+            return;
+        }
+
+        final File tmpFile = new File(indexFile.getPath()+".tmp");
+        final Deflater deflater = new Deflater();
+        try {
+            final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(tmpFile), deflater)));
+            try {
+                dos.writeInt(INDEX_MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeLong(size);
+                dos.writeInt(blockOffsets.size());
+                for (final long blockOffset : blockOffsets) {
+                    dos.writeLong(blockOffset);
+                }
+                dos.writeInt(words.size());
+                for (final Map.Entry<String, BitSet> e : words.entrySet()) {
+                    final BitSet blocks = e.getValue();
+                    dos.writeUTF(e.getKey());
+                    dos.writeInt(blocks.cardinality());
+                    for (int i = blocks.nextSetBit(0); i >= 0; i = blocks.nextSetBit(i+1)) {
+                        dos.writeInt(i);
+                    }
+                }
+            } finally {
+                dos.close();
+            }
+        } finally {
+            deflater.end();
+        }
+        if (!tmpFile.renameTo(indexFile)) {
+            if (!indexFile.delete() || !tmpFile.renameTo(indexFile)) {
+                throw new IOException("cannot rename "+tmpFile+" to "+indexFile);
+            }
+        }
+        modified = false;
+    }
+
+    /**
+     * Searches for messages containing all of the given words. Matching
+     * messages are appended to <code>result</code>, newest first, until it
+     * holds <code>maxResults</code> entries.
+     * @param queryWords the words to search for; must not be empty
+     * @param maxResults the maximum size of <code>result</code>
+     * @param result the list to append to
+     * @throws IOException if the data file cannot be read
+     */
+    public void search(@NotNull final Collection<String> queryWords, final int maxResults, @NotNull final List<HistoryMessage> result) throws IOException {
+        BitSet blocks = null;
+        for (final String word : queryWords) {
+            final BitSet wordBlocks = words.get(word);
+            if (wordBlocks == null) {
+                return;
+            }
+            if (blocks == null) {
+                blocks = (BitSet)wordBlocks.clone();
+            } else {
+                blocks.and(wordBlocks);
+            }
+        }
+        if (blocks == null || blocks.isEmpty()) {
+            return;
+        }
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(dataFile, "r");
+        try {
+            for (int i = blocks.length()-1; i >= 0 && result.size() < maxResults; i--) {
+                if (!blocks.get(i)) {
+                    continue;
+                }
+
+                final List<HistoryMessage> messages = readBlock(randomAccessFile, blockOffsets.get(i));
+                if (messages == null) {
+                    throw new IOException(dataFile+": corrupted block at offset "+blockOffsets.get(i));
+                }
+                for (int j = messages.size()-1; j >= 0 && result.size() < maxResults; j--) {
+                    final HistoryMessage message = messages.get(j);
+                    if (MessageHistory.getWords(message.getText()).containsAll(queryWords)) {
+                        result.add(message);
+                    }
+                }
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Records a new block in the index.
+     * @param offset the offset of the block in the data file
+     * @param messages the messages of the block
+     */
+    private void addBlock(final long offset, @NotNull final Iterable<HistoryMessage> messages) {
+        final int blockIndex = blockOffsets.size();
+        blockOffsets.add(offset);
+        for (final HistoryMessage message : messages) {
+            for (final String word : MessageHistory.getWords(message.getText())) {
+                BitSet blocks = words.get(word);
+                if (blocks == null) {
+                    blocks = new BitSet();
+                    words.put(word, blocks);
+                }
+                blocks.set(blockIndex);
+            }
+        }
+        modified = true;
+    }
+
+    /**
+     * Reads the index file.
+     * @return whether the index file was read and covers the whole data file
+     */
+    private boolean readIndex() {
+        if (!indexFile.exists()) {
+            return false;
+        }
+
+        final Inflater inflater = new Inflater();
+        try {
+            final DataInputStream dis = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(indexFile), inflater)));
+            try {
+                if (dis.readInt() != INDEX_MAGIC || dis.readInt() != VERSION) {
+                    return false;
+                }
+                final long indexSize = dis.readLong();
+                if (indexSize != dataFile.length()) {
+                    return false;
+                }
+                final int blockCount = dis.readInt();
+                for (int i = 0; i < blockCount; i++) {
+                    blockOffsets.add(dis.readLong());
+                }
+                final int wordCount = dis.readInt();
+                for (int i = 0; i < wordCount; i++) {
+                    final String word = dis.readUTF();
+                    final int count = dis.readInt();
+                    final BitSet blocks = new BitSet(blockCount);
+                    for (int j = 0; j < count; j++) {
+                        blocks.set(dis.readInt());
+                    }
+                    words.put(word, blocks);
+                }
+                size = indexSize;
+            } finally {
+                dis.close();
+            }
+        } catch (final IOException ignored) {
+            blockOffsets.clear();
+            words.clear();
+            return false;
+        } finally {
+            inflater.end();
+        }
+        modified = false;
+        return true;
+    }
+
+    /**
+     * Rebuilds the index from the data file. The data file is truncated after
+     * the last valid block.
+     * @throws IOException if the data file cannot be read
+     */
+    private void rebuildIndex() throws IOException {
+        blockOffsets.clear();
+        words.clear();
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(dataFile, "rw");
+        try {
+            if (randomAccessFile.length() < HEADER_SIZE || randomAccessFile.readInt() != DATA_MAGIC || randomAccessFile.readInt() != VERSION) {
+                throw new IOException(dataFile+": invalid file header");
+            }
+
+            long offset = HEADER_SIZE;
+            while (offset < randomAccessFile.length()) {
+                final List<HistoryMessage> messages = readBlock(randomAccessFile, offset);
+                if (messages == null) {
+                    System.err.println(dataFile+": truncating at offset "+offset);
+                    randomAccessFile.setLength(offset);
+                    break;
+                }
+                addBlock(offset, messages);
+                offset = randomAccessFile.getFilePointer();
+            }
+            size = offset;
+        } finally {
+            randomAccessFile.close();
+        }
+        modified = true;
+    }
+
+    /**
+     * Reads one block from the data file.
+     * @param randomAccessFile the data file
+     * @param offset the offset of the block
+     * @return the messages of the block or <code>null</code> if the block is
+     *         invalid
+     * @throws IOException if the data file cannot be read
+     */
+    @Nullable
+    private static List<HistoryMessage> readBlock(@NotNull final RandomAccessFile randomAccessFile, final long offset) throws IOException {
+        if (offset+BLOCK_HEADER_SIZE > randomAccessFile.length()) {
+            return null;
+        }
+
+        randomAccessFile.seek(offset);
+        final int length = randomAccessFile.readInt();
+        final int count = randomAccessFile.readInt();
+        final int checksum = randomAccessFile.readInt();
+        if (length <= 0 || length > MAX_BLOCK_SIZE || count <= 0 || offset+BLOCK_HEADER_SIZE+length > randomAccessFile.length()) {
+            return null;
+        }
+
+        final byte[] data = new byte[length];
+        randomAccessFile.readFully(data);
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int)crc.getValue() != checksum) {
+            return null;
+        }
+
+        final List<HistoryMessage> messages = new ArrayList<HistoryMessage>(count);
+        final Inflater inflater = new Inflater();
+        try {
+            final DataInputStream dis = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data), inflater));
+            for (int i = 0; i < count; i++) {
+                messages.add(readMessage(dis));
+            }
+        } catch (final IOException ignored) {
+            // the data is read from memory: all errors are format errors
+            return null;
+        } finally {
+            inflater.end();
+        }
+        return messages;
+    }
+
+    /**
+     * Writes one message.
+     * @param dos the stream to write to
+     * @param message the message to write
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeMessage(@NotNull final DataOutputStream dos, @NotNull final HistoryMessage message) throws IOException {
+        final byte[] text = message.getText().getBytes(CHARSET);
+        dos.writeLong(message.getTime());
+        dos.writeInt(message.getColor());
+        dos.writeInt(message.getType());
+        dos.writeInt(message.getSubtype());
+        dos.writeInt(text.length);
+        dos.write(text);
+    }
+
+    /**
+     * Reads one message.
+     * @param dis the stream to read from
+     * @return the message
+     * @throws IOException if an I/O error occurs or the message is invalid
+     */
+    @NotNull
+    private static HistoryMessage readMessage(@NotNull final DataInputStream dis) throws IOException {
+        final long time = dis.readLong();
+        final int color = dis.readInt();
+        final int type = dis.readInt();
+        final int subtype = dis.readInt();
+        final int length = dis.readInt();
+        if (length < 0 || length > MAX_BLOCK_SIZE) {
+            throw new IOException("invalid message length "+length);
+        }
+        final byte[] text = new byte[length];
+        dis.readFully(text);
+        return new HistoryMessage(time, color, type, subtype, new String(text, CHARSET));
+    }
+
+}
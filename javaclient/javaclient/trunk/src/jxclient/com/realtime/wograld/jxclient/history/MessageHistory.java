@@ -0,0 +1,435 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A persistent, searchable history of received text messages. The history is
+ * stored in a directory as a sequence of {@link HistorySegment
+ * HistorySegments}; new messages are appended to the newest segment. A new
+ * segment is started when the client starts or when the current segment has
+ * grown too large; the oldest segments are deleted when there are too many.
+ * <p/>
+ * Messages are collected in memory and written by a background thread in
+ * compressed blocks. Searching uses the segments' word indices to read only
+ * blocks containing all searched words. The indices of all segments are read
+ * once when the history is opened; older segments are searched without
+ * blocking the writer thread.
+ * @author Andreas Kirschbaum
+ */
+public class MessageHistory {
+
+    /**
+     * The maximum number of messages per block.
+     */
+    private static final int BLOCK_MESSAGES = 256;
+
+    /**
+     * The maximum time in milliseconds a message is kept in memory before it
+     * is written.
+     */
+    private static final long FLUSH_INTERVAL = 5000;
+
+    /**
+     * The size of a segment's data file that causes a new segment to be
+     * started.
+     */
+    private static final long SEGMENT_SIZE = 4*1024*1024;
+
+    /**
+     * The maximum number of segments to keep.
+     */
+    private static final int MAX_SEGMENTS = 64;
+
+    /**
+     * The minimum length of indexed words.
+     */
+    private static final int MIN_WORD_LENGTH = 2;
+
+    /**
+     * The maximum length of indexed words. Longer words are truncated.
+     */
+    private static final int MAX_WORD_LENGTH = 32;
+
+    /**
+     * The file name suffix of data files.
+     */
+    @NotNull
+    private static final String DATA_SUFFIX = ".dat";
+
+    /**
+     * The file name suffix of index files.
+     */
+    @NotNull
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * The {@link Pattern} matching data file names.
+     */
+    @NotNull
+    private static final Pattern DATA_FILE_PATTERN = Pattern.compile("[0-9]{8}\\.dat");
+
+    /**
+     * The {@link Pattern} matching media tags within messages.
+     */
+    @NotNull
+    private static final Pattern MEDIA_TAG_PATTERN = Pattern.compile("\\[[^\\]]*\\]");
+
+    /**
+     * The directory containing the segments.
+     */
+    @NotNull
+    private final File directory;
+
+    /**
+     * The object for synchronizing access to {@link #pendingMessages} and
+     * {@link #closed}.
+     */
+    @NotNull
+    private final Object sync = new Object();
+
+    /**
+     * The object for synchronizing access to the segments.
+     */
+    @NotNull
+    private final Object ioSync = new Object();
+
+    /**
+     * All segments except {@link #segment}, oldest first. These segments are
+     * not modified anymore.
+     */
+    @NotNull
+    private final List<HistorySegment> segments = new ArrayList<HistorySegment>();
+
+    /**
+     * The segment new messages are appended to or <code>null</code> if
+     * writing has failed.
+     */
+    @Nullable
+    private HistorySegment segment;
+
+    /**
+     * The number of the last segment created.
+     */
+    private int segmentNumber;
+
+    /**
+     * The messages not yet written to {@link #segment}, oldest first.
+     */
+    @NotNull
+    private List<HistoryMessage> pendingMessages = new ArrayList<HistoryMessage>();
+
+    /**
+     * Whether {@link #close()} has been called.
+     */
+    private boolean closed = false;
+
+    /**
+     * The thread writing {@link #pendingMessages}.
+     */
+    @NotNull
+    private final Thread writerThread = new Thread(new Runnable() {
+
+        @Override
+        public void run() {
+            while (true) {
+                synchronized (sync) {
+                    try {
+                        while (!closed && !isFlushDue()) {
+                            if (pendingMessages.isEmpty()) {
+                                sync.wait();
+                            } else {
+                                sync.wait(Math.max(1, pendingMessages.get(0).getTime()+FLUSH_INTERVAL-System.currentTimeMillis()));
+                            }
+                        }
+                    } catch (final InterruptedException ignored) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                // hold ioSync while the messages are neither pending nor
+                // written so that search() does not miss them
+                final boolean terminate;
+                synchronized (ioSync) {
+                    final List<HistoryMessage> messages;
+                    synchronized (sync) {
+                        messages = pendingMessages;
+                        pendingMessages = new ArrayList<HistoryMessage>();
+                        terminate = closed;
+                    }
+                    write(messages, terminate);
+                }
+                if (terminate) {
+                    break;
+                }
+            }
+        }
+
+    }, "JXClient:MessageHistory");
+
+    /**
+     * Creates a new instance. Existing segments are checked; a new segment is
+     * started.
+     * @param directory the directory containing the segments
+     * @throws IOException if the directory cannot be used
+     */
+    public MessageHistory(@NotNull final File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create directory "+directory);
+        }
+
+        final String[] fileNames = directory.list();
+        if (fileNames == null) {
+            throw new IOException("cannot read directory "+directory);
+        }
+        Arrays.sort(fileNames);
+        int lastNumber = 0;
+        for (final String fileName : fileNames) {
+            if (!DATA_FILE_PATTERN.matcher(fileName).matches()) {
+                continue;
+            }
+
+            final File dataFile = new File(directory, fileName);
+            try {
+                final HistorySegment tmp = HistorySegment.open(dataFile, getIndexFile(dataFile));
+                if (tmp.isEmpty()) {
+                    deleteSegment(dataFile);
+                } else {
+                    tmp.writeIndex();
+                    segments.add(tmp);
+                }
+            } catch (final IOException ex) {
+                System.err.println("Ignoring message history segment "+dataFile+": "+ex.getMessage());
+            }
+            lastNumber = Integer.parseInt(fileName.substring(0, fileName.length()-DATA_SUFFIX.length()));
+        }
+        segmentNumber = lastNumber;
+        segment = createSegment();
+        writerThread.start();
+    }
+
+    /**
+     * Records a received message.
+     * @param color the message color
+     * @param type the message type
+     * @param subtype the message subtype
+     * @param text the message text
+     */
+    public void addMessage(final int color, final int type, final int subtype, @NotNull final String text) {
+        final HistoryMessage message = new HistoryMessage(System.currentTimeMillis(), color, type, subtype, text);
+        synchronized (sync) {
+            if (closed) {
+                return;
+            }
+
+            pendingMessages.add(message);
+            if (pendingMessages.size() == 1 || pendingMessages.size() >= BLOCK_MESSAGES) {
+                sync.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Searches for messages containing all words of a query.
+     * @param query the query
+     * @param maxResults the maximum number of messages to return
+     * @return the matching messages, newest first
+     * @throws IOException if the history cannot be read
+     */
+    @NotNull
+    public List<HistoryMessage> search(@NotNull final CharSequence query, final int maxResults) throws IOException {
+        final Set<String> queryWords = getWords(query);
+        if (queryWords.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<HistoryMessage> result = new ArrayList<HistoryMessage>();
+        final List<HistorySegment> oldSegments;
+        synchronized (ioSync) {
+            synchronized (sync) {
+                for (int i = pendingMessages.size()-1; i >= 0 && result.size() < maxResults; i--) {
+                    final HistoryMessage message = pendingMessages.get(i);
+                    if (getWords(message.getText()).containsAll(queryWords)) {
+                        result.add(message);
+                    }
+                }
+            }
+            if (segment != null) {
+                segment.search(queryWords, maxResults, result);
+            }
+            oldSegments = new ArrayList<HistorySegment>(segments);
+        }
+
+        // old segments are not modified; do not block the writer thread
+        for (int i = oldSegments.size()-1; i >= 0 && result.size() < maxResults; i--) {
+            final HistorySegment oldSegment = oldSegments.get(i);
+            try {
+                oldSegment.search(queryWords, maxResults, result);
+            } catch (final IOException ex) {
+                synchronized (ioSync) {
+                    if (segments.contains(oldSegment)) {
+                        throw ex;
+                    }
+                }
+                // the segment has been deleted in the meantime
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes all pending messages and closes the history. Messages added
+     * afterwards are ignored.
+     */
+    public void close() {
+        synchronized (sync) {
+            closed = true;
+            sync.notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (final InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the words of a message. Media tags are ignored; words are
+     * converted to lower case.
+     * @param text the message
+     * @return the words
+     */
+    @NotNull
+    public static Set<String> getWords(@NotNull final CharSequence text) {
+        final String plainText = MEDIA_TAG_PATTERN.matcher(text).replaceAll(" ");
+        final Set<String> words = new LinkedHashSet<String>();
+        int start = -1;
+        for (int i = 0; i <= plainText.length(); i++) {
+            final boolean letter = i < plainText.length() && Character.isLetterOrDigit(plainText.charAt(i));
+            if (letter) {
+                if (start == -1) {
+                    start = i;
+                }
+            } else if (start != -1) {
+                if (i-start >= MIN_WORD_LENGTH) {
+                    words.add(plainText.substring(start, Math.min(i, start+MAX_WORD_LENGTH)).toLowerCase());
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns whether {@link #pendingMessages} should be written. Must be
+     * called while holding {@link #sync}'s lock.
+     * @return whether the messages should be written
+     */
+    private boolean isFlushDue() {
+        return !pendingMessages.isEmpty() && (pendingMessages.size() >= BLOCK_MESSAGES || System.currentTimeMillis() >= pendingMessages.get(0).getTime()+FLUSH_INTERVAL);
+    }
+
+    /**
+     * Appends messages to {@link #segment}. Starts a new segment if the current
+     * one has grown too large.
+     * @param messages the messages to write
+     * @param terminate whether the history is closed; the index of the
+     * current segment is written
+     */
+    private void write(@NotNull final List<HistoryMessage> messages, final boolean terminate) {
+        synchronized (ioSync) {
+            if (segment == null) {
+                return;
+            }
+
+            try {
+                for (int i = 0; i < messages.size(); i += BLOCK_MESSAGES) {
+                    segment.append(messages.subList(i, Math.min(i+BLOCK_MESSAGES, messages.size())));
+                }
+                if (terminate) {
+                    segment.writeIndex();
+                } else if (segment.getSize() >= SEGMENT_SIZE) {
+                    segment.writeIndex();
+                    segments.add(segment);
+                    segment = createSegment();
+                }
+            } catch (final IOException ex) {
+                System.err.println("Cannot write message history: "+ex.getMessage());
+                segment = null;
+            }
+        }
+    }
+
+    /**
+     * Creates a new segment. Deletes the oldest segments if there are too
+     * many. Must be called while holding {@link #ioSync}'s lock or from the
+     * constructor.
+     * @return the new segment
+     * @throws IOException if the segment cannot be created
+     */
+    @NotNull
+    private HistorySegment createSegment() throws IOException {
+        while (segments.size() >= MAX_SEGMENTS) {
+            deleteSegment(segments.remove(0).getDataFile());
+        }
+
+        segmentNumber++;
+        final File dataFile = new File(directory, String.format("%08d", segmentNumber)+DATA_SUFFIX);
+        return HistorySegment.create(dataFile, getIndexFile(dataFile));
+    }
+
+    /**
+     * Deletes the files of a segment.
+     * @param dataFile the data file of the segment
+     */
+    private static void deleteSegment(@NotNull final File dataFile) {
+        final File indexFile = getIndexFile(dataFile);
+        if ((!indexFile.delete() && indexFile.exists()) || !dataFile.delete()) {
+            System.err.println("Cannot delete message history segment "+dataFile);
+        }
+    }
+
+    /**
+     * Returns the index file for a data file.
+     * @param dataFile the data file
+     * @return the index file
+     */
+    @NotNull
+    private static File getIndexFile(@NotNull final File dataFile) {
+        final String path = dataFile.getPath();
+        return new File(path.substring(0, path.length()-DATA_SUFFIX.length())+INDEX_SUFFIX);
+    }
+
+}
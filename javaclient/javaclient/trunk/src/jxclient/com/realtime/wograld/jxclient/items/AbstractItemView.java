@@ -23,8 +23,7 @@ package com.realtime.wograld.jxclient.items;
 
 import com.realtime.wograld.jxclient.util.EventListenerList2;
 import com.realtime.wograld.jxclient.util.IndexedEventListenerList;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.BitSet;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -51,7 +50,7 @@ public abstract class AbstractItemView implements ItemView {
      * The pending modified floor slots to be reported to listeners.
      */
     @NotNull
-    private final Collection<Integer> modifiedSlots = new HashSet<Integer>();
+    private final BitSet modifiedSlots = new BitSet();
 
     /**
      * The synchronization object for accesses to {@link #modifiedSlots}.
@@ -125,10 +124,12 @@ public abstract class AbstractItemView implements ItemView {
      * @param lastIndex the last modified slot index
      */
     protected void addModifiedRange(final int firstIndex, final int lastIndex) {
+        if (firstIndex > lastIndex) {
+            return;
+        }
+
         synchronized (sync) {
-            for (int i = firstIndex; i <= lastIndex; i++) {
-                modifiedSlots.add(i);
-            }
+            modifiedSlots.set(firstIndex, lastIndex+1);
         }
         fireEvents();
     }
@@ -139,7 +140,7 @@ public abstract class AbstractItemView implements ItemView {
      */
     protected void addModified(final int index) {
         synchronized (sync) {
-            modifiedSlots.add(index);
+            modifiedSlots.set(index);
         }
         fireEvents();
     }
@@ -150,7 +151,11 @@ public abstract class AbstractItemView implements ItemView {
     private void deliverEvents() {
         final Integer[] tmpModifiedSlots;
         synchronized (sync) {
-            tmpModifiedSlots = modifiedSlots.toArray(new Integer[modifiedSlots.size()]);
+            tmpModifiedSlots = new Integer[modifiedSlots.cardinality()];
+            int i = 0;
+            for (int index = modifiedSlots.nextSetBit(0); index >= 0; index = modifiedSlots.nextSetBit(index+1)) {
+                tmpModifiedSlots[i++] = index;
+            }
             modifiedSlots.clear();
         }
         if (tmpModifiedSlots.length > 0) {
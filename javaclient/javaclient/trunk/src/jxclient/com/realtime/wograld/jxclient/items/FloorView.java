@@ -109,7 +109,7 @@ public class FloorView extends AbstractItemView {
         }
 
         @Override
-        public void inventoryRemoved(final int tag, final int index) {
+        public void inventoryRemoved(final int tag, final int index, @NotNull final CfItem item) {
             final int offset = getOffset();
             addModifiedRange(index+offset, itemSet.getNumberOfItemsByLocation(tag)+offset);
         }
@@ -21,10 +21,7 @@
 
 package com.realtime.wograld.jxclient.items;
 
-import com.realtime.wograld.jxclient.util.DoubleMapping;
-import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -32,6 +29,10 @@ import org.jetbrains.annotations.Nullable;
  * Provides a view of all items in the current player's inventory.
  * <p/>
  * If no player object is known an empty inventory view is generated.
+ * <p/>
+ * The items are kept in a {@link SortedItemList}: added items are inserted at
+ * their sorted position, changed items are moved to their new position, and
+ * only the affected slots are reported as modified.
  * @author Andreas Kirschbaum
  */
 public class InventoryView extends AbstractItemView {
@@ -42,28 +43,16 @@ public class InventoryView extends AbstractItemView {
     @NotNull
     private final ItemSet itemSet;
 
-    /**
-     * The {@link Comparator} for sorting.
-     */
-    @NotNull
-    private final Comparator<CfItem> comparator;
-
     /**
      * The tag of the current player object or <code>-1</code>.
      */
     private int currentPlayerTag = -1;
 
     /**
-     * The items in the inventory ordered by {@link #comparator}.
-     */
-    @NotNull
-    private final List<CfItem> items = new ArrayList<CfItem>();
-
-    /**
-     * Maps external index to original index.
+     * The items in the inventory in display order.
      */
     @NotNull
-    private final DoubleMapping mapping = new DoubleMapping();
+    private final SortedItemList items;
 
     /**
      * The {@link ItemSetListener} attached to {@link #itemSet} to track the
@@ -84,7 +73,15 @@ public class InventoryView extends AbstractItemView {
 
         @Override
         public void itemChanged(@NotNull final CfItem item) {
-            // ignore
+            if (currentPlayerTag != -1 && item.getLocation() == currentPlayerTag) {
+                final int index = items.indexOf(item);
+                if (index != -1) {
+                    final int newIndex = items.move(index);
+                    if (newIndex != index) {
+                        addModifiedRange(Math.min(index, newIndex), Math.max(index, newIndex));
+                    }
+                }
+            }
         }
 
         @Override
@@ -124,20 +121,19 @@ public class InventoryView extends AbstractItemView {
         public void inventoryAdded(final int tag, final int index, @NotNull final CfItem item) {
             assert tag == currentPlayerTag;
 
-            final int index2 = findInsertionIndex(item);
-            mapping.insert(index2, index);
-            items.add(index2, item);
-            addModifiedRange(index2, itemSet.getNumberOfItemsByLocation(tag)-1);
+            final int index2 = items.insert(item);
+            addModifiedRange(index2, items.size()-1);
         }
 
         @Override
-        public void inventoryRemoved(final int tag, final int index) {
+        public void inventoryRemoved(final int tag, final int index, @NotNull final CfItem item) {
             assert tag == currentPlayerTag;
 
-            final int index2 = mapping.getSrc(index);
-            mapping.remove(index2);
-            items.remove(index2);
-            addModifiedRange(index2, itemSet.getNumberOfItemsByLocation(tag));
+            final int index2 = items.indexOf(item);
+            if (index2 != -1) {
+                items.remove(index2);
+                addModifiedRange(index2, items.size());
+            }
         }
 
     };
@@ -149,7 +145,7 @@ public class InventoryView extends AbstractItemView {
      */
     public InventoryView(@NotNull final ItemSet itemSet, @NotNull final Comparator<CfItem> comparator) {
         this.itemSet = itemSet;
-        this.comparator = comparator;
+        items = new SortedItemList(comparator);
         itemSet.addItemSetListener(itemSetListener);
         final CfItem player = itemSet.getPlayer();
         currentPlayerTag = player == null ? -1 : player.getTag();
@@ -160,32 +156,22 @@ public class InventoryView extends AbstractItemView {
      * @param currentPlayerTag the tag of the player object or <code>-1</code>
      */
     private void setCurrentPlayerTag(final int currentPlayerTag) {
-        final int prevSize;
-        if (this.currentPlayerTag == -1) {
-            prevSize = 0;
-        } else {
+        if (this.currentPlayerTag != -1) {
             itemSet.removeInventoryListener(this.currentPlayerTag, playerInventoryListener);
-            prevSize = itemSet.getNumberOfItemsByLocation(currentPlayerTag);
         }
         this.currentPlayerTag = currentPlayerTag;
-        final int nextSize;
-        if (this.currentPlayerTag == -1) {
-            nextSize = 0;
-        } else {
+        if (this.currentPlayerTag != -1) {
             itemSet.addInventoryListener(this.currentPlayerTag, playerInventoryListener);
-            nextSize = itemSet.getNumberOfItemsByLocation(currentPlayerTag);
         }
 
+        final int prevSize = items.size();
         items.clear();
-        mapping.clear();
         if (currentPlayerTag != -1) {
-            for (int i = 0; i < nextSize; i++) {
-                final CfItem item = itemSet.getInventoryItem(currentPlayerTag, i);
-                assert item != null;
-                playerInventoryListener.inventoryAdded(currentPlayerTag, i, item);
+            for (final CfItem item : itemSet.getItemsByLocation(currentPlayerTag)) {
+                items.insert(item);
             }
         }
-        addModifiedRange(nextSize, prevSize-1);
+        addModifiedRange(0, Math.max(items.size(), prevSize)-1);
     }
 
     /**
@@ -213,19 +199,4 @@ public class InventoryView extends AbstractItemView {
         }
     }
 
-    /**
-     * Returns the insertion index of a {@link CfItem}.
-     * @param item the item to insert into the inventory
-     * @return the index to insert at
-     */
-    private int findInsertionIndex(@NotNull final CfItem item) {
-        int i;
-        for (i = 0; i < items.size(); i++) {
-            if (comparator.compare(items.get(i), item) >= 0) {
-                break;
-            }
-        }
-        return i;
-    }
-
 }
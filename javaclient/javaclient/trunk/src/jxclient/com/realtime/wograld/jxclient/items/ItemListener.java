@@ -54,7 +54,8 @@ public interface ItemListener extends EventListener {
      * An inventory item has been removed from the watched item.
      * @param tag the watched item's tag
      * @param index the inventory index
+     * @param item the inventory item
      */
-    void inventoryRemoved(int tag, int index);
+    void inventoryRemoved(int tag, int index, @NotNull CfItem item);
 
 }
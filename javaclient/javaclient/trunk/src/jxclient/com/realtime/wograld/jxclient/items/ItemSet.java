@@ -25,6 +25,7 @@ import com.realtime.wograld.jxclient.faces.Face;
 import com.realtime.wograld.jxclient.server.wograld.messages.UpdItem;
 import com.realtime.wograld.jxclient.util.EventListenerList2;
 import com.realtime.wograld.jxclient.util.HashedEventListenerList;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -32,7 +33,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -50,13 +50,14 @@ public class ItemSet {
     private final Map<Integer, CfItem> allItems = new HashMap<Integer, CfItem>();
 
     /**
-     * Maps location (=tag) to list of items in that location.
+     * Maps location (=tag) to list of items in that location. Accesses are
+     * synchronized on {@link #sync}.
      */
     @NotNull
     private final Map<Integer, List<CfItem>> items = new HashMap<Integer, List<CfItem>>();
 
     /**
-     * The synchronization object for {@link #player}.
+     * The synchronization object for {@link #player} and {@link #items}.
      */
     @NotNull
     private final Object sync = new Object();
@@ -121,18 +122,20 @@ public class ItemSet {
     }
 
     /**
-     * Returns a list of items in a given location. The returned list may not be
-     * modified by the caller.
+     * Returns a list of items in a given location. The returned list is a copy
+     * that is not affected by later changes.
      * @param location the location
      * @return the list of items
      */
     @NotNull
     public List<CfItem> getItemsByLocation(final int location) {
-        final List<CfItem> result = items.get(location);
-        if (result == null) {
-            return Collections.emptyList();
+        synchronized (sync) {
+            final List<CfItem> result = items.get(location);
+            if (result == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<CfItem>(result);
         }
-        return Collections.unmodifiableList(result);
     }
 
     /**
@@ -142,8 +145,10 @@ public class ItemSet {
      * @return the number of items
      */
     public int getNumberOfItemsByLocation(final int location) {
-        final Collection<CfItem> result = items.get(location);
-        return result == null ? 0 : result.size();
+        synchronized (sync) {
+            final Collection<CfItem> result = items.get(location);
+            return result == null ? 0 : result.size();
+        }
     }
 
     /**
@@ -181,7 +186,7 @@ public class ItemSet {
             }
 
             for (final ItemListener itemListener : itemListeners.getListeners(where)) {
-                itemListener.inventoryRemoved(where, index);
+                itemListener.inventoryRemoved(where, index, item);
             }
 
             if (notifyListeners) {
@@ -227,20 +232,24 @@ public class ItemSet {
     private void addItem(@NotNull final CfItem item, final boolean notifyListeners) {
         removeItemByTag(item.getTag(), true);
 
-        if (allItems.put(item.getTag(), item) != null) {
-            throw new AssertionError("duplicate item "+item.getTag());
-        }
-
         final int where = item.getLocation();
-        List<CfItem> list = items.get(where);
-        if (list == null) {
-            list = new CopyOnWriteArrayList<CfItem>();
-            if (items.put(where, list) != null) {
-                throw new AssertionError();
+        final int index;
+        synchronized (sync) {
+            if (allItems.put(item.getTag(), item) != null) {
+                throw new AssertionError("duplicate item "+item.getTag());
             }
-        }
 
-        list.add(item);
+            List<CfItem> list = items.get(where);
+            if (list == null) {
+                list = new ArrayList<CfItem>();
+                if (items.put(where, list) != null) {
+                    throw new AssertionError();
+                }
+            }
+
+            index = list.size();
+            list.add(item);
+        }
 
         if (notifyListeners) {
             for (final ItemSetListener listener : itemSetListeners.getListeners()) {
@@ -249,22 +258,8 @@ public class ItemSet {
         }
 
         for (final ItemListener itemListener : itemListeners.getListeners(where)) {
-            itemListener.inventoryAdded(where, list.size()-1, item);
-        }
-    }
-
-    /**
-     * Returns the inventory of an item.
-     * @param tag the item's tag
-     * @return the inventory items; the list cannot be modified
-     */
-    @NotNull
-    private List<CfItem> getInventoryByTag(final int tag) {
-        final List<CfItem> inventory = items.get(tag);
-        if (inventory == null) {
-            return Collections.emptyList();
+            itemListener.inventoryAdded(where, index, item);
         }
-        return Collections.unmodifiableList(inventory);
     }
 
     /**
@@ -274,7 +269,9 @@ public class ItemSet {
      */
     @Nullable
     public CfItem getItemByTag(final int tag) {
-        return allItems.get(tag);
+        synchronized (sync) {
+            return allItems.get(tag);
+        }
     }
 
     /**
@@ -307,12 +304,13 @@ public class ItemSet {
 
     /**
      * Returns the player's inventory.
-     * @return the inventory items; the list cannot be modified
+     * @return the inventory items; the list is a copy that is not affected by
+     *         later changes
      */
     @NotNull
     public Iterable<CfItem> getPlayerInventory() {
         synchronized (sync) {
-            return player == null ? Collections.<CfItem>emptyList() : getInventoryByTag(player.getTag());
+            return player == null ? Collections.<CfItem>emptyList() : getItemsByLocation(player.getTag());
         }
     }
 
@@ -447,11 +445,9 @@ public class ItemSet {
      */
     @Nullable
     public CfItem getInventoryItem(final int tag, final int index) {
-        final List<CfItem> inventoryItems = getInventoryByTag(tag);
-        try {
-            return 0 <= index && index < inventoryItems.size() ? inventoryItems.get(index) : null;
-        } catch (final ArrayIndexOutOfBoundsException ignored) {
-            return null;
+        synchronized (sync) {
+            final List<CfItem> inventoryItems = items.get(tag);
+            return inventoryItems != null && 0 <= index && index < inventoryItems.size() ? inventoryItems.get(index) : null;
         }
     }
 
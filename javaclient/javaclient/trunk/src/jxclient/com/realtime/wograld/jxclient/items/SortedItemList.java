@@ -0,0 +1,186 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.items;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A list of {@link CfItem CfItems} ordered by a {@link Comparator}. Items are
+ * inserted and located by binary search; an item that changed its sort key is
+ * moved to its new position by {@link #move(int)}.
+ * @author Andreas Kirschbaum
+ */
+public class SortedItemList {
+
+    /**
+     * The {@link Comparator} defining the order.
+     */
+    @NotNull
+    private final Comparator<CfItem> comparator;
+
+    /**
+     * The items. Only the first {@link #size} entries are valid.
+     */
+    @NotNull
+    private CfItem[] items = new CfItem[16];
+
+    /**
+     * The number of items.
+     */
+    private int size = 0;
+
+    /**
+     * Creates a new instance.
+     * @param comparator the comparator defining the order
+     */
+    public SortedItemList(@NotNull final Comparator<CfItem> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns the number of items.
+     * @return the number of items
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an item by index.
+     * @param index the index
+     * @return the item
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    @NotNull
+    public CfItem get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index+" of "+size);
+        }
+        return items[index];
+    }
+
+    /**
+     * Removes all items.
+     */
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Inserts an item at its sorted position.
+     * @param item the item to insert
+     * @return the index of the inserted item
+     */
+    public int insert(@NotNull final CfItem item) {
+        final int index = findInsertionIndex(item, 0, size);
+        if (size >= items.length) {
+            items = Arrays.copyOf(items, items.length*2);
+        }
+        System.arraycopy(items, index, items, index+1, size-index);
+        items[index] = item;
+        size++;
+        return index;
+    }
+
+    /**
+     * Removes an item.
+     * @param index the index of the item to remove
+     * @return the removed item
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    @NotNull
+    public CfItem remove(final int index) {
+        final CfItem item = get(index);
+        System.arraycopy(items, index+1, items, index, size-index-1);
+        size--;
+        items[size] = null;
+        return item;
+    }
+
+    /**
+     * Returns the index of an item. The item is located by binary search; if
+     * its sort key has changed since it was inserted, it is searched linearly.
+     * @param item the item
+     * @return the index or <code>-1</code> if the item is not in this list
+     */
+    public int indexOf(@NotNull final CfItem item) {
+        final int index = Arrays.binarySearch(items, 0, size, item, comparator);
+        if (index >= 0 && items[index] == item) {
+            return index;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (items[i] == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves an item whose sort key may have changed to its sorted position.
+     * @param index the current index of the item
+     * @return the new index of the item
+     * @throws IndexOutOfBoundsException if the index is invalid
+     */
+    public int move(final int index) {
+        final CfItem item = get(index);
+        final int newIndex;
+        if (index > 0 && comparator.compare(items[index-1], item) > 0) {
+            newIndex = findInsertionIndex(item, 0, index);
+            System.arraycopy(items, newIndex, items, newIndex+1, index-newIndex);
+        } else if (index+1 < size && comparator.compare(item, items[index+1]) > 0) {
+            newIndex = findInsertionIndex(item, index+1, size)-1;
+            System.arraycopy(items, index+1, items, index, newIndex-index);
+        } else {
+            return index;
+        }
+        items[newIndex] = item;
+        return newIndex;
+    }
+
+    /**
+     * Returns the index to insert an item at.
+     * @param item the item
+     * @param fromIndex the first index to consider
+     * @param toIndex the last index to consider (exclusive)
+     * @return the first index in <code>fromIndex..toIndex</code> whose item
+     *         does not sort before <code>item</code>
+     */
+    private int findInsertionIndex(@NotNull final CfItem item, final int fromIndex, final int toIndex) {
+        int low = fromIndex;
+        int high = toIndex;
+        while (low < high) {
+            final int mid = (low+high)>>>1;
+            if (comparator.compare(items[mid], item) < 0) {
+                low = mid+1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.loadtest;
+
+import com.realtime.wograld.jxclient.server.socket.ClientSocketSelector;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs many simulated client sessions against a server without a GUI. All
+ * connections share one {@link ClientSocketSelector}; all scripts are
+ * executed by one thread. Progress is reported periodically; latency and
+ * throughput of each session are reported when all sessions have finished.
+ * @author Andreas Kirschbaum
+ */
+public class LoadTest {
+
+    /**
+     * The interval in milliseconds for reporting progress.
+     */
+    private static final long REPORT_INTERVAL = 10000;
+
+    /**
+     * The script executed by all sessions.
+     */
+    @NotNull
+    private final LoadTestScript script;
+
+    /**
+     * The host to connect to.
+     */
+    @NotNull
+    private final String host;
+
+    /**
+     * The port to connect to.
+     */
+    private final int port;
+
+    /**
+     * The number of sessions.
+     */
+    private final int numSessions;
+
+    /**
+     * The time in milliseconds over which session starts are spread.
+     */
+    private final long rampUp;
+
+    /**
+     * The version information to send to the server.
+     */
+    @NotNull
+    private final String version;
+
+    /**
+     * The {@link PrintStream} to report to.
+     */
+    @NotNull
+    private final PrintStream out;
+
+    /**
+     * Creates a new instance.
+     * @param script the script executed by all sessions
+     * @param host the host to connect to
+     * @param port the port to connect to
+     * @param numSessions the number of sessions
+     * @param rampUp the time in milliseconds over which session starts are
+     * spread
+     * @param version the version information to send to the server
+     * @param out the print stream to report to
+     */
+    public LoadTest(@NotNull final LoadTestScript script, @NotNull final String host, final int port, final int numSessions, final long rampUp, @NotNull final String version, @NotNull final PrintStream out) {
+        this.script = script;
+        this.host = host;
+        this.port = port;
+        this.numSessions = numSessions;
+        this.rampUp = rampUp;
+        this.version = version;
+        this.out = out;
+    }
+
+    /**
+     * Runs all sessions and waits until they have finished.
+     * @return whether all sessions have succeeded
+     * @throws IOException if the sessions cannot be created
+     * @throws InterruptedException if waiting was interrupted
+     */
+    public boolean run() throws IOException, InterruptedException {
+        final ClientSocketSelector clientSocketSelector = new ClientSocketSelector();
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(@NotNull final Runnable r) {
+                return new Thread(r, "JXClient:LoadTest");
+            }
+
+        });
+        final CountDownLatch finishedLatch = new CountDownLatch(numSessions);
+        final Collection<LoadTestSession> sessions = new ArrayList<LoadTestSession>(numSessions);
+        final long startTime = System.currentTimeMillis();
+        clientSocketSelector.start();
+        try {
+            for (int i = 0; i < numSessions; i++) {
+                final LoadTestSession session = new LoadTestSession(i+1, script, host, port, version, clientSocketSelector, executor, finishedLatch);
+                sessions.add(session);
+                session.start(rampUp*i/numSessions);
+            }
+
+            while (!finishedLatch.await(REPORT_INTERVAL, TimeUnit.MILLISECONDS)) {
+                final StringBuilder sb = new StringBuilder();
+                sb.append("sessions=").append(numSessions-finishedLatch.getCount()).append('/').append(numSessions).append(" finished, connections=").append(clientSocketSelector.getSockets()).append(' ');
+                getTotal(sessions).format(sb, System.currentTimeMillis()-startTime);
+                out.println(sb);
+            }
+        } finally {
+            executor.shutdownNow();
+            clientSocketSelector.stop();
+        }
+
+        for (final LoadTestSession session : sessions) {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("session ").append(session.getNumber()).append(": ");
+            final LoadTestStatistics statistics = session.getStatistics();
+            statistics.format(sb, statistics.getConnectedTime());
+            final String error = session.getError();
+            if (error != null) {
+                sb.append(" error=").append(error);
+            }
+            out.println(sb);
+        }
+        int failedSessions = 0;
+        for (final LoadTestSession session : sessions) {
+            if (session.getError() != null) {
+                failedSessions++;
+            }
+        }
+        final LoadTestStatistics total = getTotal(sessions);
+        final StringBuilder sb = new StringBuilder();
+        sb.append("total: sessions=").append(numSessions).append(" failed=").append(failedSessions).append(' ');
+        total.format(sb, System.currentTimeMillis()-startTime);
+        out.println(sb);
+        return failedSessions == 0;
+    }
+
+    /**
+     * Returns the combined statistics of sessions.
+     * @param sessions the sessions
+     * @return the combined statistics
+     */
+    @NotNull
+    private static LoadTestStatistics getTotal(@NotNull final Iterable<LoadTestSession> sessions) {
+        final LoadTestStatistics total = new LoadTestStatistics();
+        for (final LoadTestSession session : sessions) {
+            total.add(session.getStatistics());
+        }
+        return total;
+    }
+
+}
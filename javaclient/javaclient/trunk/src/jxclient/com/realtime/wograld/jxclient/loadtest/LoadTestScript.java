@@ -0,0 +1,175 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.loadtest;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The behaviour of a simulated client session. A script consists of one step
+ * per line; empty lines and lines starting with "#" are ignored. The
+ * following steps are supported; "%d" in arguments is replaced by the
+ * session number:
+ * <ul>
+ * <li><code>login &lt;account&gt; &lt;password&gt;</code>: log into an
+ * account</li>
+ * <li><code>play &lt;character&gt;</code>: select a character; "*" selects
+ * the first character of the account</li>
+ * <li><code>command &lt;command&gt;</code>: send a command and wait for its
+ * acknowledgement; the round-trip time is recorded as latency</li>
+ * <li><code>wait &lt;milliseconds&gt;</code>: wait for some time</li>
+ * <li><code>loop &lt;count&gt;</code> ... <code>end</code>: execute the
+ * enclosed steps <code>count</code> times; loops cannot be nested</li>
+ * </ul>
+ * @author Andreas Kirschbaum
+ */
+public class LoadTestScript {
+
+    /**
+     * The {@link Pattern} for splitting a line into words.
+     */
+    @NotNull
+    private static final Pattern PATTERN_SPACES = Pattern.compile(" +");
+
+    /**
+     * The steps.
+     */
+    @NotNull
+    private final List<LoadTestStep> steps;
+
+    /**
+     * Creates a new instance.
+     * @param steps the steps
+     */
+    private LoadTestScript(@NotNull final List<LoadTestStep> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Parses a script.
+     * @param reader the reader to read from
+     * @return the script
+     * @throws IOException if the script cannot be read or is invalid
+     */
+    @NotNull
+    public static LoadTestScript parse(@NotNull final Reader reader) throws IOException {
+        final List<LoadTestStep> steps = new ArrayList<LoadTestStep>();
+        final LineNumberReader lnr = new LineNumberReader(reader);
+        int loopIndex = -1;
+        while (true) {
+            final String tmp = lnr.readLine();
+            if (tmp == null) {
+                break;
+            }
+
+            final String line = tmp.trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+
+            final String[] args = PATTERN_SPACES.split(line, 2);
+            final String cmd = args[0];
+            final String arg = args.length >= 2 ? args[1] : "";
+            if (cmd.equals("login")) {
+                final String[] loginArgs = PATTERN_SPACES.split(arg);
+                if (loginArgs.length != 2 || loginArgs[0].length() == 0) {
+                    throw new IOException("line "+lnr.getLineNumber()+": syntax: login <account> <password>");
+                }
+                steps.add(new LoadTestStep(LoadTestStepType.LOGIN, loginArgs[0], loginArgs[1], 0));
+            } else if (cmd.equals("play")) {
+                if (arg.length() == 0) {
+                    throw new IOException("line "+lnr.getLineNumber()+": syntax: play <character>");
+                }
+                steps.add(new LoadTestStep(LoadTestStepType.PLAY, arg, "", 0));
+            } else if (cmd.equals("command")) {
+                if (arg.length() == 0) {
+                    throw new IOException("line "+lnr.getLineNumber()+": syntax: command <command>");
+                }
+                steps.add(new LoadTestStep(LoadTestStepType.COMMAND, arg, "", 0));
+            } else if (cmd.equals("wait")) {
+                steps.add(new LoadTestStep(LoadTestStepType.WAIT, "", "", parseNumber(arg, lnr)));
+            } else if (cmd.equals("loop")) {
+                if (loopIndex != -1) {
+                    throw new IOException("line "+lnr.getLineNumber()+": loops cannot be nested");
+                }
+                loopIndex = steps.size();
+                steps.add(new LoadTestStep(LoadTestStepType.LOOP, "", "", parseNumber(arg, lnr)));
+            } else if (cmd.equals("end")) {
+                if (loopIndex == -1) {
+                    throw new IOException("line "+lnr.getLineNumber()+": 'end' without 'loop'");
+                }
+                steps.add(new LoadTestStep(LoadTestStepType.END, "", "", loopIndex));
+                loopIndex = -1;
+            } else {
+                throw new IOException("line "+lnr.getLineNumber()+": unknown step '"+cmd+"'");
+            }
+        }
+        if (loopIndex != -1) {
+            throw new IOException("missing 'end' for 'loop'");
+        }
+        return new LoadTestScript(steps);
+    }
+
+    /**
+     * Parses a non-negative number.
+     * @param arg the string to parse
+     * @param lnr the line number reader for error messages
+     * @return the number
+     * @throws IOException if the string is not a non-negative number
+     */
+    private static int parseNumber(@NotNull final String arg, @NotNull final LineNumberReader lnr) throws IOException {
+        final int value;
+        try {
+            value = Integer.parseInt(arg);
+        } catch (final NumberFormatException ignored) {
+            throw new IOException("line "+lnr.getLineNumber()+": invalid number '"+arg+"'");
+        }
+        if (value < 0) {
+            throw new IOException("line "+lnr.getLineNumber()+": invalid number '"+arg+"'");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of steps.
+     * @return the number of steps
+     */
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * Returns a step.
+     * @param index the step index
+     * @return the step
+     */
+    @NotNull
+    public LoadTestStep get(final int index) {
+        return steps.get(index);
+    }
+
+}
@@ -0,0 +1,597 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.loadtest;
+
+import com.realtime.wograld.jxclient.server.socket.ClientSocketListener;
+import com.realtime.wograld.jxclient.server.socket.ClientSocketSelector;
+import com.realtime.wograld.jxclient.server.socket.ClientSocketState;
+import com.realtime.wograld.jxclient.server.wograld.DefaultWograldServerConnection;
+import com.realtime.wograld.jxclient.server.wograld.WograldAccountListener;
+import com.realtime.wograld.jxclient.server.wograld.WograldComcListener;
+import com.realtime.wograld.jxclient.server.wograld.WograldFailureListener;
+import com.realtime.wograld.jxclient.server.wograld.WograldServerConnectionListener;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One simulated client session. The session connects to a server, executes a
+ * {@link LoadTestScript}, and records {@link LoadTestStatistics}.
+ * <p/>
+ * The connection is operated by a shared {@link ClientSocketSelector}; the
+ * script is executed by a shared {@link ScheduledExecutorService}. Events
+ * received from the server are forwarded to the executor so that all session
+ * state is accessed from the executor's thread only.
+ * @author Andreas Kirschbaum
+ */
+public class LoadTestSession {
+
+    /**
+     * The time in milliseconds to wait for the server.
+     */
+    private static final long TIMEOUT = 30000;
+
+    /**
+     * The session number.
+     */
+    private final int number;
+
+    /**
+     * The script to execute.
+     */
+    @NotNull
+    private final LoadTestScript script;
+
+    /**
+     * The host to connect to.
+     */
+    @NotNull
+    private final String host;
+
+    /**
+     * The port to connect to.
+     */
+    private final int port;
+
+    /**
+     * The {@link ScheduledExecutorService} executing the script.
+     */
+    @NotNull
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The {@link CountDownLatch} to count down when the session has
+     * finished.
+     */
+    @NotNull
+    private final CountDownLatch finishedLatch;
+
+    /**
+     * The connection to the server.
+     */
+    @NotNull
+    private final DefaultWograldServerConnection connection;
+
+    /**
+     * The recorded statistics.
+     */
+    @NotNull
+    private final LoadTestStatistics statistics = new LoadTestStatistics();
+
+    /**
+     * Whether the server has finished the initial handshake.
+     */
+    private boolean started = false;
+
+    /**
+     * Whether a character is playing.
+     */
+    private boolean playing = false;
+
+    /**
+     * Whether the session has finished.
+     */
+    private volatile boolean finished = false;
+
+    /**
+     * The reason the session has failed or <code>null</code> if the session
+     * has not failed.
+     */
+    @Nullable
+    private volatile String error = null;
+
+    /**
+     * The index of the next step to execute.
+     */
+    private int pc = 0;
+
+    /**
+     * The remaining iterations of the current loop.
+     */
+    private int loopCounter = 0;
+
+    /**
+     * The step type the session is waiting for or <code>null</code> if not
+     * waiting.
+     */
+    @Nullable
+    private LoadTestStepType waiting = null;
+
+    /**
+     * Incremented whenever {@link #waiting} changes; used to detect stale
+     * timeouts.
+     */
+    private int waitId = 0;
+
+    /**
+     * The pending timeout or <code>null</code>.
+     */
+    @Nullable
+    private ScheduledFuture<?> timeoutFuture = null;
+
+    /**
+     * The packet number of the command waiting for acknowledgement.
+     */
+    private int pendingPacketNo = 0;
+
+    /**
+     * The {@link System#nanoTime()} when the command waiting for
+     * acknowledgement was sent.
+     */
+    private long pendingTime = 0;
+
+    /**
+     * The first character of the account or <code>null</code> if unknown.
+     */
+    @Nullable
+    private String firstCharacter = null;
+
+    /**
+     * The {@link ClientSocketListener} attached to {@link #connection}.
+     */
+    @NotNull
+    private final ClientSocketListener clientSocketListener = new ClientSocketListener() {
+
+        @Override
+        public void connecting() {
+            // ignore
+        }
+
+        @Override
+        public void connected() {
+            statistics.connected();
+        }
+
+        @Override
+        public void packetReceived(@NotNull final ByteBuffer packet) {
+            statistics.packetReceived(packet.limit());
+        }
+
+        @Override
+        public void packetSent(@NotNull final byte[] buf, final int len) {
+            statistics.packetSent(len);
+        }
+
+        @Override
+        public void disconnecting(@NotNull final String reason, final boolean isError) {
+            // ignore
+        }
+
+        @Override
+        public void disconnected(@NotNull final String reason) {
+            statistics.disconnected();
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    finish("disconnected: "+reason);
+                }
+
+            });
+        }
+
+    };
+
+    /**
+     * The {@link WograldServerConnectionListener} attached to {@link
+     * #connection}.
+     */
+    @NotNull
+    private final WograldServerConnectionListener wograldServerConnectionListener = new WograldServerConnectionListener() {
+
+        @Override
+        public void clientSocketStateChanged(@NotNull final ClientSocketState clientSocketState) {
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    stateChanged(clientSocketState);
+                }
+
+            });
+        }
+
+    };
+
+    /**
+     * The {@link WograldAccountListener} attached to {@link #connection}.
+     */
+    @NotNull
+    private final WograldAccountListener wograldAccountListener = new WograldAccountListener() {
+
+        @Override
+        public void manageAccount() {
+            // ignore
+        }
+
+        @Override
+        public void startAccountList(@NotNull final String accountName) {
+            // ignore
+        }
+
+        @Override
+        public void addAccount(@NotNull final String name, @NotNull final String characterClass, @NotNull final String race, @NotNull final String face, @NotNull final String party, @NotNull final String map, final int level, final int faceNumber) {
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (firstCharacter == null) {
+                        firstCharacter = name;
+                    }
+                }
+
+            });
+        }
+
+        @Override
+        public void endAccountList() {
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (waiting == LoadTestStepType.LOGIN) {
+                        complete();
+                    }
+                }
+
+            });
+        }
+
+        @Override
+        public void startPlaying() {
+            // ignore
+        }
+
+        @Override
+        public void selectCharacter(@NotNull final String accountName, @NotNull final String characterName) {
+            // ignore
+        }
+
+    };
+
+    /**
+     * The {@link WograldComcListener} attached to {@link #connection}.
+     */
+    @NotNull
+    private final WograldComcListener wograldComcListener = new WograldComcListener() {
+
+        @Override
+        public void commandComcReceived(final int packetNo, final int time) {
+            final long now = System.nanoTime();
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (waiting == LoadTestStepType.COMMAND && packetNo == pendingPacketNo) {
+                        statistics.addLatency((int)((now-pendingTime)/1000000));
+                        complete();
+                    }
+                }
+
+            });
+        }
+
+    };
+
+    /**
+     * The {@link WograldFailureListener} attached to {@link #connection}.
+     */
+    @NotNull
+    private final WograldFailureListener wograldFailureListener = new WograldFailureListener() {
+
+        @Override
+        public void failure(@NotNull final String command, @NotNull final String arguments) {
+            statistics.failure();
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (waiting == LoadTestStepType.LOGIN || waiting == LoadTestStepType.PLAY) {
+                        finish("failure: "+command+" "+arguments);
+                    }
+                }
+
+            });
+        }
+
+        @Override
+        public void clearFailure() {
+            // ignore
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param number the session number
+     * @param script the script to execute
+     * @param host the host to connect to
+     * @param port the port to connect to
+     * @param version the version information to send to the server
+     * @param clientSocketSelector the client socket selector operating the
+     * connection
+     * @param executor the executor executing the script
+     * @param finishedLatch the latch to count down when the session has
+     * finished
+     */
+    public LoadTestSession(final int number, @NotNull final LoadTestScript script, @NotNull final String host, final int port, @NotNull final String version, @NotNull final ClientSocketSelector clientSocketSelector, @NotNull final ScheduledExecutorService executor, @NotNull final CountDownLatch finishedLatch) {
+        this.number = number;
+        this.script = script;
+        this.host = host;
+        this.port = port;
+        this.executor = executor;
+        this.finishedLatch = finishedLatch;
+        connection = DefaultWograldServerConnection.newHeadless(null, version, clientSocketSelector);
+        connection.addClientSocketListener(clientSocketListener);
+        connection.addWograldServerConnectionListener(wograldServerConnectionListener);
+        connection.addWograldAccountListener(wograldAccountListener);
+        connection.addWograldComcListener(wograldComcListener);
+        connection.addWograldFailureListener(wograldFailureListener);
+    }
+
+    /**
+     * Starts the session.
+     * @param delay the delay in milliseconds before connecting
+     */
+    public void start(final long delay) {
+        executor.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                connection.start();
+                connection.connect(host, port);
+                waitFor(null, TIMEOUT);
+            }
+
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the session number.
+     * @return the session number
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the recorded statistics.
+     * @return the statistics
+     */
+    @NotNull
+    public LoadTestStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns whether the session has finished.
+     * @return whether the session has finished
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns the reason the session has failed.
+     * @return the reason or <code>null</code> if the session has not failed
+     */
+    @Nullable
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Processes a changed connection state.
+     * @param clientSocketState the new connection state
+     */
+    private void stateChanged(@NotNull final ClientSocketState clientSocketState) {
+        if (clientSocketState == ClientSocketState.CONNECTED) {
+            playing = true;
+        } else if (clientSocketState != ClientSocketState.ACCOUNT_INFO) {
+            return;
+        }
+
+        if (!started) {
+            started = true;
+            complete();
+        } else if (playing && waiting == LoadTestStepType.PLAY) {
+            complete();
+        }
+    }
+
+    /**
+     * Executes steps until a step has to wait or the script has finished.
+     */
+    private void runSteps() {
+        while (!finished && waiting == null) {
+            if (pc >= script.size()) {
+                finish(null);
+                return;
+            }
+
+            final LoadTestStep step = script.get(pc++);
+            switch (step.getType()) {
+            case LOGIN:
+                if (!playing) {
+                    connection.sendAccountLogin(step.getArgument(number), step.getArgument2(number));
+                    waitFor(LoadTestStepType.LOGIN, TIMEOUT);
+                }
+                break;
+
+            case PLAY:
+                if (!playing) {
+                    final String name = step.getArgument(number).equals("*") ? firstCharacter : step.getArgument(number);
+                    if (name == null) {
+                        finish("account has no characters");
+                        return;
+                    }
+                    connection.sendAccountPlay(name);
+                    waitFor(LoadTestStepType.PLAY, TIMEOUT);
+                }
+                break;
+
+            case COMMAND:
+                pendingTime = System.nanoTime();
+                pendingPacketNo = connection.sendNcom(0, step.getArgument(number));
+                waitFor(LoadTestStepType.COMMAND, TIMEOUT);
+                break;
+
+            case WAIT:
+                waitFor(LoadTestStepType.WAIT, step.getValue());
+                break;
+
+            case LOOP:
+                loopCounter = step.getValue();
+                if (loopCounter <= 0) {
+                    while (script.get(pc).getType() != LoadTestStepType.END) {
+                        pc++;
+                    }
+                    pc++;
+                }
+                break;
+
+            case END:
+                loopCounter--;
+                if (loopCounter > 0) {
+                    pc = step.getValue()+1;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Starts waiting.
+     * @param type the step type to wait for or <code>null</code> to wait for
+     * the initial handshake
+     * @param timeout the timeout in milliseconds
+     */
+    private void waitFor(@Nullable final LoadTestStepType type, final long timeout) {
+        waiting = type;
+        final int id = ++waitId;
+        timeoutFuture = executor.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                if (id == waitId) {
+                    timeout();
+                }
+            }
+
+        }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Finishes waiting and continues executing steps.
+     */
+    private void complete() {
+        waitId++;
+        if (timeoutFuture != null) {
+            timeoutFuture.cancel(false);
+            timeoutFuture = null;
+        }
+        waiting = null;
+        runSteps();
+    }
+
+    /**
+     * Called when waiting has timed out.
+     */
+    private void timeout() {
+        timeoutFuture = null;
+        if (!started) {
+            finish("timeout waiting for server");
+        } else if (waiting == LoadTestStepType.WAIT) {
+            complete();
+        } else if (waiting == LoadTestStepType.COMMAND) {
+            statistics.timeout();
+            complete();
+        } else if (waiting != null) {
+            finish("timeout waiting for "+waiting.toString().toLowerCase());
+        }
+    }
+
+    /**
+     * Finishes the session.
+     * @param error the reason the session has failed or <code>null</code> if
+     * the session has succeeded
+     */
+    private void finish(@Nullable final String error) {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        this.error = error;
+        waitId++;
+        if (timeoutFuture != null) {
+            timeoutFuture.cancel(false);
+            timeoutFuture = null;
+        }
+        try {
+            connection.stop();
+        } catch (final InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        statistics.disconnected();
+        finishedLatch.countDown();
+    }
+
+    /**
+     * Executes a {@link Runnable} in the script executor. Does nothing if the
+     * executor has been shut down.
+     * @param runnable the runnable to execute
+     */
+    private void execute(@NotNull final Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (final RejectedExecutionException ignored) {
+            // ignore
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.loadtest;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Latency and throughput statistics of one or more simulated client
+ * sessions. All functions may be called from any thread.
+ * @author Andreas Kirschbaum
+ */
+public class LoadTestStatistics {
+
+    /**
+     * The number of packets sent.
+     */
+    private long packetsSent = 0;
+
+    /**
+     * The number of payload bytes sent.
+     */
+    private long bytesSent = 0;
+
+    /**
+     * The number of packets received.
+     */
+    private long packetsReceived = 0;
+
+    /**
+     * The number of payload bytes received.
+     */
+    private long bytesReceived = 0;
+
+    /**
+     * The number of commands not acknowledged in time.
+     */
+    private int timeouts = 0;
+
+    /**
+     * The number of failures reported by the server.
+     */
+    private int failures = 0;
+
+    /**
+     * The recorded command latencies in milliseconds. Only the first {@link
+     * #numLatencies} entries are valid.
+     */
+    @NotNull
+    private int[] latencies = new int[16];
+
+    /**
+     * The number of valid entries in {@link #latencies}.
+     */
+    private int numLatencies = 0;
+
+    /**
+     * The sum of all recorded latencies in milliseconds.
+     */
+    private long latencySum = 0;
+
+    /**
+     * The accumulated time in milliseconds the sessions were connected.
+     * Does not include the time of sessions still connected.
+     */
+    private long connectedTime = 0;
+
+    /**
+     * The time the session connected or <code>0</code> if not connected.
+     */
+    private long connectTime = 0;
+
+    /**
+     * Records that the session has connected.
+     */
+    public synchronized void connected() {
+        connectTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Records that the session has disconnected.
+     */
+    public synchronized void disconnected() {
+        if (connectTime != 0) {
+            connectedTime += System.currentTimeMillis()-connectTime;
+            connectTime = 0;
+        }
+    }
+
+    /**
+     * Records a sent packet.
+     * @param len the packet's payload size
+     */
+    public synchronized void packetSent(final int len) {
+        packetsSent++;
+        bytesSent += len;
+    }
+
+    /**
+     * Records a received packet.
+     * @param len the packet's payload size
+     */
+    public synchronized void packetReceived(final int len) {
+        packetsReceived++;
+        bytesReceived += len;
+    }
+
+    /**
+     * Records the latency of an acknowledged command.
+     * @param latency the latency in milliseconds
+     */
+    public synchronized void addLatency(final int latency) {
+        if (numLatencies >= latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length*2);
+        }
+        latencies[numLatencies++] = latency;
+        latencySum += latency;
+    }
+
+    /**
+     * Records a command not acknowledged in time.
+     */
+    public synchronized void timeout() {
+        timeouts++;
+    }
+
+    /**
+     * Records a failure reported by the server.
+     */
+    public synchronized void failure() {
+        failures++;
+    }
+
+    /**
+     * Adds all values of another instance to this instance.
+     * @param statistics the other instance
+     */
+    public void add(@NotNull final LoadTestStatistics statistics) {
+        final LoadTestStatistics tmp = new LoadTestStatistics();
+        synchronized (statistics) {
+            tmp.packetsSent = statistics.packetsSent;
+            tmp.bytesSent = statistics.bytesSent;
+            tmp.packetsReceived = statistics.packetsReceived;
+            tmp.bytesReceived = statistics.bytesReceived;
+            tmp.timeouts = statistics.timeouts;
+            tmp.failures = statistics.failures;
+            tmp.latencies = Arrays.copyOf(statistics.latencies, statistics.numLatencies);
+            tmp.numLatencies = statistics.numLatencies;
+            tmp.latencySum = statistics.latencySum;
+            tmp.connectedTime = statistics.getConnectedTime();
+        }
+        synchronized (this) {
+            packetsSent += tmp.packetsSent;
+            bytesSent += tmp.bytesSent;
+            packetsReceived += tmp.packetsReceived;
+            bytesReceived += tmp.bytesReceived;
+            timeouts += tmp.timeouts;
+            failures += tmp.failures;
+            for (int i = 0; i < tmp.numLatencies; i++) {
+                addLatency(tmp.latencies[i]);
+            }
+            connectedTime += tmp.connectedTime;
+        }
+    }
+
+    /**
+     * Returns the number of acknowledged commands.
+     * @return the number of commands
+     */
+    public synchronized int getCommands() {
+        return numLatencies;
+    }
+
+    /**
+     * Returns the number of commands not acknowledged in time.
+     * @return the number of timeouts
+     */
+    public synchronized int getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the number of failures reported by the server.
+     * @return the number of failures
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the number of received payload bytes.
+     * @return the number of bytes
+     */
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the average command latency.
+     * @return the average latency in milliseconds or <code>0</code> if no
+     *         commands were acknowledged
+     */
+    public synchronized int getAverageLatency() {
+        return numLatencies == 0 ? 0 : (int)(latencySum/numLatencies);
+    }
+
+    /**
+     * Returns a percentile of the command latencies.
+     * @param percent the percentile in the range 0..100
+     * @return the latency in milliseconds or <code>0</code> if no commands
+     *         were acknowledged
+     */
+    public synchronized int getLatency(final int percent) {
+        if (numLatencies == 0) {
+            return 0;
+        }
+
+        final int[] tmp = Arrays.copyOf(latencies, numLatencies);
+        Arrays.sort(tmp);
+        return tmp[Math.min(numLatencies-1, (int)((long)numLatencies*percent/100))];
+    }
+
+    /**
+     * Returns the time the sessions were connected.
+     * @return the time in milliseconds
+     */
+    public synchronized long getConnectedTime() {
+        return connectedTime+(connectTime == 0 ? 0 : System.currentTimeMillis()-connectTime);
+    }
+
+    /**
+     * Formats the statistics as a single line.
+     * @param sb the string builder to append to
+     * @param time the time in milliseconds to compute throughput for
+     */
+    public synchronized void format(@NotNull final StringBuilder sb, final long time) {
+        final long seconds = Math.max(1, time/1000);
+        sb.append("commands=").append(numLatencies);
+        sb.append(" latency avg/p50/p95/max=").append(getAverageLatency()).append('/').append(getLatency(50)).append('/').append(getLatency(95)).append('/').append(getLatency(100)).append("ms");
+        sb.append(" timeouts=").append(timeouts);
+        sb.append(" failures=").append(failures);
+        sb.append(" recv=").append(packetsReceived).append("p/").append(bytesReceived/1024).append("kB (").append(bytesReceived/1024/seconds).append("kB/s)");
+        sb.append(" sent=").append(packetsSent).append("p/").append(bytesSent/1024).append("kB (").append(bytesSent/1024/seconds).append("kB/s)");
+    }
+
+}
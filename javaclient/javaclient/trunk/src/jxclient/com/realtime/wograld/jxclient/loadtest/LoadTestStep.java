@@ -0,0 +1,113 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.loadtest;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * One step of a {@link LoadTestScript}.
+ * @author Andreas Kirschbaum
+ */
+public class LoadTestStep {
+
+    /**
+     * The step type.
+     */
+    @NotNull
+    private final LoadTestStepType type;
+
+    /**
+     * The first argument: the account name for {@link LoadTestStepType#LOGIN},
+     * the character name for {@link LoadTestStepType#PLAY}, or the command
+     * for {@link LoadTestStepType#COMMAND}.
+     */
+    @NotNull
+    private final String argument;
+
+    /**
+     * The second argument: the password for {@link LoadTestStepType#LOGIN}.
+     */
+    @NotNull
+    private final String argument2;
+
+    /**
+     * The numeric argument: the milliseconds for {@link
+     * LoadTestStepType#WAIT}, the repeat count for {@link
+     * LoadTestStepType#LOOP}, or the index of the matching {@link
+     * LoadTestStepType#LOOP} step for {@link LoadTestStepType#END}.
+     */
+    private final int value;
+
+    /**
+     * Creates a new instance.
+     * @param type the step type
+     * @param argument the first argument
+     * @param argument2 the second argument
+     * @param value the numeric argument
+     */
+    public LoadTestStep(@NotNull final LoadTestStepType type, @NotNull final String argument, @NotNull final String argument2, final int value) {
+        this.type = type;
+        this.argument = argument;
+        this.argument2 = argument2;
+        this.value = value;
+    }
+
+    /**
+     * Returns the step type.
+     * @return the step type
+     */
+    @NotNull
+    public LoadTestStepType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the first argument with all occurrences of "%d" replaced by a
+     * session number.
+     * @param session the session number
+     * @return the first argument
+     */
+    @NotNull
+    public String getArgument(final int session) {
+        return argument.replace("%d", Integer.toString(session));
+    }
+
+    /**
+     * Returns the second argument with all occurrences of "%d" replaced by a
+     * session number.
+     * @param session the session number
+     * @return the second argument
+     */
+    @NotNull
+    public String getArgument2(final int session) {
+        return argument2.replace("%d", Integer.toString(session));
+    }
+
+    /**
+     * Returns the numeric argument.
+     * @return the numeric argument
+     */
+    public int getValue() {
+        return value;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.loadtest;
+
+/**
+ * The types of {@link LoadTestStep LoadTestSteps}.
+ * @author Andreas Kirschbaum
+ */
+public enum LoadTestStepType {
+
+    /**
+     * Log into an account and wait for the character list.
+     */
+    LOGIN,
+
+    /**
+     * Select a character and wait until playing.
+     */
+    PLAY,
+
+    /**
+     * Send a command and wait for its acknowledgement.
+     */
+    COMMAND,
+
+    /**
+     * Wait for some time.
+     */
+    WAIT,
+
+    /**
+     * Start of a repeated block.
+     */
+    LOOP,
+
+    /**
+     * End of a repeated block.
+     */
+    END
+
+}
@@ -0,0 +1,317 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.main;
+
+import com.realtime.wograld.jxclient.faces.Face;
+import com.realtime.wograld.jxclient.faces.FaceImages;
+import com.realtime.wograld.jxclient.faces.FaceQueueListener;
+import com.realtime.wograld.jxclient.faces.FacesQueue;
+import com.realtime.wograld.jxclient.guistate.GuiStateListener;
+import com.realtime.wograld.jxclient.guistate.GuiStateManager;
+import com.realtime.wograld.jxclient.server.socket.ClientSocketState;
+import com.realtime.wograld.jxclient.settings.Filenames;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Records the faces used on a server and preloads them when connecting to
+ * the same server again. The faces are stored in a per-server file, most
+ * recently used first.
+ * @author Andreas Kirschbaum
+ */
+public class FacesPreloader {
+
+    /**
+     * The maximum number of faces to record per server.
+     */
+    private static final int MAX_FACES = 2048;
+
+    /**
+     * The {@link Pattern} for splitting lines of the face usage file.
+     */
+    @NotNull
+    private static final Pattern PATTERN = Pattern.compile(" ", Pattern.LITERAL);
+
+    /**
+     * The object used for synchronization.
+     */
+    @NotNull
+    private final Object sync = new Object();
+
+    /**
+     * The {@link FacesQueue} to preload faces into.
+     */
+    @NotNull
+    private final FacesQueue facesQueue;
+
+    /**
+     * The server currently connected to or <code>null</code> if not
+     * connected.
+     */
+    @Nullable
+    private String serverInfo = null;
+
+    /**
+     * The faces used on {@link #serverInfo}. Maps face name and checksum to
+     * face; the least recently used face is the first entry.
+     */
+    @NotNull
+    private final Map<String, Face> usedFaces = new LinkedHashMap<String, Face>(16, 0.75F, true) {
+
+        /**
+         * The serial version UID.
+         */
+        private static final long serialVersionUID = 1;
+
+        @Override
+        protected boolean removeEldestEntry(@NotNull final Map.Entry<String, Face> eldest) {
+            return size() > MAX_FACES;
+        }
+
+    };
+
+    /**
+     * The {@link GuiStateListener} to track connections to servers.
+     */
+    @NotNull
+    private final GuiStateListener guiStateListener = new GuiStateListener() {
+
+        @Override
+        public void start() {
+            setServer(null);
+        }
+
+        @Override
+        public void metaserver() {
+            setServer(null);
+        }
+
+        @Override
+        public void preConnecting(@NotNull final String serverInfo) {
+            // ignore
+        }
+
+        @Override
+        public void connecting(@NotNull final String serverInfo) {
+            setServer(serverInfo);
+        }
+
+        @Override
+        public void connecting(@NotNull final ClientSocketState clientSocketState) {
+            // ignore
+        }
+
+        @Override
+        public void connected() {
+            // ignore
+        }
+
+        @Override
+        public void connectFailed(@NotNull final String reason) {
+            // ignore
+        }
+
+    };
+
+    /**
+     * The {@link FaceQueueListener} to record used faces.
+     */
+    @NotNull
+    private final FaceQueueListener faceQueueListener = new FaceQueueListener() {
+
+        @Override
+        public void faceLoaded(@NotNull final Face face, @NotNull final FaceImages faceImages) {
+            synchronized (sync) {
+                if (serverInfo != null) {
+                    usedFaces.put(face.getFaceChecksum()+" "+face.getFaceName(), face);
+                }
+            }
+        }
+
+        @Override
+        public void faceFailed(@NotNull final Face face) {
+            // ignore
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param guiStateManager the gui state manager to track
+     * @param facesQueue the faces queue to record and preload faces
+     */
+    public FacesPreloader(@NotNull final GuiStateManager guiStateManager, @NotNull final FacesQueue facesQueue) {
+        this.facesQueue = facesQueue;
+        guiStateManager.addGuiStateListener(guiStateListener);
+        facesQueue.addFaceQueueListener(faceQueueListener);
+    }
+
+    /**
+     * Saves the faces used on the current server.
+     */
+    public void save() {
+        final String tmpServerInfo;
+        final List<Face> faces;
+        synchronized (sync) {
+            tmpServerInfo = serverInfo;
+            faces = new ArrayList<Face>(usedFaces.values());
+        }
+        if (tmpServerInfo == null) {
+            return;
+        }
+
+        final File file;
+        try {
+            file = Filenames.getFaceUsageFile(tmpServerInfo);
+        } catch (final IOException ex) {
+            System.err.println(tmpServerInfo+": "+ex.getMessage());
+            return;
+        }
+
+        try {
+            final FileOutputStream fos = new FileOutputStream(file);
+            try {
+                final OutputStreamWriter osw = new OutputStreamWriter(fos, "UTF-8");
+                try {
+                    final BufferedWriter bw = new BufferedWriter(osw);
+                    try {
+                        for (int i = faces.size()-1; i >= 0; i--) {
+                            final Face face = faces.get(i);
+                            bw.write(Integer.toString(face.getFaceChecksum()));
+                            bw.write(" ");
+                            bw.write(face.getFaceName());
+                            bw.newLine();
+                        }
+                    } finally {
+                        bw.close();
+                    }
+                } finally {
+                    osw.close();
+                }
+            } finally {
+                fos.close();
+            }
+        } catch (final IOException ex) {
+            System.err.println(file+": "+ex.getMessage());
+        }
+    }
+
+    /**
+     * Updates the server currently connected to. Saves the faces used on the
+     * previous server and preloads the faces used on the new server.
+     * @param serverInfo the new server or <code>null</code> if not connected
+     */
+    private void setServer(@Nullable final String serverInfo) {
+        synchronized (sync) {
+            if (this.serverInfo == null ? serverInfo == null : this.serverInfo.equals(serverInfo)) {
+                return;
+            }
+        }
+
+        save();
+        final List<Face> faces = serverInfo == null ? new ArrayList<Face>() : load(serverInfo);
+        synchronized (sync) {
+            this.serverInfo = serverInfo;
+            usedFaces.clear();
+            for (int i = faces.size()-1; i >= 0; i--) {
+                final Face face = faces.get(i);
+                usedFaces.put(face.getFaceChecksum()+" "+face.getFaceName(), face);
+            }
+        }
+        facesQueue.preload(faces);
+    }
+
+    /**
+     * Loads the faces used on a server.
+     * @param serverInfo the server
+     * @return the faces, most recently used first
+     */
+    @NotNull
+    private static List<Face> load(@NotNull final String serverInfo) {
+        final List<Face> faces = new ArrayList<Face>();
+        final File file;
+        try {
+            file = Filenames.getFaceUsageFile(serverInfo);
+        } catch (final IOException ex) {
+            System.err.println(serverInfo+": "+ex.getMessage());
+            return faces;
+        }
+
+        try {
+            final FileInputStream fis = new FileInputStream(file);
+            try {
+                final InputStreamReader isr = new InputStreamReader(fis, "UTF-8");
+                try {
+                    final BufferedReader br = new BufferedReader(isr);
+                    try {
+                        while (faces.size() < MAX_FACES) {
+                            final String line = br.readLine();
+                            if (line == null) {
+                                break;
+                            }
+
+                            final String[] tmp = PATTERN.split(line, 2);
+                            if (tmp.length != 2) {
+                                throw new IOException("syntax error: "+line);
+                            }
+
+                            final int faceChecksum;
+                            try {
+                                faceChecksum = Integer.parseInt(tmp[0]);
+                            } catch (final NumberFormatException ex) {
+                                throw new IOException("syntax error: "+line, ex);
+                            }
+
+                            faces.add(new Face(0, tmp[1], faceChecksum));
+                        }
+                    } finally {
+                        br.close();
+                    }
+                } finally {
+                    isr.close();
+                }
+            } finally {
+                fis.close();
+            }
+        } catch (final FileNotFoundException ignored) {
+            // ignore
+        } catch (final IOException ex) {
+            System.err.println(file+": "+ex.getMessage());
+        }
+        return faces;
+    }
+
+}
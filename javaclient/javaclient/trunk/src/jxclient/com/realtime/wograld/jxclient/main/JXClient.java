@@ -29,6 +29,7 @@ import com.realtime.wograld.jxclient.commands.ClearCommand;
 import com.realtime.wograld.jxclient.commands.Commands;
 import com.realtime.wograld.jxclient.commands.DebugMessagesCommand;
 import com.realtime.wograld.jxclient.commands.ExecCommand;
+import com.realtime.wograld.jxclient.commands.HistoryCommand;
 import com.realtime.wograld.jxclient.commands.Macros;
 import com.realtime.wograld.jxclient.commands.ScreenshotCommand;
 import com.realtime.wograld.jxclient.commands.ScriptCommand;
@@ -39,10 +40,14 @@ import com.realtime.wograld.jxclient.commands.ScripttellCommand;
 import com.realtime.wograld.jxclient.commands.SetCommand;
 import com.realtime.wograld.jxclient.commands.UnbindCommand;
 import com.realtime.wograld.jxclient.faces.DefaultFacesManager;
+import com.realtime.wograld.jxclient.faces.FaceAtlas;
 import com.realtime.wograld.jxclient.faces.FaceCache;
+import com.realtime.wograld.jxclient.faces.FaceImagesPool;
 import com.realtime.wograld.jxclient.faces.FacesManager;
 import com.realtime.wograld.jxclient.faces.FacesQueue;
 import com.realtime.wograld.jxclient.faces.FileCache;
+import com.realtime.wograld.jxclient.faces.ImageCache;
+import com.realtime.wograld.jxclient.faces.PackedFileCache;
 import com.realtime.wograld.jxclient.faces.SmoothFaces;
 import com.realtime.wograld.jxclient.gui.commands.GUICommandFactory;
 import com.realtime.wograld.jxclient.gui.commands.ScreenshotFiles;
@@ -53,6 +58,7 @@ import com.realtime.wograld.jxclient.gui.gui.TooltipManager;
 import com.realtime.wograld.jxclient.gui.keybindings.KeyBindings;
 import com.realtime.wograld.jxclient.guistate.GuiState;
 import com.realtime.wograld.jxclient.guistate.GuiStateManager;
+import com.realtime.wograld.jxclient.history.MessageHistory;
 import com.realtime.wograld.jxclient.items.FloorView;
 import com.realtime.wograld.jxclient.items.InventoryComparator;
 import com.realtime.wograld.jxclient.items.InventoryView;
@@ -60,6 +66,8 @@ import com.realtime.wograld.jxclient.items.ItemSet;
 import com.realtime.wograld.jxclient.items.ItemsManager;
 import com.realtime.wograld.jxclient.items.QuestsView;
 import com.realtime.wograld.jxclient.items.SpellsView;
+import com.realtime.wograld.jxclient.loadtest.LoadTest;
+import com.realtime.wograld.jxclient.loadtest.LoadTestScript;
 import com.realtime.wograld.jxclient.mapupdater.CfMapUpdater;
 import com.realtime.wograld.jxclient.mapupdater.MapUpdaterState;
 import com.realtime.wograld.jxclient.metaserver.Metaserver;
@@ -89,14 +97,18 @@ import com.realtime.wograld.jxclient.stats.ExperienceTable;
 import com.realtime.wograld.jxclient.stats.PoisonWatcher;
 import com.realtime.wograld.jxclient.stats.Stats;
 import com.realtime.wograld.jxclient.util.DebugWriter;
+import com.realtime.wograld.jxclient.util.NumberParser;
 import com.realtime.wograld.jxclient.window.GuiManager;
 import com.realtime.wograld.jxclient.window.JXCConnection;
 import com.realtime.wograld.jxclient.window.KeyHandler;
 import com.realtime.wograld.jxclient.window.KeybindingsManager;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.util.MissingResourceException;
@@ -134,10 +146,55 @@ public class JXClient {
         System.out.println("This software is placed under the GPL License");
         final Options options = new Options();
         options.parse(args);
+        final String loadTestScript = options.getLoadTestScript();
+        if (loadTestScript != null) {
+            System.exit(runLoadTest(options, loadTestScript, buildNumber) ? 0 : 1);
+        }
         //noinspection InstantiationOfUtilityClass
         new JXClient(options, buildNumber);
     }
 
+    /**
+     * Runs a load test without a GUI.
+     * @param options the options
+     * @param loadTestScript the load test script to run
+     * @param buildNumber the client's build number
+     * @return whether all sessions have succeeded
+     */
+    private static boolean runLoadTest(@NotNull final Options options, @NotNull final String loadTestScript, @NotNull final String buildNumber) {
+        System.setProperty("java.awt.headless", "true");
+        final String serverInfo = options.getServer();
+        if (serverInfo == null) {
+            System.err.println("--load-test requires --server");
+            return false;
+        }
+        final String[] tmp = serverInfo.split(":", 2);
+        final int port = tmp.length < 2 ? JXCConnection.DEFAULT_WOGRALD_PORT : NumberParser.parseInt(tmp[1], JXCConnection.DEFAULT_WOGRALD_PORT, 1, 65535);
+
+        final LoadTestScript script;
+        try {
+            final Reader reader = new InputStreamReader(new FileInputStream(loadTestScript), "UTF-8");
+            try {
+                script = LoadTestScript.parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException ex) {
+            System.err.println(loadTestScript+": "+ex.getMessage());
+            return false;
+        }
+
+        final LoadTest loadTest = new LoadTest(script, tmp[0], port, options.getLoadTestSessions(), options.getLoadTestRampUp()*1000L, "JXClient "+buildNumber, System.out);
+        try {
+            return loadTest.run();
+        } catch (final IOException ex) {
+            System.err.println("load test failed: "+ex.getMessage());
+            return false;
+        } catch (final InterruptedException ignored) {
+            return false;
+        }
+    }
+
     /**
      * Returns the build number as a string.
      * @return the build number
@@ -177,8 +234,11 @@ public class JXClient {
                             final CharacterModel characterModel = new CharacterModel();
                             
                          //   final WograldServerConnection server = new DefaultWograldServerConnection(debugProtocolOutputStreamWriter == null ? null : new DebugWriter(debugProtocolOutputStreamWriter), "JXClient "+buildNumber);
-                           JOrbisPlayer player=new JOrbisPlayer();  
-                            final WograldServerConnection server = new DefaultWograldServerConnection(debugProtocolOutputStreamWriter == null ? null : new DebugWriter(debugProtocolOutputStreamWriter), "JXClient "+buildNumber, player );
+                           final JOrbisPlayer player = options.isMusicPipeline() ? null : new JOrbisPlayer();  
+                            final DefaultWograldServerConnection defaultWograldServerConnection = new DefaultWograldServerConnection(debugProtocolOutputStreamWriter == null ? null : new DebugWriter(debugProtocolOutputStreamWriter), "JXClient "+buildNumber, player );
+                            final MessageHistory messageHistory = options.isMessageHistory() ? openMessageHistory() : null;
+                            defaultWograldServerConnection.setMessageHistory(messageHistory);
+                            final WograldServerConnection server = defaultWograldServerConnection;
                             
                             server.start();
                             try {
@@ -187,15 +247,16 @@ public class JXClient {
                                 final SkillSet skillSet = new SkillSet(server, guiStateManager);
                                 final Stats stats = new Stats(server, experienceTable, skillSet, guiStateManager);
                                 final FaceCache faceCache = new FaceCache(server);
-                                final FacesQueue facesQueue = new FacesQueue(server, new FileCache(Filenames.getOriginalImageCacheDir()), new FileCache(Filenames.getScaledImageCacheDir()), new FileCache(Filenames.getMagicMapImageCacheDir()));
-                                final FacesManager facesManager = new DefaultFacesManager(faceCache, facesQueue);
+                                final FacesQueue facesQueue = new FacesQueue(server, newImageCache(Filenames.getOriginalImageCacheDir()), newImageCache(Filenames.getScaledImageCacheDir()), newImageCache(Filenames.getMagicMapImageCacheDir()));
+                                final FacesManager facesManager = new DefaultFacesManager(faceCache, facesQueue, new FaceImagesPool(options.isFaceAtlas() ? new FaceAtlas() : null));
+                                final FacesPreloader facesPreloader = new FacesPreloader(guiStateManager, facesQueue);
                                 final ItemSet itemSet = new ItemSet();
                                 final InventoryView inventoryView = new InventoryView(itemSet, new InventoryComparator());
                                 final FloorView floorView = new FloorView(itemSet);
                                 new ItemsManager(server, facesManager, stats, skillSet, guiStateManager, itemSet);
                                 final Metaserver metaserver = new Metaserver(Filenames.getMetaserverCacheFile(), metaserverModel);
                                 new MetaserverProcessor(metaserver, guiStateManager);
-                                final SoundManager soundManager = new SoundManager(guiStateManager, debugSoundOutputStreamWriter == null ? null : new DebugWriter(debugSoundOutputStreamWriter));
+                                final SoundManager soundManager = new SoundManager(guiStateManager, options.isSoftwareMixer(), options.isMusicPipeline(), debugSoundOutputStreamWriter == null ? null : new DebugWriter(debugSoundOutputStreamWriter));
                                 try {
                                     optionManager.addOption("sound_enabled", "Whether sound is enabled.", new SoundCheckBoxOption(soundManager));
                                 } catch (final OptionException ex) {
@@ -217,6 +278,7 @@ public class JXClient {
                                 final QuestsManager questsManager = new QuestsManager(server, guiStateManager);
                                 final QuestsView questsView = new QuestsView(questsManager, facesManager);
                                 final CommandQueue commandQueue = new CommandQueue(server, guiStateManager);
+                                commandQueue.setAdaptive(options.isAdaptiveCommands());
                                 final ScriptManager scriptManager = new ScriptManager(commandQueue, server, stats, floorView, itemSet, spellsManager, mapUpdaterState, skillSet);
                                 final Shortcuts shortcuts = new Shortcuts(commandQueue, spellsManager);
 
@@ -251,6 +313,9 @@ public class JXClient {
                                         commands.addCommand(new SetCommand(server, optionManager));
                                         commands.addCommand(new ClearCommand(windowRenderer, server));
                                         commands.addCommand(new DebugMessagesCommand(server));
+                                        if (messageHistory != null) {
+                                            commands.addCommand(new HistoryCommand(messageHistory, server));
+                                        }
                                         final File keybindingsFile;
                                         try {
                                             keybindingsFile = Filenames.getKeybindingsFile(null, null);
@@ -265,7 +330,7 @@ public class JXClient {
                                         final GuiManager guiManager = new GuiManager(guiStateManager, tooltipManager, settings, server, windowRenderer, guiFactory, keybindingsManager, connection);
                                         commandCallback.init(guiManager);
                                         final KeyBindings defaultKeyBindings = new KeyBindings(null, guiCommandFactory);
-                                        final JXCSkinLoader jxcSkinLoader = new JXCSkinLoader(itemSet, inventoryView, floorView, spellsView, spellsManager, facesManager, stats, mapUpdaterState, defaultKeyBindings, optionManager, experienceTable, skillSet, options.getTileSize(), keybindingsManager, questsManager, questsView);
+                                        final JXCSkinLoader jxcSkinLoader = new JXCSkinLoader(itemSet, inventoryView, floorView, spellsView, spellsManager, facesManager, stats, mapUpdaterState, defaultKeyBindings, optionManager, experienceTable, skillSet, options.getTileSize(), options.isAcceleratedMap(), keybindingsManager, questsManager, questsView);
                                         final SmoothFaces smoothFaces = new SmoothFaces(server);
                                         final SkinLoader skinLoader = new SkinLoader(commandCallback, metaserverModel, options.getResolution(), macros, windowRenderer, server, guiStateManager, tooltipManager, commandQueue, jxcSkinLoader, commands, shortcuts, characterModel, smoothFaces, guiCommandFactory);
                                         new FacesTracker(guiStateManager, facesManager);
@@ -297,11 +362,15 @@ public class JXClient {
                                     public void run() {
                                         window[0].term();
                                         soundManager.shutdown();
+                                        facesPreloader.save();
                                     }
 
                                 });
                             } finally {
                                 server.stop();
+                                if (messageHistory != null) {
+                                    messageHistory.close();
+                                }
                             }
                         } finally {
                             if (debugSoundOutputStreamWriter != null) {
@@ -371,4 +440,30 @@ public class JXClient {
         return writer;
     }
 
+    /**
+     * Opens the {@link MessageHistory}.
+     * @return the message history or <code>null</code> if it cannot be opened
+     */
+    @Nullable
+    private static MessageHistory openMessageHistory() {
+        try {
+            return new MessageHistory(Filenames.getMessageHistoryDir());
+        } catch (final IOException ex) {
+            System.err.println("Cannot open message history: "+ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates the {@link ImageCache} for a cache directory. Images are stored
+     * in a {@link PackedFileCache}; images cached by previous versions are
+     * taken over from the per-image files of a {@link FileCache}.
+     * @param cacheDir the cache directory
+     * @return the image cache
+     */
+    @NotNull
+    private static ImageCache newImageCache(@NotNull final File cacheDir) {
+        return new PackedFileCache(cacheDir, new FileCache(cacheDir));
+    }
+
 }
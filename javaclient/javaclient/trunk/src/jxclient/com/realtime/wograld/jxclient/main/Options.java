@@ -22,6 +22,7 @@
 package com.realtime.wograld.jxclient.main;
 
 import com.realtime.wograld.jxclient.settings.Settings;
+import com.realtime.wograld.jxclient.util.NumberParser;
 import com.realtime.wograld.jxclient.util.Resolution;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -104,6 +105,54 @@ public class Options {
      */
     private int tileSize = DEFAULT_TILE_SIZE;
 
+    /**
+     * Whether the map view should use an accelerated back buffer.
+     */
+    private boolean acceleratedMap = false;
+
+    /**
+     * Whether face images should be packed into shared images.
+     */
+    private boolean faceAtlas = false;
+
+    /**
+     * Whether the number of pending commands should adapt to the connection.
+     */
+    private boolean adaptiveCommands = false;
+
+    /**
+     * Whether sound effects should be mixed into a single line.
+     */
+    private boolean softwareMixer = false;
+
+    /**
+     * Whether background music should be played through the music pipeline.
+     */
+    private boolean musicPipeline = false;
+
+    /**
+     * Whether received text messages should be recorded in the message
+     * history.
+     */
+    private boolean messageHistory = false;
+
+    /**
+     * The load test script to run instead of the GUI or <code>null</code> to
+     * start the GUI.
+     */
+    @Nullable
+    private String loadTestScript = null;
+
+    /**
+     * The number of simulated sessions of a load test.
+     */
+    private int loadTestSessions = 100;
+
+    /**
+     * The time in seconds over which load test sessions are started.
+     */
+    private int loadTestRampUp = 10;
+
     /**
      * The default skin name.
      */
@@ -141,6 +190,34 @@ public class Options {
                 fullScreen = false;
             } else if (args[i].equals("--opengl")) {
                 System.setProperty("sun.java2d.opengl", "True");
+            } else if (args[i].equals("--accelerated-map")) {
+                acceleratedMap = true;
+            } else if (args[i].equals("--face-atlas")) {
+                faceAtlas = true;
+            } else if (args[i].equals("--adaptive-commands")) {
+                adaptiveCommands = true;
+            } else if (args[i].equals("--software-mixer")) {
+                softwareMixer = true;
+            } else if (args[i].equals("--music-pipeline")) {
+                musicPipeline = true;
+            } else if (args[i].equals("--message-history")) {
+                messageHistory = true;
+            } else if (args[i].equals("--load-test") && i+1 < args.length) {
+                loadTestScript = args[++i];
+            } else if (args[i].equals("--sessions") && i+1 < args.length) {
+                final String tmp = args[++i];
+                loadTestSessions = NumberParser.parseInt(tmp, 0, 1, Integer.MAX_VALUE);
+                if (loadTestSessions < 1) {
+                    System.err.println("Invalid number of sessions: "+tmp);
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--ramp-up") && i+1 < args.length) {
+                final String tmp = args[++i];
+                loadTestRampUp = NumberParser.parseInt(tmp, -1, 0, Integer.MAX_VALUE);
+                if (loadTestRampUp < 0) {
+                    System.err.println("Invalid ramp-up time: "+tmp);
+                    System.exit(1);
+                }
             } else if (args[i].equals("--server") && i+1 < args.length) {
                 server = args[++i];
             } else if (args[i].equals("--debug-gui")) {
@@ -179,8 +256,27 @@ public class Options {
                 System.out.println(" -s <skin>      : Skin name to use.");
                 System.out.println(" --tile-size <n>: The size of map view tiles in pixels.");
                 System.out.println(" --opengl       : Enable the OpenGL rendering pipeline.");
+                System.out.println(" --accelerated-map");
+                System.out.println("                : Render the map view into video memory if possible.");
+                System.out.println(" --face-atlas   : Pack face images into large shared images.");
+                System.out.println(" --adaptive-commands");
+                System.out.println("                : Adapt the number of pending commands to the server's");
+                System.out.println("                  round-trip and action times.");
+                System.out.println(" --software-mixer");
+                System.out.println("                : Mix all sound effects into a single audio line.");
+                System.out.println(" --music-pipeline");
+                System.out.println("                : Decode background music ahead of playing it.");
+                System.out.println(" --message-history");
+                System.out.println("                : Record received text messages; search them with the");
+                System.out.println("                  \"history\" command.");
                 System.out.println(" --server <host>: Select a server to connect to; skips main and metaserver");
                 System.out.println("                  windows.");
+                System.out.println(" --load-test <script>");
+                System.out.println("                : Run simulated sessions executing <script> against the");
+                System.out.println("                  server given by --server instead of starting the GUI.");
+                System.out.println(" --sessions <n> : The number of simulated sessions. [default is 100]");
+                System.out.println(" --ramp-up <s>  : The time in seconds over which sessions are started.");
+                System.out.println("                  [default is 10]");
                 System.out.println(" --debug-gui    : Enable debugging of GUI elements.");
                 System.out.println(" --debug-keyboard <log-file>");
                 System.out.println("                : Log keyboard input.");
@@ -275,6 +371,57 @@ public class Options {
         return tileSize;
     }
 
+    /**
+     * Returns whether the map view should use an accelerated back buffer.
+     * @return whether the map view should be accelerated
+     */
+    public boolean isAcceleratedMap() {
+        return acceleratedMap;
+    }
+
+    /**
+     * Returns whether face images should be packed into shared images.
+     * @return whether face images should be packed
+     */
+    public boolean isFaceAtlas() {
+        return faceAtlas;
+    }
+
+    /**
+     * Returns whether the number of pending commands should adapt to the
+     * connection.
+     * @return whether the number of pending commands should adapt
+     */
+    public boolean isAdaptiveCommands() {
+        return adaptiveCommands;
+    }
+
+    /**
+     * Returns whether sound effects should be mixed into a single line.
+     * @return whether sound effects should be mixed
+     */
+    public boolean isSoftwareMixer() {
+        return softwareMixer;
+    }
+
+    /**
+     * Returns whether background music should be played through the music
+     * pipeline.
+     * @return whether the music pipeline should be used
+     */
+    public boolean isMusicPipeline() {
+        return musicPipeline;
+    }
+
+    /**
+     * Returns whether received text messages should be recorded in the
+     * message history.
+     * @return whether the message history should be used
+     */
+    public boolean isMessageHistory() {
+        return messageHistory;
+    }
+
     /**
      * Returns whether full-screen mode should be enabled.
      * @return whether full-screen mode should be enabled
@@ -292,4 +439,29 @@ public class Options {
         return server;
     }
 
+    /**
+     * Returns the load test script to run.
+     * @return the load test script or <code>null</code> to start the GUI
+     */
+    @Nullable
+    public String getLoadTestScript() {
+        return loadTestScript;
+    }
+
+    /**
+     * Returns the number of simulated sessions of a load test.
+     * @return the number of sessions
+     */
+    public int getLoadTestSessions() {
+        return loadTestSessions;
+    }
+
+    /**
+     * Returns the time over which load test sessions are started.
+     * @return the time in seconds
+     */
+    public int getLoadTestRampUp() {
+        return loadTestRampUp;
+    }
+
 }
@@ -36,8 +36,10 @@ import com.realtime.wograld.jxclient.guistate.GuiStateManager;
 import com.realtime.wograld.jxclient.metaserver.MetaserverModel;
 import com.realtime.wograld.jxclient.queue.CommandQueue;
 import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
+import com.realtime.wograld.jxclient.settings.Filenames;
 import com.realtime.wograld.jxclient.shortcuts.Shortcuts;
 import com.realtime.wograld.jxclient.skin.io.JXCSkinLoader;
+import com.realtime.wograld.jxclient.skin.io.SkinImageCache;
 import com.realtime.wograld.jxclient.skin.skin.JXCSkin;
 import com.realtime.wograld.jxclient.skin.skin.JXCSkinException;
 import com.realtime.wograld.jxclient.skin.source.JXCSkinClassSource;
@@ -215,7 +217,9 @@ public class SkinLoader {
 
         };
 
-        final JXCSkin skin = skinLoader.load(skinSource, server, guiStateManager, tooltipManager, windowRenderer, elementListener, metaserverModel, characterModel, commandQueue, shortcuts, commands, currentSpellManager, commandCallback, macros, guiFactory, smoothFaces);
+        final File imageCacheFile = Filenames.getSkinImageCacheFile(skinName);
+        final SkinImageCache imageCache = imageCacheFile == null ? null : new SkinImageCache(imageCacheFile);
+        final JXCSkin skin = skinLoader.load(skinSource, server, guiStateManager, tooltipManager, windowRenderer, elementListener, metaserverModel, characterModel, commandQueue, shortcuts, commands, currentSpellManager, commandCallback, macros, guiFactory, smoothFaces, imageCache);
         if (resolution != null) {
             if (skin.getMinResolution().getWidth() > resolution.getWidth() || skin.getMinResolution().getHeight() > resolution.getHeight()) {
                 throw new JXCSkinException("resolution "+resolution+" is not supported by this skin");
@@ -24,9 +24,12 @@ package com.realtime.wograld.jxclient.map;
 import com.realtime.wograld.jxclient.faces.Face;
 import com.realtime.wograld.jxclient.server.wograld.WograldUpdateMapListener;
 import com.realtime.wograld.jxclient.server.wograld.messages.Map2;
+import com.realtime.wograld.jxclient.util.MathUtils;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.jetbrains.annotations.NotNull;
@@ -36,8 +39,12 @@ import org.jetbrains.annotations.Nullable;
  * Represents a map (as seen by the client). A map is a grid in which {@link
  * CfMapSquare CfMapSquares} can be stored.
  * <p/>
- * The map will be automatically enlarged by accesses to new squares. Not yet
- * set squares are considered dark.
+ * The squares are stored in {@link CfMapPatch CfMapPatches} which are
+ * addressed as a ring buffer: a patch occupies the slot given by its patch
+ * coordinates modulo the ring size. Scrolling the map only changes an offset;
+ * patches which fall out of range are re-used for newly accessed areas. The
+ * ring is enlarged if two patches near the visible area would share a slot.
+ * Not yet set squares are considered dark.
  * <p/>
  * All accesses must be synchronized on the map instance.
  * @author Andreas Kirschbaum
@@ -45,44 +52,14 @@ import org.jetbrains.annotations.Nullable;
 public class CfMap {
 
     /**
-     * The left edge of the defined tiles.
+     * The width of the visible map area.
      */
-    private int minX = 0;
+    private int mapWidth = 0;
 
     /**
-     * The right edge of the defined tiles.
+     * The height of the visible map area.
      */
-    private int maxX = -1;
-
-    /**
-     * The top edge of the defined tiles.
-     */
-    private int minY = 0;
-
-    /**
-     * The bottom edge of the defined tiles.
-     */
-    private int maxY = -1;
-
-    /**
-     * The left edge of the defined patches in {@link #patch}.
-     */
-    private int minPx = 0;
-
-    /**
-     * The right edge of the defined patches in {@link #patch}.
-     */
-    private int maxPx = -1;
-
-    /**
-     * The top edge of the defined patches in {@link #patch}.
-     */
-    private int minPy = 0;
-
-    /**
-     * The bottom edge of the defined patches in {@link #patch}.
-     */
-    private int maxPy = -1;
+    private int mapHeight = 0;
 
     /**
      * Result values for {@link #getMapPatch(int, int)} and {@link
@@ -108,16 +85,19 @@ public class CfMap {
 
 
     /**
-     * Array of (possibly) defined squares.
+     * The ring buffer of (possibly) defined patches. A patch having the patch
+     * coordinates (px, py) is stored at <code>patch[px mod width][py mod
+     * height]</code>. Allocated on first access.
      */
     @Nullable
     private CfMapPatch[][] patch = null;
 
     /**
-     * The "dirty" map squares that have been modified.
+     * The patches containing "dirty" map squares that have been modified. The
+     * dirty squares are tracked by the patches.
      */
     @NotNull
-    private final Set<CfMapSquare> dirtyMapSquares = new HashSet<CfMapSquare>();
+    private final List<CfMapPatch> dirtyPatches = new ArrayList<CfMapPatch>();
 
     /**
      * The map squares containing pending faces. Maps face number to map squares
@@ -132,24 +112,17 @@ public class CfMap {
      * @param mapHeight the height of the visible map area
      */
     public void reset(final int mapWidth, final int mapHeight) {
-        minX = 0;
-        maxX = -1;
-        minY = 0;
-        maxY = -1;
-        minPx = 0;
-        maxPx = -1;
-        minPy = 0;
-        maxPy = -1;
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
         patchX = 0;
         patchY = 0;
         patch = null;
         // added this for interface to drawing code
-        for(CfMapSquare mapsquare1 : dirtyMapSquares){
+        for(CfMapSquare mapsquare1 : getDirtyMapSquares()){
             mapsquare1.finishDraw();
             // actually, cancels draw
             // 03-21-2013 this should now clear the new variables for each square
         }
-        dirtyMapSquares.clear();
         pendingFaceSquares.clear();
 
         // force dirty flags to be set for the visible map region
@@ -350,13 +323,13 @@ public class CfMap {
      * @param face the face to set; may be <code>null</code> to remove the face
      */
     private void setFaceInternal(final int x, final int y, final int layer, @Nullable final Face face) {
-        final CfMapSquare headMapSquare = expandTo(x, y).getSquare(ox, oy);
+        final CfMapPatch headMapPatch = expandTo(x, y);
 
      //   final Face oldFace = headMapSquare.getFace(layer);
       //  if (oldFace != null) {
       //      expandFace(x, y, layer, oldFace, headMapSquare, null);
       //  }
-        headMapSquare.setFace(layer, face);
+        headMapPatch.setFace(ox, oy, layer, face);
       //  if (face != null) {
       //      expandFace(x, y, layer, face, headMapSquare, headMapSquare);
       //  }
@@ -513,8 +486,8 @@ public class CfMap {
     }
 
     /**
-     * Checks if a given position is within the defined map area. <p>Returns
-     * additional information in {@link #ox} and {@link #oy}.
+     * Returns the patch containing a given position if it is defined.
+     * <p>Returns additional information in {@link #ox} and {@link #oy}.
      * @param x the x-coordinate to check
      * @param y the y-coordinate to check
      * @return the map patch or <code>null</code> if the coordinates are out of
@@ -522,34 +495,16 @@ public class CfMap {
      */
     @Nullable
     private CfMapPatch getMapPatch(final int x, final int y) {
-        if (x < minX || x > maxX || y < minY || y > maxY) {
+        if (patch == null) {
             return null;
         }
 
-        final int px = ((x-patchX)>>CfMapPatch.SIZE_LOG)-minPx;
-        final int py = ((y-patchY)>>CfMapPatch.SIZE_LOG)-minPy;
-        assert px >= 0;
-        assert py >= 0;
-        assert px <= maxPx-minPx;
-        assert py <= maxPy-minPy;
+        final int px = (x-patchX)>>CfMapPatch.SIZE_LOG;
+        final int py = (y-patchY)>>CfMapPatch.SIZE_LOG;
         ox = (x-patchX)&(CfMapPatch.SIZE-1);
         oy = (y-patchY)&(CfMapPatch.SIZE-1);
-        assert ox >= 0;
-        assert oy >= 0;
-        assert ox < CfMapPatch.SIZE;
-        assert oy < CfMapPatch.SIZE;
-
-        assert patch != null;
-        assert patch[px] != null;
-        final CfMapPatch mapPatch = patch[px][py];
-        if (mapPatch != null) {
-            return mapPatch;
-        }
-
-        patch[px][py] = new CfMapPatch(this, x-patchX-ox, y-patchY-oy);
-        assert patch != null;
-        assert patch[px] != null;
-        return patch[px][py];
+        final CfMapPatch mapPatch = patch[MathUtils.mod(px, patch.length)][MathUtils.mod(py, patch[0].length)];
+        return mapPatch != null && mapPatch.isAt(px, py) ? mapPatch : null;
     }
 
     /**
@@ -559,194 +514,106 @@ public class CfMap {
      */
     private void scroll(final int dx, final int dy) {
         assert Thread.holdsLock(this);
-        if (dx == 0 && dy == 0) {
-            return;
-        }
-
-        minX += dx;
-        maxX += dx;
-        minY += dy;
-        maxY += dy;
         patchX += dx;
         patchY += dy;
     }
 
     /**
-     * (Possibly) expands the defined area of the map to a given position.
-     * @param x the x-coordinate to expand the defined area to
-     * @param y the y-coordinate to expand the defined area to
-     * @return the map patch or <code>null</code> if the coordinates are out of
-     *         map bounds
+     * Returns the patch containing a given position; creates or re-uses a
+     * patch if necessary. <p>Returns additional information in {@link #ox} and
+     * {@link #oy}.
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return the map patch
      */
     @NotNull
     private CfMapPatch expandTo(final int x, final int y) {
-        if (minX > maxX || minY > maxY) {
-            // current map is undefined ==> start with 1x1 map
-            minX = x;
-            maxX = x;
-            minY = y;
-            maxY = y;
-            minPx = (x-patchX)>>CfMapPatch.SIZE_LOG;
-            maxPx = minPx;
-            minPy = (y-patchY)>>CfMapPatch.SIZE_LOG;
-            maxPy = minPy;
-            patch = new CfMapPatch[1][1];
-            //noinspection AssignmentToNull
-            patch[0][0] = null;
-        } else {
-            if (x < minX) {
-                increase(x-minX, 0);
-            }
-            if (x > maxX) {
-                increase(x-maxX, 0);
-            }
-            if (y < minY) {
-                increase(0, y-minY);
-            }
-            if (y > maxY) {
-                increase(0, y-maxY);
-            }
+        final int px = (x-patchX)>>CfMapPatch.SIZE_LOG;
+        final int py = (y-patchY)>>CfMapPatch.SIZE_LOG;
+        ox = (x-patchX)&(CfMapPatch.SIZE-1);
+        oy = (y-patchY)&(CfMapPatch.SIZE-1);
+        if (patch == null) {
+            patch = new CfMapPatch[getInitialRingSize(mapWidth)][getInitialRingSize(mapHeight)];
         }
 
-        final CfMapPatch result = getMapPatch(x, y);
-        assert result != null;
-        return result;
-    }
-
-    /**
-     * Increases the defined area of the map.
-     * @param dx the increase in x-direction; dx&lt;0 means "expand (-dx) tiles
-     * to the left", dx&gt;0 means "expand (dx) tiles to the right"
-     * @param dy the increase in y-direction; dy&lt;0 means "expand (-dy) tiles
-     * to the top", dy&gt;0 means "expand (dy) tiles to the bottom"
-     */
-    private void increase(final int dx, final int dy) {
-        if (dx < 0) {
-            final int newMinX = minX+dx;
-            final int newMinPx = (newMinX-patchX)>>CfMapPatch.SIZE_LOG;
-            final int diffPw = minPx-newMinPx;
-            if (diffPw == 0) {
-                // new size fits within current patch ==> no change to
-                // <code>patch</code>
-                minX = newMinX;
-            } else {
-                // need to add (diffPw) patches to the left
-
-                assert diffPw > 0;
-
-                final int newPw = size(newMinPx, maxPx);
-                final int newPh = size(minPy, maxPy);
-                assert patch != null;
-                final int oldPw = patch.length;
-                final int oldPh = patch[0].length;
-
-                // new width must be more than old size
-                assert newPw > oldPw;
-                assert newPw == oldPw+diffPw;
-                assert newPh == oldPh;
-
-                minX = newMinX;
-                minPx = newMinPx;
-                patch = copyPatches(newPw, newPh, diffPw, 0, oldPw, oldPh);
+        while (true) {
+            assert patch != null;
+            final int sx = MathUtils.mod(px, patch.length);
+            final int sy = MathUtils.mod(py, patch[0].length);
+            final CfMapPatch mapPatch = patch[sx][sy];
+            if (mapPatch == null) {
+                final CfMapPatch newMapPatch = new CfMapPatch(this, px<<CfMapPatch.SIZE_LOG, py<<CfMapPatch.SIZE_LOG);
+                patch[sx][sy] = newMapPatch;
+                return newMapPatch;
             }
-        } else if (dx > 0) {
-            final int newMaxX = maxX+dx;
-            final int newMaxPx = (newMaxX-patchX)>>CfMapPatch.SIZE_LOG;
-            final int diffPw = newMaxPx-maxPx;
-            if (diffPw == 0) {
-                // new size fits within current patch ==> no change to
-                // <code>patch</code>
-                maxX = newMaxX;
-            } else {
-                // need to add (diffPw) patches to the right
 
-                assert diffPw > 0;
-
-                final int newPw = size(minPx, newMaxPx);
-                final int newPh = size(minPy, maxPy);
-                assert patch != null;
-                final int oldPw = patch.length;
-                final int oldPh = patch[0].length;
-
-                // new width must be more than old size
-                assert newPw > oldPw;
-                assert newPw == oldPw+diffPw;
-                assert newPh == oldPh;
-
-                maxX = newMaxX;
-                maxPx = newMaxPx;
-                patch = copyPatches(newPw, newPh, 0, 0, oldPw, oldPh);
+            if (mapPatch.isAt(px, py)) {
+                return mapPatch;
             }
-        }
-
-        if (dy < 0) {
-            final int newMinY = minY+dy;
-            final int newMinPy = (newMinY-patchY)>>CfMapPatch.SIZE_LOG;
-            final int diffPh = minPy-newMinPy;
-            if (diffPh == 0) {
-                // new size fits within current patch ==> no change to
-                // <code>patch</code>
-                minY = newMinY;
-            } else {
-                // need to add (diffPh) patches to the top
-
-                assert diffPh > 0;
 
-                final int newPw = size(minPx, maxPx);
-                final int newPh = size(newMinPy, maxPy);
-                assert patch != null;
-                final int oldPw = patch.length;
-                final int oldPh = patch[0].length;
-
-                // new height must be more than old size
-                assert newPh > oldPh;
-                assert newPh == oldPh+diffPh;
-                assert newPw == oldPw;
-
-                minY = newMinY;
-                minPy = newMinPy;
-                patch = copyPatches(newPw, newPh, 0, diffPh, oldPw, oldPh);
+            final int oldPx = mapPatch.getX0()>>CfMapPatch.SIZE_LOG;
+            final int oldPy = mapPatch.getY0()>>CfMapPatch.SIZE_LOG;
+            if (getDistance(oldPx, oldPy) > getDistance(px, py)) {
+                // the old patch is farther away from the visible area ==> re-use it
+                if (mapPatch.hasDirtySquares()) {
+                    dirtyPatches.remove(mapPatch);
+                }
+                mapPatch.recycle(px<<CfMapPatch.SIZE_LOG, py<<CfMapPatch.SIZE_LOG);
+                return mapPatch;
             }
-        } else if (dy > 0) {
-            final int newMaxY = maxY+dy;
-            final int newMaxPy = (newMaxY-patchY)>>CfMapPatch.SIZE_LOG;
-            final int diffPh = newMaxPy-maxPy;
-            if (diffPh == 0) {
-                // new size fits within current patch ==> no change to
-                // <code>patch</code>
-                maxY = newMaxY;
-            } else {
-                // need to add (diffPh) patches to the bottom
-
-                assert diffPh > 0;
-
-                final int newPw = size(minPx, maxPx);
-                final int newPh = size(minPy, newMaxPy);
-                assert patch != null;
-                final int oldPw = patch.length;
-                final int oldPh = patch[0].length;
-
-                // new height must be more than old size
-                assert newPh > oldPh;
-                assert newPh == oldPh+diffPh;
-                assert newPw == oldPw;
 
-                maxY = newMaxY;
-                maxPy = newMaxPy;
-                patch = copyPatches(newPw, newPh, 0, 0, oldPw, oldPh);
-            }
+            // both patches are needed ==> enlarge the ring
+            patch = resizeRing(oldPx != px ? 2*patch.length : patch.length, oldPy != py ? 2*patch[0].length : patch[0].length);
         }
     }
 
     /**
-     * Calculates the number of patches needed to hold tiles between two patch
-     * coordinates.
-     * @param min the minimum coordinate
-     * @param max the maximum coordinate
+     * Returns the initial number of patches of the ring for one dimension.
+     * The ring covers the visible map area plus spare patches so that moving
+     * back and forth across a patch border does not re-use patches.
+     * @param size the size of the visible map area in squares
      * @return the number of patches
      */
-    private static int size(final int min, final int max) {
-        return max-min+1;
+    private static int getInitialRingSize(final int size) {
+        return MathUtils.divRoundUp(size, CfMapPatch.SIZE)+3;
+    }
+
+    /**
+     * Returns the distance of a patch from the patch containing the center of
+     * the visible map area.
+     * @param px the x-coordinate of the patch
+     * @param py the y-coordinate of the patch
+     * @return the distance in patches
+     */
+    private int getDistance(final int px, final int py) {
+        final int cx = (mapWidth/2-patchX)>>CfMapPatch.SIZE_LOG;
+        final int cy = (mapHeight/2-patchY)>>CfMapPatch.SIZE_LOG;
+        return Math.max(Math.abs(px-cx), Math.abs(py-cy));
+    }
+
+    /**
+     * Returns a copy of {@link #patch} having a different size. Patch slots
+     * are re-calculated for the new size.
+     * @param newWidth the new width in patches; must be a multiple of the
+     * current width
+     * @param newHeight the new height in patches; must be a multiple of the
+     * current height
+     * @return the new ring
+     */
+    @NotNull
+    private CfMapPatch[][] resizeRing(final int newWidth, final int newHeight) {
+        assert patch != null;
+        final CfMapPatch[][] newPatch = new CfMapPatch[newWidth][newHeight];
+        for (final CfMapPatch[] column : patch) {
+            for (final CfMapPatch mapPatch : column) {
+                if (mapPatch != null) {
+                    final int px = mapPatch.getX0()>>CfMapPatch.SIZE_LOG;
+                    final int py = mapPatch.getY0()>>CfMapPatch.SIZE_LOG;
+                    newPatch[MathUtils.mod(px, newWidth)][MathUtils.mod(py, newHeight)] = mapPatch;
+                }
+            }
+        }
+        return newPatch;
     }
 
     /**
@@ -770,8 +637,8 @@ public class CfMap {
     @Nullable
     public CfMapSquare getMapSquareUnlessDirty(final int x, final int y) {
         assert Thread.holdsLock(this);
-        final CfMapSquare mapSquare = getMapSquare(x, y);
-        return dirtyMapSquares.contains(mapSquare) ? null : mapSquare;
+        final CfMapPatch mapPatch = expandTo(x, y);
+        return mapPatch.isDirty(ox, oy) ? null : mapPatch.getSquare(ox, oy);
     }
 
     /**
@@ -794,35 +661,22 @@ public class CfMap {
         return patchY;
     }
 
-    /**
-     * Returns a copy of a rectangular area of {@link #patch}.
-     * @param newWidth the width of the new area
-     * @param newHeight the height of the new area
-     * @param offsetX the x-offset into the new area
-     * @param offsetY the y-offset into the new area
-     * @param height the height of the area to copy
-     * @param width the width of the area to copy
-     * @return the copy
-     */
-    @NotNull
-    private CfMapPatch[][] copyPatches(final int newWidth, final int newHeight, final int offsetX, final int offsetY, final int height, final int width) {
-        assert patch != null;
-        final CfMapPatch[][] newPatch = new CfMapPatch[newWidth][newHeight];
-        for (int y = 0; y < width; y++) {
-            for (int x = 0; x < height; x++) {
-                newPatch[offsetX+x][offsetY+y] = patch[x][y];
-            }
-        }
-        return newPatch;
-    }
-
     /**
      * Marks a {@link CfMapSquare} as dirty.
      * @param mapSquare the map square
      */
     public void squareModified(@NotNull final CfMapSquare mapSquare) {
         assert Thread.holdsLock(this);
-        dirtyMapSquares.add(mapSquare);
+        mapSquare.squareModified();
+    }
+
+    /**
+     * Records that a {@link CfMapPatch} contains dirty squares. Called by the
+     * patch when its first square becomes dirty.
+     * @param mapPatch the map patch
+     */
+    void patchModified(@NotNull final CfMapPatch mapPatch) {
+        dirtyPatches.add(mapPatch);
     }
 
     /**
@@ -849,8 +703,11 @@ public class CfMap {
     @NotNull
     public Set<CfMapSquare> getDirtyMapSquares() {
         assert Thread.holdsLock(this);
-        final Set<CfMapSquare> result = new HashSet<CfMapSquare>(dirtyMapSquares);
-        dirtyMapSquares.clear();
+        final Set<CfMapSquare> result = new HashSet<CfMapSquare>();
+        for (final CfMapPatch mapPatch : dirtyPatches) {
+            mapPatch.getDirtySquares(result);
+        }
+        dirtyPatches.clear();
         return result;
     }
 
@@ -875,7 +732,9 @@ public class CfMap {
 
         final Collection<CfMapSquare> mapSquares = pendingFaceSquares.remove(faceNum);
         if (mapSquares != null) {
-            dirtyMapSquares.addAll(mapSquares);
+            for (final CfMapSquare mapSquare : mapSquares) {
+                mapSquare.squareModified();
+            }
         }
     }
 
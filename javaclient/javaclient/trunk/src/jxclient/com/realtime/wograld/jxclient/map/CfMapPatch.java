@@ -22,11 +22,17 @@
 package com.realtime.wograld.jxclient.map;
 
 import com.realtime.wograld.jxclient.faces.Face;
+import com.realtime.wograld.jxclient.server.wograld.messages.Map2;
+import java.util.Arrays;
+import java.util.Collection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
- * Represents a square area of {@link CfMapSquare CfMapSquares}.
+ * Represents a square area of {@link CfMapSquare CfMapSquares}. The square
+ * contents are stored in packed arrays indexed by {@link #getIndex(int, int)};
+ * {@link CfMapSquare} instances are light-weight views that are created on
+ * first access.
  * @author Andreas Kirschbaum
  */
 public class CfMapPatch {
@@ -42,11 +48,107 @@ public class CfMapPatch {
     public static final int SIZE = 1<<SIZE_LOG;
 
     /**
-     * The array of {@link CfMapSquare CfMapSquares}. Elements are never
-     * <code>null</code>.
+     * The number of layers per floor.
+     */
+    public static final int LAYERS_PER_FLOOR = 3;
+
+    /**
+     * The number of floors.
+     */
+    public static final int FLOORS = Map2.NUM_LAYERS/LAYERS_PER_FLOOR;
+
+    /**
+     * The number of squares in a patch.
+     */
+    private static final int SQUARES = SIZE*SIZE;
+
+    /**
+     * Flag in {@link #drawState}: the square has been changed since the last
+     * repaint.
+     */
+    private static final int CHANGED = 1;
+
+    /**
+     * Flag in {@link #drawState}: the square has already been painted during
+     * the current repaint.
+     */
+    private static final int DRAWN = 2;
+
+    /**
+     * The {@link CfMap} this patch is part of.
      */
     @NotNull
-    private final CfMapSquare[][] square = new CfMapSquare[SIZE][SIZE];
+    private final CfMap map;
+
+    /**
+     * The absolute map x-coordinate of the top left corner of this patch.
+     */
+    private int x0;
+
+    /**
+     * The absolute map y-coordinate of the top left corner of this patch.
+     */
+    private int y0;
+
+    /**
+     * The faces (of head-parts) of all squares and layers as sent by the
+     * server. Indexed by <code>index*Map2.NUM_LAYERS+layer</code>.
+     */
+    @NotNull
+    private final Face[] faces = new Face[SQUARES*Map2.NUM_LAYERS];
+
+    /**
+     * The smooth values of all squares and layers. Indexed like {@link
+     * #faces}.
+     */
+    @NotNull
+    private final byte[] smooths = new byte[SQUARES*Map2.NUM_LAYERS];
+
+    /**
+     * The darkness values of all squares and floors in the range [0..255].
+     * Indexed by <code>index*FLOORS+floor</code>.
+     */
+    @NotNull
+    private final byte[] darkness = new byte[SQUARES*FLOORS];
+
+    /**
+     * The fog-of-war flags of all squares; bit <code>floor</code> is set if
+     * the floor of the square is not up-to-date. The old values remain valid
+     * until at least one value of the floor is re-set.
+     */
+    @NotNull
+    private final byte[] fogOfWar = new byte[SQUARES];
+
+    /**
+     * The magic map colors of all squares.
+     */
+    @NotNull
+    private final byte[] colors = new byte[SQUARES];
+
+    /**
+     * The {@link #CHANGED} and {@link #DRAWN} flags of all squares.
+     */
+    @NotNull
+    private final byte[] drawState = new byte[SQUARES];
+
+    /**
+     * The squares that have been modified since the last call to {@link
+     * #getDirtySquares(Collection)}; one bit per square.
+     */
+    @NotNull
+    private final long[] dirty = new long[SQUARES/64];
+
+    /**
+     * The number of bits set in {@link #dirty}.
+     */
+    private int dirtyCount = 0;
+
+    /**
+     * The {@link CfMapSquare} views of this patch. Elements are created on
+     * first access.
+     */
+    @NotNull
+    private final CfMapSquare[] squares = new CfMapSquare[SQUARES];
 
     /**
      * Creates a new (empty) patch.
@@ -57,11 +159,89 @@ public class CfMapPatch {
      * patch
      */
     public CfMapPatch(@NotNull final CfMap map, final int x0, final int y0) {
-        for (int y = 0; y < SIZE; y++) {
-            for (int x = 0; x < SIZE; x++) {
-                square[x][y] = new CfMapSquare(map, x0+x, y0+y);
-            }
-        }
+        this.map = map;
+        this.x0 = x0;
+        this.y0 = y0;
+        Arrays.fill(darkness, (byte)CfMapSquare.DEFAULT_DARKNESS);
+        Arrays.fill(colors, (byte)CfMapSquare.DEFAULT_COLOR);
+    }
+
+    /**
+     * Re-uses this patch for another map area. All squares are cleared; the
+     * {@link CfMapSquare} views are kept and now refer to the new area.
+     * @param x0 the absolute map x-coordinate of the top left corner of the
+     * new area
+     * @param y0 the absolute map y-coordinate of the top left corner of the
+     * new area
+     */
+    public void recycle(final int x0, final int y0) {
+        this.x0 = x0;
+        this.y0 = y0;
+        Arrays.fill(faces, null);
+        Arrays.fill(smooths, (byte)CfMapSquare.DEFAULT_SMOOTH);
+        Arrays.fill(darkness, (byte)CfMapSquare.DEFAULT_DARKNESS);
+        Arrays.fill(fogOfWar, (byte)0);
+        Arrays.fill(colors, (byte)CfMapSquare.DEFAULT_COLOR);
+        Arrays.fill(drawState, (byte)0);
+        Arrays.fill(dirty, 0L);
+        dirtyCount = 0;
+    }
+
+    /**
+     * Returns the absolute map x-coordinate of the top left corner of this
+     * patch.
+     * @return the x-coordinate
+     */
+    public int getX0() {
+        return x0;
+    }
+
+    /**
+     * Returns the absolute map y-coordinate of the top left corner of this
+     * patch.
+     * @return the y-coordinate
+     */
+    public int getY0() {
+        return y0;
+    }
+
+    /**
+     * Returns whether this patch currently represents the given patch
+     * coordinates.
+     * @param px the x-coordinate of the patch
+     * @param py the y-coordinate of the patch
+     * @return whether this patch represents the coordinates
+     */
+    public boolean isAt(final int px, final int py) {
+        return x0 == px<<SIZE_LOG && y0 == py<<SIZE_LOG;
+    }
+
+    /**
+     * Returns the index of a square.
+     * @param x the x-coordinate of the square
+     * @param y the y-coordinate of the square
+     * @return the index
+     */
+    private static int getIndex(final int x, final int y) {
+        return (y<<SIZE_LOG)+x;
+    }
+
+    /**
+     * Returns the floor of a layer.
+     * @param layer the layer
+     * @return the floor or <code>-1</code> if the layer is invalid
+     */
+    private static int getFloor(final int layer) {
+        return 0 <= layer && layer < Map2.NUM_LAYERS ? layer/LAYERS_PER_FLOOR : -1;
+    }
+
+    /**
+     * Returns whether a floor is valid.
+     * @param floor the floor
+     * @return whether the floor is valid
+     */
+    private static boolean isValidFloor(final int floor) {
+        return 0 <= floor && floor < FLOORS;
     }
 
     /**
@@ -70,7 +250,90 @@ public class CfMapPatch {
      * @param y the y-coordinate of the square
      */
     public void dirty(final int x, final int y) {
-        square[x][y].dirty();
+        dirty(getIndex(x, y));
+    }
+
+    /**
+     * Marks a square as dirty and changed.
+     * @param index the index of the square
+     */
+    void dirty(final int index) {
+        squareModified(index);
+        drawState[index] |= CHANGED;
+    }
+
+    /**
+     * Marks a square as dirty.
+     * @param index the index of the square
+     */
+    void squareModified(final int index) {
+        final long mask = 1L<<(index&63);
+        if ((dirty[index>>6]&mask) != 0) {
+            return;
+        }
+
+        dirty[index>>6] |= mask;
+        if (dirtyCount++ == 0) {
+            map.patchModified(this);
+        }
+    }
+
+    /**
+     * Returns whether this patch contains any dirty squares.
+     * @return whether dirty squares exist
+     */
+    public boolean hasDirtySquares() {
+        return dirtyCount > 0;
+    }
+
+    /**
+     * Returns the absolute map x-coordinate of a square.
+     * @param index the index of the square
+     * @return the x-coordinate
+     */
+    int getX(final int index) {
+        return x0+(index&(SIZE-1));
+    }
+
+    /**
+     * Returns the absolute map y-coordinate of a square.
+     * @param index the index of the square
+     * @return the y-coordinate
+     */
+    int getY(final int index) {
+        return y0+(index>>SIZE_LOG);
+    }
+
+    /**
+     * Returns whether a square is dirty.
+     * @param x the x-coordinate of the square
+     * @param y the y-coordinate of the square
+     * @return whether the square is dirty
+     */
+    public boolean isDirty(final int x, final int y) {
+        final int index = getIndex(x, y);
+        return (dirty[index>>6]&(1L<<(index&63))) != 0;
+    }
+
+    /**
+     * Adds all dirty squares to a collection and clears the dirty flags.
+     * @param result the collection to add to
+     */
+    public void getDirtySquares(@NotNull final Collection<CfMapSquare> result) {
+        if (dirtyCount == 0) {
+            return;
+        }
+
+        for (int i = 0; i < dirty.length; i++) {
+            long bits = dirty[i];
+            while (bits != 0) {
+                final int bit = Long.numberOfTrailingZeros(bits);
+                bits &= bits-1;
+                result.add(getSquare((i<<6)+bit));
+            }
+            dirty[i] = 0;
+        }
+        dirtyCount = 0;
     }
 
     /**
@@ -78,9 +341,42 @@ public class CfMapPatch {
      * available until at least one value will be changed ("fog of war").
      * @param x the x-coordinate of the square
      * @param y the y-coordinate of the square
+     * @param floor the floor to clear
      */
     public void clearSquare(final int x, final int y, final int floor) {
-        square[x][y].clear(floor);
+        clearSquare(getIndex(x, y), floor);
+    }
+
+    /**
+     * Clears the content of one square.
+     * @param index the index of the square
+     * @param floor the floor to clear
+     */
+    void clearSquare(final int index, final int floor) {
+        if (isValidFloor(floor)) {
+            if ((fogOfWar[index]&(1<<floor)) != 0) {
+                return;
+            }
+
+            // need to check individual values because the server sometimes
+            // sends a "clear" command for already cleared squares; without
+            // this check the black square would be displayed as fog-of-war
+            if (getDarkness(index, floor) == CfMapSquare.DEFAULT_DARKNESS) {
+                final int first = index*Map2.NUM_LAYERS+floor*LAYERS_PER_FLOOR;
+                int layer;
+                for (layer = 0; layer < LAYERS_PER_FLOOR; layer++) {
+                    if (faces[first+layer] != CfMapSquare.DEFAULT_FACE) {
+                        break;
+                    }
+                }
+                if (layer >= LAYERS_PER_FLOOR) {
+                    return;
+                }
+            }
+
+            fogOfWar[index] |= 1<<floor;
+        }
+        dirty(index);
     }
 
     /**
@@ -88,21 +384,55 @@ public class CfMapPatch {
      * @param x the x-coordinate of the square
      * @param y the y-coordinate of the square
      * @param darkness the darkness value to set; 0=dark, 255=full bright
+     * @param floor the floor
      * @return whether fog-of-war has been cleared
      */
     public boolean setDarkness(final int x, final int y, final int darkness, final int floor) {
-        return square[x][y].setDarkness(darkness, floor);
+        return setDarkness(getIndex(x, y), darkness, floor);
+    }
+
+    /**
+     * Sets the darkness value of one square.
+     * @param index the index of the square
+     * @param darkness the darkness value to set; 0=dark, 255=full bright
+     * @param floor the floor
+     * @return whether fog-of-war has been cleared
+     */
+    boolean setDarkness(final int index, final int darkness, final int floor) {
+        if (!isValidFloor(floor)) {
+            return false;
+        }
+
+        final boolean result = (fogOfWar[index]&(1<<floor)) != 0;
+        final boolean markDirty = result || getDarkness(index, floor) != darkness;
+        fogOfWar[index] &= ~(1<<floor);
+        this.darkness[index*FLOORS+floor] = (byte)darkness;
+        if (markDirty) {
+            dirty(index);
+        }
+        return result;
     }
 
     /**
      * Determines the darkness value of one square.
      * @param x the x-coordinate of the square
      * @param y the y-coordinate of the square
+     * @param floor the floor
      * @return the darkness value of the square; 0=dark, 255=full bright; not
      *         yet set faces return 0
      */
     public int getDarkness(final int x, final int y, final int floor) {
-        return square[x][y].getDarkness(floor);
+        return getDarkness(getIndex(x, y), floor);
+    }
+
+    /**
+     * Determines the darkness value of one square.
+     * @param index the index of the square
+     * @param floor the floor
+     * @return the darkness value of the square; 0=dark, 255=full bright
+     */
+    int getDarkness(final int index, final int floor) {
+        return isValidFloor(floor) ? darkness[index*FLOORS+floor]&0xFF : 0;
     }
 
     /**
@@ -115,7 +445,27 @@ public class CfMapPatch {
      *         value has changed (2)
      */
     public int setSmooth(final int x, final int y, final int layer, final int smooth) {
-        return square[x][y].setSmooth(layer, smooth);
+        return setSmooth(getIndex(x, y), layer, smooth);
+    }
+
+    /**
+     * Sets the smooth value of one square.
+     * @param index the index of the square
+     * @param layer the layer to set
+     * @param smooth the smooth value to set between <code>0</code> and
+     * <code>255</code>
+     * @return whether fog-of-war has been cleared (1) or whether the smooth
+     *         value has changed (2)
+     */
+    int setSmooth(final int index, final int layer, final int smooth) {
+        final boolean fogOfWarCleared = (fogOfWar[index]&1) != 0;
+        final boolean smoothChanged = getSmooth(index, layer) != smooth;
+        smooths[index*Map2.NUM_LAYERS+layer] = (byte)smooth;
+        fogOfWar[index] &= ~1;
+        if (fogOfWarCleared || smoothChanged) {
+            dirty(index);
+        }
+        return (fogOfWarCleared ? 1 : 0)|(smoothChanged ? 2 : 0);
     }
 
     /**
@@ -126,7 +476,17 @@ public class CfMapPatch {
      * @return the smooth value of the square
      */
     public int getSmooth(final int x, final int y, final int layer) {
-        return square[x][y].getSmooth(layer);
+        return getSmooth(getIndex(x, y), layer);
+    }
+
+    /**
+     * Determines the smooth value of one square.
+     * @param index the index of the square
+     * @param layer the layer of the square
+     * @return the smooth value of the square
+     */
+    int getSmooth(final int index, final int layer) {
+        return smooths[index*Map2.NUM_LAYERS+layer]&0xFF;
     }
 
     /**
@@ -137,7 +497,24 @@ public class CfMapPatch {
      * @return whether fog-of-war has been cleared
      */
     public boolean setColor(final int x, final int y, final int color) {
-        return square[x][y].setColor(color);
+        return setColor(getIndex(x, y), color);
+    }
+
+    /**
+     * Sets the magic map color of one square.
+     * @param index the index of the square
+     * @param color the color to set
+     * @return whether fog-of-war has been cleared
+     */
+    boolean setColor(final int index, final int color) {
+        final boolean result = (fogOfWar[index]&1) != 0;
+        final boolean markDirty = result || colors[index] != color;
+        fogOfWar[index] &= ~1;
+        colors[index] = (byte)color;
+        if (markDirty) {
+            dirty(index);
+        }
+        return result;
     }
 
     /**
@@ -147,7 +524,41 @@ public class CfMapPatch {
      * @return the color
      */
     public int getColor(final int x, final int y) {
-        return square[x][y].getColor();
+        return getColor(getIndex(x, y));
+    }
+
+    /**
+     * Determines the magic map color value of one square.
+     * @param index the index of the square
+     * @return the color
+     */
+    int getColor(final int index) {
+        return colors[index];
+    }
+
+    /**
+     * Sets the face of one square.
+     * @param x the x-coordinate of the square
+     * @param y the y-coordinate of the square
+     * @param layer the layer of the face
+     * @param face the face to set; may be <code>null</code>
+     */
+    public void setFace(final int x, final int y, final int layer, @Nullable final Face face) {
+        setFace(getIndex(x, y), layer, face);
+    }
+
+    /**
+     * Sets the face of one square.
+     * @param index the index of the square
+     * @param layer the layer of the face
+     * @param face the face to set; may be <code>null</code>
+     */
+    void setFace(final int index, final int layer, @Nullable final Face face) {
+        final int i = index*Map2.NUM_LAYERS+layer;
+        if (faces[i] != face) {
+            faces[i] = face;
+            dirty(index);
+        }
     }
 
     /**
@@ -159,55 +570,111 @@ public class CfMapPatch {
      */
     @Nullable
     public Face getFace(final int x, final int y, final int layer) {
-        return square[x][y].getFace(layer);
+        return getFace(getIndex(x, y), layer);
     }
 
     /**
-     * Sets the map square containing the head face for a layer.
-     * @param x the x-coordinate of the square
-     * @param y the y-coordinate of the square
-     * @param layer the layer for the new head face between <code>0</code> and
-     * <code>LAYERS-1</code>
-     * @param mapSquare the map square containing the head face; may be
-     * <code>null</code>
-     * @param setAlways if set, always update the face; if unset, only update
-     * when fog-of-war
+     * Determines the face of one square.
+     * @param index the index of the square
+     * @param layer the layer of the face
+     * @return the face; dark (i.e. not yet set) faces return <code>null</code>
      */
- //   public void setHeadMapSquare(final int x, final int y, final int layer, @Nullable final CfMapSquare mapSquare, final boolean setAlways) {
-//        square[x][y].setHeadMapSquare(layer, mapSquare, setAlways);
-//    }
+    @Nullable
+    Face getFace(final int index, final int layer) {
+        return faces[index*Map2.NUM_LAYERS+layer];
+    }
 
     /**
-     * Returns the map square of the head of a multi-square object.
+     * Determines if a square is not up-to-date.
      * @param x the x-coordinate of the square
      * @param y the y-coordinate of the square
-     * @param layer the layer to return the head for
-     * @return the head map square, or <code>null</code> if this square does not
-     *         contain a multi-tail
+     * @param layer the layer to check
+     * @return whether the square is up-to-date
      */
-  //  @Nullable
- //   public CfMapSquare getHeadMapSquare(final int x, final int y, final int layer) {
- //       return square[x][y].getHeadMapSquare(layer);
- //   }
+    public boolean isFogOfWar(final int x, final int y, final int layer) {
+        return isFogOfWar(getIndex(x, y), layer);
+    }
 
     /**
      * Determines if a square is not up-to-date.
-     * @param x the x-coordinate of the square
-     * @param y the y-coordinate of the square
+     * @param index the index of the square
+     * @param layer the layer to check
      * @return whether the square is up-to-date
      */
-    public boolean isFogOfWar(final int x, final int y, final int layer) {
-        return square[x][y].isFogOfWar(layer);
+    boolean isFogOfWar(final int index, final int layer) {
+        final int floor = getFloor(layer);
+        return floor != -1 && (fogOfWar[index]&(1<<floor)) != 0;
     }
 
     /**
      * Returns and reset the "fog-of-war" flag of a square.
      * @param x the x-coordinate of the square
      * @param y the y-coordinate of the square
+     * @param floor the floor to reset
      * @return whether this square's fog-of-war state has been reset
      */
     public boolean resetFogOfWar(final int x, final int y, final int floor) {
-        return square[x][y].resetFogOfWar(floor);
+        return resetFogOfWar(getIndex(x, y), floor);
+    }
+
+    /**
+     * Returns and reset the "fog-of-war" flag of a square.
+     * @param index the index of the square
+     * @param floor the floor to reset
+     * @return whether this square's fog-of-war state has been reset
+     */
+    boolean resetFogOfWar(final int index, final int floor) {
+        if (!isValidFloor(floor) || (fogOfWar[index]&(1<<floor)) == 0) {
+            return false;
+        }
+
+        fogOfWar[index] &= ~(1<<floor);
+        dirty(index);
+        return true;
+    }
+
+    /**
+     * Sets or clears the "changed" flag of a square.
+     * @param index the index of the square
+     * @param changed whether the square is changed
+     */
+    void setChanged(final int index, final boolean changed) {
+        if (changed) {
+            drawState[index] |= CHANGED;
+        } else {
+            drawState[index] &= ~CHANGED;
+        }
+    }
+
+    /**
+     * Returns the "changed" flag of a square.
+     * @param index the index of the square
+     * @return whether the square is changed
+     */
+    boolean isChanged(final int index) {
+        return (drawState[index]&CHANGED) != 0;
+    }
+
+    /**
+     * Sets or clears the "drawn" flag of a square.
+     * @param index the index of the square
+     * @param drawn whether the square has been drawn
+     */
+    void setDrawn(final int index, final boolean drawn) {
+        if (drawn) {
+            drawState[index] |= DRAWN;
+        } else {
+            drawState[index] &= ~DRAWN;
+        }
+    }
+
+    /**
+     * Returns the "drawn" flag of a square.
+     * @param index the index of the square
+     * @return whether the square has been drawn
+     */
+    boolean wasDrawn(final int index) {
+        return (drawState[index]&DRAWN) != 0;
     }
 
     /**
@@ -218,7 +685,24 @@ public class CfMapPatch {
      */
     @NotNull
     public CfMapSquare getSquare(final int x, final int y) {
-        return square[x][y];
+        return getSquare(getIndex(x, y));
+    }
+
+    /**
+     * Returns one map square.
+     * @param index the index of the square
+     * @return the map square
+     */
+    @NotNull
+    private CfMapSquare getSquare(final int index) {
+        final CfMapSquare square = squares[index];
+        if (square != null) {
+            return square;
+        }
+
+        final CfMapSquare newSquare = new CfMapSquare(this, index);
+        squares[index] = newSquare;
+        return newSquare;
     }
 
 }
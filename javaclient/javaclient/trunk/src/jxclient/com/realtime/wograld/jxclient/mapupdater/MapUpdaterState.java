@@ -34,6 +34,7 @@ import com.realtime.wograld.jxclient.map.Location;
 import com.realtime.wograld.jxclient.server.wograld.WograldTickListener;
 import com.realtime.wograld.jxclient.server.wograld.WograldUpdateMapListener;
 import com.realtime.wograld.jxclient.server.wograld.MapSizeListener;
+import com.realtime.wograld.jxclient.server.wograld.messages.MapDelta;
 import com.realtime.wograld.jxclient.util.EventListenerList2;
 import java.util.Collection;
 import java.util.HashSet;
@@ -226,6 +227,18 @@ public class MapUpdaterState implements WograldTickListener, WograldUpdateMapLis
       //  outOfViewMultiFaces.clear();
         //noinspection SynchronizeOnNonFinalField
         synchronized (map) {
+            clearSquare(x, y, floor);
+        }
+    }
+
+    /**
+     * Clears a map square of a floor. The caller must hold the lock on {@link
+     * #map}.
+     * @param x the x-coordinate as received from the server
+     * @param y the y-coordinate as received from the server
+     * @param floor the floor
+     */
+    private void clearSquare(final int x, final int y, final int floor) {
            // map.clearSquare(x, y,floor);
             
             if(floor == 0) {
@@ -249,7 +262,6 @@ public class MapUpdaterState implements WograldTickListener, WograldUpdateMapLis
             else if(floor == 6){
                 map.clearSquare(x+3, y-3, floor);
             }
-        }
     }
 
     /**
@@ -283,12 +295,24 @@ public class MapUpdaterState implements WograldTickListener, WograldUpdateMapLis
      //   }
         //noinspection SynchronizeOnNonFinalField
         synchronized (map) {
+            setFace(x, y, location.getLayer(), face);
+        }
+    }
+
+    /**
+     * Sets the face of a map square. The caller must hold the lock on {@link
+     * #map}.
+     * @param x the x-coordinate as received from the server
+     * @param y the y-coordinate as received from the server
+     * @param layer2 the layer
+     * @param face the face to set or <code>null</code> to clear
+     */
+    private void setFace(final int x, final int y, final int layer2, @Nullable final Face face) {
             // have floor modify x and y coordinates
             // so pass modified args whenever expandto is near
             // by convention have layers 0 to 2 be ground floor
             // but other floors be in order from bottom to top
             // skipping over the ground floor
-            int layer2 = location.getLayer();
             if((0 <= layer2) && (layer2 < 3)) {
             map.setFace(x, y, layer2, face);
             }
@@ -313,7 +337,6 @@ public class MapUpdaterState implements WograldTickListener, WograldUpdateMapLis
                 map.setFace(x+3,y-3,layer2,face);
             //    map.setFace(x+18,y+12,layer2,face);
             }
-        }
     }
 
     /**
@@ -364,6 +387,19 @@ public class MapUpdaterState implements WograldTickListener, WograldUpdateMapLis
         assert Thread.holdsLock(sync);
         //noinspection SynchronizeOnNonFinalField
         synchronized (map) {
+            setDarkness(x, y, darkness, floor);
+        }
+    }
+
+    /**
+     * Sets the darkness of a map square. The caller must hold the lock on
+     * {@link #map}.
+     * @param x the x-coordinate as received from the server
+     * @param y the y-coordinate as received from the server
+     * @param darkness the darkness value
+     * @param floor the floor
+     */
+    private void setDarkness(final int x, final int y, final int darkness, final int floor) {
             // have floor modify x and y coordinates
             // so pass modified args whenever expandto is near
             // by convention have layers 0 to 2 be ground floor
@@ -390,6 +426,52 @@ public class MapUpdaterState implements WograldTickListener, WograldUpdateMapLis
             else if(floor == 6){
                 map.setDarkness(x+3, y-3, darkness,floor);
             }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void mapDelta(@NotNull final MapDelta mapDelta) {
+        assert Thread.holdsLock(sync);
+        final int size = mapDelta.size();
+
+        // resolve faces before locking the map: this may access the face cache
+        final Face[] faces = new Face[size];
+        for (int i = 0; i < size; i++) {
+            if (mapDelta.getType(i) == MapDelta.FACE) {
+                faces[i] = facesManager.getFace2(mapDelta.getValue(i));
+            }
+        }
+
+        int i = 0;
+        while (i < size) {
+            //noinspection SynchronizeOnNonFinalField
+            synchronized (map) {
+                while (i < size && mapDelta.getType(i) != MapDelta.SCROLL) {
+                    final int x = mapDelta.getX(i);
+                    final int y = mapDelta.getY(i);
+                    switch (mapDelta.getType(i)) {
+                    case MapDelta.CLEAR:
+                        clearSquare(x, y, mapDelta.getZ(i));
+                        break;
+
+                    case MapDelta.DARKNESS:
+                        setDarkness(x, y, mapDelta.getValue(i), mapDelta.getZ(i));
+                        break;
+
+                    case MapDelta.FACE:
+                        setFace(x, y, mapDelta.getZ(i), faces[i]);
+                        break;
+                    }
+                    i++;
+                }
+            }
+
+            if (i < size) {
+                mapScroll(mapDelta.getX(i), mapDelta.getY(i));
+                i++;
+            }
         }
     }
 
@@ -26,8 +26,9 @@ import com.realtime.wograld.jxclient.guistate.GuiStateManager;
 import com.realtime.wograld.jxclient.server.wograld.WograldComcListener;
 import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
 import com.realtime.wograld.jxclient.server.socket.ClientSocketState;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -42,6 +43,29 @@ public class CommandQueue {
      */
     private static final int MAX_PENDING_COMMANDS = 10;
 
+    /**
+     * The minimum number of pending commands in adaptive mode.
+     */
+    private static final int MIN_ADAPTIVE_PENDING_COMMANDS = 2;
+
+    /**
+     * The maximum number of pending commands in adaptive mode.
+     */
+    private static final int MAX_ADAPTIVE_PENDING_COMMANDS = 32;
+
+    /**
+     * The number of recent round-trip samples the minimum round-trip time is
+     * taken from.
+     */
+    private static final int MIN_RTT_SAMPLES = 16;
+
+    /**
+     * The server time of a single action in microseconds the server reports
+     * for a speed of 1.0. Used until the first comc command has been
+     * received.
+     */
+    private static final int DEFAULT_SERVER_TIME = 120000;
+
     /**
      * The server connection for sending ncom commands.
      */
@@ -49,12 +73,58 @@ public class CommandQueue {
     private final WograldServerConnection wograldServerConnection;
 
     /**
-     * Records command ids of commands sent to the server for which no comc
-     * commands has been received. Note that the size may be larger than {@link
-     * #MAX_PENDING_COMMANDS} due to "must send" commands.
+     * Records commands sent to the server for which no comc commands has been
+     * received. Note that the size may be larger than {@link
+     * #maxPendingCommands} due to "must send" commands.
      */
     @NotNull
-    private final List<Integer> pendingCommands = new LinkedList<Integer>();
+    private final Deque<PendingCommand> pendingCommands = new ArrayDeque<PendingCommand>();
+
+    /**
+     * Whether the number of pending commands is adapted to the measured
+     * round-trip and server times.
+     */
+    private boolean adaptive = false;
+
+    /**
+     * The current maximum number of pending commands. Excess commands will be
+     * dropped.
+     */
+    private int maxPendingCommands = MAX_PENDING_COMMANDS;
+
+    /**
+     * The smoothed round-trip time of ncom commands in milliseconds or
+     * <code>-1</code> if unknown.
+     */
+    private double smoothedRtt = -1;
+
+    /**
+     * The smoothed mean deviation of the round-trip time in milliseconds.
+     */
+    private double rttVariation = 0;
+
+    /**
+     * The most recent round-trip times in milliseconds. Used as a ring buffer
+     * indexed by {@link #rttSamplesIndex}.
+     */
+    @NotNull
+    private final double[] rttSamples = new double[MIN_RTT_SAMPLES];
+
+    /**
+     * The number of valid entries in {@link #rttSamples}.
+     */
+    private int rttSamplesCount = 0;
+
+    /**
+     * The index of the next entry in {@link #rttSamples} to overwrite.
+     */
+    private int rttSamplesIndex = 0;
+
+    /**
+     * The server time of an action in microseconds as reported by the most
+     * recent comc command.
+     */
+    private int serverTime = DEFAULT_SERVER_TIME;
 
     /**
      * The default repeat counter for ncom commands.
@@ -75,9 +145,18 @@ public class CommandQueue {
 
         @Override
         public void commandComcReceived(final int packetNo, final int time) {
+            final long now = System.nanoTime();
             synchronized (pendingCommands) {
-                final int index = pendingCommands.indexOf(packetNo);
-                if (index == -1) {
+                int index = 0;
+                PendingCommand pendingCommand = null;
+                for (final PendingCommand tmp : pendingCommands) {
+                    if (tmp.getPacketNo() == packetNo) {
+                        pendingCommand = tmp;
+                        break;
+                    }
+                    index++;
+                }
+                if (pendingCommand == null) {
                     System.err.println("Error: got unexpected comc command #"+packetNo);
                     return;
                 }
@@ -85,9 +164,13 @@ public class CommandQueue {
                     System.err.println("Warning: got out of order comc command #"+packetNo);
                 }
 
+                final Iterator<PendingCommand> it = pendingCommands.iterator();
                 for (int i = 0; i <= index; i++) {
-                    pendingCommands.remove(0);
+                    it.next();
+                    it.remove();
                 }
+
+                updateTimes((now-pendingCommand.getSendTime())/1000000.0, time);
             }
         }
 
@@ -149,6 +232,30 @@ public class CommandQueue {
         guiStateManager.addGuiStateListener(guiStateListener);
     }
 
+    /**
+     * Sets whether the number of pending commands is adapted to the measured
+     * round-trip and server times. If unset, at most {@link
+     * #MAX_PENDING_COMMANDS} commands are pending.
+     * @param adaptive whether to adapt the number of pending commands
+     */
+    public void setAdaptive(final boolean adaptive) {
+        synchronized (pendingCommands) {
+            this.adaptive = adaptive;
+            updateMaxPendingCommands();
+        }
+    }
+
+    /**
+     * Returns whether the number of pending commands is adapted to the
+     * measured round-trip and server times.
+     * @return whether the number of pending commands is adapted
+     */
+    public boolean isAdaptive() {
+        synchronized (pendingCommands) {
+            return adaptive;
+        }
+    }
+
     /**
      * Returns the current repeat count and reset it to zero.
      * @return the current repeat count
@@ -183,6 +290,139 @@ public class CommandQueue {
         synchronized (pendingCommands) {
             pendingCommands.clear();
             isRunning = false;
+            smoothedRtt = -1;
+            rttVariation = 0;
+            rttSamplesCount = 0;
+            rttSamplesIndex = 0;
+            serverTime = DEFAULT_SERVER_TIME;
+            updateMaxPendingCommands();
+        }
+    }
+
+    /**
+     * Records the timing of an acknowledged command and updates the maximum
+     * number of pending commands.
+     * @param rtt the round-trip time of the command in milliseconds
+     * @param time the server time of an action in microseconds
+     */
+    private void updateTimes(final double rtt, final int time) {
+        if (smoothedRtt < 0) {
+            smoothedRtt = rtt;
+            rttVariation = rtt/2;
+        } else {
+            rttVariation = 0.75*rttVariation+0.25*Math.abs(smoothedRtt-rtt);
+            smoothedRtt = 0.875*smoothedRtt+0.125*rtt;
+        }
+        rttSamples[rttSamplesIndex] = rtt;
+        rttSamplesIndex = (rttSamplesIndex+1)%rttSamples.length;
+        if (rttSamplesCount < rttSamples.length) {
+            rttSamplesCount++;
+        }
+        if (time > 0) {
+            serverTime = time;
+        }
+        updateMaxPendingCommands();
+    }
+
+    /**
+     * Updates {@link #maxPendingCommands} from the current mode and measured
+     * times.
+     */
+    private void updateMaxPendingCommands() {
+        maxPendingCommands = adaptive && rttSamplesCount > 0 ? calculateMaxPendingCommands(getMinRtt(), serverTime) : MAX_PENDING_COMMANDS;
+    }
+
+    /**
+     * Calculates the number of pending commands that keeps the server busy.
+     * Commands are executed one per action; a command sent now reaches the
+     * server after half the network round-trip time and its comc command
+     * returns after the other half. The window therefore must cover the
+     * actions the server performs during a network round-trip plus the
+     * command being executed; more pending commands only add latency to
+     * commands sent later.
+     * @param networkRtt the network round-trip time in milliseconds
+     * @param serverTime the server time of an action in microseconds
+     * @return the number of pending commands
+     */
+    static int calculateMaxPendingCommands(final double networkRtt, final int serverTime) {
+        if (serverTime <= 0) {
+            return MAX_ADAPTIVE_PENDING_COMMANDS;
+        }
+        final double actions = Math.ceil(networkRtt*1000.0/serverTime)+1;
+        return (int)Math.max(MIN_ADAPTIVE_PENDING_COMMANDS, Math.min(MAX_ADAPTIVE_PENDING_COMMANDS, actions));
+    }
+
+    /**
+     * Returns the smoothed round-trip time of ncom commands.
+     * @return the round-trip time in milliseconds or <code>-1</code> if
+     * unknown
+     */
+    public double getSmoothedRtt() {
+        synchronized (pendingCommands) {
+            return smoothedRtt;
+        }
+    }
+
+    /**
+     * Returns the smoothed mean deviation of the round-trip time of ncom
+     * commands.
+     * @return the deviation in milliseconds
+     */
+    public double getRttVariation() {
+        synchronized (pendingCommands) {
+            return rttVariation;
+        }
+    }
+
+    /**
+     * Returns the minimum of the recent round-trip times of ncom commands.
+     * This approximates the network round-trip time without the time commands
+     * wait in the server's queue.
+     * @return the round-trip time in milliseconds or <code>-1</code> if
+     * unknown
+     */
+    public double getMinRtt() {
+        synchronized (pendingCommands) {
+            if (rttSamplesCount <= 0) {
+                return -1;
+            }
+            double result = rttSamples[0];
+            for (int i = 1; i < rttSamplesCount; i++) {
+                result = Math.min(result, rttSamples[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the server time of an action as reported by the most recent comc
+     * command.
+     * @return the server time in microseconds
+     */
+    public int getServerTime() {
+        synchronized (pendingCommands) {
+            return serverTime;
+        }
+    }
+
+    /**
+     * Returns the current maximum number of pending commands.
+     * @return the maximum number of pending commands
+     */
+    public int getMaxPendingCommands() {
+        synchronized (pendingCommands) {
+            return maxPendingCommands;
+        }
+    }
+
+    /**
+     * Returns the number of commands sent to the server for which no comc
+     * command has been received.
+     * @return the number of pending commands
+     */
+    public int getPendingCommands() {
+        synchronized (pendingCommands) {
+            return pendingCommands.size();
         }
     }
 
@@ -208,12 +448,13 @@ public class CommandQueue {
      */
     public void sendNcom(final boolean mustSend, final int repeat, @NotNull final String command) {
         synchronized (pendingCommands) {
-            if (!mustSend && pendingCommands.size() >= MAX_PENDING_COMMANDS) {
+            if (!mustSend && pendingCommands.size() >= maxPendingCommands) {
                 return;
             }
 
+            final long now = System.nanoTime();
             final int packetNo = wograldServerConnection.sendNcom(repeat, command);
-            pendingCommands.add(packetNo);
+            pendingCommands.add(new PendingCommand(packetNo, now));
 
             if (command.startsWith("run ")) {
                 isRunning = true;
@@ -264,4 +505,48 @@ public class CommandQueue {
         wograldServerConnection.sendMove(to, tag, getRepeatCount());
     }
 
+    /**
+     * A command sent to the server for which no comc command has been
+     * received.
+     */
+    private static class PendingCommand {
+
+        /**
+         * The command id.
+         */
+        private final int packetNo;
+
+        /**
+         * The {@link System#nanoTime()} the command was sent.
+         */
+        private final long sendTime;
+
+        /**
+         * Creates a new instance.
+         * @param packetNo the command id
+         * @param sendTime the time the command was sent
+         */
+        private PendingCommand(final int packetNo, final long sendTime) {
+            this.packetNo = packetNo;
+            this.sendTime = sendTime;
+        }
+
+        /**
+         * Returns the command id.
+         * @return the command id
+         */
+        public int getPacketNo() {
+            return packetNo;
+        }
+
+        /**
+         * Returns the {@link System#nanoTime()} the command was sent.
+         * @return the send time
+         */
+        public long getSendTime() {
+            return sendTime;
+        }
+
+    }
+
 }
@@ -0,0 +1,179 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Abstract base class for subscriptions of the binary script protocol. Changes
+ * are collected until the script's writer thread encodes them; at most one
+ * frame per subscription is pending at any time, so changes are batched
+ * automatically when the script falls behind.
+ * @author Andreas Kirschbaum
+ */
+public abstract class AbstractSubscription implements ScriptMessage {
+
+    /**
+     * The {@link ScriptOutputQueue} for sending frames.
+     */
+    @NotNull
+    private final ScriptOutputQueue<ScriptMessage> outputQueue;
+
+    /**
+     * Whether this subscription is active.
+     */
+    private boolean subscribed = false;
+
+    /**
+     * Whether this instance is in {@link #outputQueue}.
+     */
+    private boolean queued = false;
+
+    /**
+     * Whether the next frame should be a snapshot.
+     */
+    private boolean snapshot = false;
+
+    /**
+     * Creates a new instance.
+     * @param outputQueue the output queue for sending frames
+     */
+    protected AbstractSubscription(@NotNull final ScriptOutputQueue<ScriptMessage> outputQueue) {
+        this.outputQueue = outputQueue;
+    }
+
+    /**
+     * Activates this subscription. Sends a snapshot. Does nothing if the
+     * subscription is active.
+     */
+    public void subscribe() {
+        synchronized (this) {
+            if (subscribed) {
+                return;
+            }
+            subscribed = true;
+        }
+        addListeners();
+        snapshotNeeded();
+    }
+
+    /**
+     * Deactivates this subscription. Does nothing if the subscription is not
+     * active.
+     */
+    public void unsubscribe() {
+        synchronized (this) {
+            if (!subscribed) {
+                return;
+            }
+            subscribed = false;
+        }
+        removeListeners();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    public byte[] encode(final boolean binary) {
+        final boolean tmpSnapshot;
+        synchronized (this) {
+            queued = false;
+            if (!subscribed) {
+                return null;
+            }
+            tmpSnapshot = snapshot;
+            snapshot = false;
+            if (!tmpSnapshot) {
+                takeChanges();
+            } else {
+                discardChanges();
+            }
+        }
+        return tmpSnapshot ? encodeSnapshot() : encodeChanges();
+    }
+
+    /**
+     * Records that the next frame should be a snapshot.
+     */
+    protected void snapshotNeeded() {
+        synchronized (this) {
+            snapshot = true;
+        }
+        changed();
+    }
+
+    /**
+     * Records that changes are pending. Sub-classes must record the changes
+     * while holding this instance's lock before calling this function.
+     */
+    protected void changed() {
+        synchronized (this) {
+            if (!subscribed || queued) {
+                return;
+            }
+            queued = true;
+        }
+        outputQueue.offer(this, null, false);
+    }
+
+    /**
+     * Attaches the listeners for collecting changes.
+     */
+    protected abstract void addListeners();
+
+    /**
+     * Detaches the listeners for collecting changes.
+     */
+    protected abstract void removeListeners();
+
+    /**
+     * Moves the recorded changes into the state used by {@link
+     * #encodeChanges()}. Called from the writer thread while holding this
+     * instance's lock.
+     */
+    protected abstract void takeChanges();
+
+    /**
+     * Discards the recorded changes. Called while holding this instance's
+     * lock.
+     */
+    protected abstract void discardChanges();
+
+    /**
+     * Encodes a snapshot frame. Called from the writer thread.
+     * @return the encoded frame or <code>null</code>
+     */
+    @Nullable
+    protected abstract byte[] encodeSnapshot();
+
+    /**
+     * Encodes a frame containing the changes moved by {@link #takeChanges()}.
+     * Called from the writer thread.
+     * @return the encoded frame or <code>null</code> if nothing has changed
+     */
+    @Nullable
+    protected abstract byte[] encodeChanges();
+
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A client-sided script running inside the client's JVM. All functions are
+ * called from the script's own thread, one at a time. Scripts may query the
+ * client state through the {@link ScriptContext} passed to {@link
+ * #start(ScriptContext, String[])}.
+ * <p/>
+ * Notifications are coalesced if the script falls behind: only the latest
+ * value of a stat, item, or tick is reported.
+ * @author Andreas Kirschbaum
+ * @see AbstractClientScript
+ */
+public interface ClientScript {
+
+    /**
+     * Starts the script. Called once before any other function.
+     * @param context the context for accessing the client state
+     * @param args the script arguments
+     */
+    void start(@NotNull ScriptContext context, @NotNull String[] args);
+
+    /**
+     * Stops the script. Called once when the script terminates.
+     */
+    void stop();
+
+    /**
+     * A message has been sent to the script, for example by the "scripttell"
+     * command.
+     * @param message the message
+     */
+    void messageReceived(@NotNull String message);
+
+    /**
+     * A stat value has changed.
+     * @param statNo the stat number
+     * @param value the new stat value
+     */
+    void statChanged(int statNo, int value);
+
+    /**
+     * An item has been added, changed, moved, or removed.
+     * @param tag the item's tag
+     */
+    void itemChanged(int tag);
+
+    /**
+     * The map has changed.
+     */
+    void mapChanged();
+
+    /**
+     * A "tick" command has been received.
+     * @param tickNo the current tick
+     */
+    void tick(int tickNo);
+
+}
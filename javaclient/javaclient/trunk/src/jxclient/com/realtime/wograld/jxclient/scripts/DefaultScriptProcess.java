@@ -39,11 +39,12 @@ import com.realtime.wograld.jxclient.spells.Spell;
 import com.realtime.wograld.jxclient.spells.SpellsManager;
 import com.realtime.wograld.jxclient.stats.Stats;
 import com.realtime.wograld.jxclient.util.EventListenerList2;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import org.jetbrains.annotations.NotNull;
@@ -56,6 +57,18 @@ import org.jetbrains.annotations.Nullable;
  */
 public class DefaultScriptProcess implements Runnable, ScriptProcess {
 
+    /**
+     * The default maximum number of pending "watch" and "monitor" messages.
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    /**
+     * The message switching to the binary protocol. It is sent as a text
+     * message; all following messages use the binary protocol.
+     */
+    @NotNull
+    private static final ScriptMessage BINARY_MESSAGE = new TextMessage("binary");
+
     /**
      * The script ID identifying this script instance.
      */
@@ -128,10 +141,41 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
     private final InputStream in;
 
     /**
-     * The {@link OutputStreamWriter} associated with {@link #process}.
+     * The {@link OutputStream} associated with {@link #process}.
      */
     @NotNull
-    private final OutputStreamWriter osw;
+    private final OutputStream out;
+
+    /**
+     * The messages not yet sent to {@link #process}. Messages are added by
+     * the threads generating them and written by {@link #writer} so that a
+     * slow script process does not block the caller.
+     */
+    @NotNull
+    private final ScriptOutputQueue<ScriptMessage> outputQueue = new ScriptOutputQueue<ScriptMessage>(DEFAULT_QUEUE_CAPACITY, OverflowPolicy.COALESCE);
+
+    /**
+     * The {@link MapSubscription} for "subscribe map" commands.
+     */
+    @NotNull
+    private final AbstractSubscription mapSubscription;
+
+    /**
+     * The {@link StatsSubscription} for "subscribe stats" commands.
+     */
+    @NotNull
+    private final AbstractSubscription statsSubscription;
+
+    /**
+     * The {@link ItemsSubscription} for "subscribe items" commands.
+     */
+    @NotNull
+    private final AbstractSubscription itemsSubscription;
+
+    /**
+     * Whether the script has switched to the binary protocol.
+     */
+    private boolean binary = false;
 
     /**
      * The {@link ScriptProcessListener ScriptProcessListeners} to notify.
@@ -153,7 +197,52 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
     /**
      * Whether this script has been killed.
      */
-    private boolean killed = false;
+    private volatile boolean killed = false;
+
+    /**
+     * Whether the script process has terminated. Write errors are not
+     * reported anymore.
+     */
+    private volatile boolean terminated = false;
+
+    /**
+     * The {@link Runnable} writing {@link #outputQueue} to {@link #process}.
+     */
+    @NotNull
+    private final Runnable writer = new Runnable() {
+
+        @Override
+        public void run() {
+            try {
+                boolean binaryOutput = false;
+                while (true) {
+                    final ScriptMessage message = outputQueue.take();
+                    if (message == null) {
+                        break;
+                    }
+
+                    final byte[] data = message.encode(binaryOutput);
+                    if (message == BINARY_MESSAGE) {
+                        binaryOutput = true;
+                    }
+                    if (data != null) {
+                        out.write(data);
+                    }
+                    if (outputQueue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (final InterruptedException ignored) {
+                // ignore
+            } catch (final IOException ex) {
+                if (!killed && !terminated) {
+                    reportError(ex.getMessage());
+                    killScript();
+                }
+            }
+        }
+
+    };
 
     /**
      * The {@link ClientSocketListener} attached to {@link
@@ -226,11 +315,14 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
         this.mapUpdaterState = mapUpdaterState;
         this.skillSet = skillSet;
         packetWatcher = new PacketWatcher(wograldServerConnection, this);
+        mapSubscription = new MapSubscription(outputQueue, mapUpdaterState);
+        statsSubscription = new StatsSubscription(outputQueue, stats);
+        itemsSubscription = new ItemsSubscription(outputQueue, itemSet);
         final Runtime rt = Runtime.getRuntime();
         process = rt.exec(filename);
         in = process.getInputStream();
         //noinspection IOResourceOpenedButNotSafelyClosed
-        osw = new OutputStreamWriter(process.getOutputStream());
+        out = new BufferedOutputStream(process.getOutputStream());
     }
 
     /**
@@ -256,6 +348,9 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
     @Override
     public void run() {
         @Nullable String result = "unexpected";
+        final Thread writerThread = new Thread(writer, "JXClient:ScriptWriter:"+this);
+        writerThread.setDaemon(true);
+        writerThread.start();
         try {
             try {
                 final InputStreamReader isr = new InputStreamReader(in);
@@ -291,6 +386,11 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
                 wograldServerConnection.removeClientSocketListener(clientSocketListener);
             }
             packetWatcher.destroy();
+            mapSubscription.unsubscribe();
+            statsSubscription.unsubscribe();
+            itemsSubscription.unsubscribe();
+            terminated = true;
+            outputQueue.close();
             for (final ScriptProcessListener scriptProcessListener : scriptProcessListeners.getListeners()) {
                 scriptProcessListener.scriptTerminated(result);
             }
@@ -302,17 +402,56 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
      */
     @Override
     public void commandSent(@NotNull final String cmd) {
+        commandSent(cmd, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commandSent(@NotNull final String cmd, @Nullable final String key) {
         if (killed) {
             return;
         }
 
-        try {
-            osw.write(cmd+"\n");
-            osw.flush();
-        } catch (final IOException ex) {
-            reportError(ex.getMessage());
-            killScript();
+        outputQueue.offer(new TextMessage(cmd), key, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPendingMessages() {
+        return outputQueue.getSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDroppedMessages() {
+        return outputQueue.getDroppedMessages();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCpuTime() {
+        return -1;
+    }
+
+    /**
+     * Sends a reply to a "request" command to the script process. Replies are
+     * never discarded.
+     * @param cmd the message to send
+     */
+    private void sendReply(@NotNull final String cmd) {
+        if (killed) {
+            return;
         }
+
+        outputQueue.offer(new TextMessage(cmd), null, false);
     }
 
     /**
@@ -321,31 +460,9 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
      * @param item the item to send
      */
     private void commandSentItem(@NotNull final String cmd, @NotNull final CfItem item) {
-        int flags = 0;
-        if (item.isMagic()) {
-            flags |= 0x100;
-        }
-        if (item.isCursed()) {
-            flags |= 0x80;
-        }
-        if (item.isDamned()) {
-            flags |= 0x40;
-        }
-        if (item.isUnpaid()) {
-            flags |= 0x20;
-        }
-        if (item.isLocked()) {
-            flags |= 0x10;
-        }
-        if (item.isApplied()) {
-            flags |= 0x08;
-        }
-        if (item.isOpen()) {
-            flags |= 0x04;
-        }
         final int nrof = Math.max(1, item.getNrOf());
         final String name = nrof <= 1 ? item.getName() : nrof+" "+item.getName();
-        commandSent(cmd+" "+item.getTag()+" "+nrof+" "+Math.max(0, item.getWeight())+" "+flags+" "+item.getType()+" "+name);
+        sendReply(cmd+" "+item.getTag()+" "+nrof+" "+Math.max(0, item.getWeight())+" "+ItemsSubscription.getFlags(item)+" "+item.getType()+" "+name);
     }
 
     /**
@@ -387,7 +504,7 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
                 }
             }
         }
-        commandSent(sb.toString());
+        sendReply(sb.toString());
     }
 
     /**
@@ -405,23 +522,23 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
      */
     private void cmdRequest(@NotNull final String params) {
         if (params.equals("player")) {
-            commandSent("request player "+itemSet.getPlayer().getTag()+" "+stats.getTitle());
+            sendReply("request player "+itemSet.getPlayer().getTag()+" "+stats.getTitle());
         } else if (params.equals("range")) {
-            commandSent("request range "+stats.getRange());
+            sendReply("request range "+stats.getRange());
         } else if (params.equals("weight")) {
-            commandSent("request weight "+stats.getStat(WograldStatsListener.CS_STAT_WEIGHT_LIM)+" "+itemSet.getPlayer().getWeight());
+            sendReply("request weight "+stats.getStat(WograldStatsListener.CS_STAT_WEIGHT_LIM)+" "+itemSet.getPlayer().getWeight());
         } else if (params.equals("stat stats")) {
-            commandSent("request stat stats "+stats.getStat(WograldStatsListener.CS_STAT_STR)+" "+stats.getStat(WograldStatsListener.CS_STAT_CON)+" "+stats.getStat(WograldStatsListener.CS_STAT_DEX)+" "+stats.getStat(WograldStatsListener.CS_STAT_INT)+" "+stats.getStat(WograldStatsListener.CS_STAT_WIS)+" "+stats.getStat(WograldStatsListener.CS_STAT_POW)+" "+stats.getStat(WograldStatsListener.CS_STAT_CHA));
+            sendReply("request stat stats "+stats.getStat(WograldStatsListener.CS_STAT_STR)+" "+stats.getStat(WograldStatsListener.CS_STAT_CON)+" "+stats.getStat(WograldStatsListener.CS_STAT_DEX)+" "+stats.getStat(WograldStatsListener.CS_STAT_INT)+" "+stats.getStat(WograldStatsListener.CS_STAT_WIS)+" "+stats.getStat(WograldStatsListener.CS_STAT_POW)+" "+stats.getStat(WograldStatsListener.CS_STAT_CHA));
         } else if (params.equals("stat stats_race")) {
-            commandSent("request stat stats_race "+stats.getStat(WograldStatsListener.CS_STAT_RACE_STR)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_CON)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_DEX)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_INT)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_WIS)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_POW)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_CHA));
+            sendReply("request stat stats_race "+stats.getStat(WograldStatsListener.CS_STAT_RACE_STR)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_CON)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_DEX)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_INT)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_WIS)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_POW)+" "+stats.getStat(WograldStatsListener.CS_STAT_RACE_CHA));
         } else if (params.equals("stat stats_base")) {
-            commandSent("request stat stats_base "+stats.getStat(WograldStatsListener.CS_STAT_BASE_STR)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_CON)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_DEX)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_INT)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_WIS)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_POW)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_CHA));
+            sendReply("request stat stats_base "+stats.getStat(WograldStatsListener.CS_STAT_BASE_STR)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_CON)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_DEX)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_INT)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_WIS)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_POW)+" "+stats.getStat(WograldStatsListener.CS_STAT_BASE_CHA));
         } else if (params.equals("stat stats_applied")) {
-            commandSent("request stat stats_applied "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_STR)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_CON)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_DEX)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_INT)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_WIS)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_POW)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_CHA));
+            sendReply("request stat stats_applied "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_STR)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_CON)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_DEX)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_INT)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_WIS)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_POW)+" "+stats.getStat(WograldStatsListener.CS_STAT_APPLIED_CHA));
         } else if (params.equals("stat cmbt")) {
-            commandSent("request stat cmbt "+stats.getStat(WograldStatsListener.CS_STAT_WC)+" "+stats.getStat(WograldStatsListener.CS_STAT_AC)+" "+stats.getStat(WograldStatsListener.CS_STAT_DAM)+" "+stats.getStat(WograldStatsListener.CS_STAT_SPEED)+" "+stats.getStat(WograldStatsListener.CS_STAT_WEAP_SP));
+            sendReply("request stat cmbt "+stats.getStat(WograldStatsListener.CS_STAT_WC)+" "+stats.getStat(WograldStatsListener.CS_STAT_AC)+" "+stats.getStat(WograldStatsListener.CS_STAT_DAM)+" "+stats.getStat(WograldStatsListener.CS_STAT_SPEED)+" "+stats.getStat(WograldStatsListener.CS_STAT_WEAP_SP));
         } else if (params.equals("stat hp")) {
-            commandSent("request stat hp "+stats.getStat(WograldStatsListener.CS_STAT_HP)+" "+stats.getStat(WograldStatsListener.CS_STAT_MAXHP)+" "+stats.getStat(WograldStatsListener.CS_STAT_SP)+" "+stats.getStat(WograldStatsListener.CS_STAT_MAXSP)+" "+stats.getStat(WograldStatsListener.CS_STAT_GRACE)+" "+stats.getStat(WograldStatsListener.CS_STAT_MAXGRACE)+" "+stats.getStat(WograldStatsListener.CS_STAT_FOOD));
+            sendReply("request stat hp "+stats.getStat(WograldStatsListener.CS_STAT_HP)+" "+stats.getStat(WograldStatsListener.CS_STAT_MAXHP)+" "+stats.getStat(WograldStatsListener.CS_STAT_SP)+" "+stats.getStat(WograldStatsListener.CS_STAT_MAXSP)+" "+stats.getStat(WograldStatsListener.CS_STAT_GRACE)+" "+stats.getStat(WograldStatsListener.CS_STAT_MAXGRACE)+" "+stats.getStat(WograldStatsListener.CS_STAT_FOOD));
         } else if (params.equals("stat xp")) {
             final StringBuilder sb = new StringBuilder("request stat xp ");
             sb.append(stats.getStat(WograldStatsListener.CS_STAT_LEVEL));
@@ -435,7 +552,7 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
                     sb.append(" 0 0");
                 }
             }
-            commandSent(sb.toString());
+            sendReply(sb.toString());
         } else if (params.equals("stat resists")) {
             final StringBuilder sb = new StringBuilder("request stat resists");
             for (int i = WograldStatsListener.CS_STAT_RESIST_START; i <= WograldStatsListener.CS_STAT_RESIST_END; i++) {
@@ -446,28 +563,32 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
             for (int i = WograldStatsListener.CS_STAT_RESIST_END+1-WograldStatsListener.CS_STAT_RESIST_START; i < 30; i++) {
                 sb.append(" 0");
             }
-            commandSent(sb.toString());
+            sendReply(sb.toString());
         } else if (params.equals("stat paths")) {
-            commandSent("request stat paths "+stats.getStat(WograldStatsListener.CS_STAT_SPELL_ATTUNE)+" "+stats.getStat(WograldStatsListener.CS_STAT_SPELL_REPEL)+" "+stats.getStat(WograldStatsListener.CS_STAT_SPELL_DENY));
+            sendReply("request stat paths "+stats.getStat(WograldStatsListener.CS_STAT_SPELL_ATTUNE)+" "+stats.getStat(WograldStatsListener.CS_STAT_SPELL_REPEL)+" "+stats.getStat(WograldStatsListener.CS_STAT_SPELL_DENY));
         } else if (params.equals("flags")) {
-            commandSent("request flags "+stats.getStat(WograldStatsListener.CS_STAT_FLAGS)+" "+(commandQueue.checkFire() ? "1" : "0")+" "+(commandQueue.checkRun() ? "1" : "0")+" 0");
+            sendReply("request flags "+stats.getStat(WograldStatsListener.CS_STAT_FLAGS)+" "+(commandQueue.checkFire() ? "1" : "0")+" "+(commandQueue.checkRun() ? "1" : "0")+" 0");
+        } else if (params.equals("net")) {
+            sendReply("request net "+Math.round(commandQueue.getSmoothedRtt())+" "+Math.round(commandQueue.getRttVariation())+" "+Math.round(commandQueue.getMinRtt())+" "+commandQueue.getServerTime()+" "+commandQueue.getPendingCommands()+" "+commandQueue.getMaxPendingCommands()+" "+(commandQueue.isAdaptive() ? "1" : "0"));
+        } else if (params.equals("queue")) {
+            sendReply("request queue "+outputQueue.getSize()+" "+outputQueue.getCapacity()+" "+outputQueue.getDroppedMessages()+" "+outputQueue.getCoalescedMessages()+" "+outputQueue.getPolicy().toString().toLowerCase().replace('_', '-'));
         } else if (params.equals("items inv")) {
             for (final CfItem item : itemSet.getPlayerInventory()) {
                 commandSentItem("request items inv", item);
             }
-            commandSent("request items inv end");
+            sendReply("request items inv end");
         } else if (params.equals("items actv")) {
             for (final CfItem item : itemSet.getPlayerInventory()) {
                 if (item.isApplied()) {
                     commandSentItem("request items actv", item);
                 }
             }
-            commandSent("request items actv end");
+            sendReply("request items actv end");
         } else if (params.equals("items on")) {
             for (final CfItem item : itemSet.getItemsByLocation(0)) {
                 commandSentItem("request items on", item);
             }
-            commandSent("request items on end");
+            sendReply("request items on end");
         } else if (params.equals("items cont")) {
             final int containerTag = floorView.getCurrentFloor();
             if (containerTag != 0) {
@@ -475,9 +596,9 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
                     commandSentItem("request items cont", item);
                 }
             }
-            commandSent("request items cont end");
+            sendReply("request items cont end");
         } else if (params.equals("map pos")) {
-            commandSent("request map pos "+mapUpdaterState.getMapWidth()/2+" "+mapUpdaterState.getMapHeight()/2);
+            sendReply("request map pos "+mapUpdaterState.getMapWidth()/2+" "+mapUpdaterState.getMapHeight()/2);
         } else if (params.equals("map near")) {
             final CfMap map = mapUpdaterState.getMap();
             final int centerX = mapUpdaterState.getMapWidth()/2;
@@ -524,15 +645,15 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
             for (int i = WograldStatsListener.CS_STAT_SKILLINFO; i < WograldStatsListener.CS_STAT_SKILLINFO+WograldStatsListener.CS_NUM_SKILLS; i++) {
                 final Object skill = skillSet.getSkill(i);
                 if (skill != null) {
-                    commandSent("request skills "+i+" "+skill);
+                    sendReply("request skills "+i+" "+skill);
                 }
             }
-            commandSent("request skills end");
+            sendReply("request skills end");
         } else if (params.equals("spells")) {
             for (final Spell spell : spellsManager) {
-                commandSent("request spells "+spell.getTag()+" "+spell.getLevel()+" "+spell.getMana()+" "+spell.getGrace()+" "+spell.getSkill()+" "+spell.getPath()+" "+spell.getCastingTime()+" "+spell.getDamage()+" "+spell.getName());
+                sendReply("request spells "+spell.getTag()+" "+spell.getLevel()+" "+spell.getMana()+" "+spell.getGrace()+" "+spell.getSkill()+" "+spell.getPath()+" "+spell.getCastingTime()+" "+spell.getDamage()+" "+spell.getName());
             }
-            commandSent("request spells end");
+            sendReply("request spells end");
         } else {
             reportError("syntax error: request "+params);
         }
@@ -647,6 +768,80 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
         }
     }
 
+    /**
+     * Processes a "queue" command from the script process.
+     * @param params the command arguments
+     */
+    private void cmdQueue(@NotNull final String params) {
+        final String[] tmp = params.split(" +");
+        if (tmp.length > 2) {
+            reportError("syntax error: queue "+params);
+            return;
+        }
+
+        final int capacity;
+        try {
+            capacity = Integer.parseInt(tmp[0]);
+        } catch (final NumberFormatException ignored) {
+            reportError("syntax error: queue "+params);
+            return;
+        }
+        if (capacity < 1) {
+            reportError("syntax error: queue "+params);
+            return;
+        }
+
+        if (tmp.length == 2) {
+            final OverflowPolicy policy;
+            try {
+                policy = OverflowPolicy.valueOf(tmp[1].toUpperCase().replace('-', '_'));
+            } catch (final IllegalArgumentException ignored) {
+                reportError("syntax error: queue "+params);
+                return;
+            }
+            outputQueue.setPolicy(policy);
+        }
+        outputQueue.setCapacity(capacity);
+    }
+
+    /**
+     * Processes a "binary" command from the script process.
+     */
+    private void cmdBinary() {
+        if (!binary) {
+            binary = true;
+            outputQueue.offer(BINARY_MESSAGE, null, false);
+        }
+    }
+
+    /**
+     * Returns the subscription for a "subscribe" or "unsubscribe" command.
+     * Reports an error if the script does not use the binary protocol or if
+     * the subscription does not exist.
+     * @param cmdLine the command
+     * @param name the subscription name
+     * @return the subscription or <code>null</code>
+     */
+    @Nullable
+    private AbstractSubscription getSubscription(@NotNull final String cmdLine, @NotNull final String name) {
+        if (!binary) {
+            reportError("'"+cmdLine+"' requires the binary protocol.");
+            return null;
+        }
+
+        if (name.equals("map")) {
+            return mapSubscription;
+        }
+        if (name.equals("stats")) {
+            return statsSubscription;
+        }
+        if (name.equals("items")) {
+            return itemsSubscription;
+        }
+        reportError("syntax error: "+cmdLine);
+        return null;
+    }
+
     /**
      * Processes a line received from the script process.
      * @param cmdLine the line
@@ -685,6 +880,28 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
             } else {
                 reportError("syntax error: "+cmdLine);
             }
+        } else if (tmp[0].equals("queue")) {
+            if (tmp.length == 2) {
+                cmdQueue(tmp[1]);
+            } else {
+                reportError("syntax error: "+cmdLine);
+            }
+        } else if (tmp[0].equals("binary")) {
+            if (tmp.length == 1) {
+                cmdBinary();
+            } else {
+                reportError("The 'binary' command does not take arguments.");
+            }
+        } else if (tmp[0].equals("subscribe")) {
+            final AbstractSubscription subscription = getSubscription(cmdLine, tmp.length == 2 ? tmp[1] : "");
+            if (subscription != null) {
+                subscription.subscribe();
+            }
+        } else if (tmp[0].equals("unsubscribe")) {
+            final AbstractSubscription subscription = getSubscription(cmdLine, tmp.length == 2 ? tmp[1] : "");
+            if (subscription != null) {
+                subscription.unsubscribe();
+            }
         } else if (tmp[0].equals("monitor")) {
             if (tmp.length == 1) {
                 cmdMonitor();
@@ -724,6 +941,7 @@ public class DefaultScriptProcess implements Runnable, ScriptProcess {
     @Override
     public void killScript() {
         killed = true;
+        outputQueue.close();
         process.destroy();
     }
 
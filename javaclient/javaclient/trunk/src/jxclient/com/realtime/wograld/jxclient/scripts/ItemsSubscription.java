@@ -0,0 +1,258 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import com.realtime.wograld.jxclient.items.CfItem;
+import com.realtime.wograld.jxclient.items.ItemSet;
+import com.realtime.wograld.jxclient.items.ItemSetListener;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A subscription sending {@link ScriptFrame#ITEMS} frames. Snapshots contain
+ * the player's inventory, the items on the floor, and the contents of the
+ * opened container; changes are reported for all items.
+ * @author Andreas Kirschbaum
+ */
+public class ItemsSubscription extends AbstractSubscription {
+
+    /**
+     * The {@link ItemSet} to watch.
+     */
+    @NotNull
+    private final ItemSet itemSet;
+
+    /**
+     * The tags of the changed items not yet taken by {@link #takeChanges()}.
+     */
+    @NotNull
+    private Set<Integer> pendingTags = new LinkedHashSet<Integer>();
+
+    /**
+     * The tags of the changed items to encode. Accessed only by the writer
+     * thread.
+     */
+    @NotNull
+    private Set<Integer> changedTags = new LinkedHashSet<Integer>();
+
+    /**
+     * The {@link ItemSetListener} attached to {@link #itemSet}.
+     */
+    @NotNull
+    private final ItemSetListener itemSetListener = new ItemSetListener() {
+
+        @Override
+        public void itemAdded(@NotNull final CfItem item) {
+            itemChanged(item);
+        }
+
+        @Override
+        public void itemMoved(@NotNull final CfItem item) {
+            itemChanged(item);
+        }
+
+        @Override
+        public void itemChanged(@NotNull final CfItem item) {
+            synchronized (ItemsSubscription.this) {
+                pendingTags.add(item.getTag());
+            }
+            changed();
+        }
+
+        @Override
+        public void itemRemoved(@NotNull final CfItem item) {
+            itemChanged(item);
+        }
+
+        @Override
+        public void playerChanged(@Nullable final CfItem player) {
+            snapshotNeeded();
+        }
+
+        @Override
+        public void openContainerChanged(final int tag) {
+            snapshotNeeded();
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param outputQueue the output queue for sending frames
+     * @param itemSet the item set to watch
+     */
+    public ItemsSubscription(@NotNull final ScriptOutputQueue<ScriptMessage> outputQueue, @NotNull final ItemSet itemSet) {
+        super(outputQueue);
+        this.itemSet = itemSet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addListeners() {
+        itemSet.addItemSetListener(itemSetListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void removeListeners() {
+        itemSet.removeItemSetListener(itemSetListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void takeChanges() {
+        final Set<Integer> tmp = changedTags;
+        changedTags = pendingTags;
+        pendingTags = tmp;
+        pendingTags.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void discardChanges() {
+        pendingTags.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    protected byte[] encodeSnapshot() {
+        final Collection<CfItem> items = new ArrayList<CfItem>();
+        for (final CfItem item : itemSet.getPlayerInventory()) {
+            items.add(item);
+        }
+        items.addAll(itemSet.getItemsByLocation(0));
+        final int containerTag = itemSet.getOpenContainer();
+        if (containerTag != 0) {
+            items.addAll(itemSet.getItemsByLocation(containerTag));
+        }
+
+        final ScriptFrame frame = new ScriptFrame(ScriptFrame.ITEMS);
+        final DataOutputStream out = frame.getOutput();
+        try {
+            out.writeByte(ScriptFrame.SNAPSHOT);
+            out.writeInt(items.size());
+            for (final CfItem item : items) {
+                writeItem(out, item);
+            }
+        } catch (final IOException ex) {
+            throw new AssertionError(ex); // will never happen: writes to memory
+        }
+        return frame.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    protected byte[] encodeChanges() {
+        if (changedTags.isEmpty()) {
+            return null;
+        }
+
+        final ScriptFrame frame = new ScriptFrame(ScriptFrame.ITEMS);
+        final DataOutputStream out = frame.getOutput();
+        try {
+            out.writeByte(0);
+            out.writeInt(changedTags.size());
+            for (final int tag : changedTags) {
+                final CfItem item = itemSet.getItemByTag(tag);
+                if (item == null) {
+                    out.writeByte(1);
+                    out.writeInt(tag);
+                } else {
+                    writeItem(out, item);
+                }
+            }
+        } catch (final IOException ex) {
+            throw new AssertionError(ex); // will never happen: writes to memory
+        }
+        return frame.toByteArray();
+    }
+
+    /**
+     * Encodes an item that has not been removed.
+     * @param out the output stream to write to
+     * @param item the item
+     * @throws IOException if writing fails
+     */
+    private static void writeItem(@NotNull final DataOutputStream out, @NotNull final CfItem item) throws IOException {
+        out.writeByte(0);
+        out.writeInt(item.getTag());
+        out.writeInt(item.getLocation());
+        out.writeInt(Math.max(1, item.getNrOf()));
+        out.writeInt(Math.max(0, item.getWeight()));
+        out.writeInt(getFlags(item));
+        out.writeInt(item.getType());
+        out.writeInt(item.getFace().getFaceNum());
+        out.writeUTF(item.getName());
+    }
+
+    /**
+     * Returns the flags of an item as reported to scripts.
+     * @param item the item
+     * @return the flags
+     */
+    public static int getFlags(@NotNull final CfItem item) {
+        int flags = 0;
+        if (item.isMagic()) {
+            flags |= 0x100;
+        }
+        if (item.isCursed()) {
+            flags |= 0x80;
+        }
+        if (item.isDamned()) {
+            flags |= 0x40;
+        }
+        if (item.isUnpaid()) {
+            flags |= 0x20;
+        }
+        if (item.isLocked()) {
+            flags |= 0x10;
+        }
+        if (item.isApplied()) {
+            flags |= 0x08;
+        }
+        if (item.isOpen()) {
+            flags |= 0x04;
+        }
+        return flags;
+    }
+
+}
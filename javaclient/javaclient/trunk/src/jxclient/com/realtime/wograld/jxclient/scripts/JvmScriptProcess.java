@@ -0,0 +1,642 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import com.realtime.wograld.jxclient.items.CfItem;
+import com.realtime.wograld.jxclient.items.ItemSet;
+import com.realtime.wograld.jxclient.items.ItemSetListener;
+import com.realtime.wograld.jxclient.map.CfMap;
+import com.realtime.wograld.jxclient.map.CfMapSquare;
+import com.realtime.wograld.jxclient.mapupdater.MapListener;
+import com.realtime.wograld.jxclient.mapupdater.MapUpdaterState;
+import com.realtime.wograld.jxclient.queue.CommandQueue;
+import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
+import com.realtime.wograld.jxclient.server.wograld.WograldTickListener;
+import com.realtime.wograld.jxclient.skills.SkillSet;
+import com.realtime.wograld.jxclient.stats.Stats;
+import com.realtime.wograld.jxclient.stats.StatsListener;
+import com.realtime.wograld.jxclient.util.EventListenerList2;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link ScriptProcess} executing a {@link ClientScript} inside the client's
+ * JVM. Notifications are queued and delivered by a thread owned by the
+ * script; the thread's CPU time is checked by a {@link ScriptWatchdog}.
+ * @author Andreas Kirschbaum
+ */
+public class JvmScriptProcess implements Runnable, ScriptProcess {
+
+    /**
+     * The maximum number of pending notifications.
+     */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    /**
+     * The {@link ThreadMXBean} for measuring CPU time.
+     */
+    @NotNull
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The script ID identifying this script instance.
+     */
+    private final int scriptId;
+
+    /**
+     * The script command including arguments.
+     */
+    @NotNull
+    private final String filename;
+
+    /**
+     * The executed script.
+     */
+    @NotNull
+    private final ClientScript script;
+
+    /**
+     * The script arguments.
+     */
+    @NotNull
+    private final String[] args;
+
+    /**
+     * The connection instance.
+     */
+    @NotNull
+    private final WograldServerConnection wograldServerConnection;
+
+    /**
+     * The {@link Stats} instance to watch.
+     */
+    @NotNull
+    private final Stats stats;
+
+    /**
+     * The {@link ItemSet} instance to watch.
+     */
+    @NotNull
+    private final ItemSet itemSet;
+
+    /**
+     * The {@link MapUpdaterState} instance to watch.
+     */
+    @NotNull
+    private final MapUpdaterState mapUpdaterState;
+
+    /**
+     * The {@link ScriptContext} passed to {@link #script}.
+     */
+    @NotNull
+    private final ScriptContext context;
+
+    /**
+     * The pending notifications.
+     */
+    @NotNull
+    private final ScriptOutputQueue<Runnable> notifications = new ScriptOutputQueue<Runnable>(QUEUE_CAPACITY, OverflowPolicy.COALESCE);
+
+    /**
+     * The {@link ScriptProcessListener ScriptProcessListeners} to notify.
+     */
+    @NotNull
+    private final EventListenerList2<ScriptProcessListener> scriptProcessListeners = new EventListenerList2<ScriptProcessListener>(ScriptProcessListener.class);
+
+    /**
+     * The object for synchronizing access to {@link #listenersAttached} and
+     * {@link #terminated}.
+     */
+    @NotNull
+    private final Object sync = new Object();
+
+    /**
+     * Whether the listeners are attached.
+     */
+    private boolean listenersAttached = false;
+
+    /**
+     * Whether {@link ScriptProcessListener#scriptTerminated(String)} has been
+     * called.
+     */
+    private boolean terminated = false;
+
+    /**
+     * Whether this script has been killed.
+     */
+    private volatile boolean killed = false;
+
+    /**
+     * The thread executing the script or <code>null</code> if not running.
+     */
+    @Nullable
+    private volatile Thread thread = null;
+
+    /**
+     * The CPU time in nanoseconds consumed by completed notifications. Only
+     * used if {@link #THREAD_MX_BEAN} does not support CPU time measurement.
+     */
+    private volatile long elapsedTime = 0;
+
+    /**
+     * The start time of the current notification or <code>0</code>. Only
+     * used if {@link #THREAD_MX_BEAN} does not support CPU time measurement.
+     */
+    private volatile long notificationStart = 0;
+
+    /**
+     * The {@link StatsListener} attached to {@link #stats}.
+     */
+    @NotNull
+    private final StatsListener statsListener = new StatsListener() {
+
+        @Override
+        public void reset() {
+            // ignore
+        }
+
+        @Override
+        public void statChanged(final int statNo, final int value) {
+            queueNotification(new Runnable() {
+
+                @Override
+                public void run() {
+                    script.statChanged(statNo, value);
+                }
+
+            }, "stat "+statNo);
+        }
+
+        @Override
+        public void simpleWeaponSpeedChanged(final boolean simpleWeaponSpeed) {
+            // ignore
+        }
+
+        @Override
+        public void titleChanged(@NotNull final String title) {
+            // ignore
+        }
+
+        @Override
+        public void rangeChanged(@NotNull final String range) {
+            // ignore
+        }
+
+        @Override
+        public void activeSkillChanged(@NotNull final String activeSkill) {
+            // ignore
+        }
+
+        @Override
+        public void experienceChanged(final long exp) {
+            // ignore
+        }
+
+        @Override
+        public void experienceNextLevelChanged(final long expNextLevel) {
+            // ignore
+        }
+
+    };
+
+    /**
+     * The {@link ItemSetListener} attached to {@link #itemSet}.
+     */
+    @NotNull
+    private final ItemSetListener itemSetListener = new ItemSetListener() {
+
+        @Override
+        public void itemAdded(@NotNull final CfItem item) {
+            itemChanged(item);
+        }
+
+        @Override
+        public void itemMoved(@NotNull final CfItem item) {
+            itemChanged(item);
+        }
+
+        @Override
+        public void itemChanged(@NotNull final CfItem item) {
+            final int tag = item.getTag();
+            queueNotification(new Runnable() {
+
+                @Override
+                public void run() {
+                    script.itemChanged(tag);
+                }
+
+            }, "item "+tag);
+        }
+
+        @Override
+        public void itemRemoved(@NotNull final CfItem item) {
+            itemChanged(item);
+        }
+
+        @Override
+        public void playerChanged(@Nullable final CfItem player) {
+            // ignore
+        }
+
+        @Override
+        public void openContainerChanged(final int tag) {
+            // ignore
+        }
+
+    };
+
+    /**
+     * The {@link MapListener} attached to {@link #mapUpdaterState}.
+     */
+    @NotNull
+    private final MapListener mapListener = new MapListener() {
+
+        @Override
+        public void mapChanged(@NotNull final CfMap map, @NotNull final Set<CfMapSquare> changedSquares) {
+            queueNotification(new Runnable() {
+
+                @Override
+                public void run() {
+                    script.mapChanged();
+                }
+
+            }, "map");
+        }
+
+    };
+
+    /**
+     * The {@link WograldTickListener} attached to {@link
+     * #wograldServerConnection}.
+     */
+    @NotNull
+    private final WograldTickListener tickListener = new WograldTickListener() {
+
+        @Override
+        public void tick(final int tickNo) {
+            queueNotification(new Runnable() {
+
+                @Override
+                public void run() {
+                    script.tick(tickNo);
+                }
+
+            }, "tick");
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param scriptId the script ID identifying the new script
+     * @param filename the script command including arguments
+     * @param script the script to execute
+     * @param args the script arguments
+     * @param commandQueue the command queue for sending commands
+     * @param wograldServerConnection the server connection
+     * @param stats the stats instance to watch
+     * @param itemSet the item set instance to watch
+     * @param mapUpdaterState the map updater state instance to watch
+     * @param skillSet the skill set for looking up skill names
+     */
+    public JvmScriptProcess(final int scriptId, @NotNull final String filename, @NotNull final ClientScript script, @NotNull final String[] args, @NotNull final CommandQueue commandQueue, @NotNull final WograldServerConnection wograldServerConnection, @NotNull final Stats stats, @NotNull final ItemSet itemSet, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final SkillSet skillSet) {
+        this.scriptId = scriptId;
+        this.filename = filename;
+        this.script = script;
+        this.args = args;
+        this.wograldServerConnection = wograldServerConnection;
+        this.stats = stats;
+        this.itemSet = itemSet;
+        this.mapUpdaterState = mapUpdaterState;
+        context = new ScriptContext(this, commandQueue, wograldServerConnection, stats, itemSet, mapUpdaterState, skillSet);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getScriptId() {
+        return scriptId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        @Nullable String result = null;
+        try {
+            if (!call(new Runnable() {
+
+                @Override
+                public void run() {
+                    script.start(context, args);
+                }
+
+            })) {
+                return;
+            }
+
+            attachListeners();
+            while (true) {
+                final Runnable notification;
+                try {
+                    notification = notifications.take();
+                } catch (final InterruptedException ignored) {
+                    break;
+                }
+                if (notification == null || !call(notification)) {
+                    break;
+                }
+            }
+
+            call(new Runnable() {
+
+                @Override
+                public void run() {
+                    script.stop();
+                }
+
+            });
+        } catch (final RuntimeException ex) {
+            result = ex.toString();
+        } finally {
+            detachListeners();
+            notifications.close();
+            thread = null;
+            terminated(killed ? "killed" : result);
+        }
+    }
+
+    /**
+     * Calls a function of {@link #script}.
+     * @param runnable the function to call
+     * @return whether the script should continue
+     * @throws RuntimeException if the script has thrown an exception
+     */
+    private boolean call(@NotNull final Runnable runnable) {
+        if (killed) {
+            return false;
+        }
+
+        notificationStart = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            elapsedTime += System.nanoTime()-notificationStart;
+            notificationStart = 0;
+        }
+        return !killed;
+    }
+
+    /**
+     * Queues a notification for {@link #script}.
+     * @param runnable the notification
+     * @param key the key identifying superseded notifications
+     */
+    private void queueNotification(@NotNull final Runnable runnable, @NotNull final String key) {
+        notifications.offer(runnable, key, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commandSent(@NotNull final String cmd) {
+        notifications.offer(newMessage(cmd), null, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commandSent(@NotNull final String cmd, @Nullable final String key) {
+        notifications.offer(newMessage(cmd), key, true);
+    }
+
+    /**
+     * Returns a notification delivering a message to {@link #script}.
+     * @param message the message
+     * @return the notification
+     */
+    @NotNull
+    private Runnable newMessage(@NotNull final String message) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                script.messageReceived(message);
+            }
+
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPendingMessages() {
+        return notifications.getSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDroppedMessages() {
+        return notifications.getDroppedMessages();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCpuTime() {
+        final Thread tmp = thread;
+        if (tmp != null && THREAD_MX_BEAN.isThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            final long cpuTime = THREAD_MX_BEAN.getThreadCpuTime(tmp.getId());
+            if (cpuTime >= 0) {
+                return cpuTime;
+            }
+        }
+
+        final long start = notificationStart;
+        return elapsedTime+(start == 0 ? 0 : System.nanoTime()-start);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addScriptProcessListener(@NotNull final ScriptProcessListener scriptProcessListener) {
+        scriptProcessListeners.add(scriptProcessListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void killScript() {
+        kill("killed");
+    }
+
+    /**
+     * Terminates the script normally after all pending notifications have
+     * been delivered.
+     */
+    public void finish() {
+        notifications.close();
+    }
+
+    /**
+     * Unloads the script. The script does not receive notifications anymore
+     * and its commands are ignored. A script executing a notification is
+     * interrupted; it is stopped when the notification returns.
+     * @param reason the reason reported to the listeners
+     */
+    public void kill(@NotNull final String reason) {
+        killed = true;
+        detachListeners();
+        notifications.close();
+        final Thread tmp = thread;
+        if (tmp != null) {
+            tmp.interrupt();
+        }
+        terminated(reason);
+    }
+
+    /**
+     * Returns whether this script has been killed.
+     * @return whether this script has been killed
+     */
+    public boolean isKilled() {
+        return killed;
+    }
+
+    /**
+     * Attaches the listeners delivering notifications.
+     */
+    private void attachListeners() {
+        synchronized (sync) {
+            if (listenersAttached || killed) {
+                return;
+            }
+            listenersAttached = true;
+        }
+        stats.addWograldStatsListener(statsListener);
+        itemSet.addItemSetListener(itemSetListener);
+        mapUpdaterState.addWograldMapListener(mapListener);
+        wograldServerConnection.addWograldTickListener(tickListener);
+    }
+
+    /**
+     * Detaches the listeners delivering notifications.
+     */
+    private void detachListeners() {
+        synchronized (sync) {
+            if (!listenersAttached) {
+                return;
+            }
+            listenersAttached = false;
+        }
+        stats.removeWograldStatsListener(statsListener);
+        itemSet.removeItemSetListener(itemSetListener);
+        mapUpdaterState.removeWograldMapListener(mapListener);
+        wograldServerConnection.removeWograldTickListener(tickListener);
+    }
+
+    /**
+     * Notifies the listeners that the script has terminated. Does nothing if
+     * the listeners have been notified before.
+     * @param result the result or <code>null</code> if the script has
+     * terminated normally
+     */
+    private void terminated(@Nullable final String result) {
+        synchronized (sync) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+        }
+        for (final ScriptProcessListener scriptProcessListener : scriptProcessListeners.getListeners()) {
+            scriptProcessListener.scriptTerminated(result);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    public String toString() {
+        return scriptId+" "+filename;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(@NotNull final ScriptProcess o) {
+        if (scriptId < o.getScriptId()) {
+            return -1;
+        } else if (scriptId > o.getScriptId()) {
+            return +1;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return scriptId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        if (obj == null || !(obj instanceof ScriptProcess)) {
+            return false;
+        }
+
+        final ScriptProcess scriptProcess = (ScriptProcess)obj;
+        return scriptProcess.getScriptId() == scriptId;
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import com.realtime.wograld.jxclient.faces.Face;
+import com.realtime.wograld.jxclient.map.CfMap;
+import com.realtime.wograld.jxclient.map.CfMapSquare;
+import com.realtime.wograld.jxclient.mapupdater.MapListener;
+import com.realtime.wograld.jxclient.mapupdater.MapScrollListener;
+import com.realtime.wograld.jxclient.mapupdater.MapUpdaterState;
+import com.realtime.wograld.jxclient.mapupdater.NewmapListener;
+import com.realtime.wograld.jxclient.server.wograld.messages.Map2;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A subscription sending {@link ScriptFrame#MAP} frames. Changed squares are
+ * collected as reported by {@link MapUpdaterState}; their contents are read
+ * when the frame is encoded.
+ * @author Andreas Kirschbaum
+ */
+public class MapSubscription extends AbstractSubscription {
+
+    /**
+     * The {@link MapUpdaterState} to watch.
+     */
+    @NotNull
+    private final MapUpdaterState mapUpdaterState;
+
+    /**
+     * The changed squares not yet taken by {@link #takeChanges()}.
+     */
+    @NotNull
+    private Set<CfMapSquare> pendingSquares = new HashSet<CfMapSquare>();
+
+    /**
+     * The x-distance the map has scrolled since the last frame.
+     */
+    private int pendingDx = 0;
+
+    /**
+     * The y-distance the map has scrolled since the last frame.
+     */
+    private int pendingDy = 0;
+
+    /**
+     * The changed squares to encode. Accessed only by the writer thread.
+     */
+    @NotNull
+    private Set<CfMapSquare> squares = new HashSet<CfMapSquare>();
+
+    /**
+     * The x-distance to encode.
+     */
+    private int dx = 0;
+
+    /**
+     * The y-distance to encode.
+     */
+    private int dy = 0;
+
+    /**
+     * The {@link MapListener} attached to {@link #mapUpdaterState}.
+     */
+    @NotNull
+    private final MapListener mapListener = new MapListener() {
+
+        @Override
+        public void mapChanged(@NotNull final CfMap map, @NotNull final Set<CfMapSquare> changedSquares) {
+            synchronized (MapSubscription.this) {
+                pendingSquares.addAll(changedSquares);
+            }
+            changed();
+        }
+
+    };
+
+    /**
+     * The {@link MapScrollListener} attached to {@link #mapUpdaterState}.
+     */
+    @NotNull
+    private final MapScrollListener mapScrollListener = new MapScrollListener() {
+
+        @Override
+        public void mapScrolled(final int dx, final int dy) {
+            synchronized (MapSubscription.this) {
+                pendingDx += dx;
+                pendingDy += dy;
+            }
+            changed();
+        }
+
+    };
+
+    /**
+     * The {@link NewmapListener} attached to {@link #mapUpdaterState}.
+     */
+    @NotNull
+    private final NewmapListener newmapListener = new NewmapListener() {
+
+        @Override
+        public void commandNewmapReceived() {
+            snapshotNeeded();
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param outputQueue the output queue for sending frames
+     * @param mapUpdaterState the map updater state to watch
+     */
+    public MapSubscription(@NotNull final ScriptOutputQueue<ScriptMessage> outputQueue, @NotNull final MapUpdaterState mapUpdaterState) {
+        super(outputQueue);
+        this.mapUpdaterState = mapUpdaterState;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addListeners() {
+        mapUpdaterState.addWograldMapListener(mapListener);
+        mapUpdaterState.addWograldMapScrollListener(mapScrollListener);
+        mapUpdaterState.addWograldNewmapListener(newmapListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void removeListeners() {
+        mapUpdaterState.removeWograldMapListener(mapListener);
+        mapUpdaterState.removeWograldMapScrollListener(mapScrollListener);
+        mapUpdaterState.removeWograldNewmapListener(newmapListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void takeChanges() {
+        final Set<CfMapSquare> tmp = squares;
+        squares = pendingSquares;
+        pendingSquares = tmp;
+        pendingSquares.clear();
+        dx = pendingDx;
+        dy = pendingDy;
+        pendingDx = 0;
+        pendingDy = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void discardChanges() {
+        pendingSquares.clear();
+        pendingDx = 0;
+        pendingDy = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    protected byte[] encodeSnapshot() {
+        final CfMap map = mapUpdaterState.getMap();
+        final int width = mapUpdaterState.getMapWidth();
+        final int height = mapUpdaterState.getMapHeight();
+        final ScriptFrame frame = new ScriptFrame(ScriptFrame.MAP);
+        final DataOutputStream out = frame.getOutput();
+        try {
+            out.writeByte(ScriptFrame.SNAPSHOT);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(width*height);
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (map) {
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        writeSquare(out, map.getMapSquare(x, y), x, y);
+                    }
+                }
+            }
+        } catch (final IOException ex) {
+            throw new AssertionError(ex); // will never happen: writes to memory
+        }
+        return frame.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    protected byte[] encodeChanges() {
+        if (squares.isEmpty() && dx == 0 && dy == 0) {
+            return null;
+        }
+
+        final CfMap map = mapUpdaterState.getMap();
+        final int width = mapUpdaterState.getMapWidth();
+        final int height = mapUpdaterState.getMapHeight();
+        final ScriptFrame frame = new ScriptFrame(ScriptFrame.MAP);
+        final DataOutputStream out = frame.getOutput();
+        try {
+            out.writeByte(0);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(dx);
+            out.writeInt(dy);
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (map) {
+                final int offsetX = map.getOffsetX();
+                final int offsetY = map.getOffsetY();
+                final List<CfMapSquare> visibleSquares = new ArrayList<CfMapSquare>(squares.size());
+                for (final CfMapSquare square : squares) {
+                    final int x = square.getX()+offsetX;
+                    final int y = square.getY()+offsetY;
+                    if (0 <= x && x < width && 0 <= y && y < height) {
+                        visibleSquares.add(square);
+                    }
+                }
+                out.writeInt(visibleSquares.size());
+                for (final CfMapSquare square : visibleSquares) {
+                    final int x = square.getX()+offsetX;
+                    final int y = square.getY()+offsetY;
+                    writeSquare(out, map.getMapSquare(x, y), x, y);
+                }
+            }
+        } catch (final IOException ex) {
+            throw new AssertionError(ex); // will never happen: writes to memory
+        }
+        return frame.toByteArray();
+    }
+
+    /**
+     * Encodes one map square.
+     * @param out the output stream to write to
+     * @param square the map square
+     * @param x the x-coordinate relative to the view area
+     * @param y the y-coordinate relative to the view area
+     * @throws IOException if writing fails
+     */
+    private static void writeSquare(@NotNull final DataOutputStream out, @NotNull final CfMapSquare square, final int x, final int y) throws IOException {
+        out.writeShort(x);
+        out.writeShort(y);
+        out.writeByte(square.getDarkness(0));
+        out.writeByte(square.isFogOfWar(0) ? 1 : 0);
+        int mask = 0;
+        for (int layer = 0; layer < Map2.NUM_LAYERS; layer++) {
+            if (square.getFace(layer) != CfMapSquare.DEFAULT_FACE) {
+                mask |= 1<<layer;
+            }
+        }
+        out.writeInt(mask);
+        for (int layer = 0; layer < Map2.NUM_LAYERS; layer++) {
+            final Face face = square.getFace(layer);
+            if (face != CfMapSquare.DEFAULT_FACE) {
+                //noinspection ConstantConditions
+                out.writeInt(face.getFaceNum());
+            }
+        }
+    }
+
+}
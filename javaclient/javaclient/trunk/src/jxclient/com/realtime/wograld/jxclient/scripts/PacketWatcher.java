@@ -24,9 +24,12 @@ package com.realtime.wograld.jxclient.scripts;
 import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
 import com.realtime.wograld.jxclient.server.server.ReceivedPacketListener;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.regex.Pattern;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -36,6 +39,12 @@ import org.jetbrains.annotations.Nullable;
  */
 public class PacketWatcher {
 
+    /**
+     * The {@link Charset} used to decode ASCII packets.
+     */
+    @NotNull
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     /**
      * The commands to watch for.
      */
@@ -55,16 +64,18 @@ public class PacketWatcher {
     private final ScriptProcess scriptProcess;
 
     /**
-     * A {@link Pattern} matching all {@link #commands}. Set to
-     * <code>null</code> when not watching for commands.
+     * The prefixes matching all {@link #commands}. The entries are sorted and
+     * no entry is a prefix of another entry. Set to <code>null</code> when not
+     * watching for commands. Read from the socket thread without
+     * synchronization; it is replaced, never modified.
      */
     @Nullable
-    private Pattern pattern = null;
+    private volatile String[] prefixes = null;
 
     /**
      * The {@link ReceivedPacketListener} attached to {@link
      * #wograldServerConnection}. It is attached if and only if {@link
-     * #pattern} is non-<code>null</code>.
+     * #prefixes} is non-<code>null</code>.
      */
     @NotNull
     private final ReceivedPacketListener receivedPacketListener = new ReceivedPacketListener() {
@@ -81,7 +92,7 @@ public class PacketWatcher {
             if (matchesCommand(command)) {
                 final byte[] data = new byte[packet.remaining()];
                 packet.get(data);
-                scriptProcess.commandSent("watch "+command+" "+new String(data)); // XXX: uses default encoding
+                scriptProcess.commandSent("watch "+command+" "+new String(data, UTF8));
             }
         }
 
@@ -135,12 +146,13 @@ public class PacketWatcher {
                 final StringBuilder sb = new StringBuilder("watch ");
                 sb.append(command);
                 sb.append(' ');
-                sb.append(StatUtils.getStatNames(stat));
+                final String statName = StatUtils.getStatNames(stat);
+                sb.append(statName);
                 for (final Object arg : args) {
                     sb.append(' ');
                     sb.append(arg);
                 }
-                scriptProcess.commandSent(sb.toString());
+                scriptProcess.commandSent(sb.toString(), command+" "+statName);
             }
         }
 
@@ -177,7 +189,7 @@ public class PacketWatcher {
     public PacketWatcher(@NotNull final WograldServerConnection wograldServerConnection, @NotNull final ScriptProcess scriptProcess) {
         this.wograldServerConnection = wograldServerConnection;
         this.scriptProcess = scriptProcess;
-        rebuildPattern();
+        rebuildPrefixes();
     }
 
     /**
@@ -185,33 +197,37 @@ public class PacketWatcher {
      * freed.
      */
     public void destroy() {
-        if (pattern != null) {
-            pattern = null;
+        if (prefixes != null) {
+            prefixes = null;
             wograldServerConnection.removePacketWatcherListener(receivedPacketListener);
         }
     }
 
     /**
-     * Rebuilds {@link #pattern} from {@link #commands}.
+     * Rebuilds {@link #prefixes} from {@link #commands}.
      */
-    private void rebuildPattern() {
-        final StringBuilder sb = new StringBuilder();
-        for (final String command : commands) {
-            sb.append(Pattern.quote(command));
-            sb.append(".*|");
-        }
-        final int length = sb.length();
-        if (length <= 0) {
-            if (pattern != null) {
-                pattern = null;
+    private void rebuildPrefixes() {
+        if (commands.isEmpty()) {
+            if (prefixes != null) {
+                prefixes = null;
                 wograldServerConnection.removePacketWatcherListener(receivedPacketListener);
             }
-        } else {
-            if (pattern == null) {
-                wograldServerConnection.addPacketWatcherListener(receivedPacketListener);
+            return;
+        }
+
+        final String[] sortedCommands = commands.toArray(new String[commands.size()]);
+        Arrays.sort(sortedCommands);
+        final List<String> newPrefixes = new ArrayList<String>(sortedCommands.length);
+        for (final String command : sortedCommands) {
+            // a prefix sorts before all strings it is a prefix of
+            if (newPrefixes.isEmpty() || !command.startsWith(newPrefixes.get(newPrefixes.size()-1))) {
+                newPrefixes.add(command);
             }
-            sb.setLength(length-1);
-            pattern = Pattern.compile(sb.toString());
+        }
+        final boolean attach = prefixes == null;
+        prefixes = newPrefixes.toArray(new String[newPrefixes.size()]);
+        if (attach) {
+            wograldServerConnection.addPacketWatcherListener(receivedPacketListener);
         }
     }
 
@@ -221,7 +237,7 @@ public class PacketWatcher {
      */
     public void addCommand(@NotNull final String command) {
         if (commands.add(command)) {
-            rebuildPattern();
+            rebuildPrefixes();
         }
     }
 
@@ -231,7 +247,7 @@ public class PacketWatcher {
      */
     public void removeCommand(@NotNull final String command) {
         if (commands.remove(command)) {
-            rebuildPattern();
+            rebuildPrefixes();
         }
     }
 
@@ -240,8 +256,19 @@ public class PacketWatcher {
      * @param command the command
      * @return whether the command matches
      */
-    private boolean matchesCommand(@NotNull final CharSequence command) {
-        return pattern != null && pattern.matcher(command).matches();
+    private boolean matchesCommand(@NotNull final String command) {
+        final String[] tmp = prefixes;
+        if (tmp == null) {
+            return false;
+        }
+
+        // the only candidate is the greatest prefix not greater than command
+        final int index = Arrays.binarySearch(tmp, command);
+        if (index >= 0) {
+            return true;
+        }
+        final int insertionPoint = -index-1;
+        return insertionPoint > 0 && command.startsWith(tmp[insertionPoint-1]);
     }
 
 }
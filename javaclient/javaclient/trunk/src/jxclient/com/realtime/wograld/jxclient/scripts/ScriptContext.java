@@ -0,0 +1,181 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import com.realtime.wograld.jxclient.items.ItemSet;
+import com.realtime.wograld.jxclient.mapupdater.MapUpdaterState;
+import com.realtime.wograld.jxclient.queue.CommandQueue;
+import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
+import com.realtime.wograld.jxclient.skills.SkillSet;
+import com.realtime.wograld.jxclient.stats.Stats;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Provides access to the client state for {@link ClientScript
+ * ClientScripts}. Commands issued after the script has been unloaded are
+ * ignored.
+ * @author Andreas Kirschbaum
+ */
+public class ScriptContext {
+
+    /**
+     * The {@link JvmScriptProcess} executing the script.
+     */
+    @NotNull
+    private final JvmScriptProcess scriptProcess;
+
+    /**
+     * The {@link CommandQueue} for sending commands.
+     */
+    @NotNull
+    private final CommandQueue commandQueue;
+
+    /**
+     * The connection instance.
+     */
+    @NotNull
+    private final WograldServerConnection wograldServerConnection;
+
+    /**
+     * The {@link Stats} instance.
+     */
+    @NotNull
+    private final Stats stats;
+
+    /**
+     * The {@link ItemSet} instance.
+     */
+    @NotNull
+    private final ItemSet itemSet;
+
+    /**
+     * The {@link MapUpdaterState} instance.
+     */
+    @NotNull
+    private final MapUpdaterState mapUpdaterState;
+
+    /**
+     * The {@link SkillSet} instance.
+     */
+    @NotNull
+    private final SkillSet skillSet;
+
+    /**
+     * Creates a new instance.
+     * @param scriptProcess the script process executing the script
+     * @param commandQueue the command queue for sending commands
+     * @param wograldServerConnection the connection instance
+     * @param stats the stats instance
+     * @param itemSet the item set instance
+     * @param mapUpdaterState the map updater state instance
+     * @param skillSet the skill set instance
+     */
+    public ScriptContext(@NotNull final JvmScriptProcess scriptProcess, @NotNull final CommandQueue commandQueue, @NotNull final WograldServerConnection wograldServerConnection, @NotNull final Stats stats, @NotNull final ItemSet itemSet, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final SkillSet skillSet) {
+        this.scriptProcess = scriptProcess;
+        this.commandQueue = commandQueue;
+        this.wograldServerConnection = wograldServerConnection;
+        this.stats = stats;
+        this.itemSet = itemSet;
+        this.mapUpdaterState = mapUpdaterState;
+        this.skillSet = skillSet;
+    }
+
+    /**
+     * Returns the {@link Stats} instance.
+     * @return the stats instance
+     */
+    @NotNull
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the {@link ItemSet} instance.
+     * @return the item set instance
+     */
+    @NotNull
+    public ItemSet getItemSet() {
+        return itemSet;
+    }
+
+    /**
+     * Returns the {@link MapUpdaterState} instance. Accesses to the map must
+     * synchronize on the map instance.
+     * @return the map updater state instance
+     */
+    @NotNull
+    public MapUpdaterState getMapUpdaterState() {
+        return mapUpdaterState;
+    }
+
+    /**
+     * Returns the {@link CommandQueue} instance. Commands should be sent
+     * through {@link #issue(boolean, int, String)}.
+     * @return the command queue instance
+     */
+    @NotNull
+    public CommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    /**
+     * Returns the {@link SkillSet} instance.
+     * @return the skill set instance
+     */
+    @NotNull
+    public SkillSet getSkillSet() {
+        return skillSet;
+    }
+
+    /**
+     * Sends a command to the server.
+     * @param mustSend if set, always send the command; if unset, drop the
+     * command if the command queue is full
+     * @param repeat the repeat count
+     * @param command the command to send
+     */
+    public void issue(final boolean mustSend, final int repeat, @NotNull final String command) {
+        if (!scriptProcess.isKilled()) {
+            commandQueue.sendNcom(mustSend, repeat, command);
+        }
+    }
+
+    /**
+     * Terminates the script. {@link ClientScript#stop()} is called after all
+     * pending notifications have been delivered.
+     */
+    public void exit() {
+        scriptProcess.finish();
+    }
+
+    /**
+     * Displays a message.
+     * @param message the message
+     * @param color the message color
+     */
+    public void draw(@NotNull final String message, final int color) {
+        if (!scriptProcess.isKilled()) {
+            wograldServerConnection.drawInfo(message, color);
+        }
+    }
+
+}
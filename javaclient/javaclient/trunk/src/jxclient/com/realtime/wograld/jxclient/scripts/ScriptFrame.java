@@ -0,0 +1,130 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Builds one frame of the binary script protocol. Scripts enable the binary
+ * protocol by sending "binary"; the client acknowledges with the text line
+ * "binary" and sends only frames afterwards. Commands from the script remain
+ * text lines.
+ * <p/>
+ * A frame consists of a four byte length, a one byte frame type, and the
+ * payload; the length counts the type and the payload. All numbers are
+ * big-endian; strings are sent as by {@link DataOutputStream#writeUTF(String)}
+ * unless stated otherwise.
+ * <p/>
+ * Frames of type {@link #MAP}, {@link #STATS}, and {@link #ITEMS} are sent
+ * for subscriptions; they start with a flags byte where {@link #SNAPSHOT}
+ * indicates that the frame replaces all previously sent state.
+ * @author Andreas Kirschbaum
+ */
+public class ScriptFrame {
+
+    /**
+     * Frame type: a text message. Payload: the UTF-8 encoded text without
+     * trailing newline.
+     */
+    public static final int TEXT = 0;
+
+    /**
+     * Frame type: map squares. Payload: flags, the map width and height, the
+     * distance the map has scrolled since the previous frame (two ints), the
+     * number of squares (int), and for each square its coordinates relative
+     * to the view area (two shorts), the darkness and fog-of-war flag of the
+     * bottom floor (two bytes), a bit mask of non-empty layers (int), and the
+     * face number of each non-empty layer (int).
+     */
+    public static final int MAP = 1;
+
+    /**
+     * Frame type: player stats. Payload: flags, the experience (long), the
+     * number of stats (short), and for each stat its number (short) and value
+     * (int). Snapshots omit stats having a value of zero.
+     */
+    public static final int STATS = 2;
+
+    /**
+     * Frame type: items. Payload: flags, the number of items (int), and for
+     * each item a removed flag (byte) and its tag (int). Items that have not
+     * been removed continue with location, count, weight, flags, type, and
+     * face number (ints) and the name.
+     */
+    public static final int ITEMS = 3;
+
+    /**
+     * Flag for subscription frames: the frame replaces all previous state.
+     */
+    public static final int SNAPSHOT = 1;
+
+    /**
+     * The buffer receiving the frame.
+     */
+    @NotNull
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    /**
+     * The {@link DataOutputStream} writing to {@link #buffer}.
+     */
+    @NotNull
+    private final DataOutputStream output = new DataOutputStream(buffer);
+
+    /**
+     * Creates a new frame.
+     * @param type the frame type
+     */
+    public ScriptFrame(final int type) {
+        buffer.write(0);
+        buffer.write(0);
+        buffer.write(0);
+        buffer.write(0);
+        buffer.write(type);
+    }
+
+    /**
+     * Returns the {@link DataOutputStream} for writing the payload.
+     * @return the data output stream
+     */
+    @NotNull
+    public DataOutputStream getOutput() {
+        return output;
+    }
+
+    /**
+     * Returns the encoded frame.
+     * @return the encoded frame
+     */
+    @NotNull
+    public byte[] toByteArray() {
+        final byte[] data = buffer.toByteArray();
+        final int length = data.length-4;
+        data[0] = (byte)(length>>24);
+        data[1] = (byte)(length>>16);
+        data[2] = (byte)(length>>8);
+        data[3] = (byte)length;
+        return data;
+    }
+
+}
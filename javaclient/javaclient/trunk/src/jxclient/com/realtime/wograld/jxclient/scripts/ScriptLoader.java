@@ -0,0 +1,128 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Loads {@link ClientScript ClientScripts}. Scripts are either Java classes
+ * loaded from a .jar file or a class directory, or script files executed by a
+ * JSR-223 script engine selected by the file name extension.
+ * @author Andreas Kirschbaum
+ */
+public class ScriptLoader {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ScriptLoader() {
+    }
+
+    /**
+     * Returns whether a file needs a class name to be loaded.
+     * @param file the file
+     * @return whether the file is a .jar file or a class directory
+     */
+    public static boolean isClassPath(@NotNull final File file) {
+        return file.isDirectory() || file.getName().endsWith(".jar");
+    }
+
+    /**
+     * Loads a script class. Each script uses its own class loader so that
+     * the classes can be unloaded when the script terminates.
+     * @param classPath the .jar file or class directory
+     * @param className the name of the class implementing {@link
+     * ClientScript}
+     * @return the script
+     * @throws IOException if the script cannot be loaded
+     */
+    @NotNull
+    public static ClientScript loadClass(@NotNull final File classPath, @NotNull final String className) throws IOException {
+        final ClassLoader classLoader = new URLClassLoader(new URL[] { classPath.toURI().toURL(), }, ScriptLoader.class.getClassLoader());
+        final Class<?> scriptClass;
+        try {
+            scriptClass = Class.forName(className, true, classLoader);
+        } catch (final ClassNotFoundException ex) {
+            throw new IOException("class not found: "+ex.getMessage());
+        } catch (final LinkageError ex) {
+            throw new IOException("cannot load class "+className+": "+ex.getMessage());
+        }
+        if (!ClientScript.class.isAssignableFrom(scriptClass)) {
+            throw new IOException("class "+className+" does not implement "+ClientScript.class.getName());
+        }
+        try {
+            return (ClientScript)scriptClass.newInstance();
+        } catch (final InstantiationException ex) {
+            throw new IOException("cannot create "+className+": "+ex.getMessage());
+        } catch (final IllegalAccessException ex) {
+            throw new IOException("cannot create "+className+": "+ex.getMessage());
+        }
+    }
+
+    /**
+     * Loads a script file using the script engine registered for the file
+     * name extension. The script must define the functions of {@link
+     * ClientScript}.
+     * @param file the script file
+     * @return the script
+     * @throws IOException if the script cannot be loaded
+     */
+    @NotNull
+    public static ClientScript loadScript(@NotNull final File file) throws IOException {
+        final String name = file.getName();
+        final int index = name.lastIndexOf('.');
+        if (index == -1) {
+            throw new IOException("no script engine for "+file);
+        }
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByExtension(name.substring(index+1));
+        if (engine == null || !(engine instanceof Invocable)) {
+            throw new IOException("no script engine for "+file);
+        }
+
+        final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            engine.eval(reader);
+        } catch (final ScriptException ex) {
+            throw new IOException(ex.getMessage());
+        } finally {
+            reader.close();
+        }
+
+        final ClientScript script = ((Invocable)engine).getInterface(ClientScript.class);
+        if (script == null) {
+            throw new IOException(file+" does not implement "+ClientScript.class.getName());
+        }
+        return script;
+    }
+
+}
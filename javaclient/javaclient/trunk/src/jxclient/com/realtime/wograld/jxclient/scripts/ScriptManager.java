@@ -30,12 +30,14 @@ import com.realtime.wograld.jxclient.server.wograld.WograldServerConnection;
 import com.realtime.wograld.jxclient.skills.SkillSet;
 import com.realtime.wograld.jxclient.spells.Spell;
 import com.realtime.wograld.jxclient.stats.Stats;
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Maintains currently running script processes.
@@ -97,6 +99,12 @@ public class ScriptManager {
     @NotNull
     private final Collection<ScriptProcess> scriptProcesses = new CopyOnWriteArraySet<ScriptProcess>();
 
+    /**
+     * The {@link ScriptWatchdog} for scripts executing inside the client.
+     */
+    @NotNull
+    private final ScriptWatchdog scriptWatchdog = new ScriptWatchdog();
+
     /**
      * The script ID for the next created script.
      */
@@ -125,10 +133,19 @@ public class ScriptManager {
     }
 
     /**
-     * Creates a new script instance.
+     * Creates a new script instance. Commands starting with "jvm" execute a
+     * {@link ClientScript} inside the client: "jvm &lt;jar-or-directory&gt;
+     * &lt;class-name&gt; [args...]" or "jvm &lt;script-file&gt; [args...]";
+     * other commands start an external process.
      * @param command the script command including arguments
      */
     public void newScript(@NotNull final String command) {
+        final String[] tmp = command.split(" +", 2);
+        if (tmp[0].equals("jvm")) {
+            newJvmScript(command, tmp.length < 2 ? "" : tmp[1]);
+            return;
+        }
+
         final DefaultScriptProcess scriptProcess;
         try {
             scriptProcess = new DefaultScriptProcess(nextScriptId, command, commandQueue, wograldServerConnection, stats, floorView, itemSet, spellsManager, mapUpdaterState, skillSet);
@@ -136,6 +153,58 @@ public class ScriptManager {
             wograldServerConnection.drawInfo("Unable to run script: "+ex.getMessage(), WograldDrawinfoListener.NDI_RED);
             return;
         }
+        startScript(scriptProcess, scriptProcess);
+    }
+
+    /**
+     * Creates a new script instance executing inside the client.
+     * @param command the script command including arguments
+     * @param args the arguments of the "jvm" command
+     */
+    private void newJvmScript(@NotNull final String command, @NotNull final String args) {
+        final String[] words = args.split(" +");
+        if (words[0].length() == 0) {
+            wograldServerConnection.drawInfo("Which script do you want to run?", WograldDrawinfoListener.NDI_RED);
+            return;
+        }
+
+        final File file = new File(words[0]);
+        final boolean isClassPath = ScriptLoader.isClassPath(file);
+        final int argsIndex = isClassPath ? 2 : 1;
+        if (words.length < argsIndex) {
+            wograldServerConnection.drawInfo("Which class do you want to run?", WograldDrawinfoListener.NDI_RED);
+            return;
+        }
+
+        final ClientScript script;
+        try {
+            script = isClassPath ? ScriptLoader.loadClass(file, words[1]) : ScriptLoader.loadScript(file);
+        } catch (final IOException ex) {
+            wograldServerConnection.drawInfo("Unable to run script: "+ex.getMessage(), WograldDrawinfoListener.NDI_RED);
+            return;
+        }
+
+        final String[] scriptArgs = new String[words.length-argsIndex];
+        System.arraycopy(words, argsIndex, scriptArgs, 0, scriptArgs.length);
+        final JvmScriptProcess scriptProcess = new JvmScriptProcess(nextScriptId, command, script, scriptArgs, commandQueue, wograldServerConnection, stats, itemSet, mapUpdaterState, skillSet);
+        scriptProcess.addScriptProcessListener(new ScriptProcessListener() {
+
+            @Override
+            public void scriptTerminated(@Nullable final String result) {
+                scriptWatchdog.remove(scriptProcess);
+            }
+
+        });
+        scriptWatchdog.add(scriptProcess);
+        startScript(scriptProcess, scriptProcess);
+    }
+
+    /**
+     * Registers and starts a new script instance.
+     * @param scriptProcess the script instance
+     * @param runnable the runnable executing the script
+     */
+    private void startScript(@NotNull final ScriptProcess scriptProcess, @NotNull final Runnable runnable) {
         nextScriptId++;
         scriptProcesses.add(scriptProcess);
         scriptProcess.addScriptProcessListener(new ScriptProcessListener() {
@@ -152,7 +221,7 @@ public class ScriptManager {
 
         });
         wograldServerConnection.drawInfo("Script '"+scriptProcess+"' started.", WograldDrawinfoListener.NDI_BLACK);
-        new Thread(scriptProcess, "JXClient:ScriptProcess:"+scriptProcess).start();
+        new Thread(runnable, "JXClient:ScriptProcess:"+scriptProcess).start();
     }
 
     /**
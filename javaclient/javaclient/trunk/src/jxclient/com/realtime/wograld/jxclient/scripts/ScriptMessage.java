@@ -0,0 +1,44 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A message to be sent to a script process. Messages are encoded by the
+ * script's writer thread so that expensive formatting does not block the
+ * thread generating the message.
+ * @author Andreas Kirschbaum
+ */
+public interface ScriptMessage {
+
+    /**
+     * Encodes this message.
+     * @param binary whether the script uses the binary protocol; see {@link
+     * ScriptFrame}
+     * @return the encoded message or <code>null</code> if nothing is to be
+     * sent
+     */
+    @Nullable
+    byte[] encode(boolean binary);
+
+}
@@ -0,0 +1,305 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A bounded queue of messages to be sent to a script process. Messages are
+ * added by the threads generating them and removed by a writer thread; adding
+ * never blocks. Messages marked as droppable count toward the queue's bound;
+ * when the bound is reached the {@link OverflowPolicy} decides which message
+ * is discarded. Other messages, for example replies to "request" commands,
+ * are never discarded.
+ * @param <T> the type of the queued messages
+ * @author Andreas Kirschbaum
+ */
+public class ScriptOutputQueue<T> {
+
+    /**
+     * A queued message.
+     * @param <T> the type of the message
+     */
+    private static class Entry<T> {
+
+        /**
+         * The message.
+         */
+        @NotNull
+        private T message;
+
+        /**
+         * The key for coalescing messages or <code>null</code>.
+         */
+        @Nullable
+        private final String key;
+
+        /**
+         * Whether the message may be discarded.
+         */
+        private final boolean droppable;
+
+        /**
+         * Creates a new instance.
+         * @param message the message
+         * @param key the key for coalescing messages or <code>null</code>
+         * @param droppable whether the message may be discarded
+         */
+        private Entry(@NotNull final T message, @Nullable final String key, final boolean droppable) {
+            this.message = message;
+            this.key = key;
+            this.droppable = droppable;
+        }
+
+    }
+
+    /**
+     * The pending messages, oldest first.
+     */
+    @NotNull
+    private final Deque<Entry<T>> entries = new ArrayDeque<Entry<T>>();
+
+    /**
+     * Maps coalescing key to pending message.
+     */
+    @NotNull
+    private final Map<String, Entry<T>> keyedEntries = new HashMap<String, Entry<T>>();
+
+    /**
+     * The maximum number of droppable messages.
+     */
+    private int capacity;
+
+    /**
+     * The {@link OverflowPolicy} applied when {@link #capacity} is reached.
+     */
+    @NotNull
+    private OverflowPolicy policy;
+
+    /**
+     * The number of droppable messages in {@link #entries}.
+     */
+    private int droppableEntries = 0;
+
+    /**
+     * The number of discarded messages.
+     */
+    private int droppedMessages = 0;
+
+    /**
+     * The number of messages that have replaced pending messages.
+     */
+    private int coalescedMessages = 0;
+
+    /**
+     * Whether {@link #close()} has been called.
+     */
+    private boolean closed = false;
+
+    /**
+     * Creates a new instance.
+     * @param capacity the maximum number of droppable messages
+     * @param policy the policy applied when the capacity is reached
+     */
+    public ScriptOutputQueue(final int capacity, @NotNull final OverflowPolicy policy) {
+        setCapacity(capacity);
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a message.
+     * @param message the message
+     * @param key the key for coalescing messages or <code>null</code>
+     * @param droppable whether the message may be discarded
+     * @return whether the message has been added
+     */
+    public synchronized boolean offer(@NotNull final T message, @Nullable final String key, final boolean droppable) {
+        if (closed) {
+            return false;
+        }
+
+        if (droppable && key != null && policy == OverflowPolicy.COALESCE) {
+            final Entry<T> entry = keyedEntries.get(key);
+            if (entry != null) {
+                entry.message = message;
+                coalescedMessages++;
+                return true;
+            }
+        }
+
+        if (droppable && droppableEntries >= capacity) {
+            if (policy == OverflowPolicy.DROP_NEWEST || !dropOldest()) {
+                droppedMessages++;
+                return false;
+            }
+            droppedMessages++;
+        }
+
+        final Entry<T> entry = new Entry<T>(message, key, droppable);
+        entries.addLast(entry);
+        if (droppable) {
+            droppableEntries++;
+            if (key != null) {
+                keyedEntries.put(key, entry);
+            }
+        }
+        if (entries.size() == 1) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the oldest message. Blocks until a message is available.
+     * @return the message or <code>null</code> if the queue has been closed
+     * and is empty
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    @Nullable
+    public synchronized T take() throws InterruptedException {
+        while (entries.isEmpty()) {
+            if (closed) {
+                return null;
+            }
+            wait();
+        }
+        final Entry<T> entry = entries.removeFirst();
+        removed(entry);
+        return entry.message;
+    }
+
+    /**
+     * Returns whether no messages are pending.
+     * @return whether the queue is empty
+     */
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Closes the queue. Pending messages are still returned by {@link
+     * #take()}; new messages are rejected.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Sets the maximum number of droppable messages. Excess pending messages
+     * are kept.
+     * @param capacity the maximum number of droppable messages
+     */
+    public synchronized void setCapacity(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("invalid capacity "+capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets the policy applied when the capacity is reached.
+     * @param policy the policy
+     */
+    public synchronized void setPolicy(@NotNull final OverflowPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Returns the number of pending messages.
+     * @return the number of pending messages
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of droppable messages.
+     * @return the capacity
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the policy applied when the capacity is reached.
+     * @return the policy
+     */
+    @NotNull
+    public synchronized OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the number of discarded messages.
+     * @return the number of discarded messages
+     */
+    public synchronized int getDroppedMessages() {
+        return droppedMessages;
+    }
+
+    /**
+     * Returns the number of messages that have replaced pending messages.
+     * @return the number of coalesced messages
+     */
+    public synchronized int getCoalescedMessages() {
+        return coalescedMessages;
+    }
+
+    /**
+     * Discards the oldest droppable message.
+     * @return whether a message was discarded
+     */
+    private boolean dropOldest() {
+        final Iterator<Entry<T>> it = entries.iterator();
+        while (it.hasNext()) {
+            final Entry<T> entry = it.next();
+            if (entry.droppable) {
+                it.remove();
+                removed(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the bookkeeping after a message has been removed from {@link
+     * #entries}.
+     * @param entry the removed message
+     */
+    private void removed(@NotNull final Entry<T> entry) {
+        if (entry.droppable) {
+            droppableEntries--;
+            if (entry.key != null && keyedEntries.get(entry.key) == entry) {
+                keyedEntries.remove(entry.key);
+            }
+        }
+    }
+
+}
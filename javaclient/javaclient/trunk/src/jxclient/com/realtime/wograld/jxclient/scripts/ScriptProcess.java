@@ -22,6 +22,7 @@
 package com.realtime.wograld.jxclient.scripts;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * An external command executed as a client-sided script.
@@ -48,6 +49,33 @@ public interface ScriptProcess extends Comparable<ScriptProcess> {
      */
     void commandSent(@NotNull String cmd);
 
+    /**
+     * Sends a message to the script process. The message replaces a pending
+     * message having the same key if the script process is not keeping up.
+     * @param cmd the message to send
+     * @param key the key identifying superseded messages or <code>null</code>
+     */
+    void commandSent(@NotNull String cmd, @Nullable String key);
+
+    /**
+     * Returns the number of messages not yet sent to the script process.
+     * @return the number of pending messages
+     */
+    int getPendingMessages();
+
+    /**
+     * Returns the number of messages that have been discarded because the
+     * script process was not keeping up.
+     * @return the number of discarded messages
+     */
+    int getDroppedMessages();
+
+    /**
+     * Returns the CPU time consumed by the script.
+     * @return the CPU time in nanoseconds or <code>-1</code> if unknown
+     */
+    long getCpuTime();
+
     /**
      * Adds a {@link ScriptProcessListener} to be notified.
      * @param scriptProcessListener the listener to add
@@ -0,0 +1,175 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Unloads {@link JvmScriptProcess JvmScriptProcesses} that exceed their CPU
+ * budget. The CPU time of each script is sampled periodically; a script that
+ * has used more than {@link #MAX_CPU_SHARE} of one CPU during the last {@link
+ * #WINDOW} samples is killed.
+ * @author Andreas Kirschbaum
+ */
+public class ScriptWatchdog {
+
+    /**
+     * The interval between samples in milliseconds.
+     */
+    private static final long INTERVAL = 1000;
+
+    /**
+     * The number of samples the budget applies to.
+     */
+    private static final int WINDOW = 5;
+
+    /**
+     * The maximum fraction of one CPU a script may use.
+     */
+    private static final double MAX_CPU_SHARE = 0.25;
+
+    /**
+     * The CPU time budget in nanoseconds per {@link #WINDOW} samples.
+     */
+    private final long budget;
+
+    /**
+     * Maps watched script to its CPU time samples; the array is used as a
+     * ring buffer indexed by {@link #sampleNo}.
+     */
+    @NotNull
+    private final Map<JvmScriptProcess, long[]> scripts = new LinkedHashMap<JvmScriptProcess, long[]>();
+
+    /**
+     * The number of samples taken.
+     */
+    private int sampleNo = 0;
+
+    /**
+     * The thread taking samples or <code>null</code> if not running.
+     */
+    private Thread thread = null;
+
+    /**
+     * The {@link Runnable} taking samples.
+     */
+    @NotNull
+    private final Runnable runnable = new Runnable() {
+
+        @Override
+        public void run() {
+            try {
+                while (checkScripts()) {
+                    Thread.sleep(INTERVAL);
+                }
+            } catch (final InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    };
+
+    /**
+     * Creates a new instance using the default budget.
+     */
+    public ScriptWatchdog() {
+        this((long)(MAX_CPU_SHARE*WINDOW*INTERVAL*1000000L));
+    }
+
+    /**
+     * Creates a new instance.
+     * @param budget the CPU time budget in nanoseconds per {@link #WINDOW}
+     * samples
+     */
+    public ScriptWatchdog(final long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Starts watching a script.
+     * @param scriptProcess the script to watch
+     */
+    public void add(@NotNull final JvmScriptProcess scriptProcess) {
+        synchronized (scripts) {
+            final long[] samples = new long[WINDOW];
+            final long cpuTime = scriptProcess.getCpuTime();
+            for (int i = 0; i < WINDOW; i++) {
+                samples[i] = cpuTime;
+            }
+            scripts.put(scriptProcess, samples);
+            if (thread == null) {
+                thread = new Thread(runnable, "JXClient:ScriptWatchdog");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Stops watching a script.
+     * @param scriptProcess the script to stop watching
+     */
+    public void remove(@NotNull final JvmScriptProcess scriptProcess) {
+        synchronized (scripts) {
+            scripts.remove(scriptProcess);
+        }
+    }
+
+    /**
+     * Samples the CPU time of all watched scripts and kills scripts exceeding
+     * the budget. The thread terminates when no scripts are watched.
+     * @return whether scripts are watched
+     */
+    boolean checkScripts() {
+        final Map<JvmScriptProcess, Long> exceeded = new LinkedHashMap<JvmScriptProcess, Long>();
+        synchronized (scripts) {
+            if (scripts.isEmpty()) {
+                thread = null;
+                return false;
+            }
+
+            final int index = sampleNo%WINDOW;
+            sampleNo++;
+            final Iterator<Map.Entry<JvmScriptProcess, long[]>> it = scripts.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<JvmScriptProcess, long[]> entry = it.next();
+                final long[] samples = entry.getValue();
+                final long cpuTime = entry.getKey().getCpuTime();
+                final long used = cpuTime-samples[index];
+                samples[index] = cpuTime;
+                if (used > budget) {
+                    it.remove();
+                    exceeded.put(entry.getKey(), used);
+                }
+            }
+        }
+
+        for (final Map.Entry<JvmScriptProcess, Long> entry : exceeded.entrySet()) {
+            entry.getKey().kill("exceeded CPU budget: "+entry.getValue()/1000000L+" ms in "+WINDOW*INTERVAL+" ms");
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import com.realtime.wograld.jxclient.stats.Stats;
+import com.realtime.wograld.jxclient.stats.StatsListener;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A subscription sending {@link ScriptFrame#STATS} frames.
+ * @author Andreas Kirschbaum
+ */
+public class StatsSubscription extends AbstractSubscription {
+
+    /**
+     * The {@link Stats} to watch.
+     */
+    @NotNull
+    private final Stats stats;
+
+    /**
+     * The numbers of the changed stats not yet taken by {@link
+     * #takeChanges()}.
+     */
+    @NotNull
+    private final BitSet pendingStats = new BitSet(Stats.NUM_STATS);
+
+    /**
+     * Whether the experience has changed since the last frame.
+     */
+    private boolean pendingExperience = false;
+
+    /**
+     * The numbers of the changed stats to encode. Accessed only by the writer
+     * thread.
+     */
+    @NotNull
+    private final BitSet changedStats = new BitSet(Stats.NUM_STATS);
+
+    /**
+     * Whether the experience has changed. Accessed only by the writer thread.
+     */
+    private boolean changedExperience = false;
+
+    /**
+     * The {@link StatsListener} attached to {@link #stats}.
+     */
+    @NotNull
+    private final StatsListener statsListener = new StatsListener() {
+
+        @Override
+        public void reset() {
+            snapshotNeeded();
+        }
+
+        @Override
+        public void statChanged(final int statNo, final int value) {
+            synchronized (StatsSubscription.this) {
+                pendingStats.set(statNo);
+            }
+            changed();
+        }
+
+        @Override
+        public void simpleWeaponSpeedChanged(final boolean simpleWeaponSpeed) {
+            // ignore
+        }
+
+        @Override
+        public void titleChanged(@NotNull final String title) {
+            // ignore
+        }
+
+        @Override
+        public void rangeChanged(@NotNull final String range) {
+            // ignore
+        }
+
+        @Override
+        public void activeSkillChanged(@NotNull final String activeSkill) {
+            // ignore
+        }
+
+        @Override
+        public void experienceChanged(final long exp) {
+            synchronized (StatsSubscription.this) {
+                pendingExperience = true;
+            }
+            changed();
+        }
+
+        @Override
+        public void experienceNextLevelChanged(final long expNextLevel) {
+            // ignore
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param outputQueue the output queue for sending frames
+     * @param stats the stats to watch
+     */
+    public StatsSubscription(@NotNull final ScriptOutputQueue<ScriptMessage> outputQueue, @NotNull final Stats stats) {
+        super(outputQueue);
+        this.stats = stats;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addListeners() {
+        stats.addWograldStatsListener(statsListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void removeListeners() {
+        stats.removeWograldStatsListener(statsListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void takeChanges() {
+        changedStats.clear();
+        changedStats.or(pendingStats);
+        changedExperience = pendingExperience;
+        discardChanges();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void discardChanges() {
+        pendingStats.clear();
+        pendingExperience = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    protected byte[] encodeSnapshot() {
+        final BitSet statNumbers = new BitSet(Stats.NUM_STATS);
+        for (int statNo = 0; statNo < Stats.NUM_STATS; statNo++) {
+            if (stats.getStat(statNo) != 0) {
+                statNumbers.set(statNo);
+            }
+        }
+        return encode(ScriptFrame.SNAPSHOT, statNumbers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    protected byte[] encodeChanges() {
+        if (changedStats.isEmpty() && !changedExperience) {
+            return null;
+        }
+
+        return encode(0, changedStats);
+    }
+
+    /**
+     * Encodes a frame.
+     * @param flags the frame flags
+     * @param statNumbers the numbers of the stats to encode
+     * @return the encoded frame
+     */
+    @NotNull
+    private byte[] encode(final int flags, @NotNull final BitSet statNumbers) {
+        final ScriptFrame frame = new ScriptFrame(ScriptFrame.STATS);
+        final DataOutputStream out = frame.getOutput();
+        try {
+            out.writeByte(flags);
+            out.writeLong(stats.getExperience());
+            out.writeShort(statNumbers.cardinality());
+            for (int statNo = statNumbers.nextSetBit(0); statNo >= 0; statNo = statNumbers.nextSetBit(statNo+1)) {
+                out.writeShort(statNo);
+                out.writeInt(stats.getStat(statNo));
+            }
+        } catch (final IOException ex) {
+            throw new AssertionError(ex); // will never happen: writes to memory
+        }
+        return frame.toByteArray();
+    }
+
+}
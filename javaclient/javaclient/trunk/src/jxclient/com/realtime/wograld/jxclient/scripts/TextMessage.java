@@ -0,0 +1,84 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link ScriptMessage} consisting of one line of text. The text protocol
+ * sends the line terminated by a newline character in the platform's default
+ * encoding; the binary protocol sends a {@link ScriptFrame#TEXT} frame.
+ * @author Andreas Kirschbaum
+ */
+public class TextMessage implements ScriptMessage {
+
+    /**
+     * The {@link Charset} of text frames.
+     */
+    @NotNull
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The message text.
+     */
+    @NotNull
+    private final String text;
+
+    /**
+     * Creates a new instance.
+     * @param text the message text
+     */
+    public TextMessage(@NotNull final String text) {
+        this.text = text;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    public byte[] encode(final boolean binary) {
+        if (!binary) {
+            return (text+"\n").getBytes();
+        }
+
+        final ScriptFrame frame = new ScriptFrame(ScriptFrame.TEXT);
+        try {
+            frame.getOutput().write(text.getBytes(UTF8));
+        } catch (final IOException ex) {
+            throw new AssertionError(ex); // will never happen: writes to memory
+        }
+        return frame.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    public String toString() {
+        return text;
+    }
+
+}
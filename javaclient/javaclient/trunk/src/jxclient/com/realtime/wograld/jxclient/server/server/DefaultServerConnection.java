@@ -23,6 +23,7 @@ package com.realtime.wograld.jxclient.server.server;
 
 import com.realtime.wograld.jxclient.server.socket.ClientSocket;
 import com.realtime.wograld.jxclient.server.socket.ClientSocketListener;
+import com.realtime.wograld.jxclient.server.socket.ClientSocketSelector;
 import com.realtime.wograld.jxclient.util.DebugWriter;
 import java.io.IOException;
 import org.jetbrains.annotations.NotNull;
@@ -52,6 +53,17 @@ public abstract class DefaultServerConnection implements ServerConnection {
         clientSocket = new ClientSocket(debugProtocol);
     }
 
+    /**
+     * Creates a new instance that is operated by a shared {@link
+     * ClientSocketSelector}.
+     * @param debugProtocol tf non-<code>null</code>, write all protocol
+     * commands to this writer
+     * @param clientSocketSelector the client socket selector to use
+     */
+    protected DefaultServerConnection(@Nullable final DebugWriter debugProtocol, @NotNull final ClientSocketSelector clientSocketSelector) {
+        clientSocket = new ClientSocket(debugProtocol, clientSocketSelector);
+    }
+
     /**
      * Starts operation.
      */
@@ -46,6 +46,9 @@ import org.jetbrains.annotations.Nullable;
  * final ClientSocket clientSocket = new ClientSocket(...);
  * clientSocket.writePacket(...);
  * clientSocket.disconnect();
+ * </pre>
+ * The socket is operated either by a dedicated thread or by a {@link
+ * ClientSocketSelector} shared with other sockets.
  * @author Andreas Kirschbaum
  */
 public class ClientSocket {
@@ -74,6 +77,13 @@ public class ClientSocket {
     @NotNull
     private final Selector selector;
 
+    /**
+     * The {@link ClientSocketSelector} operating this socket or
+     * <code>null</code> if {@link #thread} operates this socket.
+     */
+    @Nullable
+    private final ClientSocketSelector clientSocketSelector;
+
     /**
      * Synchronization object for {@link #reconnect}, {@link #host}, {@link
      * #port}, and {@link #disconnectPending}.
@@ -183,20 +193,14 @@ public class ClientSocket {
     private boolean isConnected = false;
 
     /**
-     * The {@link Thread} used to operate the socket.
+     * The {@link Thread} used to operate the socket or <code>null</code> if
+     * {@link #clientSocketSelector} operates this socket.
      */
-    @NotNull
-    private final Thread thread = new Thread(new Runnable() {
-
-        @Override
-        public void run() {
-            process();
-        }
-
-    }, "JXClient:ClientSocket");
+    @Nullable
+    private final Thread thread;
 
     /**
-     * Creates a new instance.
+     * Creates a new instance that is operated by a dedicated thread.
      * @param debugProtocol tf non-<code>null</code>, write all protocol
      * commands to this writer
      * @throws IOException if the socket cannot be created
@@ -204,6 +208,29 @@ public class ClientSocket {
     public ClientSocket(@Nullable final DebugWriter debugProtocol) throws IOException {
         this.debugProtocol = debugProtocol;
         selector = Selector.open();
+        clientSocketSelector = null;
+        thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                process();
+            }
+
+        }, "JXClient:ClientSocket");
+    }
+
+    /**
+     * Creates a new instance that is operated by a shared {@link
+     * ClientSocketSelector}.
+     * @param debugProtocol tf non-<code>null</code>, write all protocol
+     * commands to this writer
+     * @param clientSocketSelector the client socket selector to use
+     */
+    public ClientSocket(@Nullable final DebugWriter debugProtocol, @NotNull final ClientSocketSelector clientSocketSelector) {
+        this.debugProtocol = debugProtocol;
+        selector = clientSocketSelector.getSelector();
+        this.clientSocketSelector = clientSocketSelector;
+        thread = null;
     }
 
     /**
@@ -213,7 +240,12 @@ public class ClientSocket {
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("socket:start");
         }
-        thread.start();
+        if (thread != null) {
+            thread.start();
+        } else {
+            assert clientSocketSelector != null;
+            clientSocketSelector.add(this);
+        }
     }
 
     /**
@@ -224,8 +256,13 @@ public class ClientSocket {
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("socket:stop");
         }
-        thread.interrupt();
-        thread.join();
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        } else {
+            assert clientSocketSelector != null;
+            clientSocketSelector.remove(this);
+        }
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("socket:stopped");
         }
@@ -263,7 +300,7 @@ public class ClientSocket {
                 reconnectIsError = false;
                 this.host = host;
                 this.port = port;
-                selector.wakeup();
+                wakeup();
             }
         }
     }
@@ -284,40 +321,109 @@ public class ClientSocket {
                 reconnectIsError = isError;
                 host = null;
                 port = 0;
-                selector.wakeup();
+                wakeup();
             }
         }
     }
 
+    /**
+     * Wakes up the thread operating this socket so that pending requests are
+     * processed.
+     */
+    private void wakeup() {
+        if (clientSocketSelector != null) {
+            clientSocketSelector.wakeup(this);
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Returns whether the current thread is the thread operating this socket.
+     * @return whether the current thread operates this socket
+     */
+    private boolean isSocketThread() {
+        return clientSocketSelector != null ? clientSocketSelector.isSelectorThread() : Thread.currentThread() == thread;
+    }
+
     /**
      * Reads/writes data from/to the socket. Returns if the {@link #thread} has
      * been interrupted.
      */
     private void process() {
+        assert thread != null;
         while (!thread.isInterrupted()) {
             try {
                 doReconnect();
                 doConnect();
                 updateWriteInterestOps();
                 doTransceive();
-            } catch (final EOFException ex) {
-                final String tmp = ex.getMessage();
-                final String message = tmp == null ? "EOF" : tmp;
-                if (debugProtocol != null) {
-                    debugProtocol.debugProtocolWrite("socket:exception "+message, ex);
-                }
-                processDisconnect(message, false);
             } catch (final IOException ex) {
-                final String tmp = ex.getMessage();
-                final String message = tmp == null ? "I/O error" : tmp;
-                if (debugProtocol != null) {
-                    debugProtocol.debugProtocolWrite("socket:exception "+message, ex);
-                }
-                processDisconnect(message, true);
+                processException(ex);
+            }
+        }
+    }
+
+    /**
+     * Processes pending re- or disconnect requests and pending data to send.
+     * Called by {@link ClientSocketSelector} before waiting for the sockets.
+     */
+    void processPending() {
+        assert isSocketThread();
+        try {
+            doReconnect();
+            doConnect();
+            updateWriteInterestOps();
+        } catch (final IOException ex) {
+            processException(ex);
+        }
+    }
+
+    /**
+     * Processes pending data to receive or transmit. Called by {@link
+     * ClientSocketSelector} when this socket's {@link SelectionKey} has been
+     * selected.
+     */
+    void processSelected() {
+        assert isSocketThread();
+        try {
+            if (isConnected) {
+                processRead();
+                processWrite();
             }
+        } catch (final IOException ex) {
+            processException(ex);
         }
     }
 
+    /**
+     * Closes the connection. Called by {@link ClientSocketSelector} when this
+     * socket is removed.
+     */
+    void processClose() {
+        assert isSocketThread();
+        synchronized (syncConnect) {
+            host = null;
+            port = 0;
+            reconnect = false;
+        }
+        processDisconnect("stopped", false);
+    }
+
+    /**
+     * Disconnects after an I/O error has occurred.
+     * @param ex the exception
+     */
+    private void processException(@NotNull final IOException ex) {
+        final String tmp = ex.getMessage();
+        final boolean isError = !(ex instanceof EOFException);
+        final String message = tmp == null ? isError ? "I/O error" : "EOF" : tmp;
+        if (debugProtocol != null) {
+            debugProtocol.debugProtocolWrite("socket:exception "+message, ex);
+        }
+        processDisconnect(message, isError);
+    }
+
     /**
      * Processes pending connect requests.
      * @throws IOException if an I/O error occurs
@@ -350,7 +456,7 @@ public class ClientSocket {
      * @throws IOException if an I/O error occurs
      */
     private void doReconnect() throws IOException {
-        assert Thread.currentThread() == thread;
+        assert isSocketThread();
 
         final boolean doReconnect;
         final boolean doDisconnect;
@@ -417,7 +523,7 @@ public class ClientSocket {
      * @throws IOException if an I/O error occurs
      */
     private void processConnect(@NotNull final String host, final int port) throws IOException {
-        assert Thread.currentThread() == thread;
+        assert isSocketThread();
 
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("socket:connecting to "+host+":"+port);
@@ -450,7 +556,7 @@ public class ClientSocket {
                     }
                 }
                 interestOps = SelectionKey.OP_CONNECT;
-                selectionKey = selectableChannel.register(selector, interestOps);
+                selectionKey = selectableChannel.register(selector, interestOps, this);
             } finally {
                 if (selectionKey == null) {
                     socketChannel = null;
@@ -468,7 +574,7 @@ public class ClientSocket {
      * @param isError whether the disconnect is unexpected
      */
     private void processDisconnect(@NotNull final String reason, final boolean isError) {
-        assert Thread.currentThread() == thread;
+        assert isSocketThread();
 
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("socket:disconnecting: "+reason+(isError ? " [unexpected]" : ""));
@@ -555,12 +661,12 @@ public class ClientSocket {
                 break;
             }
 
-            final int start = inputBuffer.position();
-            final int end = start+inputLen;
-            inputBuffer.position(start+inputLen);
-            inputLen = -1;
-            final ByteBuffer packet = ByteBuffer.wrap(inputBuf, start, end-start);
+            // the packet is a view into inputBuf; listeners must not retain it
+            final ByteBuffer packet = inputBuffer.slice();
+            packet.limit(inputLen);
             packet.order(ByteOrder.BIG_ENDIAN);
+            inputBuffer.position(inputBuffer.position()+inputLen);
+            inputLen = -1;
             try {
                 for (final ClientSocketListener clientSocketListener : clientSocketListeners.getListeners()) {
                     clientSocketListener.packetReceived(packet);
@@ -605,7 +711,7 @@ public class ClientSocket {
             }
         }
 
-        selector.wakeup();
+        wakeup();
         for (final ClientSocketListener clientSocketListener : clientSocketListeners.getListeners()) {
             clientSocketListener.packetSent(buf, len);
         }
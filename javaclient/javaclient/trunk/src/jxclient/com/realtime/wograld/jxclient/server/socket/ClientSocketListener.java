@@ -42,7 +42,9 @@ public interface ClientSocketListener extends EventListener {
     void connected();
 
     /**
-     * Called whenever a packet is received from the Wograld server.
+     * Called whenever a packet is received from the Wograld server. The
+     * packet shares the receive buffer of the socket; its contents are valid
+     * only until this function returns.
      * @param packet the packet contents
      * @throws UnknownCommandException if the packet cannot be processed
      */
@@ -0,0 +1,278 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.server.socket;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Operates many {@link ClientSocket ClientSockets} from a single thread using
+ * one shared {@link Selector}. Sockets created with {@link
+ * ClientSocket#ClientSocket(com.realtime.wograld.jxclient.util.DebugWriter,
+ * ClientSocketSelector)} are registered when started and unregistered when
+ * stopped.
+ * <p/>
+ * All socket listeners are notified from the selector thread; they must not
+ * block.
+ * @author Andreas Kirschbaum
+ */
+public class ClientSocketSelector {
+
+    /**
+     * The shared {@link Selector}.
+     */
+    @NotNull
+    private final Selector selector;
+
+    /**
+     * Synchronization object for {@link #sockets}, {@link #pendingSockets},
+     * and {@link #removedSockets}.
+     */
+    @NotNull
+    private final Object sync = new Object();
+
+    /**
+     * The operated sockets.
+     */
+    @NotNull
+    private final Set<ClientSocket> sockets = new HashSet<ClientSocket>();
+
+    /**
+     * The sockets having pending requests.
+     */
+    @NotNull
+    private final Set<ClientSocket> pendingSockets = new LinkedHashSet<ClientSocket>();
+
+    /**
+     * The sockets to close and unregister.
+     */
+    @NotNull
+    private final Set<ClientSocket> removedSockets = new LinkedHashSet<ClientSocket>();
+
+    /**
+     * The {@link Thread} operating all sockets.
+     */
+    @NotNull
+    private final Thread thread = new Thread(new Runnable() {
+
+        @Override
+        public void run() {
+            process();
+        }
+
+    }, "JXClient:ClientSocketSelector");
+
+    /**
+     * Creates a new instance.
+     * @throws IOException if the selector cannot be created
+     */
+    public ClientSocketSelector() throws IOException {
+        selector = Selector.open();
+    }
+
+    /**
+     * Starts operation.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops operation. Sockets still registered are not closed.
+     * @throws InterruptedException if stopping was interrupted
+     */
+    public void stop() throws InterruptedException {
+        thread.interrupt();
+        selector.wakeup();
+        thread.join();
+    }
+
+    /**
+     * Returns the shared {@link Selector}.
+     * @return the selector
+     */
+    @NotNull
+    Selector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Returns whether the current thread is the selector thread.
+     * @return whether the current thread is the selector thread
+     */
+    boolean isSelectorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Returns the number of operated sockets.
+     * @return the number of sockets
+     */
+    public int getSockets() {
+        synchronized (sync) {
+            return sockets.size();
+        }
+    }
+
+    /**
+     * Registers a socket.
+     * @param clientSocket the socket
+     */
+    void add(@NotNull final ClientSocket clientSocket) {
+        synchronized (sync) {
+            sockets.add(clientSocket);
+            removedSockets.remove(clientSocket);
+        }
+        wakeup(clientSocket);
+    }
+
+    /**
+     * Closes and unregisters a socket. Waits until the socket has been
+     * closed unless called from the selector thread.
+     * @param clientSocket the socket
+     * @throws InterruptedException if waiting was interrupted
+     */
+    void remove(@NotNull final ClientSocket clientSocket) throws InterruptedException {
+        synchronized (sync) {
+            if (!sockets.contains(clientSocket)) {
+                return;
+            }
+
+            removedSockets.add(clientSocket);
+            selector.wakeup();
+            if (isSelectorThread() || !thread.isAlive()) {
+                return;
+            }
+
+            while (removedSockets.contains(clientSocket) && thread.isAlive()) {
+                sync.wait(1000);
+            }
+        }
+    }
+
+    /**
+     * Records that a socket has pending requests and wakes up the selector
+     * thread.
+     * @param clientSocket the socket
+     */
+    void wakeup(@NotNull final ClientSocket clientSocket) {
+        final boolean wakeup;
+        synchronized (sync) {
+            wakeup = pendingSockets.add(clientSocket) && pendingSockets.size() == 1;
+        }
+        if (wakeup && !isSelectorThread()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Operates all sockets until {@link #thread} has been interrupted.
+     */
+    private void process() {
+        final Collection<ClientSocket> tmp = new ArrayList<ClientSocket>();
+        while (!thread.isInterrupted()) {
+            processRemoved(tmp);
+            synchronized (sync) {
+                tmp.addAll(pendingSockets);
+                pendingSockets.clear();
+                tmp.retainAll(sockets);
+            }
+            for (final ClientSocket clientSocket : tmp) {
+                clientSocket.processPending();
+            }
+            tmp.clear();
+
+            final boolean pending;
+            synchronized (sync) {
+                pending = !pendingSockets.isEmpty() || !removedSockets.isEmpty();
+            }
+            try {
+                if (pending) {
+                    selector.selectNow();
+                } else {
+                    selector.select();
+                }
+            } catch (final IOException ex) {
+                System.err.println("ClientSocketSelector: "+ex.getMessage());
+                continue;
+            }
+
+            final Collection<SelectionKey> selectedKeys = selector.selectedKeys();
+            for (final SelectionKey selectionKey : selectedKeys) {
+                final ClientSocket clientSocket = getClientSocket(selectionKey);
+                if (clientSocket != null) {
+                    clientSocket.processSelected();
+                    tmp.add(clientSocket);
+                }
+            }
+            selectedKeys.clear();
+            synchronized (sync) {
+                pendingSockets.addAll(tmp);
+            }
+            tmp.clear();
+        }
+    }
+
+    /**
+     * Closes and unregisters all sockets pending removal.
+     * @param tmp a temporary collection; will be cleared
+     */
+    private void processRemoved(@NotNull final Collection<ClientSocket> tmp) {
+        synchronized (sync) {
+            if (removedSockets.isEmpty()) {
+                return;
+            }
+
+            tmp.addAll(removedSockets);
+        }
+        for (final ClientSocket clientSocket : tmp) {
+            clientSocket.processClose();
+        }
+        synchronized (sync) {
+            sockets.removeAll(tmp);
+            pendingSockets.removeAll(tmp);
+            removedSockets.removeAll(tmp);
+            sync.notifyAll();
+        }
+        tmp.clear();
+    }
+
+    /**
+     * Returns the {@link ClientSocket} of a selection key.
+     * @param selectionKey the selection key
+     * @return the client socket or <code>null</code> if the key has been
+     *         cancelled
+     */
+    @Nullable
+    private static ClientSocket getClientSocket(@NotNull final SelectionKey selectionKey) {
+        return selectionKey.isValid() ? (ClientSocket)selectionKey.attachment() : null;
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.server.wograld;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Collects per-command statistics about received packets: the number of
+ * packets, the time spent decoding them, and the number of bytes the
+ * processing thread allocated while handling them, including allocations of
+ * listeners notified synchronously. Allocation is measured through {@link
+ * com.realtime.wograld.jxclient.util.AllocationUtils} only while enabled by
+ * {@link #setMeasureAllocation(boolean)}; otherwise, or if the JVM cannot
+ * measure it, it is recorded as zero. Commands are identified by their number in a {@link
+ * CommandTable}.
+ * @author Andreas Kirschbaum
+ */
+public class CommandStatistics {
+
+    /**
+     * The command names indexed by command number.
+     */
+    @NotNull
+    private final String[] commands;
+
+    /**
+     * The number of received packets per command.
+     */
+    @NotNull
+    private final long[] packets;
+
+    /**
+     * The time spent processing packets in nanoseconds per command.
+     */
+    @NotNull
+    private final long[] decodeTime;
+
+    /**
+     * The number of bytes allocated while processing packets per command.
+     */
+    @NotNull
+    private final long[] allocatedBytes;
+
+    /**
+     * Whether the number of allocated bytes should be measured.
+     */
+    private volatile boolean measureAllocation = false;
+
+    /**
+     * Creates a new instance.
+     * @param commands the command names indexed by command number
+     */
+    public CommandStatistics(@NotNull final String[] commands) {
+        this.commands = commands.clone();
+        packets = new long[commands.length];
+        decodeTime = new long[commands.length];
+        allocatedBytes = new long[commands.length];
+    }
+
+    /**
+     * Records a processed packet.
+     * @param command the command number
+     * @param time the time spent processing the packet in nanoseconds
+     * @param allocated the number of bytes allocated while processing the
+     * packet or <code>0</code> if unknown
+     */
+    public synchronized void add(final int command, final long time, final long allocated) {
+        packets[command]++;
+        decodeTime[command] += time;
+        allocatedBytes[command] += allocated;
+    }
+
+    /**
+     * Returns whether the number of bytes allocated while processing packets
+     * should be measured.
+     * @return whether allocation should be measured
+     */
+    public boolean isMeasureAllocation() {
+        return measureAllocation;
+    }
+
+    /**
+     * Sets whether the number of bytes allocated while processing packets
+     * should be measured. Measuring adds overhead to every packet.
+     * @param measureAllocation whether allocation should be measured
+     */
+    public void setMeasureAllocation(final boolean measureAllocation) {
+        this.measureAllocation = measureAllocation;
+    }
+
+    /**
+     * Returns the names of all known commands.
+     * @return the command names
+     */
+    @NotNull
+    public Collection<String> getCommands() {
+        return Arrays.asList(commands.clone());
+    }
+
+    /**
+     * Returns the number of received packets for a command.
+     * @param command the command name
+     * @return the number of packets
+     */
+    public synchronized long getPackets(@NotNull final String command) {
+        final int index = find(command);
+        return index == -1 ? 0 : packets[index];
+    }
+
+    /**
+     * Returns the cumulative time spent processing a command.
+     * @param command the command name
+     * @return the time in nanoseconds
+     */
+    public synchronized long getDecodeTime(@NotNull final String command) {
+        final int index = find(command);
+        return index == -1 ? 0 : decodeTime[index];
+    }
+
+    /**
+     * Returns the number of bytes allocated while processing a command.
+     * @param command the command name
+     * @return the number of bytes; <code>0</code> if the JVM cannot measure
+     *         allocation
+     */
+    public synchronized long getAllocatedBytes(@NotNull final String command) {
+        final int index = find(command);
+        return index == -1 ? 0 : allocatedBytes[index];
+    }
+
+    /**
+     * Forgets all recorded statistics.
+     */
+    public synchronized void reset() {
+        Arrays.fill(packets, 0);
+        Arrays.fill(decodeTime, 0);
+        Arrays.fill(allocatedBytes, 0);
+    }
+
+    /**
+     * Returns the number of a command.
+     * @param command the command name
+     * @return the command number or <code>-1</code> if the command is unknown
+     */
+    private int find(@NotNull final String command) {
+        for (int i = 0; i < commands.length; i++) {
+            if (commands[i].equals(command)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
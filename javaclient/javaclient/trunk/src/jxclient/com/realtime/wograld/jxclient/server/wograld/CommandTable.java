@@ -0,0 +1,215 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.server.wograld;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Maps the raw command bytes at the start of a packet to {@link
+ * CommandHandler CommandHandlers}. Commands are stored in a trie so that
+ * looking up a command takes time proportional to its length and does not
+ * allocate any memory.
+ * @author Andreas Kirschbaum
+ */
+public class CommandTable {
+
+    /**
+     * A node of the command trie.
+     */
+    private static class Node {
+
+        /**
+         * The bytes leading to {@link #children}.
+         */
+        @NotNull
+        private byte[] keys = new byte[0];
+
+        /**
+         * The child nodes.
+         */
+        @NotNull
+        private Node[] children = new Node[0];
+
+        /**
+         * The command ending at this node or <code>-1</code> if no command
+         * ends here.
+         */
+        private int command = -1;
+
+        /**
+         * Returns the child node for a byte.
+         * @param key the byte
+         * @return the child node or <code>null</code> if none exists
+         */
+        @Nullable
+        private Node getChild(final byte key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the child node for a byte. Creates a new node if none
+         * exists.
+         * @param key the byte
+         * @return the child node
+         */
+        @NotNull
+        private Node addChild(final byte key) {
+            final Node existingChild = getChild(key);
+            if (existingChild != null) {
+                return existingChild;
+            }
+
+            final Node child = new Node();
+            final byte[] newKeys = new byte[keys.length+1];
+            System.arraycopy(keys, 0, newKeys, 0, keys.length);
+            newKeys[keys.length] = key;
+            final Node[] newChildren = new Node[children.length+1];
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            newChildren[children.length] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+    }
+
+    /**
+     * The root node of the command trie.
+     */
+    @NotNull
+    private final Node root = new Node();
+
+    /**
+     * The command names indexed by command number.
+     */
+    @NotNull
+    private final List<String> names = new ArrayList<String>();
+
+    /**
+     * Whether a command must not have a payload; indexed by command number.
+     */
+    @NotNull
+    private final List<Boolean> exact = new ArrayList<Boolean>();
+
+    /**
+     * The command handlers indexed by command number.
+     */
+    @NotNull
+    private final List<CommandHandler> handlers = new ArrayList<CommandHandler>();
+
+    /**
+     * Adds a command. No command may be a prefix of another command.
+     * @param prefix the bytes a packet of this command starts with; commands
+     * having a payload should include the separating space character
+     * @param isExact whether the packet must not contain more than
+     * <code>prefix</code>
+     * @param handler the handler to call
+     */
+    public void add(@NotNull final String prefix, final boolean isExact, @NotNull final CommandHandler handler) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (node.command != -1) {
+                throw new IllegalArgumentException("command "+names.get(node.command)+" is a prefix of "+prefix);
+            }
+            node = node.addChild((byte)prefix.charAt(i));
+        }
+        if (node.command != -1 || node.keys.length > 0) {
+            throw new IllegalArgumentException("duplicate command prefix: "+prefix);
+        }
+
+        node.command = names.size();
+        names.add(prefix.trim());
+        exact.add(isExact);
+        handlers.add(handler);
+    }
+
+    /**
+     * Returns the command a packet starts with. On success the packet is
+     * positioned after the command prefix.
+     * @param packet the packet
+     * @return the command number or <code>-1</code> if the packet does not
+     * start with a known command
+     */
+    public int lookup(@NotNull final ByteBuffer packet) {
+        Node node = root;
+        while (node.command == -1) {
+            if (!packet.hasRemaining()) {
+                return -1;
+            }
+            node = node.getChild(packet.get());
+            if (node == null) {
+                return -1;
+            }
+        }
+        if (exact.get(node.command) && packet.hasRemaining()) {
+            return -1;
+        }
+        return node.command;
+    }
+
+    /**
+     * Returns the number of commands.
+     * @return the number of commands
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns the name of a command.
+     * @param command the command number
+     * @return the command name
+     */
+    @NotNull
+    public String getName(final int command) {
+        return names.get(command);
+    }
+
+    /**
+     * Returns the names of all commands indexed by command number.
+     * @return the command names
+     */
+    @NotNull
+    public String[] getNames() {
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Returns the handler of a command.
+     * @param command the command number
+     * @return the handler
+     */
+    @NotNull
+    public CommandHandler getHandler(final int command) {
+        return handlers.get(command);
+    }
+
+}
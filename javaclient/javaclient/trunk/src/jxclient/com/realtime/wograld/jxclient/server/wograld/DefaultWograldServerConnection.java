@@ -21,20 +21,26 @@
 
 package com.realtime.wograld.jxclient.server.wograld;
 
+import com.realtime.wograld.jxclient.history.MessageHistory;
 import com.realtime.wograld.jxclient.map.Location;
 import com.realtime.wograld.jxclient.server.wograld.messages.Map2;
+import com.realtime.wograld.jxclient.server.wograld.messages.MapDelta;
+import com.realtime.wograld.jxclient.server.wograld.messages.MapDeltaBuilder;
 import com.realtime.wograld.jxclient.server.wograld.messages.UpdItem;
 import com.realtime.wograld.jxclient.server.server.DefaultServerConnection;
 import com.realtime.wograld.jxclient.server.server.ReceivedPacketListener;
 import com.realtime.wograld.jxclient.server.socket.ClientSocketListener;
+import com.realtime.wograld.jxclient.server.socket.ClientSocketSelector;
 import com.realtime.wograld.jxclient.server.socket.ClientSocketState;
 import com.realtime.wograld.jxclient.server.socket.UnknownCommandException;
+import com.realtime.wograld.jxclient.util.AllocationUtils;
+import com.realtime.wograld.jxclient.util.ByteBufferInputStream;
 import com.realtime.wograld.jxclient.util.DebugWriter;
 import com.realtime.wograld.jxclient.util.EventListenerList2;
 import com.realtime.wograld.jxclient.util.HexCodec;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.BufferUnderflowException;
@@ -363,6 +369,40 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
     @NotNull
     private final EventListenerList2<WograldFailureListener> wograldFailureListeners = new EventListenerList2<WograldFailureListener>(WograldFailureListener.class);
 
+    /**
+     * The handlers for all supported server commands.
+     */
+    @NotNull
+    private final CommandTable commandTable = new CommandTable();
+
+    /**
+     * The per-command statistics of received packets.
+     */
+    @NotNull
+    private final CommandStatistics commandStatistics;
+
+    /**
+     * The command number of the packet currently being processed; set to
+     * <code>-1</code> when not processing a packet.
+     */
+    private int currentCommand = -1;
+
+    /**
+     * Collects the map changes of the currently decoded map command. Map
+     * commands are decoded without holding the map lock; the collected
+     * changes are then published to {@link #wograldUpdateMapListener} in one
+     * step.
+     */
+    @NotNull
+    private final MapDeltaBuilder mapDeltaBuilder = new MapDeltaBuilder();
+
+    /**
+     * The buffer for decoding "magicmap" commands. It is reused as long as
+     * the magic map size does not change.
+     */
+    @NotNull
+    private byte[][] magicMapData = new byte[0][0];
+
     /**
      * Buffer to build commands to send. It is shared between all sendXxx()
      * functions. It is used to synchronize these functions.
@@ -714,6 +754,13 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
     @Nullable
     private final DebugWriter debugProtocol;
 
+    /**
+     * The {@link MessageHistory} to record received text messages in. May be
+     * <code>null</code> to not record anything.
+     */
+    @Nullable
+    private MessageHistory messageHistory = null;
+
     /**
      * The current connection state.
      */
@@ -796,8 +843,51 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
      
         super(debugProtocol);
         this.version = version;
-        byteBuffer.order(ByteOrder.BIG_ENDIAN);
         this.debugProtocol = debugProtocol;
+        registerCommands();
+        commandStatistics = new CommandStatistics(commandTable.getNames());
+        init(player);
+    }
+
+    /**
+     * Creates a new instance that is operated by a shared {@link
+     * ClientSocketSelector}. Such connections do not play music.
+     * @param debugProtocol tf non-<code>null</code>, write all protocol
+     * commands to this writer
+     * @param version the version information to send to the server when
+     * connecting
+     * @param clientSocketSelector the client socket selector to use
+     * @return the new instance
+     */
+    @NotNull
+    public static DefaultWograldServerConnection newHeadless(@Nullable final DebugWriter debugProtocol, @NotNull final String version, @NotNull final ClientSocketSelector clientSocketSelector) {
+        return new DefaultWograldServerConnection(clientSocketSelector, debugProtocol, version);
+    }
+
+    /**
+     * Creates a new instance that is operated by a shared {@link
+     * ClientSocketSelector}. Such connections do not play music.
+     * @param clientSocketSelector the client socket selector to use
+     * @param debugProtocol tf non-<code>null</code>, write all protocol
+     * commands to this writer
+     * @param version the version information to send to the server when
+     * connecting
+     */
+    private DefaultWograldServerConnection(@NotNull final ClientSocketSelector clientSocketSelector, @Nullable final DebugWriter debugProtocol, @NotNull final String version) {
+        super(debugProtocol, clientSocketSelector);
+        this.version = version;
+        this.debugProtocol = debugProtocol;
+        registerCommands();
+        commandStatistics = new CommandStatistics(commandTable.getNames());
+        init(null);
+    }
+
+    /**
+     * Initializes a new instance.
+     * @param player the music player or <code>null</code> to not play music
+     */
+    private void init(@Nullable final JOrbisPlayer player) {
+        byteBuffer.order(ByteOrder.BIG_ENDIAN);
         addClientSocketListener(clientSocketListener);
         
         
@@ -806,6 +896,26 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
               oggpl=player;
           }
           musicpl_num=0;
+    }
+
+    /**
+     * Sets the {@link MessageHistory} to record received text messages in.
+     * @param messageHistory the message history or <code>null</code> to not
+     * record messages
+     */
+    public void setMessageHistory(@Nullable final MessageHistory messageHistory) {
+        this.messageHistory = messageHistory;
+    }
+
+    /**
+     * Returns the frame hosting the music player's panel. The frame is created
+     * when music is played first so that connections can be created without a
+     * display.
+     * @return the frame
+     */
+    @NotNull
+    private JFrame getPlayerFrame() {
+        if (frame1 == null) {
           frame1=new JFrame("JOrbisPlayer");
     frame1.setBackground(Color.lightGray);
     frame1.setBackground(Color.white);
@@ -817,6 +927,8 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
                 }
             }
         );
+        }
+        return frame1;
     }
 
     /**
@@ -942,6 +1054,14 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
         wograldTickListeners.add(listener);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeWograldTickListener(@NotNull final WograldTickListener listener) {
+        wograldTickListeners.remove(listener);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1115,1032 +1235,502 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
      * @param packet the packet's payload
      * @throws UnknownCommandException if the packet cannot be parsed
      */
-    private void processPacket(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+    void processPacket(@NotNull final ByteBuffer packet) throws UnknownCommandException {
         try {
             packet.mark();
-            switch (packet.get()) {
-            case 'a':
-                switch (packet.get()) {
-                case 'c':
-                    //accountplayers
-                    if (packet.get() != 'c') {
-                        break;
-                    }
-                    if (packet.get() != 'o') {
-                        break;
-                    }
-                    if (packet.get() != 'u') {
-                        break;
-                    }
-                    if (packet.get() != 'n') {
-                        break;
-                    }
-                    if (packet.get() != 't') {
-                        break;
-                    }
-                    if (packet.get() != 'p') {
-                        break;
-                    }
-                    if (packet.get() != 'l') {
-                        break;
-                    }
-                    if (packet.get() != 'a') {
-                        break;
-                    }
-                    if (packet.get() != 'y') {
-                        break;
-                    }
-                    if (packet.get() != 'e') {
-                        break;
-                    }
-                    if (packet.get() != 'r') {
-                        break;
-                    }
-                    if (packet.get() != 's') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    if (debugProtocol != null) {
-                        debugProtocol.debugProtocolWrite("recv accountplayers");
-                    }
-                    processAccountPlayers(packet);
-                    return;
+            final int command = commandTable.lookup(packet);
+            if (command != -1) {
+                currentCommand = command;
+                final long start = System.nanoTime();
+                final long allocatedStart = commandStatistics.isMeasureAllocation() ? AllocationUtils.getAllocatedBytes() : -1;
+                try {
+                    commandTable.getHandler(command).process(packet);
+                } finally {
+                    final long time = System.nanoTime()-start;
+                    commandStatistics.add(command, time, allocatedStart == -1 ? 0 : AllocationUtils.getAllocatedBytes()-allocatedStart);
+                    currentCommand = -1;
+                }
+                return;
+            }
+        } catch (final IllegalArgumentException ex) {
+            if (debugProtocol != null) {
+                debugProtocol.debugProtocolWrite("IllegalArgumentException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+            }
+        } catch (final BufferUnderflowException ex) {
+            if (debugProtocol != null) {
+                debugProtocol.debugProtocolWrite("BufferUnderflowException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+            }
+        } catch (final ArrayIndexOutOfBoundsException ex) {
+            if (debugProtocol != null) {
+                debugProtocol.debugProtocolWrite("ArrayIndexOutOfBoundsException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+            }
+        } catch (final StringIndexOutOfBoundsException ex) {
+            if (debugProtocol != null) {
+                debugProtocol.debugProtocolWrite("StringIndexOutOfBoundsException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+            }
+        } catch (final UnknownCommandException ex) {
+            if (debugProtocol != null) {
+                debugProtocol.debugProtocolWrite("UnknownCommandException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+            }
+            throw ex;
+        }
 
-                case 'd':
-                    if (packet.get() != 'd') {
-                        break;
-                    }
-                    switch (packet.get()) {
-                    case 'm':
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != '_') {
-                            break;
-                        }
-                        switch (packet.get()) {
-                        case 'f':
-                            if (packet.get() != 'a') {
-                                break;
-                            }
-                            if (packet.get() != 'i') {
-                                break;
-                            }
-                            if (packet.get() != 'l') {
-                                break;
-                            }
-                            if (packet.get() != 'e') {
-                                break;
-                            }
-                            if (packet.get() != 'd') {
-                                break;
-                            }
-                            if (packet.hasRemaining()) {
-                                break;
-                            }
-                            if (debugProtocol != null) {
-                                debugProtocol.debugProtocolWrite("recv addme_failed");
-                            }
-                            processAddmeFailed(packet);
-                            return;
-
-                        case 's':
-                            if (packet.get() != 'u') {
-                                break;
-                            }
-                            if (packet.get() != 'c') {
-                                break;
-                            }
-                            if (packet.get() != 'c') {
-                                break;
-                            }
-                            if (packet.get() != 'e') {
-                                break;
-                            }
-                            if (packet.get() != 's') {
-                                break;
-                            }
-                            if (packet.get() != 's') {
-                                break;
-                            }
-                            if (packet.hasRemaining()) {
-                                break;
-                            }
-                            if (debugProtocol != null) {
-                                debugProtocol.debugProtocolWrite("recv addme_success");
-                            }
-                            processAddmeSuccess(packet);
-                            return;
-                        }
-                        break;
+        packet.position(0);
+        final String command = extractCommand(packet);
+        if (debugProtocol != null) {
+            debugProtocol.debugProtocolWrite("recv invalid command: "+command+"\n"+hexDump(packet));
+        }
+        throw new UnknownCommandException("Cannot parse command: "+command);
+    }
 
-                    case 'q':
-                        if (packet.get() != 'u') {
-                            break;
-                        }
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != 's') {
-                            break;
-                        }
-                        if (packet.get() != 't') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
+    /**
+     * Returns the command string of the packet currently being processed.
+     * Falls back to {@link #extractCommand(ByteBuffer)} if no command is
+     * being processed.
+     * @param packet the packet contents
+     * @return the command string
+     */
+    @NotNull
+    private String getCurrentCommand(@NotNull final ByteBuffer packet) {
+        return currentCommand == -1 ? extractCommand(packet) : commandTable.getName(currentCommand);
+    }
 
-                        processAddQuest(packet);
-                        return;
-                        
-                    case 's':
-                        if (packet.get() != 'p') {
-                            break;
-                        }
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != 'l') {
-                            break;
-                        }
-                        if (packet.get() != 'l') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processAddSpell(packet);
-                        return;
-                    }
-                    break;
+    /**
+     * Registers the handlers for all supported server commands in {@link
+     * #commandTable}.
+     */
+    private void registerCommands() {
+        commandTable.add("accountplayers ", false, new CommandHandler() {
 
-                case 'n':
-                    if (packet.get() != 'i') {
-                        break;
-                    }
-                    if (packet.get() != 'm') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processAnim(packet);
-                    return;
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                if (debugProtocol != null) {
+                    debugProtocol.debugProtocolWrite("recv accountplayers");
                 }
-                break;
+                processAccountPlayers(packet);
+            }
 
-            case 'c':
-                if (packet.get() != 'o') {
-                    break;
-                }
-                if (packet.get() != 'm') {
-                    break;
-                }
-                if (packet.get() != 'c') {
-                    break;
-                }
-                if (packet.get() != ' ') {
-                    break;
-                }
-                processComc(packet);
-                return;
+        });
 
-            case 'd':
-                switch (packet.get()) {
-                case 'e':
-                    if (packet.get() != 'l') {
-                        break;
-                    }
-                    switch (packet.get()) {
-                    case 'i':
-                        switch (packet.get()) {
-                        case 'n':
-                            if (packet.get() != 'v') {
-                                break;
-                            }
-                            if (packet.get() != ' ') {
-                                break;
-                            }
-                            processDelInv(packet);
-                            return;
-
-                        case 't':
-                            if (packet.get() != 'e') {
-                                break;
-                            }
-                            if (packet.get() != 'm') {
-                                break;
-                            }
-                            if (packet.get() != ' ') {
-                                break;
-                            }
-                            processDelItem(packet);
-                            return;
-                        }
-                        break;
+        commandTable.add("addme_failed", true, new CommandHandler() {
 
-                    case 's':
-                        if (packet.get() != 'p') {
-                            break;
-                        }
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != 'l') {
-                            break;
-                        }
-                        if (packet.get() != 'l') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processDelSpell(packet);
-                        return;
-                    }
-                    break;
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                if (debugProtocol != null) {
+                    debugProtocol.debugProtocolWrite("recv addme_failed");
+                }
+                processAddmeFailed(packet);
+            }
 
-                case 'r':
-                    if (packet.get() != 'a') {
-                        break;
-                    }
-                    if (packet.get() != 'w') {
-                        break;
-                    }
-                    switch (packet.get()) {
-                    case 'e':
-                        if (packet.get() != 'x') {
-                            break;
-                        }
-                        if (packet.get() != 't') {
-                            break;
-                        }
-                        if (packet.get() != 'i') {
-                            break;
-                        }
-                        if (packet.get() != 'n') {
-                            break;
-                        }
-                        if (packet.get() != 'f') {
-                            break;
-                        }
-                        if (packet.get() != 'o') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processDrawExtInfo(packet);
-                        return;
+        });
 
-                    case 'i':
-                        if (packet.get() != 'n') {
-                            break;
-                        }
-                        if (packet.get() != 'f') {
-                            break;
-                        }
-                        if (packet.get() != 'o') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processDrawInfo(packet);
-                        return;
-                    }
-                    break;
-                }
-                break;
+        commandTable.add("addme_success", true, new CommandHandler() {
 
-            case 'E':
-                switch(packet.get()){
-                    case 'n':
-                        if(packet.get() != 'f'){
-                            break;
-                        }
-                        if(packet.get() != 'l'){
-                            break;
-                        }
-                        if(packet.get() != 'c'){
-                            break;
-                        }
-                        if(packet.get() != 'm'){
-                            break;
-                        }
-                        if(packet.get() != 'd'){
-                            break;
-                        }
-                        if(packet.get() != ' '){
-                            break;
-                        }
-                        processFloorChange(packet);
-                        return;
-                        
-                        
-                        
-                    case 'x':
-             //   if (packet.get() != 'x') {
-             //       break;
-             //   }
-                if (packet.get() != 't') {
-                    break;
-                }
-                if (packet.get() != 'e') {
-                    break;
-                }
-                if (packet.get() != 'n') {
-                    break;
-                }
-                if (packet.get() != 'd') {
-                    break;
-                }
-                if (packet.get() != 'e') {
-                    break;
-                }
-                if (packet.get() != 'd') {
-                    break;
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                if (debugProtocol != null) {
+                    debugProtocol.debugProtocolWrite("recv addme_success");
                 }
-                switch (packet.get()) {
-                case 'I':
-                    if (packet.get() != 'n') {
-                        break;
-                    }
-                    if (packet.get() != 'f') {
-                        break;
-                    }
-                    if (packet.get() != 'o') {
-                        break;
-                    }
-                    if (packet.get() != 'S') {
-                        break;
-                    }
-                    if (packet.get() != 'e') {
-                        break;
-                    }
-                    if (packet.get() != 't') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processExtendedInfoSet(packet);
-                    return;
+                processAddmeSuccess(packet);
+            }
 
-                case 'T':
-                    if (packet.get() != 'e') {
-                        break;
-                    }
-                    if (packet.get() != 'x') {
-                        break;
-                    }
-                    if (packet.get() != 't') {
-                        break;
-                    }
-                    if (packet.get() != 'S') {
-                        break;
-                    }
-                    if (packet.get() != 'e') {
-                        break;
-                    }
-                    if (packet.get() != 't') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processExtendedTextSet(packet);
-                    return;
-                    }
-                break;
-                }
-                break;
+        });
 
-            case 'f':
-                switch (packet.get()){
-                    case 'a':
-                    switch (packet.get()) {
-                        case 'c':
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != '2') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processFace2(packet);
-                        return;
+        commandTable.add("addquest ", false, new CommandHandler() {
 
-                    case 'i':
-                        if (packet.get() != 'l') {
-                            break;
-                        }
-                        if (packet.get() != 'u') {
-                            break;
-                        }
-                        if (packet.get() != 'r') {
-                            break;
-                        }
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processFailure(packet);
-                        return;
-                    }
-                 case 'c':
-                    if (packet.get() != 'n'){
-                        break;
-                    }
-                    if (packet.get() != 'm'){
-                        break;
-                    }
-                    if (packet.get() != 'c'){
-                        break;
-                    }
-                    if (packet.get() != 'm'){
-                        break;
-                    }
-                    if (packet.get() != 'd'){
-                        break;
-                    }
-                     processFcnm(packet);
-                     return;
-                }
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processAddQuest(packet);
+            }
 
-            case 'g':
-                if (packet.get() != 'o') {
-                    break;
-                }
-                if (packet.get() != 'o') {
-                    break;
-                }
-                if (packet.get() != 'd') {
-                    break;
-                }
-                if (packet.get() != 'b') {
-                    break;
-                }
-                if (packet.get() != 'y') {
-                    break;
-                }
-                if (packet.get() != 'e') {
-                    break;
-                }
-                if (packet.get() != ' ') {
-                    break;
-                }
+        });
+
+        commandTable.add("addspell ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processAddSpell(packet);
+            }
+
+        });
+
+        commandTable.add("anim ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processAnim(packet);
+            }
+
+        });
+
+        commandTable.add("comc ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processComc(packet);
+            }
+
+        });
+
+        commandTable.add("delinv ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processDelInv(packet);
+            }
+
+        });
+
+        commandTable.add("delitem ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processDelItem(packet);
+            }
+
+        });
+
+        commandTable.add("delspell ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processDelSpell(packet);
+            }
+
+        });
+
+        commandTable.add("drawextinfo ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processDrawExtInfo(packet);
+            }
+
+        });
+
+        commandTable.add("drawinfo ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processDrawInfo(packet);
+            }
+
+        });
+
+        commandTable.add("Enflcmd ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processFloorChange(packet);
+            }
+
+        });
+
+        commandTable.add("ExtendedInfoSet ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processExtendedInfoSet(packet);
+            }
+
+        });
+
+        commandTable.add("ExtendedTextSet ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processExtendedTextSet(packet);
+            }
+
+        });
+
+        commandTable.add("face2 ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processFace2(packet);
+            }
+
+        });
+
+        commandTable.add("failure ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processFailure(packet);
+            }
+
+        });
+
+        commandTable.add("fcnmcmd", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processFcnm(packet);
+            }
+
+        });
+
+        commandTable.add("goodbye ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
                 processGoodbye(packet);
-                return;
+            }
 
-            case 'i':
-                switch (packet.get()) {
-                case 'm':
-                    if (packet.get() != 'a') {
-                        break;
-                    }
-                    if (packet.get() != 'g') {
-                        break;
-                    }
-                    if (packet.get() != 'e') {
-                        break;
-                    }
-                    switch(packet.get()) {
-                        case '2':
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processImage2(packet);
-                        return;
-                        case '3':
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processImage3(packet);
-                        return;
-                         
-                }
-                
+        });
 
-                case 't':
-                    if (packet.get() != 'e') {
-                        break;
-                    }
-                    if (packet.get() != 'm') {
-                        break;
-                    }
-                    if (packet.get() != '2') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processItem2(packet);
-                    return;
-                }
-                break;
-                
-            case 'l':
-                if(packet.get() != 'o') {
-                    break;
-                }
-                if(packet.get() != 'w') {
-                    break;
-                }
-                if(packet.get() != 'e') {
-                    break;
-                }
-                if(packet.get() != 'r') {
-                    break;
-                }
-                switch(packet.get()) {
-                    case '1':
-                        if(packet.get() != 'c'){
-                            break;
-                        }
-                        if(packet.get() != ' '){
-                            break;
-                        }
-                        processLower1c(packet);
-                        return;
-                    case '2':
-                        if(packet.get() != 'c'){
-                            break;
-                        }
-                        if(packet.get() != ' '){
-                            break;
-                        }
-                        processLower2c(packet);
-                        return;
-                    case '3':
-                        if(packet.get() != 'c'){
-                            break;
-                        }
-                        if(packet.get() != ' '){
-                            break;
-                        }
-                        processLower3c(packet);
-                        return;
-                }
-                break;
+        commandTable.add("image2 ", false, new CommandHandler() {
 
-            case 'm':
-                switch (packet.get()) {
-                case 'a':
-                    switch (packet.get()) {
-                    case 'g':
-                        if (packet.get() != 'i') {
-                            break;
-                        }
-                        if (packet.get() != 'c') {
-                            break;
-                        }
-                        if (packet.get() != 'm') {
-                            break;
-                        }
-                        if (packet.get() != 'a') {
-                            break;
-                        }
-                        if (packet.get() != 'p') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processMagicMap(packet);
-                        return;
-
-                    case 'p':
-                        switch (packet.get()) {
-                        case '2':
-                            if (packet.get() != ' ') {
-                                break;
-                            }
-                            processMap2(packet);
-                            return;
-
-                        case 'e':
-                            if (packet.get() != 'x') {
-                                break;
-                            }
-                            if (packet.get() != 't') {
-                                break;
-                            }
-                            if (packet.get() != 'e') {
-                                break;
-                            }
-                            if (packet.get() != 'n') {
-                                break;
-                            }
-                            if (packet.get() != 'd') {
-                                break;
-                            }
-                            if (packet.get() != 'e') {
-                                break;
-                            }
-                            if (packet.get() != 'd') {
-                                break;
-                            }
-                            if (packet.get() != ' ') {
-                                break;
-                            }
-                            processMapExtended(packet);
-                            return;
-                        }
-                        break;
-                    }
-                    break;
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processImage2(packet);
+            }
 
-                case 'u':
-                    if (packet.get() != 's') {
-                        break;
-                    }
-                    if (packet.get() != 'i') {
-                        break;
-                    }
-                    if (packet.get() != 'c') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processMusic(packet);
-                    return;
-                }
-                break;
+        });
 
-            case 'n':
-                if (packet.get() != 'e') {
-                    break;
-                }
-                if (packet.get() != 'w') {
-                    break;
-                }
-                if (packet.get() != 'm') {
-                    break;
-                }
-                if (packet.get() != 'a') {
-                    break;
-                }
-                if (packet.get() != 'p') {
-                    break;
-                }
+        commandTable.add("image3 ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processImage3(packet);
+            }
+
+        });
+
+        commandTable.add("item2 ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processItem2(packet);
+            }
+
+        });
+
+        commandTable.add("lower1c ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processLower1c(packet);
+            }
+
+        });
+
+        commandTable.add("lower2c ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processLower2c(packet);
+            }
+
+        });
+
+        commandTable.add("lower3c ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processLower3c(packet);
+            }
+
+        });
+
+        commandTable.add("magicmap ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processMagicMap(packet);
+            }
+
+        });
+
+        commandTable.add("map2 ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processMap2(packet);
+            }
+
+        });
+
+        commandTable.add("mapextended ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processMapExtended(packet);
+            }
+
+        });
+
+        commandTable.add("music ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processMusic(packet);
+            }
+
+        });
+
+        commandTable.add("newmap", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
                 processNewMap(packet);
-                return;
+            }
 
-            case 'p':
-                switch (packet.get()) {
-                case 'i':
-                    if (packet.get() != 'c') {
-                        break;
-                    }
-                    if (packet.get() != 'k') {
-                        break;
-                    }
-                    if (packet.get() != 'u') {
-                        break;
-                    }
-                    if (packet.get() != 'p') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processPickup(packet);
-                    return;
+        });
 
-                case 'l':
-                    if (packet.get() != 'a') {
-                        break;
-                    }
-                    if (packet.get() != 'y') {
-                        break;
-                    }
-                    if (packet.get() != 'e') {
-                        break;
-                    }
-                    if (packet.get() != 'r') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processPlayer(packet);
-                    return;
-                }
-                break;
+        commandTable.add("pickup ", false, new CommandHandler() {
 
-            case 'q':
-                if (packet.get() != 'u') {
-                    break;
-                }
-                if (packet.get() != 'e') {
-                    break;
-                }
-                if (packet.get() != 'r') {
-                    break;
-                }
-                if (packet.get() != 'y') {
-                    break;
-                }
-                if (packet.get() != ' ') {
-                    break;
-                }
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processPickup(packet);
+            }
+
+        });
+
+        commandTable.add("player ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processPlayer(packet);
+            }
+
+        });
+
+        commandTable.add("query ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
                 processQuery(packet);
-                return;
+            }
 
-            case 'r':
-                if (packet.get() != 'e') {
-                    break;
-                }
-                if (packet.get() != 'p') {
-                    break;
-                }
-                if (packet.get() != 'l') {
-                    break;
-                }
-                if (packet.get() != 'y') {
-                    break;
-                }
-                if (packet.get() != 'i') {
-                    break;
-                }
-                if (packet.get() != 'n') {
-                    break;
-                }
-                if (packet.get() != 'f') {
-                    break;
-                }
-                if (packet.get() != 'o') {
-                    break;
-                }
-                if (packet.get() != ' ') {
-                    break;
-                }
+        });
+
+        commandTable.add("replyinfo ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
                 processReplyInfo(packet);
-                return;
+            }
 
-            case 's':
-                switch (packet.get()) {
-                case 'e':
-                    if (packet.get() != 't') {
-                        break;
-                    }
-                    if (packet.get() != 'u') {
-                        break;
-                    }
-                    if (packet.get() != 'p') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processSetup(packet);
-                    return;
+        });
 
-                case 'm':
-                    if (packet.get() != 'o') {
-                        break;
-                    }
-                    if (packet.get() != 'o') {
-                        break;
-                    }
-                    if (packet.get() != 't') {
-                        break;
-                    }
-                    if (packet.get() != 'h') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processSmooth(packet);
-                    return;
+        commandTable.add("setup ", false, new CommandHandler() {
 
-                case 'o':
-                    if (packet.get() != 'u') {
-                        break;
-                    }
-                    if (packet.get() != 'n') {
-                        break;
-                    }
-                    if (packet.get() != 'd') {
-                        break;
-                    }
-                    switch (packet.get()) {
-                    case ' ':
-                        processSound(packet);
-                        return;
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processSetup(packet);
+            }
 
-                    case '2':
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processSound2(packet);
-                        return;
-                    }
-                    break;
+        });
 
-                case 't':
-                    if (packet.get() != 'a') {
-                        break;
-                    }
-                    if (packet.get() != 't') {
-                        break;
-                    }
-                    if (packet.get() != 's') {
-                        break;
-                    }
-                    if (packet.get() != ' ') {
-                        break;
-                    }
-                    processStats(packet);
-                    return;
-                }
-                break;
+        commandTable.add("smooth ", false, new CommandHandler() {
 
-            case 't':
-                if (packet.get() != 'i') {
-                    break;
-                }
-                if (packet.get() != 'c') {
-                    break;
-                }
-                if (packet.get() != 'k') {
-                    break;
-                }
-                if (packet.get() != ' ') {
-                    break;
-                }
-                processTick(packet);
-                return;
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processSmooth(packet);
+            }
 
-            case 'u':
-                if (packet.get() != 'p') {
-                    break;
-                }
-                switch(packet.get()) {
-                    case 'd':
-                
-                    switch (packet.get()) {
-                    case 'i':
-                        if (packet.get() != 't') {
-                            break;
-                        }
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != 'm') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processUpdItem(packet);
-                        return;
+        });
 
-                    case 'q':
-                        if (packet.get() != 'u') {
-                            break;
-                        }
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != 's') {
-                            break;
-                        }
-                        if (packet.get() != 't') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processUpdQuest(packet);
-                        return;
+        commandTable.add("sound ", false, new CommandHandler() {
 
-                    case 's':
-                        if (packet.get() != 'p') {
-                            break;
-                        }
-                        if (packet.get() != 'e') {
-                            break;
-                        }
-                        if (packet.get() != 'l') {
-                            break;
-                        }
-                        if (packet.get() != 'l') {
-                            break;
-                        }
-                        if (packet.get() != ' ') {
-                            break;
-                        }
-                        processUpdSpell(packet);
-                        return;
-                    }
-                    break;
-                
-            case 'p':
-                if(packet.get() != 'e'){
-                    break;
-                }
-                if(packet.get() != 'r'){
-                    break;
-                }
-                switch(packet.get()){
-                    case '1':
-                        if(packet.get() != 'c'){
-                            break;
-                        }
-                        if(packet.get() != ' '){
-                            break;
-                        }
-                        processUpper1c(packet);
-                        return;
-                    case '2':
-                        if(packet.get() != 'c'){
-                            break;
-                        }
-                        if(packet.get() != ' '){
-                            break;
-                        }
-                        processUpper2c(packet);
-                        return;
-                        
-                    case '3':
-                        if(packet.get() != 'c'){
-                            break;
-                        }
-                        if(packet.get() != ' '){
-                            break;
-                        }
-                        processUpper3c(packet);
-                        return;
-                }
-                break;
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processSound(packet);
             }
-            break;
 
-            case 'v':
-                if (packet.get() != 'e') {
-                    break;
-                }
-                if (packet.get() != 'r') {
-                    break;
-                }
-                if (packet.get() != 's') {
-                    break;
-                }
-                if (packet.get() != 'i') {
-                    break;
-                }
-                if (packet.get() != 'o') {
-                    break;
-                }
-                if (packet.get() != 'n') {
-                    break;
-                }
-                if (packet.get() != ' ') {
-                    break;
-                }
-                processVersion(packet);
-                return;
+        });
+
+        commandTable.add("sound2 ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processSound2(packet);
             }
-        } catch (final IllegalArgumentException ex) {
-            if (debugProtocol != null) {
-                debugProtocol.debugProtocolWrite("IllegalArgumentException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+
+        });
+
+        commandTable.add("stats ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processStats(packet);
             }
-        } catch (final BufferUnderflowException ex) {
-            if (debugProtocol != null) {
-                debugProtocol.debugProtocolWrite("BufferUnderflowException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+
+        });
+
+        commandTable.add("tick ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processTick(packet);
             }
-        } catch (final ArrayIndexOutOfBoundsException ex) {
-            if (debugProtocol != null) {
-                debugProtocol.debugProtocolWrite("ArrayIndexOutOfBoundsException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+
+        });
+
+        commandTable.add("upditem ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processUpdItem(packet);
             }
-        } catch (final StringIndexOutOfBoundsException ex) {
-            if (debugProtocol != null) {
-                debugProtocol.debugProtocolWrite("StringIndexOutOfBoundsException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+
+        });
+
+        commandTable.add("updquest ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processUpdQuest(packet);
             }
-        } catch (final UnknownCommandException ex) {
-            if (debugProtocol != null) {
-                debugProtocol.debugProtocolWrite("UnknownCommandException while command parsing: "+ex+"\n"+hexDump(packet), ex);
+
+        });
+
+        commandTable.add("updspell ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processUpdSpell(packet);
             }
-            throw ex;
-        }
 
-        packet.position(0);
-        final String command = extractCommand(packet);
-        if (debugProtocol != null) {
-            debugProtocol.debugProtocolWrite("recv invalid command: "+command+"\n"+hexDump(packet));
-        }
-        throw new UnknownCommandException("Cannot parse command: "+command);
+        });
+
+        commandTable.add("upper1c ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processUpper1c(packet);
+            }
+
+        });
+
+        commandTable.add("upper2c ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processUpper2c(packet);
+            }
+
+        });
+
+        commandTable.add("upper3c ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processUpper3c(packet);
+            }
+
+        });
+
+        commandTable.add("version ", false, new CommandHandler() {
+
+            @Override
+            public void process(@NotNull final ByteBuffer packet) throws UnknownCommandException {
+                processVersion(packet);
+            }
+
+        });
     }
 
     /**
@@ -2220,8 +1810,7 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" clear");
         }
-        assert wograldUpdateMapListener != null;
-        wograldUpdateMapListener.mapClear(x, y,floor);
+        mapDeltaBuilder.addClear(x, y, floor);
     }
 
     /**
@@ -2240,8 +1829,7 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" darkness="+darkness);
         }
-        assert wograldUpdateMapListener != null;
-        wograldUpdateMapListener.mapDarkness(x, y, darkness,floor);
+        mapDeltaBuilder.addDarkness(x, y, floor, darkness);
     }
 
     /**
@@ -2263,9 +1851,7 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
             if (debugProtocol != null) {
                 debugProtocol.debugProtocolWrite("recv map2 "+location+" face="+face);
             }
-            assert wograldUpdateMapListener != null;
-            wograldUpdateMapListener.mapFace(location, face);
-            
+            mapDeltaBuilder.addFace(x, y, layer, face);
         } else {
             if (debugProtocol != null) {
                 debugProtocol.debugProtocolWrite("recv map2 "+location+" anim="+(face&Map2.ANIM_MASK)+" type="+((face>>Map2.ANIM_TYPE_SHIFT)&Map2.ANIM_TYPE_MASK));
@@ -2445,9 +2031,7 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
      * @throws IOException if the packet cannot be parsed
      */
     private static void processImageInfoReplyinfo(@NotNull final ByteBuffer packet) throws IOException {
-        final byte[] data = new byte[packet.remaining()];
-        packet.get(data);
-        final ByteArrayInputStream is = new ByteArrayInputStream(data);
+        final InputStream is = new ByteBufferInputStream(packet);
         try {
             final InputStreamReader isr = new InputStreamReader(is);
             try {
@@ -2480,9 +2064,7 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
         for (final WograldSkillInfoListener wograldSkillInfoListener : wograldSkillInfoListeners.getListeners()) {
             wograldSkillInfoListener.clearSkills();
         }
-        final byte[] data = new byte[packet.remaining()];
-        packet.get(data);
-        final ByteArrayInputStream is = new ByteArrayInputStream(data);
+        final InputStream is = new ByteBufferInputStream(packet);
         try {
             final InputStreamReader isr = new InputStreamReader(is);
             try {
@@ -2917,6 +2499,9 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv drawextinfo color="+color+" type="+type+"/"+subtype+" msg="+message);
         }
+        if (messageHistory != null) {
+            messageHistory.addMessage(color, type, subtype, message);
+        }
 
         drawextinfo(color, type, subtype, message);
         notifyPacketWatcherListenersAscii(packet, args);
@@ -2940,6 +2525,9 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv drawinfo color="+color+" msg="+message);
         }
+        if (messageHistory != null) {
+            messageHistory.addMessage(color, 0, 0, message);
+        }
 
         drawInfo(message, color);
         notifyPacketWatcherListenersAscii(packet, args);
@@ -3234,7 +2822,10 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
             throw new UnknownCommandException("invalid magicmap command");
         }
 
-        final byte[][] data = new byte[height][width];
+        if (magicMapData.length != height || (height > 0 && magicMapData[0].length != width)) {
+            magicMapData = new byte[height][width];
+        }
+        final byte[][] data = magicMapData;
         for (int y = 0; y < height; y++) {
             packet.get(data[y]);
         }
@@ -3265,59 +2856,56 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
             debugProtocol.debugProtocolWrite("recv map2 begin");
         }
         if (wograldUpdateMapListener != null) {
-            synchronized (wograldUpdateMapListener.mapBegin()) {
-                scrollreceivedcurrent = false;
-                while (packet.hasRemaining()) {
-                    final int coord = getInt2(packet);
-                   final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
-                   final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
-                //    final int x = ((coord>>10)&0x3F);
-                //    final int y = ((coord>>4)&0x3F);
-                    final int coordType = coord&0xF;
-
-                    switch (coordType) {
-                    case Map2.TYPE_COORDINATE:
-                        cmdMap2Coordinate(packet, x, y,0);
-                        break;
-
-                    case Map2.TYPE_SCROLL:
-                        if (debugProtocol != null) {
-                            debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
-                        }
-                        assert wograldUpdateMapListener != null;
-                        wograldUpdateMapListener.mapScroll(x, y);
+            mapDeltaBuilder.clear();
+            scrollreceivedcurrent = false;
+            while (packet.hasRemaining()) {
+                final int coord = getInt2(packet);
+               final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
+               final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
+            //    final int x = ((coord>>10)&0x3F);
+            //    final int y = ((coord>>4)&0x3F);
+                final int coordType = coord&0xF;
+
+                switch (coordType) {
+                case Map2.TYPE_COORDINATE:
+                    cmdMap2Coordinate(packet, x, y,0);
+                    break;
+
+                case Map2.TYPE_SCROLL:
+                    if (debugProtocol != null) {
+                        debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
+                    }
+                    mapDeltaBuilder.addScroll(x, y);
 			if(!scrollreceivedcurrent){
-                        scrollreceivedcurrent = true;
-                        scrollx_current = x;
-                        scrolly_current = y;
+                    scrollreceivedcurrent = true;
+                    scrollx_current = x;
+                    scrolly_current = y;
 			}
 			else{
 			scrollx_current +=x;
 			scrolly_current +=y;
 			}
-                        break;
-                        // allow ground floor map scroll command
-                        // to request scroll of all floors
-                        // although drawing does some of the work on its event instead
-                        // after all the floor2 etc protocol should not request scroll
-                    default:
-                        if (debugProtocol != null) {
-                            debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" <invalid>");
-                        }
-                        throw new UnknownCommandException("map2 command contains unexpected coordinate type "+coordType);
+                    break;
+                    // allow ground floor map scroll command
+                    // to request scroll of all floors
+                    // although drawing does some of the work on its event instead
+                    // after all the floor2 etc protocol should not request scroll
+                default:
+                    if (debugProtocol != null) {
+                        debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" <invalid>");
                     }
+                    throw new UnknownCommandException("map2 command contains unexpected coordinate type "+coordType);
                 }
-                assert wograldUpdateMapListener != null;
-                wograldUpdateMapListener.mapEnd();
-                // I wonder about this now
-                // at the moment it makes sense to redraw all floors on the same event
-                // so that packets for other floors would not be asked to call mapend
-                // but what happens if ground floor becomes unchanging but other floors need redraw?
-                // also there is the problem of redrawing on the faceupdated event,
-                // which may be overly often
-                // can we count on tick to redraw at a steady rate, or did we break animations too much
-                // or was it never a steady rate?
             }
+            publishMapDelta(true);
+            // I wonder about this now
+            // at the moment it makes sense to redraw all floors on the same event
+            // so that packets for other floors would not be asked to call mapend
+            // but what happens if ground floor becomes unchanging but other floors need redraw?
+            // also there is the problem of redrawing on the faceupdated event,
+            // which may be overly often
+            // can we count on tick to redraw at a steady rate, or did we break animations too much
+            // or was it never a steady rate?
         }
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv map2 end");
@@ -3325,47 +2913,71 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
         notifyPacketWatcherListenersShortArray(packet, args);
     }
     
+    /**
+     * Publishes the map changes collected in {@link #mapDeltaBuilder} to the
+     * {@link #wograldUpdateMapListener}.
+     * @param mapEnd whether the map command is complete and the map view
+     * should be updated
+     */
+    private void publishMapDelta(final boolean mapEnd) {
+        assert wograldUpdateMapListener != null;
+        final MapDelta mapDelta = mapDeltaBuilder.build();
+        mapDeltaBuilder.clear();
+        if (mapDelta.isEmpty() && !mapEnd) {
+            return;
+        }
+
+        synchronized (wograldUpdateMapListener.mapBegin()) {
+            if (!mapDelta.isEmpty()) {
+                wograldUpdateMapListener.mapDelta(mapDelta);
+            }
+            if (mapEnd) {
+                wograldUpdateMapListener.mapEnd();
+            }
+        }
+    }
+
     private void processUpper1c(@NotNull final ByteBuffer packet) throws UnknownCommandException {
         final int args = packet.position();
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv upper1c begin");
         }
         if (wograldUpdateMapListener != null) {
-            synchronized (wograldUpdateMapListener.mapBegin()) {
-                while (packet.hasRemaining()) {
-                    final int coord = getInt2(packet);
-                   final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
-                   final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
-             //       final int x = ((coord>>10)&0x3F);
-             //       final int y = ((coord>>4)&0x3F);
-                    final int coordType = coord&0xF;
-
-                    switch (coordType) {
-                    case Map2.TYPE_COORDINATE:
-                        cmdMap2Coordinate(packet, x, y,4);
-                        break;
-
-                    case Map2.TYPE_SCROLL:
-                      //  if (debugProtocol != null) {
-                      //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
-                     //   }
-                    //    assert wograldUpdateMapListener != null;
-                      //  wograldUpdateMapListener.mapScroll(x, y);
-                        break;
-                        // allow ground floor map scroll command
-                        // to request scroll of all floors
-                        // although drawing does some of the work on its event instead
-                        // after all the floor2 etc protocol should not request scroll
-                    default:
-                        if (debugProtocol != null) {
-                            debugProtocol.debugProtocolWrite("recv upper1c "+x+"/"+y+" <invalid>");
-                        }
-                        throw new UnknownCommandException("upper1c command contains unexpected coordinate type "+coordType);
+            mapDeltaBuilder.clear();
+            while (packet.hasRemaining()) {
+                final int coord = getInt2(packet);
+               final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
+               final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
+         //       final int x = ((coord>>10)&0x3F);
+         //       final int y = ((coord>>4)&0x3F);
+                final int coordType = coord&0xF;
+
+                switch (coordType) {
+                case Map2.TYPE_COORDINATE:
+                    cmdMap2Coordinate(packet, x, y,4);
+                    break;
+
+                case Map2.TYPE_SCROLL:
+                  //  if (debugProtocol != null) {
+                  //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
+                 //   }
+                //    assert wograldUpdateMapListener != null;
+                  //  wograldUpdateMapListener.mapScroll(x, y);
+                    break;
+                    // allow ground floor map scroll command
+                    // to request scroll of all floors
+                    // although drawing does some of the work on its event instead
+                    // after all the floor2 etc protocol should not request scroll
+                default:
+                    if (debugProtocol != null) {
+                        debugProtocol.debugProtocolWrite("recv upper1c "+x+"/"+y+" <invalid>");
                     }
+                    throw new UnknownCommandException("upper1c command contains unexpected coordinate type "+coordType);
                 }
-             //   assert wograldUpdateMapListener != null;
-             //   wograldUpdateMapListener.mapEnd();
             }
+            publishMapDelta(false);
+         //   assert wograldUpdateMapListener != null;
+         //   wograldUpdateMapListener.mapEnd();
         }
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv upper1c end");
@@ -3379,41 +2991,41 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
             debugProtocol.debugProtocolWrite("recv upper2c begin");
         }
         if (wograldUpdateMapListener != null) {
-            synchronized (wograldUpdateMapListener.mapBegin()) {
-                while (packet.hasRemaining()) {
-                    final int coord = getInt2(packet);
-                   final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
-                   final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
-              //      final int x = ((coord>>10)&0x3F);
-              //      final int y = ((coord>>4)&0x3F);
-                    final int coordType = coord&0xF;
-
-                    switch (coordType) {
-                    case Map2.TYPE_COORDINATE:
-                        cmdMap2Coordinate(packet, x, y,5);
-                        break;
-
-                    case Map2.TYPE_SCROLL:
-                      //  if (debugProtocol != null) {
-                      //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
-                     //   }
-                    //    assert wograldUpdateMapListener != null;
-                      //  wograldUpdateMapListener.mapScroll(x, y);
-                        break;
-                        // allow ground floor map scroll command
-                        // to request scroll of all floors
-                        // although drawing does some of the work on its event instead
-                        // after all the floor2 etc protocol should not request scroll
-                    default:
-                        if (debugProtocol != null) {
-                            debugProtocol.debugProtocolWrite("recv upper2c "+x+"/"+y+" <invalid>");
-                        }
-                        throw new UnknownCommandException("upper2c command contains unexpected coordinate type "+coordType);
+            mapDeltaBuilder.clear();
+            while (packet.hasRemaining()) {
+                final int coord = getInt2(packet);
+               final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
+               final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
+          //      final int x = ((coord>>10)&0x3F);
+          //      final int y = ((coord>>4)&0x3F);
+                final int coordType = coord&0xF;
+
+                switch (coordType) {
+                case Map2.TYPE_COORDINATE:
+                    cmdMap2Coordinate(packet, x, y,5);
+                    break;
+
+                case Map2.TYPE_SCROLL:
+                  //  if (debugProtocol != null) {
+                  //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
+                 //   }
+                //    assert wograldUpdateMapListener != null;
+                  //  wograldUpdateMapListener.mapScroll(x, y);
+                    break;
+                    // allow ground floor map scroll command
+                    // to request scroll of all floors
+                    // although drawing does some of the work on its event instead
+                    // after all the floor2 etc protocol should not request scroll
+                default:
+                    if (debugProtocol != null) {
+                        debugProtocol.debugProtocolWrite("recv upper2c "+x+"/"+y+" <invalid>");
                     }
+                    throw new UnknownCommandException("upper2c command contains unexpected coordinate type "+coordType);
                 }
-             //   assert wograldUpdateMapListener != null;
-             //   wograldUpdateMapListener.mapEnd();
             }
+            publishMapDelta(false);
+         //   assert wograldUpdateMapListener != null;
+         //   wograldUpdateMapListener.mapEnd();
         }
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv upper2c end");
@@ -3427,41 +3039,41 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
             debugProtocol.debugProtocolWrite("recv upper3c begin");
         }
         if (wograldUpdateMapListener != null) {
-            synchronized (wograldUpdateMapListener.mapBegin()) {
-                while (packet.hasRemaining()) {
-                    final int coord = getInt2(packet);
-                   final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
-                   final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
-              //      final int x = ((coord>>10)&0x3F);
-               //    final int y = ((coord>>4)&0x3F);
-                    final int coordType = coord&0xF;
-
-                    switch (coordType) {
-                    case Map2.TYPE_COORDINATE:
-                        cmdMap2Coordinate(packet, x, y,6);
-                        break;
-
-                    case Map2.TYPE_SCROLL:
-                      //  if (debugProtocol != null) {
-                      //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
-                     //   }
-                    //    assert wograldUpdateMapListener != null;
-                      //  wograldUpdateMapListener.mapScroll(x, y);
-                        break;
-                        // allow ground floor map scroll command
-                        // to request scroll of all floors
-                        // although drawing does some of the work on its event instead
-                        // after all the floor2 etc protocol should not request scroll
-                    default:
-                        if (debugProtocol != null) {
-                            debugProtocol.debugProtocolWrite("recv upper3c "+x+"/"+y+" <invalid>");
-                        }
-                        throw new UnknownCommandException("upper3c command contains unexpected coordinate type "+coordType);
+            mapDeltaBuilder.clear();
+            while (packet.hasRemaining()) {
+                final int coord = getInt2(packet);
+               final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
+               final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
+          //      final int x = ((coord>>10)&0x3F);
+           //    final int y = ((coord>>4)&0x3F);
+                final int coordType = coord&0xF;
+
+                switch (coordType) {
+                case Map2.TYPE_COORDINATE:
+                    cmdMap2Coordinate(packet, x, y,6);
+                    break;
+
+                case Map2.TYPE_SCROLL:
+                  //  if (debugProtocol != null) {
+                  //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
+                 //   }
+                //    assert wograldUpdateMapListener != null;
+                  //  wograldUpdateMapListener.mapScroll(x, y);
+                    break;
+                    // allow ground floor map scroll command
+                    // to request scroll of all floors
+                    // although drawing does some of the work on its event instead
+                    // after all the floor2 etc protocol should not request scroll
+                default:
+                    if (debugProtocol != null) {
+                        debugProtocol.debugProtocolWrite("recv upper3c "+x+"/"+y+" <invalid>");
                     }
+                    throw new UnknownCommandException("upper3c command contains unexpected coordinate type "+coordType);
                 }
-             //   assert wograldUpdateMapListener != null;
-             //   wograldUpdateMapListener.mapEnd();
             }
+            publishMapDelta(false);
+         //   assert wograldUpdateMapListener != null;
+         //   wograldUpdateMapListener.mapEnd();
         }
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv upper3c end");
@@ -3475,41 +3087,41 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
             debugProtocol.debugProtocolWrite("recv lower1c begin");
         }
         if (wograldUpdateMapListener != null) {
-            synchronized (wograldUpdateMapListener.mapBegin()) {
-                while (packet.hasRemaining()) {
-                    final int coord = getInt2(packet);
-                  final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
-                   final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
-              //      final int x = ((coord>>10)&0x3F);
-              //      final int y = ((coord>>4)&0x3F);
-                    final int coordType = coord&0xF;
-
-                    switch (coordType) {
-                    case Map2.TYPE_COORDINATE:
-                        cmdMap2Coordinate(packet, x, y,1);
-                        break;
-
-                    case Map2.TYPE_SCROLL:
-                      //  if (debugProtocol != null) {
-                      //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
-                     //   }
-                    //    assert wograldUpdateMapListener != null;
-                      //  wograldUpdateMapListener.mapScroll(x, y);
-                        break;
-                        // allow ground floor map scroll command
-                        // to request scroll of all floors
-                        // although drawing does some of the work on its event instead
-                        // after all the floor2 etc protocol should not request scroll
-                    default:
-                        if (debugProtocol != null) {
-                            debugProtocol.debugProtocolWrite("recv lower1c "+x+"/"+y+" <invalid>");
-                        }
-                        throw new UnknownCommandException("lower1c command contains unexpected coordinate type "+coordType);
+            mapDeltaBuilder.clear();
+            while (packet.hasRemaining()) {
+                final int coord = getInt2(packet);
+              final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
+               final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
+          //      final int x = ((coord>>10)&0x3F);
+          //      final int y = ((coord>>4)&0x3F);
+                final int coordType = coord&0xF;
+
+                switch (coordType) {
+                case Map2.TYPE_COORDINATE:
+                    cmdMap2Coordinate(packet, x, y,1);
+                    break;
+
+                case Map2.TYPE_SCROLL:
+                  //  if (debugProtocol != null) {
+                  //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
+                 //   }
+                //    assert wograldUpdateMapListener != null;
+                  //  wograldUpdateMapListener.mapScroll(x, y);
+                    break;
+                    // allow ground floor map scroll command
+                    // to request scroll of all floors
+                    // although drawing does some of the work on its event instead
+                    // after all the floor2 etc protocol should not request scroll
+                default:
+                    if (debugProtocol != null) {
+                        debugProtocol.debugProtocolWrite("recv lower1c "+x+"/"+y+" <invalid>");
                     }
+                    throw new UnknownCommandException("lower1c command contains unexpected coordinate type "+coordType);
                 }
-             //   assert wograldUpdateMapListener != null;
-             //   wograldUpdateMapListener.mapEnd();
             }
+            publishMapDelta(false);
+         //   assert wograldUpdateMapListener != null;
+         //   wograldUpdateMapListener.mapEnd();
         }
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv lower1c end");
@@ -3523,41 +3135,41 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
             debugProtocol.debugProtocolWrite("recv lower2c begin");
         }
         if (wograldUpdateMapListener != null) {
-            synchronized (wograldUpdateMapListener.mapBegin()) {
-                while (packet.hasRemaining()) {
-                    final int coord = getInt2(packet);
-                   final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
-                   final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
-             //       final int x = ((coord>>10)&0x3F);
-             //       final int y = ((coord>>4)&0x3F);
-                    final int coordType = coord&0xF;
-
-                    switch (coordType) {
-                    case Map2.TYPE_COORDINATE:
-                        cmdMap2Coordinate(packet, x, y,2);
-                        break;
-
-                    case Map2.TYPE_SCROLL:
-                      //  if (debugProtocol != null) {
-                      //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
-                     //   }
-                    //    assert wograldUpdateMapListener != null;
-                      //  wograldUpdateMapListener.mapScroll(x, y);
-                        break;
-                        // allow ground floor map scroll command
-                        // to request scroll of all floors
-                        // although drawing does some of the work on its event instead
-                        // after all the floor2 etc protocol should not request scroll
-                    default:
-                        if (debugProtocol != null) {
-                            debugProtocol.debugProtocolWrite("recv lower2c "+x+"/"+y+" <invalid>");
-                        }
-                        throw new UnknownCommandException("lower2c command contains unexpected coordinate type "+coordType);
+            mapDeltaBuilder.clear();
+            while (packet.hasRemaining()) {
+                final int coord = getInt2(packet);
+               final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
+               final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
+         //       final int x = ((coord>>10)&0x3F);
+         //       final int y = ((coord>>4)&0x3F);
+                final int coordType = coord&0xF;
+
+                switch (coordType) {
+                case Map2.TYPE_COORDINATE:
+                    cmdMap2Coordinate(packet, x, y,2);
+                    break;
+
+                case Map2.TYPE_SCROLL:
+                  //  if (debugProtocol != null) {
+                  //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
+                 //   }
+                //    assert wograldUpdateMapListener != null;
+                  //  wograldUpdateMapListener.mapScroll(x, y);
+                    break;
+                    // allow ground floor map scroll command
+                    // to request scroll of all floors
+                    // although drawing does some of the work on its event instead
+                    // after all the floor2 etc protocol should not request scroll
+                default:
+                    if (debugProtocol != null) {
+                        debugProtocol.debugProtocolWrite("recv lower2c "+x+"/"+y+" <invalid>");
                     }
+                    throw new UnknownCommandException("lower2c command contains unexpected coordinate type "+coordType);
                 }
-             //   assert wograldUpdateMapListener != null;
-             //   wograldUpdateMapListener.mapEnd();
             }
+            publishMapDelta(false);
+         //   assert wograldUpdateMapListener != null;
+         //   wograldUpdateMapListener.mapEnd();
         }
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv lower2c end");
@@ -3571,41 +3183,41 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
             debugProtocol.debugProtocolWrite("recv lower3c begin");
         }
         if (wograldUpdateMapListener != null) {
-            synchronized (wograldUpdateMapListener.mapBegin()) {
-                while (packet.hasRemaining()) {
-                    final int coord = getInt2(packet);
-                   final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
-                   final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
-             //       final int x = ((coord>>10)&0x3F);
-             //       final int y = ((coord>>4)&0x3F);
-                    final int coordType = coord&0xF;
-
-                    switch (coordType) {
-                    case Map2.TYPE_COORDINATE:
-                        cmdMap2Coordinate(packet, x, y,3);
-                        break;
-
-                    case Map2.TYPE_SCROLL:
-                      //  if (debugProtocol != null) {
-                      //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
-                     //   }
-                    //    assert wograldUpdateMapListener != null;
-                      //  wograldUpdateMapListener.mapScroll(x, y);
-                        break;
-                        // allow ground floor map scroll command
-                        // to request scroll of all floors
-                        // although drawing does some of the work on its event instead
-                        // after all the floor2 etc protocol should not request scroll
-                    default:
-                        if (debugProtocol != null) {
-                            debugProtocol.debugProtocolWrite("recv lower3c "+x+"/"+y+" <invalid>");
-                        }
-                        throw new UnknownCommandException("lower3c command contains unexpected coordinate type "+coordType);
+            mapDeltaBuilder.clear();
+            while (packet.hasRemaining()) {
+                final int coord = getInt2(packet);
+               final int x = ((coord>>10)&0x3F)-Map2.COORD_OFFSET;
+               final int y = ((coord>>4)&0x3F)-Map2.COORD_OFFSET;
+         //       final int x = ((coord>>10)&0x3F);
+         //       final int y = ((coord>>4)&0x3F);
+                final int coordType = coord&0xF;
+
+                switch (coordType) {
+                case Map2.TYPE_COORDINATE:
+                    cmdMap2Coordinate(packet, x, y,3);
+                    break;
+
+                case Map2.TYPE_SCROLL:
+                  //  if (debugProtocol != null) {
+                  //      debugProtocol.debugProtocolWrite("recv map2 "+x+"/"+y+" scroll");
+                 //   }
+                //    assert wograldUpdateMapListener != null;
+                  //  wograldUpdateMapListener.mapScroll(x, y);
+                    break;
+                    // allow ground floor map scroll command
+                    // to request scroll of all floors
+                    // although drawing does some of the work on its event instead
+                    // after all the floor2 etc protocol should not request scroll
+                default:
+                    if (debugProtocol != null) {
+                        debugProtocol.debugProtocolWrite("recv lower3c "+x+"/"+y+" <invalid>");
                     }
+                    throw new UnknownCommandException("lower3c command contains unexpected coordinate type "+coordType);
                 }
-             //   assert wograldUpdateMapListener != null;
-             //   wograldUpdateMapListener.mapEnd();
             }
+            publishMapDelta(false);
+         //   assert wograldUpdateMapListener != null;
+         //   wograldUpdateMapListener.mapEnd();
         }
         if (debugProtocol != null) {
             debugProtocol.debugProtocolWrite("recv lower3c end");
@@ -3695,6 +3307,16 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
        final int args = packet.position();
        // final String music = getString(packet, packet.remaining());
         final int track = getInt2(packet);
+        if (oggpl == null) {
+            final String musicpath = "resource/music/"+getMusicTrackName(track);
+            if (debugProtocol != null) {
+                debugProtocol.debugProtocolWrite("recv music "+track+" "+musicpath);
+            }
+            for (final WograldMusicListener listener : wograldMusicListeners.getListeners()) {
+                listener.commandMusicReceived(musicpath);
+            }
+            return;
+        }
      //   if (debugProtocol != null) {
      //       debugProtocol.debugProtocolWrite("recv music "+music);
      //   }
@@ -3741,11 +3363,11 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
     oggpl.loadPlaylist();
     oggpl.initUI();
 
-    frame1.getContentPane().add(oggpl.panel);
-    frame1.pack();
-    frame1.setVisible(true);
+    getPlayerFrame().getContentPane().add(oggpl.panel);
+    getPlayerFrame().pack();
+    getPlayerFrame().setVisible(true);
    oggpl.play_sound();
-    frame1.setVisible(false);
+    getPlayerFrame().setVisible(false);
     
     
     // server streams newmap cmds to client to ensure that
@@ -3756,6 +3378,58 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
          //this.oggpl.
 	
         
+        String trackname = getMusicTrackName(track);
+
+        String musicpath = "resource/music/" + trackname;
+	if(musicpl_prev != track)
+	{
+
+	oggpl.playlist.removeAllElements();
+         oggpl.stop_sound();
+         
+         getPlayerFrame().remove(oggpl.panel);
+         oggpl=new JOrbisPlayer(); 
+         
+        // oggpl.clearPlaylist(oggpl);
+         
+       // oggpl.changeTrack(oggpl, track );
+        oggpl.running_as_applet=false;
+        System.out.println(musicpath);
+   oggpl.playlist.addElement(musicpath);
+
+ 
+	musicpl_prev=track;
+
+    oggpl.loadPlaylist();
+    oggpl.initUI();
+
+   
+    getPlayerFrame().getContentPane().add(oggpl.panel);
+    getPlayerFrame().pack();
+    getPlayerFrame().setVisible(true);
+   oggpl.play_sound();
+    getPlayerFrame().setVisible(false);
+        
+         System.out.println("play different music\n");
+	}
+	else
+	{
+System.out.println("discard repeat music\n");
+	}
+         
+         
+     }
+        
+        
+    }
+
+    /**
+     * Returns the file name of a music track.
+     * @param track the track number sent by the server
+     * @return the file name within the music directory
+     */
+    @NotNull
+    private static String getMusicTrackName(final int track) {
         String trackname="00.ogg";
         
          if(track==1)
@@ -4097,47 +3771,7 @@ public class DefaultWograldServerConnection extends DefaultServerConnection impl
        
     }
         
-        String musicpath = "resource/music/" + trackname;
-	if(musicpl_prev != track)
-	{
-
-	oggpl.playlist.removeAllElements();
-         oggpl.stop_sound();
-         
-         frame1.remove(oggpl.panel);
-         oggpl=new JOrbisPlayer(); 
-         
-        // oggpl.clearPlaylist(oggpl);
-         
-       // oggpl.changeTrack(oggpl, track );
-        oggpl.running_as_applet=false;
-        System.out.println(musicpath);
-   oggpl.playlist.addElement(musicpath);
-
- 
-	musicpl_prev=track;
-
-    oggpl.loadPlaylist();
-    oggpl.initUI();
-
-   
-    frame1.getContentPane().add(oggpl.panel);
-    frame1.pack();
-    frame1.setVisible(true);
-   oggpl.play_sound();
-    frame1.setVisible(false);
-        
-         System.out.println("play different music\n");
-	}
-	else
-	{
-System.out.println("discard repeat music\n");
-	}
-         
-         
-     }
-        
-        
+        return trackname;
     }
 
     /**
@@ -5248,7 +4882,7 @@ System.out.println("discard repeat music\n");
     private void notifyPacketWatcherListenersAscii(@NotNull final ByteBuffer packet, final int args) {
         final ReceivedPacketListener[] listeners = receivedPacketListeners.getListeners();
         if (listeners.length > 0) {
-            final String command = extractCommand(packet);
+            final String command = getCurrentCommand(packet);
             if (packet.hasRemaining()) { // XXX: should check payload, not whole command?
                 for (final ReceivedPacketListener receivedPacketListener : listeners) {
                     packet.position(args);
@@ -5270,7 +4904,7 @@ System.out.println("discard repeat music\n");
     private void notifyPacketWatcherListenersShortArray(@NotNull final ByteBuffer packet, final int args) {
         final ReceivedPacketListener[] listeners = receivedPacketListeners.getListeners();
         if (listeners.length > 0) {
-            final String command = extractCommand(packet);
+            final String command = getCurrentCommand(packet);
             if (packet.hasRemaining()) { // XXX: should check payload, not whole command?
                 for (final ReceivedPacketListener receivedPacketListener : listeners) {
                     packet.position(args);
@@ -5292,7 +4926,7 @@ System.out.println("discard repeat music\n");
     private void notifyPacketWatcherListenersIntArray(@NotNull final ByteBuffer packet, final int args) {
         final ReceivedPacketListener[] listeners = receivedPacketListeners.getListeners();
         if (listeners.length > 0) {
-            final String command = extractCommand(packet);
+            final String command = getCurrentCommand(packet);
             if (packet.hasRemaining()) { // XXX: should check payload, not whole command?
                 for (final ReceivedPacketListener receivedPacketListener : listeners) {
                     packet.position(args);
@@ -5314,7 +4948,7 @@ System.out.println("discard repeat music\n");
     private void notifyPacketWatcherListenersShortInt(@NotNull final ByteBuffer packet, final int args) {
         final ReceivedPacketListener[] listeners = receivedPacketListeners.getListeners();
         if (listeners.length > 0) {
-            final String command = extractCommand(packet);
+            final String command = getCurrentCommand(packet);
             if (packet.hasRemaining()) { // XXX: should check payload, not whole command?
                 for (final ReceivedPacketListener receivedPacketListener : listeners) {
                     packet.position(args);
@@ -5336,7 +4970,7 @@ System.out.println("discard repeat music\n");
     private void notifyPacketWatcherListenersMixed(@NotNull final ByteBuffer packet, final int args) {
         final ReceivedPacketListener[] listeners = receivedPacketListeners.getListeners();
         if (listeners.length > 0) {
-            final String command = extractCommand(packet);
+            final String command = getCurrentCommand(packet);
             if (packet.hasRemaining()) { // XXX: should check payload, not whole command?
                 for (final ReceivedPacketListener receivedPacketListener : listeners) {
                     packet.position(args);
@@ -5374,7 +5008,7 @@ System.out.println("discard repeat music\n");
     private void notifyPacketWatcherListenersNoData(@NotNull final ByteBuffer packet, final int args) {
         final ReceivedPacketListener[] listeners = receivedPacketListeners.getListeners();
         if (listeners.length > 0) {
-            final String command = extractCommand(packet);
+            final String command = getCurrentCommand(packet);
             if (packet.hasRemaining()) { // XXX: should check payload, not whole command?
                 for (final ReceivedPacketListener receivedPacketListener : listeners) {
                     packet.position(args);
@@ -5554,6 +5188,10 @@ System.out.println("discard repeat music\n");
      * @return the string
      */
     private static String newString(final ByteBuffer byteBuffer, final int start, final int len) {
+        if (byteBuffer.hasArray()) {
+            return new String(byteBuffer.array(), byteBuffer.arrayOffset()+start, len, UTF8);
+        }
+
         final byte[] tmp = new byte[len];
         for (int i = 0; i < len; i++) {
             tmp[i] = byteBuffer.get(start+i);
@@ -5608,10 +5246,14 @@ System.out.println("discard repeat music\n");
      * @param len the length of the string
      * @return the string
      */
-    private static String getString(final ByteBuffer byteBuffer, final int len) {
-        final byte[] tmp = new byte[len];
-        byteBuffer.get(tmp);
-        return new String(tmp, UTF8);
+    private String getString(final ByteBuffer byteBuffer, final int len) {
+        if (len > byteBuffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        final int start = byteBuffer.position();
+        byteBuffer.position(start+len);
+        return newString(byteBuffer, start, len);
     }
     
     public Integer getImportantTilesReady(final Integer index) {
@@ -5641,6 +5283,15 @@ System.out.println("discard repeat music\n");
         return HexCodec.hexDump(data, 0, len);
     }
 
+    /**
+     * Returns the per-command statistics of received packets.
+     * @return the statistics
+     */
+    @NotNull
+    public CommandStatistics getCommandStatistics() {
+        return commandStatistics;
+    }
+
     /**
      * Returns the currently negotiated setup value of "num_look_objects".
      * @return the current size of the ground view
@@ -140,6 +140,12 @@ public interface WograldServerConnection extends ServerConnection {
      */
     void addWograldTickListener(@NotNull WograldTickListener listener);
 
+    /**
+     * Removes a listener to be notified about tick changes.
+     * @param listener the listener to remove
+     */
+    void removeWograldTickListener(@NotNull WograldTickListener listener);
+
     /**
      * Adds a listener to be notified about received sound commands.
      * @param listener the listener to add
@@ -22,6 +22,7 @@
 package com.realtime.wograld.jxclient.server.wograld;
 
 import com.realtime.wograld.jxclient.map.Location;
+import com.realtime.wograld.jxclient.server.wograld.messages.MapDelta;
 import java.util.EventListener;
 import org.jetbrains.annotations.NotNull;
 
@@ -113,11 +114,19 @@ public interface WograldUpdateMapListener extends EventListener {
      */
     void mapScroll(int dx, int dy);
 
+    /**
+     * Part of "map2" parsing: apply a list of changes which have been decoded
+     * without holding the synchronization object.
+     * @param mapDelta the map changes
+     */
+    void mapDelta(@NotNull MapDelta mapDelta);
+
     /**
      * Part of "magicmap" parsing: set the magic map color.
      * @param x the x-coordinate
      * @param y the y-coordinate
-     * @param data the magic map data (y, x); must not be changed
+     * @param data the magic map data (y, x); must not be changed; it is only
+     * valid until this function returns
      */
     void magicMap(int x, int y, byte[][] data);
 
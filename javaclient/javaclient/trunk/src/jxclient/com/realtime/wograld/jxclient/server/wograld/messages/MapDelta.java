@@ -0,0 +1,143 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.server.wograld.messages;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable list of map changes decoded from one "map2" (or floor update)
+ * command. The changes are stored as packed <code>int</code> values so that
+ * they can be decoded without holding any locks and later be applied to the
+ * map model in one step.
+ * @author Andreas Kirschbaum
+ */
+public class MapDelta {
+
+    /**
+     * Change type: clear a square. The z-value is the floor.
+     */
+    public static final int CLEAR = 0;
+
+    /**
+     * Change type: set the darkness of a square. The z-value is the floor,
+     * the value is the darkness.
+     */
+    public static final int DARKNESS = 1;
+
+    /**
+     * Change type: set the face of a square. The z-value is the layer, the
+     * value is the face number.
+     */
+    public static final int FACE = 2;
+
+    /**
+     * Change type: scroll the map. The x- and y-values are the distance.
+     */
+    public static final int SCROLL = 3;
+
+    /**
+     * The number of <code>int</code> values per change.
+     */
+    static final int ENTRY_SIZE = 5;
+
+    /**
+     * An empty instance.
+     */
+    @NotNull
+    public static final MapDelta EMPTY = new MapDelta(new int[0]);
+
+    /**
+     * The changes: type, x, y, z, and value for each change.
+     */
+    @NotNull
+    private final int[] data;
+
+    /**
+     * Creates a new instance.
+     * @param data the changes; the array must not be modified afterwards
+     */
+    MapDelta(@NotNull final int[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Returns the number of changes.
+     * @return the number of changes
+     */
+    public int size() {
+        return data.length/ENTRY_SIZE;
+    }
+
+    /**
+     * Returns whether this instance does not contain any changes.
+     * @return whether no changes are present
+     */
+    public boolean isEmpty() {
+        return data.length == 0;
+    }
+
+    /**
+     * Returns the type of a change.
+     * @param index the index of the change
+     * @return the type
+     */
+    public int getType(final int index) {
+        return data[index*ENTRY_SIZE];
+    }
+
+    /**
+     * Returns the x-coordinate of a change.
+     * @param index the index of the change
+     * @return the x-coordinate
+     */
+    public int getX(final int index) {
+        return data[index*ENTRY_SIZE+1];
+    }
+
+    /**
+     * Returns the y-coordinate of a change.
+     * @param index the index of the change
+     * @return the y-coordinate
+     */
+    public int getY(final int index) {
+        return data[index*ENTRY_SIZE+2];
+    }
+
+    /**
+     * Returns the floor or layer of a change.
+     * @param index the index of the change
+     * @return the floor or layer
+     */
+    public int getZ(final int index) {
+        return data[index*ENTRY_SIZE+3];
+    }
+
+    /**
+     * Returns the value of a change.
+     * @param index the index of the change
+     * @return the value
+     */
+    public int getValue(final int index) {
+        return data[index*ENTRY_SIZE+4];
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.server.wograld.messages;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Collects map changes and creates {@link MapDelta} instances. An instance
+ * may be reused for decoding many commands.
+ * @author Andreas Kirschbaum
+ */
+public class MapDeltaBuilder {
+
+    /**
+     * The collected changes; only the first {@link #length} values are valid.
+     */
+    @NotNull
+    private int[] data = new int[64*MapDelta.ENTRY_SIZE];
+
+    /**
+     * The number of valid values in {@link #data}.
+     */
+    private int length = 0;
+
+    /**
+     * Forgets all collected changes.
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    /**
+     * Adds a change clearing a square.
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param floor the floor
+     */
+    public void addClear(final int x, final int y, final int floor) {
+        add(MapDelta.CLEAR, x, y, floor, 0);
+    }
+
+    /**
+     * Adds a change of the darkness of a square.
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param floor the floor
+     * @param darkness the darkness value
+     */
+    public void addDarkness(final int x, final int y, final int floor, final int darkness) {
+        add(MapDelta.DARKNESS, x, y, floor, darkness);
+    }
+
+    /**
+     * Adds a change of the face of a square.
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param layer the layer
+     * @param faceNum the face number
+     */
+    public void addFace(final int x, final int y, final int layer, final int faceNum) {
+        add(MapDelta.FACE, x, y, layer, faceNum);
+    }
+
+    /**
+     * Adds a map scroll.
+     * @param dx the x-distance
+     * @param dy the y-distance
+     */
+    public void addScroll(final int dx, final int dy) {
+        add(MapDelta.SCROLL, dx, dy, 0, 0);
+    }
+
+    /**
+     * Returns the collected changes.
+     * @return the changes
+     */
+    @NotNull
+    public MapDelta build() {
+        if (length == 0) {
+            return MapDelta.EMPTY;
+        }
+
+        final int[] result = new int[length];
+        System.arraycopy(data, 0, result, 0, length);
+        return new MapDelta(result);
+    }
+
+    /**
+     * Adds a change.
+     * @param type the change type
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param z the floor or layer
+     * @param value the value
+     */
+    private void add(final int type, final int x, final int y, final int z, final int value) {
+        if (length+MapDelta.ENTRY_SIZE > data.length) {
+            final int[] newData = new int[data.length*2];
+            System.arraycopy(data, 0, newData, 0, length);
+            data = newData;
+        }
+        data[length++] = type;
+        data[length++] = x;
+        data[length++] = y;
+        data[length++] = z;
+        data[length++] = value;
+    }
+
+}
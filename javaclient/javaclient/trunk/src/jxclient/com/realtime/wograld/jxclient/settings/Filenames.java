@@ -123,6 +123,27 @@ public class Filenames {
         return getSettingsFile(hostname == null || character == null ? "keybindings.txt" : "keybindings-"+encode(hostname)+"-"+encode(character)+".txt");
     }
 
+    /**
+     * Returns the file for storing the faces recently used on a server.
+     * @param serverInfo the server to connect to
+     * @return the face usage file
+     * @throws IOException if the file cannot be accessed
+     */
+    @NotNull
+    public static File getFaceUsageFile(@NotNull final CharSequence serverInfo) throws IOException {
+        return getSettingsFile("faces-"+encode(serverInfo)+".txt");
+    }
+
+    /**
+     * Returns the directory for storing the message history.
+     * @return the message history directory
+     * @throws IOException if the directory cannot be accessed
+     */
+    @NotNull
+    public static File getMessageHistoryDir() throws IOException {
+        return getSettingsFile("history");
+    }
+
     /**
      * Returns the metaserver cache file.
      * @return the metaserver cache file, or <code>null</code> if the file
@@ -149,6 +170,21 @@ public class Filenames {
         return new File(getSettingsFile("skin_"+skinName), "dialogs.txt");
     }
 
+    /**
+     * Returns the file for caching the decoded images of a skin.
+     * @param skinName identifies the skin
+     * @return the file, or <code>null</code> if the file cannot be accessed
+     */
+    @Nullable
+    public static File getSkinImageCacheFile(@NotNull final String skinName) {
+        try {
+            return new File(getSettingsFile("skin_"+encode(skinName)), "images.dat");
+        } catch (final IOException ex) {
+            System.err.println("Cannot access skin image cache file: "+ex.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Returns a file within the settings directory.
      * @param filename the filename
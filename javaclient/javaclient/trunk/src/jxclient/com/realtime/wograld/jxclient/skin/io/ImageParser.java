@@ -27,6 +27,8 @@ import com.realtime.wograld.jxclient.skin.source.JXCSkinSource;
 import java.awt.Color;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import javax.imageio.ImageIO;
@@ -52,12 +54,22 @@ public class ImageParser {
     @NotNull
     private final JXCSkinSource skinSource;
 
+    /**
+     * The {@link SkinImageCache} for decoded images or <code>null</code> to
+     * always decode images.
+     */
+    @Nullable
+    private final SkinImageCache imageCache;
+
     /**
      * Creates a new instance.
      * @param skinSource the skin source for loading resources
+     * @param imageCache the cache for decoded images or <code>null</code> to
+     * always decode images
      */
-    public ImageParser(@NotNull final JXCSkinSource skinSource) {
+    public ImageParser(@NotNull final JXCSkinSource skinSource, @Nullable final SkinImageCache imageCache) {
         this.skinSource = skinSource;
+        this.imageCache = imageCache;
     }
 
     /**
@@ -95,15 +107,34 @@ public class ImageParser {
         }
 
         final String filename = "pictures/"+name+".png";
-        final BufferedImage image;
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
         final InputStream inputStream = skinSource.getInputStream(filename);
         try {
-            image = ImageIO.read(inputStream);
+            final byte[] buf = new byte[8192];
+            while (true) {
+                final int len = inputStream.read(buf);
+                if (len == -1) {
+                    break;
+                }
+                baos.write(buf, 0, len);
+            }
         } finally {
             inputStream.close();
         }
-        if (image == null) {
-            throw new IOException("image '"+skinSource.getURI(filename)+"' does not exist");
+        final byte[] data = baos.toByteArray();
+        final byte[] digest = imageCache == null ? null : SkinImageCache.getDigest(data);
+        final BufferedImage cachedImage = imageCache == null || digest == null ? null : imageCache.load(name, digest);
+        final BufferedImage image;
+        if (cachedImage != null) {
+            image = cachedImage;
+        } else {
+            image = ImageIO.read(new ByteArrayInputStream(data));
+            if (image == null) {
+                throw new IOException("image '"+skinSource.getURI(filename)+"' does not exist");
+            }
+            if (imageCache != null && digest != null) {
+                imageCache.save(name, digest, image);
+            }
         }
         try {
             definedImages.insert(name, image);
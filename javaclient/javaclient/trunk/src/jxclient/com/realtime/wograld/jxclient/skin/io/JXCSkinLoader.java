@@ -250,6 +250,11 @@ public class JXCSkinLoader {
      */
     private final int defaultTileSize;
 
+    /**
+     * Whether the map view should use an accelerated back buffer.
+     */
+    private final boolean acceleratedMap;
+
     /**
      * The {@link FacesProviderFactory} instance for creating faces provider
      * instances.
@@ -403,11 +408,13 @@ public class JXCSkinLoader {
      * @param experienceTable the experience table to use
      * @param skillSet the skill set to use
      * @param defaultTileSize the default tile size for the map view
+     * @param acceleratedMap whether the map view should use an accelerated
+     * back buffer
      * @param keybindingsManager the keybindings manager to use
      * @param questView the quests view to use
      * @param questsManager the quests manager instance to use
      */
-    public JXCSkinLoader(@NotNull final ItemSet itemSet, @NotNull final ItemView inventoryView, @NotNull final FloorView floorView, @NotNull final SpellsView spellView, @NotNull final SpellsManager spellsManager, @NotNull final FacesManager facesManager, @NotNull final Stats stats, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final KeyBindings defaultKeyBindings, @NotNull final OptionManager optionManager, @NotNull final ExperienceTable experienceTable, @NotNull final SkillSet skillSet, final int defaultTileSize, @NotNull final KeybindingsManager keybindingsManager, @NotNull final QuestsManager questsManager, @NotNull final QuestsView questView) {
+    public JXCSkinLoader(@NotNull final ItemSet itemSet, @NotNull final ItemView inventoryView, @NotNull final FloorView floorView, @NotNull final SpellsView spellView, @NotNull final SpellsManager spellsManager, @NotNull final FacesManager facesManager, @NotNull final Stats stats, @NotNull final MapUpdaterState mapUpdaterState, @NotNull final KeyBindings defaultKeyBindings, @NotNull final OptionManager optionManager, @NotNull final ExperienceTable experienceTable, @NotNull final SkillSet skillSet, final int defaultTileSize, final boolean acceleratedMap, @NotNull final KeybindingsManager keybindingsManager, @NotNull final QuestsManager questsManager, @NotNull final QuestsView questView) {
         this.itemSet = itemSet;
         this.inventoryView = inventoryView;
         this.floorView = floorView;
@@ -415,6 +422,7 @@ public class JXCSkinLoader {
         this.spellsManager = spellsManager;
         this.facesManager = facesManager;
         this.defaultTileSize = defaultTileSize;
+        this.acceleratedMap = acceleratedMap;
         facesProviderFactory = new FacesProviderFactory(facesManager);
         this.stats = stats;
         this.mapUpdaterState = mapUpdaterState;
@@ -445,12 +453,14 @@ public class JXCSkinLoader {
      * @param macros the macros instance to use
      * @param guiFactory the gui factory for creating gui elements
      * @param smoothFaces the smooth faces
+     * @param imageCache the cache for decoded images or <code>null</code> to
+     * always decode images
      * @return the loaded skin
      * @throws JXCSkinException if the skin cannot be loaded
      */
     @NotNull
-    public JXCSkin load(@NotNull final JXCSkinSource skinSource, @NotNull final WograldServerConnection wograldServerConnection, @NotNull final GuiStateManager guiStateManager, @NotNull final TooltipManager tooltipManager, @NotNull final JXCWindowRenderer windowRenderer, @NotNull final GUIElementListener elementListener, @NotNull final MetaserverModel metaserverModel, @NotNull final CharacterModel characterModel, @NotNull final CommandQueue commandQueue, @NotNull final Shortcuts shortcuts, @NotNull final Commands commands, @NotNull final CurrentSpellManager currentSpellManager, @NotNull final CommandCallback commandCallback, @NotNull final Macros macros, @NotNull final GuiFactory guiFactory, @NotNull final SmoothFaces smoothFaces) throws JXCSkinException {
-        imageParser = new ImageParser(skinSource);
+    public JXCSkin load(@NotNull final JXCSkinSource skinSource, @NotNull final WograldServerConnection wograldServerConnection, @NotNull final GuiStateManager guiStateManager, @NotNull final TooltipManager tooltipManager, @NotNull final JXCWindowRenderer windowRenderer, @NotNull final GUIElementListener elementListener, @NotNull final MetaserverModel metaserverModel, @NotNull final CharacterModel characterModel, @NotNull final CommandQueue commandQueue, @NotNull final Shortcuts shortcuts, @NotNull final Commands commands, @NotNull final CurrentSpellManager currentSpellManager, @NotNull final CommandCallback commandCallback, @NotNull final Macros macros, @NotNull final GuiFactory guiFactory, @NotNull final SmoothFaces smoothFaces, @Nullable final SkinImageCache imageCache) throws JXCSkinException {
+        imageParser = new ImageParser(skinSource, imageCache);
         fontParser = new FontParser(skinSource);
 
         final Image nextGroupFace;
@@ -512,6 +522,11 @@ public class JXCSkinLoader {
             if (skinToDetach != null) {
                 skinToDetach.detach();
                 windowRenderer.setTooltip(null);
+                if (imageCache != null) {
+                    imageCache.close();
+                }
+            } else if (imageCache != null) {
+                imageCache.save();
             }
         }
 
@@ -1625,8 +1640,12 @@ public class JXCSkinLoader {
         final Font fontFixedBold = definedFonts.lookup(args.get());
         final Font fontArcane = definedFonts.lookup(args.get());
         final Color defaultColor = ParseUtils.parseColor(args.get());
+        final int maxLines = args.hasMore() ? ExpressionParser.parseInt(args.get()) : GUIMessageLog.DEFAULT_MAX_LINES;
+        if (maxLines < 1) {
+            throw new IOException("invalid number of lines: "+maxLines);
+        }
         final Fonts fonts = new Fonts(fontPrint, fontFixed, fontFixedBold, fontArcane);
-        final AbstractGUIElement element = new GUIMessageLog(tooltipManager, elementListener, name, server, backgroundImage, fonts, defaultColor);
+        final AbstractGUIElement element = new GUIMessageLog(tooltipManager, elementListener, name, server, backgroundImage, fonts, defaultColor, maxLines);
         insertGuiElement(element);
     }
 
@@ -1721,7 +1740,7 @@ public class JXCSkinLoader {
         if (facesProvider == null) {
             throw new IOException("cannot create faces with size "+defaultTileSize);
         }
-        insertGuiElement(new GUIMap(tooltipManager, elementListener, name, mapUpdaterState, facesProvider, server, smoothFaces));
+        insertGuiElement(new GUIMap(tooltipManager, elementListener, name, mapUpdaterState, facesProvider, server, smoothFaces, acceleratedMap));
     }
 
     /**
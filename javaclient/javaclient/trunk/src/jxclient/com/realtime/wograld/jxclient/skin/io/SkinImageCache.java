@@ -0,0 +1,373 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.skin.io;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A disk based cache for decoded skin images. Decoding the .png files of a
+ * skin dominates the time needed to load a skin; this cache stores the
+ * decoded pixels so that later loads of an unchanged skin only have to read
+ * and hash the .png data.
+ * <p/>
+ * Each image is keyed by its name and the SHA-1 digest of its .png data;
+ * changed images therefore are decoded again. The cache file is rewritten by
+ * {@link #save()} to contain exactly the images used while loading the skin.
+ * @author Andreas Kirschbaum
+ */
+public class SkinImageCache {
+
+    /**
+     * The magic number at the start of the cache file.
+     */
+    private static final int MAGIC = 0x4A58534B;
+
+    /**
+     * The version number of the cache file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of an image digest.
+     */
+    private static final int DIGEST_SIZE = 20;
+
+    /**
+     * The maximum width or height of a cached image.
+     */
+    private static final int MAX_SIZE = 0x4000;
+
+    /**
+     * The cache file.
+     */
+    @NotNull
+    private final File file;
+
+    /**
+     * Maps image name to the cache file entry. Contains the entries present
+     * in the cache file.
+     */
+    @NotNull
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * The images used since this instance was created. Maps image name to
+     * the digest of the .png data and the decoded image.
+     */
+    @NotNull
+    private final Map<String, Image> usedImages = new LinkedHashMap<String, Image>();
+
+    /**
+     * The opened cache file or <code>null</code> if the cache file does not
+     * exist or cannot be used.
+     */
+    @Nullable
+    private RandomAccessFile randomAccessFile = null;
+
+    /**
+     * Whether {@link #usedImages} contains images not present in the cache
+     * file.
+     */
+    private boolean modified = false;
+
+    /**
+     * Creates a new instance.
+     * @param file the cache file
+     */
+    public SkinImageCache(@NotNull final File file) {
+        this.file = file;
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            open();
+        } catch (final IOException ex) {
+            System.err.println(file+": "+ex.getMessage()+", discarding cached images");
+            close();
+        }
+    }
+
+    /**
+     * Returns the digest of .png data.
+     * @param data the .png data
+     * @return the digest
+     */
+    @NotNull
+    public static byte[] getDigest(@NotNull final byte[] data) {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+        return messageDigest.digest(data);
+    }
+
+    /**
+     * Returns a cached image.
+     * @param name the image name
+     * @param digest the digest of the image's .png data
+     * @return the image or <code>null</code> if the cache does not contain
+     *         the image
+     */
+    @Nullable
+    public BufferedImage load(@NotNull final String name, @NotNull final byte[] digest) {
+        final Entry entry = entries.get(name);
+        if (entry == null || !Arrays.equals(entry.digest, digest) || randomAccessFile == null) {
+            return null;
+        }
+
+        final byte[] data = new byte[entry.width*entry.height*4];
+        try {
+            randomAccessFile.seek(entry.offset);
+            randomAccessFile.readFully(data);
+        } catch (final IOException ex) {
+            System.err.println(file+": "+ex.getMessage());
+            return null;
+        }
+        final int[] pixels = new int[entry.width*entry.height];
+        ByteBuffer.wrap(data).asIntBuffer().get(pixels);
+        final BufferedImage image = new BufferedImage(entry.width, entry.height, entry.alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        image.getRaster().setDataElements(0, 0, entry.width, entry.height, pixels);
+        usedImages.put(name, new Image(digest, image));
+        return image;
+    }
+
+    /**
+     * Adds an image to the cache. The image is written by the next call to
+     * {@link #save()}.
+     * @param name the image name
+     * @param digest the digest of the image's .png data
+     * @param image the decoded image
+     */
+    public void save(@NotNull final String name, @NotNull final byte[] digest, @NotNull final BufferedImage image) {
+        if (image.getWidth() > MAX_SIZE || image.getHeight() > MAX_SIZE) {
+            return;
+        }
+
+        usedImages.put(name, new Image(digest, image));
+        modified = true;
+    }
+
+    /**
+     * Rewrites the cache file if it does not match the images used since
+     * this instance was created. Afterwards the cache is closed. I/O errors
+     * are reported to {@link System#err} but otherwise ignored.
+     */
+    public void save() {
+        final boolean write = modified || usedImages.size() != entries.size();
+        close();
+        if (!write) {
+            usedImages.clear();
+            return;
+        }
+
+        final File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println(dir+": cannot create directory");
+            usedImages.clear();
+            return;
+        }
+
+        final File tmpFile = new File(file.getPath()+".tmp");
+        try {
+            final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeInt(usedImages.size());
+                for (final Map.Entry<String, Image> e : usedImages.entrySet()) {
+                    final Image image = e.getValue();
+                    final BufferedImage bufferedImage = image.image;
+                    final int width = bufferedImage.getWidth();
+                    final int height = bufferedImage.getHeight();
+                    dos.writeUTF(e.getKey());
+                    dos.write(image.digest);
+                    dos.writeInt(width);
+                    dos.writeInt(height);
+                    dos.writeBoolean(bufferedImage.getColorModel().hasAlpha());
+                    final int[] pixels = bufferedImage.getRGB(0, 0, width, height, null, 0, width);
+                    final ByteBuffer data = ByteBuffer.allocate(pixels.length*4);
+                    data.asIntBuffer().put(pixels);
+                    dos.write(data.array());
+                }
+            } finally {
+                dos.close();
+            }
+            if (!tmpFile.renameTo(file) && (!file.delete() || !tmpFile.renameTo(file))) {
+                throw new IOException("cannot rename "+tmpFile);
+            }
+        } catch (final IOException ex) {
+            System.err.println(file+": "+ex.getMessage());
+            if (!tmpFile.delete()) {
+                System.err.println(tmpFile+": cannot delete");
+            }
+        } finally {
+            usedImages.clear();
+        }
+    }
+
+    /**
+     * Opens the cache file and reads the index of all images.
+     * @throws IOException if the cache file is invalid
+     */
+    private void open() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        if (randomAccessFile.length() < 12 || randomAccessFile.readInt() != MAGIC || randomAccessFile.readInt() != VERSION) {
+            throw new IOException("invalid header");
+        }
+
+        final long fileSize = randomAccessFile.length();
+        final int count = randomAccessFile.readInt();
+        for (int i = 0; i < count; i++) {
+            final String name = randomAccessFile.readUTF();
+            final byte[] digest = new byte[DIGEST_SIZE];
+            randomAccessFile.readFully(digest);
+            final int width = randomAccessFile.readInt();
+            final int height = randomAccessFile.readInt();
+            final boolean alpha = randomAccessFile.readBoolean();
+            if (width <= 0 || width > MAX_SIZE || height <= 0 || height > MAX_SIZE) {
+                throw new IOException("invalid image size");
+            }
+            final long offset = randomAccessFile.getFilePointer();
+            final long end = offset+(long)width*height*4;
+            if (end > fileSize) {
+                throw new IOException("truncated file");
+            }
+            entries.put(name, new Entry(digest, width, height, alpha, offset));
+            randomAccessFile.seek(end);
+        }
+    }
+
+    /**
+     * Closes the cache file without rewriting it. Afterwards no images are
+     * loaded.
+     */
+    public void close() {
+        entries.clear();
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (final IOException ex) {
+                System.err.println(file+": "+ex.getMessage());
+            }
+            randomAccessFile = null;
+        }
+    }
+
+    /**
+     * The location of an image within the cache file.
+     * @author Andreas Kirschbaum
+     */
+    private static class Entry {
+
+        /**
+         * The digest of the image's .png data.
+         */
+        @NotNull
+        private final byte[] digest;
+
+        /**
+         * The image width.
+         */
+        private final int width;
+
+        /**
+         * The image height.
+         */
+        private final int height;
+
+        /**
+         * Whether the image has an alpha channel.
+         */
+        private final boolean alpha;
+
+        /**
+         * The file offset of the pixel data.
+         */
+        private final long offset;
+
+        /**
+         * Creates a new instance.
+         * @param digest the digest of the image's .png data
+         * @param width the image width
+         * @param height the image height
+         * @param alpha whether the image has an alpha channel
+         * @param offset the file offset of the pixel data
+         */
+        private Entry(@NotNull final byte[] digest, final int width, final int height, final boolean alpha, final long offset) {
+            this.digest = digest;
+            this.width = width;
+            this.height = height;
+            this.alpha = alpha;
+            this.offset = offset;
+        }
+
+    }
+
+    /**
+     * An image used while loading a skin.
+     * @author Andreas Kirschbaum
+     */
+    private static class Image {
+
+        /**
+         * The digest of the image's .png data.
+         */
+        @NotNull
+        private final byte[] digest;
+
+        /**
+         * The decoded image.
+         */
+        @NotNull
+        private final BufferedImage image;
+
+        /**
+         * Creates a new instance.
+         * @param digest the digest of the image's .png data
+         * @param image the decoded image
+         */
+        private Image(@NotNull final byte[] digest, @NotNull final BufferedImage image) {
+            this.digest = digest;
+            this.image = image;
+        }
+
+    }
+
+}
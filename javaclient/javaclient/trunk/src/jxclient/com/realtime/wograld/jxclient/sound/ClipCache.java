@@ -22,7 +22,13 @@
 package com.realtime.wograld.jxclient.sound;
 
 import com.realtime.wograld.jxclient.util.DebugWriter;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
@@ -34,11 +40,30 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
- * Allocates new sound clips.
+ * Allocates new sound clips. The decoded sample data of recently played sound
+ * effects is cached so that playing an effect again neither reads nor decodes
+ * the audio file.
  * @author Andreas Kirschbaum
  */
 public class ClipCache {
 
+    /**
+     * The maximum total size of cached sample data in bytes.
+     */
+    private static final int MAX_CACHE_SIZE = 16*1024*1024;
+
+    /**
+     * The size accounted for an entry of a sound effect that cannot be
+     * loaded.
+     */
+    private static final int MISSING_ENTRY_SIZE = 64;
+
+    /**
+     * Marker for sound effects that cannot be loaded.
+     */
+    @NotNull
+    private static final SoundClip MISSING = new SoundClip(new AudioFormat(22050F, 16, 1, true, false), new byte[0]);
+
     /**
      * The {@link AudioFileLoader} for loading audio files.
      */
@@ -52,6 +77,19 @@ public class ClipCache {
     @Nullable
     private final DebugWriter debugSound;
 
+    /**
+     * The cached sound effects in least recently used order. Maps key as
+     * returned by {@link #getKey(String, String)} to sample data or {@link
+     * #MISSING} if the sound effect cannot be loaded.
+     */
+    @NotNull
+    private final Map<String, SoundClip> clips = new LinkedHashMap<String, SoundClip>(16, 0.75F, true);
+
+    /**
+     * The total size of all entries in {@link #clips}.
+     */
+    private int cacheSize = 0;
+
     /**
      * Creates a new instance.
      * @param audioFileLoader the audio file loader for loading audio files
@@ -63,6 +101,42 @@ public class ClipCache {
         this.debugSound = debugSound;
     }
 
+    /**
+     * Returns the decoded sample data of a sound effect. The audio file is
+     * loaded if it is not cached.
+     * @param name an optional prefix for the action name
+     * @param action the action name of the sound effect
+     * @return the sample data, or <code>null</code> if an error occurs
+     */
+    @Nullable
+    public SoundClip getSoundClip(@Nullable final String name, @NotNull final String action) {
+        final String key = getKey(name, action);
+        synchronized (clips) {
+            final SoundClip soundClip = clips.get(key);
+            if (soundClip != null) {
+                return soundClip == MISSING ? null : soundClip;
+            }
+        }
+
+        final SoundClip soundClip = loadSoundClip(name, action);
+        synchronized (clips) {
+            final SoundClip oldSoundClip = clips.put(key, soundClip == null ? MISSING : soundClip);
+            if (oldSoundClip != null) {
+                cacheSize -= getSize(oldSoundClip);
+            }
+            cacheSize += getSize(soundClip == null ? MISSING : soundClip);
+            final Iterator<SoundClip> it = clips.values().iterator();
+            while (cacheSize > MAX_CACHE_SIZE && it.hasNext()) {
+                final SoundClip evictedSoundClip = it.next();
+                if (evictedSoundClip != soundClip) {
+                    cacheSize -= getSize(evictedSoundClip);
+                    it.remove();
+                }
+            }
+        }
+        return soundClip;
+    }
+
     /**
      * Allocates a new clip.
      * @param name an optional prefix for the action name
@@ -71,7 +145,32 @@ public class ClipCache {
      */
     @Nullable
     public DataLine allocateClip(@Nullable final String name, @NotNull final String action) {
-        return newClip(name, action);
+        final SoundClip soundClip = getSoundClip(name, action);
+        if (soundClip == null) {
+            return null;
+        }
+
+        try {
+            final Clip clip = AudioSystem.getClip();
+            try {
+                clip.open(soundClip.getFormat(), soundClip.getData(), 0, soundClip.getData().length);
+            } catch (final IllegalArgumentException ex) {
+                clip.close();
+                if (debugSound != null) {
+                    debugSound.debugProtocolWrite("allocateClip["+name+"/"+action+"]: "+ex.getMessage());
+                }
+                return null;
+            }
+            if (debugSound != null) {
+                debugSound.debugProtocolWrite("allocateClip: "+System.identityHashCode(clip)+" "+name+"/"+action);
+            }
+            return clip;
+        } catch (final LineUnavailableException ex) {
+            if (debugSound != null) {
+                debugSound.debugProtocolWrite("allocateClip["+name+"/"+action+"]: "+ex.getMessage());
+            }
+            return null;
+        }
     }
 
     /**
@@ -86,45 +185,75 @@ public class ClipCache {
     }
 
     /**
-     * Allocates a new clip.
+     * Loads and decodes a sound effect.
      * @param name an optional prefix for the action name
-     * @param action the action name of the clip to allocate
-     * @return the new clip, or <code>null</code> if an error occurs
+     * @param action the action name of the sound effect
+     * @return the sample data, or <code>null</code> if an error occurs
      */
     @Nullable
-    private DataLine newClip(@Nullable final String name, @NotNull final String action) {
+    private SoundClip loadSoundClip(@Nullable final String name, @NotNull final String action) {
         try {
-            final AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(audioFileLoader.getInputStream(name, action));
+            final AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(new BufferedInputStream(audioFileLoader.getInputStream(name, action)));
             try {
-                final Clip clip = AudioSystem.getClip();
+                final AudioFormat sourceFormat = audioInputStream.getFormat();
+                final AudioFormat format = new AudioFormat(sourceFormat.getSampleRate(), 16, sourceFormat.getChannels(), true, false);
+                final AudioInputStream pcmInputStream;
                 try {
-                    clip.open(audioInputStream);
+                    pcmInputStream = format.matches(sourceFormat) ? audioInputStream : AudioSystem.getAudioInputStream(format, audioInputStream);
                 } catch (final IllegalArgumentException ex) {
                     throw new UnsupportedAudioFileException(ex.getMessage());
                 }
-                if (debugSound != null) {
-                    debugSound.debugProtocolWrite("newClip: "+System.identityHashCode(clip)+" "+name+"/"+action);
+                try {
+                    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+                    final byte[] buf = new byte[8192];
+                    while (true) {
+                        final int len = pcmInputStream.read(buf);
+                        if (len == -1) {
+                            break;
+                        }
+                        data.write(buf, 0, len);
+                    }
+                    if (debugSound != null) {
+                        debugSound.debugProtocolWrite("loadSoundClip: "+name+"/"+action+" "+data.size()+" bytes");
+                    }
+                    return new SoundClip(format, data.toByteArray());
+                } finally {
+                    pcmInputStream.close();
                 }
-                return clip;
             } finally {
                 audioInputStream.close();
             }
         } catch (final UnsupportedAudioFileException ex) {
             if (debugSound != null) {
-                debugSound.debugProtocolWrite("newClip["+name+"/"+action+"]: "+ex.getMessage());
-            }
-            return null;
-        } catch (final LineUnavailableException ex) {
-            if (debugSound != null) {
-                debugSound.debugProtocolWrite("newClip["+name+"/"+action+"]: "+ex.getMessage());
+                debugSound.debugProtocolWrite("loadSoundClip["+name+"/"+action+"]: "+ex.getMessage());
             }
             return null;
         } catch (final IOException ex) {
             if (debugSound != null) {
-                debugSound.debugProtocolWrite("newClip["+name+"/"+action+"]: "+ex.getMessage());
+                debugSound.debugProtocolWrite("loadSoundClip["+name+"/"+action+"]: "+ex.getMessage());
             }
             return null;
         }
     }
 
+    /**
+     * Returns the cache key of a sound effect.
+     * @param name an optional prefix for the action name
+     * @param action the action name of the sound effect
+     * @return the cache key
+     */
+    @NotNull
+    private static String getKey(@Nullable final String name, @NotNull final String action) {
+        return (name == null ? "" : name)+"/"+action;
+    }
+
+    /**
+     * Returns the size a cache entry is accounted for.
+     * @param soundClip the cache entry
+     * @return the size in bytes
+     */
+    private static int getSize(@NotNull final SoundClip soundClip) {
+        return soundClip == MISSING ? MISSING_ENTRY_SIZE : soundClip.getData().length;
+    }
+
 }
@@ -30,7 +30,8 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Manages a set of sound clips (short sound effects). Multiple sound effects
- * can be played simultaneously.
+ * can be played simultaneously. Sound effects are either played through a
+ * {@link SoundMixer} or through one {@link DataLine} each.
  * @author Andreas Kirschbaum
  */
 public class ClipManager {
@@ -47,14 +48,24 @@ public class ClipManager {
     @NotNull
     private final ClipCache clipCache;
 
+    /**
+     * The {@link SoundMixer} for playing sound effects or <code>null</code> to
+     * allocate a {@link DataLine} for each sound effect.
+     */
+    @Nullable
+    private final SoundMixer soundMixer;
+
     /**
      * Creates a new instance.
      * @param audioFileLoader the audio file loader for loading audio files
+     * @param softwareMixer whether sound effects should be mixed into a single
+     * line
      * @param debugSound the writer for logging sound related information or
      * <code>null</code> to not log
      */
-    public ClipManager(@NotNull final AudioFileLoader audioFileLoader, @Nullable final DebugWriter debugSound) {
+    public ClipManager(@NotNull final AudioFileLoader audioFileLoader, final boolean softwareMixer, @Nullable final DebugWriter debugSound) {
         clipCache = new ClipCache(audioFileLoader, debugSound);
+        soundMixer = softwareMixer ? new SoundMixer(debugSound) : null;
     }
 
     /**
@@ -63,6 +74,13 @@ public class ClipManager {
      * @param action the action name of the sound effect
      */
     public void play(@Nullable final String name, @NotNull final String action) {
+        if (soundMixer != null) {
+            final SoundClip soundClip = clipCache.getSoundClip(name, action);
+            if (soundClip == null || soundMixer.play(soundClip, 1F)) {
+                return;
+            }
+        }
+
         final DataLine clip = clipCache.allocateClip(name, action);
         if (clip == null) {
             return;
@@ -92,6 +110,9 @@ public class ClipManager {
      */
     public void shutdown() {
         executorService.shutdownNow();
+        if (soundMixer != null) {
+            soundMixer.shutdown();
+        }
     }
 
 }
@@ -22,12 +22,14 @@
 package com.realtime.wograld.jxclient.sound;
 
 import com.realtime.wograld.jxclient.util.DebugWriter;
+import java.io.File;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
  * Plays background music. At most one background music can be concurrently
- * active (except for fading in/out effects).
+ * active (except for fading in/out effects). Ogg Vorbis files are played
+ * through a {@link MusicPipeline} if one is available.
  * @author Andreas Kirschbaum
  */
 public class MusicManager {
@@ -52,6 +54,13 @@ public class MusicManager {
     @Nullable
     private Processor processor = null;
 
+    /**
+     * The {@link MusicPipeline} for playing Ogg Vorbis files or
+     * <code>null</code> if not used.
+     */
+    @Nullable
+    private final MusicPipeline musicPipeline;
+
     /**
      * The {@link Thread} executing {@link #processor}. Set to <code>null</code>
      * if none is executing.
@@ -79,11 +88,13 @@ public class MusicManager {
     /**
      * Creates a new instance.
      * @param audioFileLoader the audio file loader for loading audio files
+     * @param musicPipeline whether Ogg Vorbis files should be played
      * @param debugSound the writer for logging sound related information or
      * <code>null</code> to not log
      */
-    public MusicManager(@NotNull final AudioFileLoader audioFileLoader, @Nullable final DebugWriter debugSound) {
+    public MusicManager(@NotNull final AudioFileLoader audioFileLoader, final boolean musicPipeline, @Nullable final DebugWriter debugSound) {
         this.audioFileLoader = audioFileLoader;
+        this.musicPipeline = musicPipeline ? new MusicPipeline(debugSound) : null;
         this.debugSound = debugSound;
     }
 
@@ -146,7 +157,13 @@ public class MusicManager {
             processor = null;
         }
 
-        if (enabled && !muted && name != null) {
+        final boolean playing = enabled && !muted && name != null;
+        final boolean ogg = musicPipeline != null && name != null && name.endsWith(".ogg");
+        if (musicPipeline != null) {
+            musicPipeline.play(playing && ogg ? new File(name) : null);
+        }
+
+        if (playing && !ogg) {
             processor = new Processor(name, audioFileLoader);
             thread = new Thread(processor, "JXClient:MusicManager");
             thread.start();
@@ -157,6 +174,9 @@ public class MusicManager {
      * Terminates a playing background music and free resources.
      */
     public void shutdown() {
+        if (musicPipeline != null) {
+            musicPipeline.shutdown();
+        }
         if (processor != null) {
             processor.terminate(false);
             processor = null;
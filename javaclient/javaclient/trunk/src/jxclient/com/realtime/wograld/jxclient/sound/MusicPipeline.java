@@ -0,0 +1,522 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.sound;
+
+import com.realtime.wograld.jxclient.util.DebugWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Plays Ogg Vorbis background music. Reading, decoding, and output run in
+ * three separate threads that are connected by {@link RingBuffer
+ * RingBuffers}; a short stall of one stage is covered by the data buffered
+ * for the next stage. Music files are looped until another track is played;
+ * the old track is cross-faded into the new one.
+ * @author Andreas Kirschbaum
+ */
+public class MusicPipeline {
+
+    /**
+     * The size of the compressed data buffer of a track in bytes.
+     */
+    private static final int COMPRESSED_BUFFER_SIZE = 256*1024;
+
+    /**
+     * The size of the decoded data buffer of a track in bytes. It holds about
+     * two seconds of 44.1kHz stereo audio.
+     */
+    private static final int PCM_BUFFER_SIZE = 2*44100*4;
+
+    /**
+     * The number of bytes read from a file at once.
+     */
+    private static final int READ_SIZE = 16384;
+
+    /**
+     * The number of frames written to the output line at once.
+     */
+    private static final int OUTPUT_FRAMES = 1024;
+
+    /**
+     * The number of bytes per output frame.
+     */
+    private static final int FRAME_SIZE = 4;
+
+    /**
+     * The duration of cross-fading and fading in in milliseconds.
+     */
+    private static final int FADE_MILLIS = 1500;
+
+    /**
+     * The writer for logging sound related information or <code>null</code> to
+     * not log.
+     */
+    @Nullable
+    private final DebugWriter debugSound;
+
+    /**
+     * The object used to synchronize access to all tracks and to notify
+     * waiting threads.
+     */
+    @NotNull
+    private final Object sync = new Object();
+
+    /**
+     * The track to play or <code>null</code> to play nothing.
+     */
+    @Nullable
+    private Track current = null;
+
+    /**
+     * Whether {@link #shutdown()} has been called.
+     */
+    private boolean shutdown = false;
+
+    /**
+     * The reader, decoder, and output threads or <code>null</code> if not yet
+     * started.
+     */
+    @Nullable
+    private Thread[] threads = null;
+
+    /**
+     * Reads the compressed data of the current track.
+     */
+    @NotNull
+    private final Runnable reader = new Runnable() {
+
+        @Override
+        public void run() {
+            Track track = null;
+            try {
+                final byte[] buf = new byte[READ_SIZE];
+                final ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+                while (true) {
+                    track = waitForTrack(track);
+                    if (track == null) {
+                        break;
+                    }
+                    try {
+                        final FileInputStream fileInputStream = new FileInputStream(track.getFile());
+                        try {
+                            final FileChannel fileChannel = fileInputStream.getChannel();
+                            boolean empty = true;
+                            while (true) {
+                                byteBuffer.clear();
+                                final int len = fileChannel.read(byteBuffer);
+                                if (len == -1) {
+                                    if (empty) {
+                                        break;
+                                    }
+                                    fileChannel.position(0);
+                                    empty = true;
+                                    continue;
+                                }
+                                empty = false;
+                                if (!track.getCompressed().write(buf, 0, len)) {
+                                    break;
+                                }
+                            }
+                        } finally {
+                            fileInputStream.close();
+                        }
+                    } catch (final IOException ex) {
+                        System.err.println("music "+track.getFile()+": "+ex.getMessage());
+                    }
+                    track.getCompressed().close();
+                }
+            } catch (final InterruptedException ignored) {
+                // ignore
+            }
+        }
+
+    };
+
+    /**
+     * Decodes the compressed data of the current track.
+     */
+    @NotNull
+    private final Runnable decoder = new Runnable() {
+
+        @Override
+        public void run() {
+            Track track = null;
+            try {
+                while (true) {
+                    track = waitForTrack(track);
+                    if (track == null) {
+                        break;
+                    }
+                    try {
+                        track.getDecoder().decode();
+                    } catch (final IOException ex) {
+                        System.err.println("music "+track.getFile()+": "+ex.getMessage());
+                    }
+                    track.getCompressed().abort();
+                    track.getPcm().close();
+                }
+            } catch (final InterruptedException ignored) {
+                // ignore
+            }
+        }
+
+    };
+
+    /**
+     * Mixes the decoded data of the current and the previous track into the
+     * output line.
+     */
+    @NotNull
+    private final Runnable output = new Runnable() {
+
+        @Override
+        public void run() {
+            final byte[] newBuf = new byte[OUTPUT_FRAMES*FRAME_SIZE];
+            final byte[] oldBuf = new byte[OUTPUT_FRAMES*FRAME_SIZE];
+            SourceDataLine line = null;
+            int lineRate = 0;
+            Track playing = null;
+            Track fading = null;
+            int fadeInFrames = 0;
+            int fadeInPos = 0;
+            int fadeOutFrames = 0;
+            int fadeOutPos = 0;
+            try {
+                while (true) {
+                    if (line != null && playing == null && fading == null) {
+                        final boolean idle;
+                        synchronized (sync) {
+                            idle = current == null;
+                        }
+                        if (idle) {
+                            line.drain();
+                            line.close();
+                            line = null;
+                        }
+                    }
+                    synchronized (sync) {
+                        while (!shutdown && current == null && playing == null && fading == null) {
+                            sync.wait();
+                        }
+                        if (shutdown) {
+                            break;
+                        }
+                        if (current != playing) {
+                            if (fading != null) {
+                                fading.getPcm().abort();
+                            }
+                            fading = playing;
+                            if (fading != null) {
+                                fadeOutFrames = Math.min(FADE_MILLIS*lineRate/1000, fading.getPcm().available()/FRAME_SIZE);
+                                fadeOutPos = 0;
+                            }
+                            playing = current;
+                            fadeInFrames = -1;
+                            fadeInPos = 0;
+                        }
+                    }
+
+                    int newLen = playing == null ? 0 : playing.getPcm().read(newBuf, 0, newBuf.length, fading == null);
+                    if (newLen == -1) {
+                        synchronized (sync) {
+                            if (current == playing) {
+                                current = null;
+                            }
+                        }
+                        playing = null;
+                        newLen = 0;
+                    }
+                    if (newLen > 0) {
+                        final int rate = playing.getDecoder().getRate();
+                        if (line == null || rate != lineRate) {
+                            if (fading != null) {
+                                fading.getPcm().abort();
+                                fading = null;
+                            }
+                            if (line != null) {
+                                line.drain();
+                                line.close();
+                            }
+                            line = openLine(rate);
+                            lineRate = rate;
+                        }
+                        if (fadeInFrames == -1) {
+                            fadeInFrames = FADE_MILLIS*rate/1000;
+                        }
+                    }
+
+                    int oldLen = 0;
+                    if (fading != null) {
+                        oldLen = fadeOutPos >= fadeOutFrames ? -1 : fading.getPcm().read(oldBuf, 0, Math.min(oldBuf.length, (fadeOutFrames-fadeOutPos)*FRAME_SIZE), false);
+                        if (oldLen == -1) {
+                            fading.getPcm().abort();
+                            fading = null;
+                            oldLen = 0;
+                        }
+                    }
+
+                    final int len = Math.max(newLen, oldLen);
+                    if (len <= 0) {
+                        continue;
+                    }
+
+                    for (int i = newLen; i < len; i++) {
+                        newBuf[i] = 0;
+                    }
+                    for (int i = 0; i < len; i += 2) {
+                        final int frame = i/FRAME_SIZE;
+                        final double newGain = fadeInPos+frame >= fadeInFrames ? 1.0 : (double)(fadeInPos+frame)/fadeInFrames;
+                        final double oldGain = i >= oldLen ? 0.0 : 1.0-(double)(fadeOutPos+frame)/fadeOutFrames;
+                        final int newValue = i < newLen ? (short)((newBuf[i]&0xFF)|(newBuf[i+1]<<8)) : 0;
+                        final int oldValue = i < oldLen ? (short)((oldBuf[i]&0xFF)|(oldBuf[i+1]<<8)) : 0;
+                        final int value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, (int)(newValue*newGain+oldValue*oldGain)));
+                        newBuf[i] = (byte)value;
+                        newBuf[i+1] = (byte)(value>>8);
+                    }
+                    if (newLen > 0) {
+                        fadeInPos += newLen/FRAME_SIZE;
+                    }
+                    fadeOutPos += oldLen/FRAME_SIZE;
+                    if (line != null) {
+                        line.write(newBuf, 0, len);
+                    }
+                }
+            } catch (final InterruptedException ignored) {
+                // ignore
+            } catch (final LineUnavailableException ex) {
+                System.err.println("music: "+ex.getMessage());
+                fail();
+            } catch (final IllegalArgumentException ex) {
+                System.err.println("music: "+ex.getMessage());
+                fail();
+            } finally {
+                if (line != null) {
+                    line.close();
+                }
+            }
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param debugSound the writer for logging sound related information or
+     * <code>null</code> to not log
+     */
+    public MusicPipeline(@Nullable final DebugWriter debugSound) {
+        this.debugSound = debugSound;
+    }
+
+    /**
+     * Plays a music file. If the file is already playing, continue playing.
+     * Otherwise the currently playing music is cross-faded into the new music.
+     * @param file the music file or <code>null</code> to fade out the current
+     * music
+     */
+    public void play(@Nullable final File file) {
+        synchronized (sync) {
+            if (shutdown) {
+                return;
+            }
+            if (current == null ? file == null : current.getFile().equals(file)) {
+                return;
+            }
+
+            if (debugSound != null) {
+                debugSound.debugProtocolWrite("pipeline play: "+file);
+            }
+            if (current != null) {
+                current.getCompressed().abort();
+                current.getPcm().close();
+            }
+            current = file == null ? null : new Track(file);
+            if (threads == null && current != null) {
+                threads = new Thread[] {
+                    new Thread(reader, "JXClient:MusicReader"),
+                    new Thread(decoder, "JXClient:MusicDecoder"),
+                    new Thread(output, "JXClient:MusicOutput"),
+                };
+                threads[2].setPriority(Thread.MAX_PRIORITY);
+                for (final Thread thread : threads) {
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            }
+            sync.notifyAll();
+        }
+    }
+
+    /**
+     * Terminates playing music immediately and free resources.
+     */
+    public void shutdown() {
+        final Thread[] tmp;
+        fail();
+        synchronized (sync) {
+            tmp = threads;
+        }
+        if (tmp != null) {
+            for (final Thread thread : tmp) {
+                thread.interrupt();
+            }
+            for (final Thread thread : tmp) {
+                try {
+                    thread.join();
+                } catch (final InterruptedException ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops all processing after the output line has failed.
+     */
+    private void fail() {
+        synchronized (sync) {
+            shutdown = true;
+            if (current != null) {
+                current.getCompressed().abort();
+                current.getPcm().abort();
+                current = null;
+            }
+            sync.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until a new track should be processed.
+     * @param track the previously processed track or <code>null</code>
+     * @return the new track or <code>null</code> if {@link #shutdown()} has
+     * been called
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    @Nullable
+    private Track waitForTrack(@Nullable final Track track) throws InterruptedException {
+        synchronized (sync) {
+            while (!shutdown && (current == null || current == track)) {
+                sync.wait();
+            }
+            return shutdown ? null : current;
+        }
+    }
+
+    /**
+     * Opens and starts an output line.
+     * @param rate the sample rate
+     * @return the output line
+     * @throws LineUnavailableException if the line cannot be opened
+     */
+    @NotNull
+    private static SourceDataLine openLine(final int rate) throws LineUnavailableException {
+        final AudioFormat format = new AudioFormat(rate, 16, 2, true, false);
+        final SourceDataLine line = AudioSystem.getSourceDataLine(format);
+        line.open(format);
+        line.start();
+        return line;
+    }
+
+    /**
+     * A music file being played.
+     */
+    private static class Track {
+
+        /**
+         * The music file.
+         */
+        @NotNull
+        private final File file;
+
+        /**
+         * The compressed data.
+         */
+        @NotNull
+        private final RingBuffer compressed = new RingBuffer(COMPRESSED_BUFFER_SIZE);
+
+        /**
+         * The decoded data.
+         */
+        @NotNull
+        private final RingBuffer pcm = new RingBuffer(PCM_BUFFER_SIZE);
+
+        /**
+         * The decoder from {@link #compressed} to {@link #pcm}.
+         */
+        @NotNull
+        private final OggDecoder decoder = new OggDecoder(compressed, pcm);
+
+        /**
+         * Creates a new instance.
+         * @param file the music file
+         */
+        private Track(@NotNull final File file) {
+            this.file = file;
+        }
+
+        /**
+         * Returns the music file.
+         * @return the music file
+         */
+        @NotNull
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the compressed data.
+         * @return the compressed data
+         */
+        @NotNull
+        public RingBuffer getCompressed() {
+            return compressed;
+        }
+
+        /**
+         * Returns the decoded data.
+         * @return the decoded data
+         */
+        @NotNull
+        public RingBuffer getPcm() {
+            return pcm;
+        }
+
+        /**
+         * Returns the decoder.
+         * @return the decoder
+         */
+        @NotNull
+        public OggDecoder getDecoder() {
+            return decoder;
+        }
+
+    }
+
+}
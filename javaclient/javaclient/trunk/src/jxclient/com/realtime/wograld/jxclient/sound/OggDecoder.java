@@ -0,0 +1,247 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.sound;
+
+import com.jcraft.jogg.Packet;
+import com.jcraft.jogg.Page;
+import com.jcraft.jogg.StreamState;
+import com.jcraft.jogg.SyncState;
+import com.jcraft.jorbis.Block;
+import com.jcraft.jorbis.Comment;
+import com.jcraft.jorbis.DspState;
+import com.jcraft.jorbis.Info;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decodes an Ogg Vorbis stream into signed 16 bit little endian stereo PCM.
+ * Mono streams are played on both channels; additional channels are dropped.
+ * Chained streams are decoded one after another.
+ * @author Andreas Kirschbaum
+ */
+public class OggDecoder {
+
+    /**
+     * The number of bytes to read from {@link #input} at once.
+     */
+    private static final int READ_SIZE = 8192;
+
+    /**
+     * The maximum number of frames to convert at once.
+     */
+    private static final int MAX_FRAMES = 4096;
+
+    /**
+     * The number of output channels.
+     */
+    private static final int CHANNELS = 2;
+
+    /**
+     * The compressed input.
+     */
+    @NotNull
+    private final RingBuffer input;
+
+    /**
+     * The decoded output.
+     */
+    @NotNull
+    private final RingBuffer output;
+
+    /**
+     * Buffer for converting decoded samples.
+     */
+    @NotNull
+    private final byte[] convBuffer = new byte[MAX_FRAMES*CHANNELS*2];
+
+    /**
+     * The sample rate of the current logical stream or <code>0</code> if no
+     * stream header has been decoded.
+     */
+    private volatile int rate = 0;
+
+    /**
+     * Creates a new instance.
+     * @param input the compressed input
+     * @param output the decoded output
+     */
+    public OggDecoder(@NotNull final RingBuffer input, @NotNull final RingBuffer output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Returns the sample rate of the current logical stream. The value is set
+     * before the stream's first samples are written.
+     * @return the sample rate or <code>0</code> if unknown
+     */
+    public int getRate() {
+        return rate;
+    }
+
+    /**
+     * Decodes the input until it ends or the output does not accept more
+     * data.
+     * @throws IOException if the input is not a valid Ogg Vorbis stream
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    public void decode() throws IOException, InterruptedException {
+        final SyncState syncState = new SyncState();
+        final StreamState streamState = new StreamState();
+        final Page page = new Page();
+        final Packet packet = new Packet();
+        final Info info = new Info();
+        final Comment comment = new Comment();
+        final DspState dspState = new DspState();
+        final Block block = new Block(dspState);
+        final float[][][] pcm = new float[1][][];
+        syncState.init();
+        try {
+            while (readPage(syncState, page)) {
+                streamState.init(page.serialno());
+                streamState.reset();
+                info.init();
+                comment.init();
+                if (streamState.pagein(page) < 0) {
+                    throw new IOException("cannot read first page of Ogg bitstream");
+                }
+                if (streamState.packetout(packet) != 1) {
+                    throw new IOException("cannot read initial header packet");
+                }
+                if (info.synthesis_headerin(comment, packet) < 0) {
+                    throw new IOException("Ogg bitstream does not contain Vorbis audio data");
+                }
+                int headers = 1;
+                while (headers < 3) {
+                    if (!readPage(syncState, page)) {
+                        throw new IOException("end of file before finding all Vorbis headers");
+                    }
+                    streamState.pagein(page);
+                    while (headers < 3) {
+                        final int result = streamState.packetout(packet);
+                        if (result == 0) {
+                            break;
+                        }
+                        if (result == -1) {
+                            throw new IOException("corrupt secondary header");
+                        }
+                        info.synthesis_headerin(comment, packet);
+                        headers++;
+                    }
+                }
+
+                rate = info.rate;
+                dspState.synthesis_init(info);
+                block.init(dspState);
+                final int[] index = new int[info.channels];
+                try {
+                    boolean eos = false;
+                    while (!eos && readPage(syncState, page)) {
+                        streamState.pagein(page);
+                        while (true) {
+                            final int result = streamState.packetout(packet);
+                            if (result == 0) {
+                                break;
+                            }
+                            if (result == -1) {
+                                continue; // missing or corrupt data
+                            }
+                            if (block.synthesis(packet) == 0) {
+                                dspState.synthesis_blockin(block);
+                            }
+                            if (!writeSamples(dspState, info.channels, pcm, index)) {
+                                return;
+                            }
+                        }
+                        eos = page.eos() != 0;
+                    }
+                } finally {
+                    streamState.clear();
+                    block.clear();
+                    dspState.clear();
+                    info.clear();
+                }
+            }
+        } finally {
+            syncState.clear();
+        }
+    }
+
+    /**
+     * Returns the next page of the input.
+     * @param syncState the sync state to use
+     * @param page returns the page
+     * @return whether a page was returned; <code>false</code> at end of input
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    private boolean readPage(@NotNull final SyncState syncState, @NotNull final Page page) throws InterruptedException {
+        while (true) {
+            final int result = syncState.pageout(page);
+            if (result == 1) {
+                return true;
+            }
+            if (result == 0) {
+                final int index = syncState.buffer(READ_SIZE);
+                final int len = input.read(syncState.data, index, READ_SIZE, true);
+                if (len == -1) {
+                    return false;
+                }
+                syncState.wrote(len);
+            }
+            // result == -1: skip missing or corrupt data
+        }
+    }
+
+    /**
+     * Converts all decoded samples and writes them to {@link #output}.
+     * @param dspState the decoder state
+     * @param channels the number of channels of the stream
+     * @param pcm temporary array for the decoded samples
+     * @param index temporary array for the sample offsets
+     * @return whether all samples were written
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    private boolean writeSamples(@NotNull final DspState dspState, final int channels, @NotNull final float[][][] pcm, @NotNull final int[] index) throws InterruptedException {
+        while (true) {
+            final int samples = dspState.synthesis_pcmout(pcm, index);
+            if (samples <= 0) {
+                return true;
+            }
+
+            final int frames = Math.min(samples, MAX_FRAMES);
+            int ptr = 0;
+            for (int i = 0; i < frames; i++) {
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    final int sourceChannel = Math.min(channel, channels-1);
+                    final int value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, (int)(pcm[0][sourceChannel][index[sourceChannel]+i]*32767.0)));
+                    convBuffer[ptr++] = (byte)value;
+                    convBuffer[ptr++] = (byte)(value>>8);
+                }
+            }
+            if (!output.write(convBuffer, 0, ptr)) {
+                return false;
+            }
+            dspState.synthesis_read(frames);
+        }
+    }
+
+}
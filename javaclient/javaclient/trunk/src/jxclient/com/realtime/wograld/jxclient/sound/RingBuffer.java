@@ -0,0 +1,166 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.sound;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A bounded byte buffer connecting a producer and a consumer thread. Writers
+ * block while the buffer is full; readers optionally block while it is empty.
+ * @author Andreas Kirschbaum
+ */
+public class RingBuffer {
+
+    /**
+     * The buffered data. Valid data starts at {@link #start} and wraps around
+     * at the end.
+     */
+    @NotNull
+    private final byte[] buffer;
+
+    /**
+     * The index of the first valid byte in {@link #buffer}.
+     */
+    private int start = 0;
+
+    /**
+     * The number of valid bytes in {@link #buffer}.
+     */
+    private int length = 0;
+
+    /**
+     * Whether no more data will be written.
+     */
+    private boolean closed = false;
+
+    /**
+     * Whether all data has been discarded.
+     */
+    private boolean aborted = false;
+
+    /**
+     * Creates a new instance.
+     * @param capacity the buffer size in bytes
+     */
+    public RingBuffer(final int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Appends data. Blocks until all data has been written.
+     * @param data the data to append
+     * @param offset the offset of the first byte to append
+     * @param len the number of bytes to append
+     * @return whether all data has been written; <code>false</code> if the
+     * buffer has been closed or aborted
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    public synchronized boolean write(@NotNull final byte[] data, final int offset, final int len) throws InterruptedException {
+        int pos = offset;
+        int remaining = len;
+        while (remaining > 0) {
+            while (!closed && !aborted && length >= buffer.length) {
+                wait();
+            }
+            if (closed || aborted) {
+                return false;
+            }
+
+            final int end = (start+length)%buffer.length;
+            final int chunk = Math.min(remaining, Math.min(buffer.length-length, buffer.length-end));
+            System.arraycopy(data, pos, buffer, end, chunk);
+            length += chunk;
+            pos += chunk;
+            remaining -= chunk;
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Removes data.
+     * @param data returns the data
+     * @param offset the offset of the first byte to return
+     * @param len the maximum number of bytes to return
+     * @param block whether to wait while no data is available
+     * @return the number of bytes returned or <code>-1</code> if all data has
+     * been read or the buffer has been aborted
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    public synchronized int read(@NotNull final byte[] data, final int offset, final int len, final boolean block) throws InterruptedException {
+        while (block && !closed && !aborted && length <= 0) {
+            wait();
+        }
+        if (aborted) {
+            return -1;
+        }
+        if (length <= 0) {
+            return closed ? -1 : 0;
+        }
+
+        int total = 0;
+        while (total < len && length > 0) {
+            final int chunk = Math.min(len-total, Math.min(length, buffer.length-start));
+            System.arraycopy(buffer, start, data, offset+total, chunk);
+            start = (start+chunk)%buffer.length;
+            length -= chunk;
+            total += chunk;
+        }
+        notifyAll();
+        return total;
+    }
+
+    /**
+     * Returns the number of bytes that can be read without blocking.
+     * @return the number of bytes
+     */
+    public synchronized int available() {
+        return length;
+    }
+
+    /**
+     * Marks the end of data. Pending writes fail; buffered data can still be
+     * read.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Discards all buffered data. Pending and future reads and writes fail.
+     */
+    public synchronized void abort() {
+        aborted = true;
+        length = 0;
+        notifyAll();
+    }
+
+    /**
+     * Returns whether {@link #abort()} has been called.
+     * @return whether the buffer has been aborted
+     */
+    public synchronized boolean isAborted() {
+        return aborted;
+    }
+
+}
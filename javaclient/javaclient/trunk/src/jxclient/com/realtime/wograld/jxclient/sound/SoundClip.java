@@ -0,0 +1,105 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.sound;
+
+import javax.sound.sampled.AudioFormat;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A decoded sound effect. The samples are stored as signed 16 bit little
+ * endian PCM.
+ * @author Andreas Kirschbaum
+ */
+public class SoundClip {
+
+    /**
+     * The format of {@link #data}.
+     */
+    @NotNull
+    private final AudioFormat format;
+
+    /**
+     * The sample data.
+     */
+    @NotNull
+    private final byte[] data;
+
+    /**
+     * Creates a new instance.
+     * @param format the format of the sample data; must be signed 16 bit
+     * little endian PCM
+     * @param data the sample data
+     */
+    public SoundClip(@NotNull final AudioFormat format, @NotNull final byte[] data) {
+        if (format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED || format.getSampleSizeInBits() != 16 || format.isBigEndian()) {
+            throw new IllegalArgumentException("unsupported format "+format);
+        }
+        this.format = format;
+        this.data = data;
+    }
+
+    /**
+     * Returns the format of the sample data.
+     * @return the format
+     */
+    @NotNull
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the sample data. The returned array must not be modified.
+     * @return the sample data
+     */
+    @NotNull
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the number of channels.
+     * @return the number of channels
+     */
+    public int getChannels() {
+        return format.getChannels();
+    }
+
+    /**
+     * Returns the number of frames.
+     * @return the number of frames
+     */
+    public int getFrames() {
+        return data.length/(2*format.getChannels());
+    }
+
+    /**
+     * Returns one sample value.
+     * @param frame the frame index
+     * @param channel the channel index
+     * @return the sample value
+     */
+    public int getSample(final int frame, final int channel) {
+        final int offset = 2*(frame*format.getChannels()+channel);
+        return (short)((data[offset]&0xFF)|(data[offset+1]<<8));
+    }
+
+}
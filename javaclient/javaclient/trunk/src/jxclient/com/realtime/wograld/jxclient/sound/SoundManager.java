@@ -119,13 +119,17 @@ public class SoundManager {
     /**
      * Creates a new instance.
      * @param guiStateManager the gui state manager to watch
+     * @param softwareMixer whether sound effects should be mixed into a single
+     * line
+     * @param musicPipeline whether Ogg Vorbis background music should be
+     * played
      * @param debugSound the writer for logging sound related information or
      * <code>null</code> to not log
      */
-    public SoundManager(@NotNull final GuiStateManager guiStateManager, @Nullable final DebugWriter debugSound) {
+    public SoundManager(@NotNull final GuiStateManager guiStateManager, final boolean softwareMixer, final boolean musicPipeline, @Nullable final DebugWriter debugSound) {
         final AudioFileLoader audioFileLoader = new AudioFileLoader(debugSound);
-        clipManager = new ClipManager(audioFileLoader, debugSound);
-        musicManager = new MusicManager(audioFileLoader, debugSound);
+        clipManager = new ClipManager(audioFileLoader, softwareMixer, debugSound);
+        musicManager = new MusicManager(audioFileLoader, musicPipeline, debugSound);
         this.debugSound = debugSound;
         guiStateManager.addGuiStateListener(guiStateListener);
     }
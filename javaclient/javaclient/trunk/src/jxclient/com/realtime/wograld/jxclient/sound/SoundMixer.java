@@ -0,0 +1,293 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.sound;
+
+import com.realtime.wograld.jxclient.util.DebugWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Plays any number of overlapping sound effects through a single {@link
+ * SourceDataLine}. Each effect is resampled to the line's format and mixed
+ * with its own gain.
+ * @author Andreas Kirschbaum
+ */
+public class SoundMixer {
+
+    /**
+     * The format of the output line.
+     */
+    @NotNull
+    private static final AudioFormat FORMAT = new AudioFormat(44100F, 16, 2, true, false);
+
+    /**
+     * The number of frames mixed at once.
+     */
+    private static final int BUFFER_FRAMES = 512;
+
+    /**
+     * The maximum number of simultaneously playing sound effects. If
+     * exceeded, the oldest effect is stopped.
+     */
+    private static final int MAX_VOICES = 32;
+
+    /**
+     * The writer for logging sound related information or <code>null</code> to
+     * not log.
+     */
+    @Nullable
+    private final DebugWriter debugSound;
+
+    /**
+     * The currently playing sound effects. Also used to synchronize access to
+     * all other fields.
+     */
+    @NotNull
+    private final List<Voice> voices = new ArrayList<Voice>();
+
+    /**
+     * The thread mixing the sound effects or <code>null</code> if not yet
+     * started.
+     */
+    @Nullable
+    private Thread thread = null;
+
+    /**
+     * Whether the output line cannot be used.
+     */
+    private boolean failed = false;
+
+    /**
+     * Whether {@link #shutdown()} has been called.
+     */
+    private boolean shutdown = false;
+
+    /**
+     * The {@link Runnable} of {@link #thread}.
+     */
+    @NotNull
+    private final Runnable runnable = new Runnable() {
+
+        @Override
+        public void run() {
+            try {
+                final SourceDataLine sourceDataLine = AudioSystem.getSourceDataLine(FORMAT);
+                sourceDataLine.open(FORMAT, 4*BUFFER_FRAMES*FORMAT.getFrameSize());
+                try {
+                    sourceDataLine.start();
+                    try {
+                        final int[] mix = new int[BUFFER_FRAMES*FORMAT.getChannels()];
+                        final byte[] buf = new byte[BUFFER_FRAMES*FORMAT.getFrameSize()];
+                        while (true) {
+                            synchronized (voices) {
+                                while (!shutdown && voices.isEmpty()) {
+                                    voices.wait();
+                                }
+                                if (shutdown) {
+                                    break;
+                                }
+                                mix(voices, mix, buf);
+                            }
+                            sourceDataLine.write(buf, 0, buf.length);
+                        }
+                    } finally {
+                        sourceDataLine.stop();
+                    }
+                } finally {
+                    sourceDataLine.close();
+                }
+            } catch (final LineUnavailableException ex) {
+                System.err.println("sound mixer: "+ex.getMessage());
+                fail();
+            } catch (final IllegalArgumentException ex) {
+                System.err.println("sound mixer: "+ex.getMessage());
+                fail();
+            } catch (final InterruptedException ignored) {
+                // ignore
+            }
+        }
+
+    };
+
+    /**
+     * Creates a new instance.
+     * @param debugSound the writer for logging sound related information or
+     * <code>null</code> to not log
+     */
+    public SoundMixer(@Nullable final DebugWriter debugSound) {
+        this.debugSound = debugSound;
+    }
+
+    /**
+     * Starts playing a sound effect. This function returns immediately.
+     * @param soundClip the sound effect to play
+     * @param gain the gain factor; <code>1.0</code> plays the effect
+     * unchanged
+     * @return whether the sound effect will be played; <code>false</code> if
+     * the output line is not available
+     */
+    public boolean play(@NotNull final SoundClip soundClip, final float gain) {
+        synchronized (voices) {
+            if (failed || shutdown) {
+                return false;
+            }
+
+            if (voices.size() >= MAX_VOICES) {
+                voices.remove(0);
+            }
+            voices.add(new Voice(soundClip, FORMAT.getSampleRate(), gain));
+            if (debugSound != null) {
+                debugSound.debugProtocolWrite("mixer: "+voices.size()+" voices");
+            }
+            if (thread == null) {
+                thread = new Thread(runnable, "JXClient:SoundMixer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            voices.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Stops all sound effects and frees resources.
+     */
+    public void shutdown() {
+        synchronized (voices) {
+            shutdown = true;
+            voices.clear();
+            voices.notifyAll();
+        }
+    }
+
+    /**
+     * Marks the output line as unusable.
+     */
+    private void fail() {
+        synchronized (voices) {
+            failed = true;
+            voices.clear();
+        }
+    }
+
+    /**
+     * Mixes the next frames of some sound effects. Finished sound effects are
+     * removed.
+     * @param voices the sound effects to mix
+     * @param mix temporary buffer holding one sample per channel and frame
+     * @param buf returns the mixed samples in {@link #FORMAT}
+     */
+    static void mix(@NotNull final List<Voice> voices, @NotNull final int[] mix, @NotNull final byte[] buf) {
+        final int frames = mix.length/2;
+        for (int i = 0; i < mix.length; i++) {
+            mix[i] = 0;
+        }
+        final Iterator<Voice> it = voices.iterator();
+        while (it.hasNext()) {
+            if (!it.next().mix(mix, frames)) {
+                it.remove();
+            }
+        }
+        for (int i = 0; i < mix.length; i++) {
+            final int value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            buf[2*i] = (byte)value;
+            buf[2*i+1] = (byte)(value>>8);
+        }
+    }
+
+    /**
+     * A playing sound effect.
+     */
+    static class Voice {
+
+        /**
+         * The sound effect.
+         */
+        @NotNull
+        private final SoundClip soundClip;
+
+        /**
+         * The number of source frames per output frame.
+         */
+        private final double step;
+
+        /**
+         * The gain factor.
+         */
+        private final float gain;
+
+        /**
+         * The current source frame.
+         */
+        private double position = 0;
+
+        /**
+         * Creates a new instance.
+         * @param soundClip the sound effect
+         * @param sampleRate the sample rate of the output
+         * @param gain the gain factor
+         */
+        Voice(@NotNull final SoundClip soundClip, final float sampleRate, final float gain) {
+            this.soundClip = soundClip;
+            step = soundClip.getFormat().getSampleRate()/sampleRate;
+            this.gain = gain;
+        }
+
+        /**
+         * Adds the next frames to a stereo mix buffer. The sound effect is
+         * linearly interpolated to the output sample rate; mono sound effects
+         * are played on both channels.
+         * @param mix the mix buffer
+         * @param frames the number of frames to add
+         * @return whether the sound effect has more frames
+         */
+        boolean mix(@NotNull final int[] mix, final int frames) {
+            final int sourceFrames = soundClip.getFrames();
+            final int channels = soundClip.getChannels();
+            for (int i = 0; i < frames; i++) {
+                final int frame = (int)position;
+                if (frame >= sourceFrames) {
+                    return false;
+                }
+                final double fraction = position-frame;
+                final int nextFrame = Math.min(frame+1, sourceFrames-1);
+                for (int channel = 0; channel < 2; channel++) {
+                    final int sourceChannel = Math.min(channel, channels-1);
+                    final int value0 = soundClip.getSample(frame, sourceChannel);
+                    final int value1 = soundClip.getSample(nextFrame, sourceChannel);
+                    mix[2*i+channel] += (int)((value0+(value1-value0)*fraction)*gain);
+                }
+                position += step;
+            }
+            return (int)position < sourceFrames;
+        }
+
+    }
+
+}
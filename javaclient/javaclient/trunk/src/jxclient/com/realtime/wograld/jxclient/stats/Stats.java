@@ -44,6 +44,12 @@ import org.jetbrains.annotations.NotNull;
  */
 public class Stats {
 
+    /**
+     * The number of stats; valid stat numbers are between <code>0</code> and
+     * <code>NUM_STATS-1</code>.
+     */
+    public static final int NUM_STATS = 258;
+
     /**
      * Whether the {@link WograldStatsListener#CS_STAT_WEAP_SP} value contains
      * the weapon speed directly.
@@ -72,7 +78,7 @@ public class Stats {
      * The current stat values.
      */
     @NotNull
-    private final int[] stats = new int[258];
+    private final int[] stats = new int[NUM_STATS];
 
     /**
      * The total experience.
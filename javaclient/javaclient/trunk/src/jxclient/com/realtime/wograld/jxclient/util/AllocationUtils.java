@@ -0,0 +1,79 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.util;
+
+import java.lang.management.ManagementFactory;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Utility class for measuring memory allocation of the current thread. Uses
+ * the HotSpot specific {@link com.sun.management.ThreadMXBean} if the JVM
+ * provides and enables it.
+ * @author Andreas Kirschbaum
+ */
+public class AllocationUtils {
+
+    /**
+     * The {@link com.sun.management.ThreadMXBean} for querying allocated
+     * bytes or <code>null</code> if the JVM cannot measure allocation per
+     * thread.
+     */
+    @Nullable
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getThreadMXBean();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AllocationUtils() {
+    }
+
+    /**
+     * Returns the total number of bytes allocated by the current thread. Only
+     * differences between two calls are meaningful.
+     * @return the number of bytes or <code>-1</code> if allocation cannot be
+     *         measured
+     */
+    public static long getAllocatedBytes() {
+        return THREAD_MX_BEAN == null ? -1 : THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the {@link com.sun.management.ThreadMXBean} of the JVM if it
+     * measures allocation per thread.
+     * @return the thread MX bean or <code>null</code>
+     */
+    @Nullable
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        try {
+            final Object threadMXBean = ManagementFactory.getThreadMXBean();
+            if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            final com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean)threadMXBean;
+            return result.isThreadAllocatedMemorySupported() && result.isThreadAllocatedMemoryEnabled() ? result : null;
+        } catch (final LinkageError ignored) {
+            // not a HotSpot based JVM
+            return null;
+        }
+    }
+
+}
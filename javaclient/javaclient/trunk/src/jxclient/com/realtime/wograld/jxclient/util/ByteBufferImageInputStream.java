@@ -0,0 +1,108 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An {@link ImageInputStream} that reads the remaining bytes of a {@link
+ * ByteBuffer} without copying them. Unlike wrapping an {@link
+ * java.io.InputStream} into a {@link javax.imageio.stream.MemoryCacheImageInputStream}
+ * no cache is needed since seeking directly accesses the buffer. The
+ * position of the buffer is not changed.
+ * @author Andreas Kirschbaum
+ */
+public class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+    /**
+     * The {@link ByteBuffer} to read from; a duplicate of the buffer passed
+     * to the constructor.
+     */
+    @NotNull
+    private final ByteBuffer byteBuffer;
+
+    /**
+     * The buffer position corresponding to stream position zero.
+     */
+    private final int start;
+
+    /**
+     * Creates a new instance.
+     * @param byteBuffer the byte buffer to read from
+     */
+    public ByteBufferImageInputStream(@NotNull final ByteBuffer byteBuffer) {
+        this.byteBuffer = byteBuffer.duplicate();
+        start = byteBuffer.position();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= length()) {
+            return -1;
+        }
+        return byteBuffer.get(start+(int)streamPos++)&0xFF;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(@NotNull final byte[] b, final int off, final int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off+len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+
+        final long remaining = length()-streamPos;
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        final int result = (int)Math.min(len, remaining);
+        byteBuffer.position(start+(int)streamPos);
+        byteBuffer.get(b, off, result);
+        streamPos += result;
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long length() {
+        return byteBuffer.limit()-start;
+    }
+
+}
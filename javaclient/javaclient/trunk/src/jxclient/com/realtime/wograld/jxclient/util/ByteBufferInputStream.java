@@ -0,0 +1,98 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An {@link InputStream} that reads the remaining bytes of a {@link
+ * ByteBuffer} without copying them. Reading advances the buffer's position.
+ * @author Andreas Kirschbaum
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    /**
+     * The {@link ByteBuffer} to read from.
+     */
+    @NotNull
+    private final ByteBuffer byteBuffer;
+
+    /**
+     * Creates a new instance.
+     * @param byteBuffer the byte buffer to read from
+     */
+    public ByteBufferInputStream(@NotNull final ByteBuffer byteBuffer) {
+        this.byteBuffer = byteBuffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() {
+        return byteBuffer.hasRemaining() ? byteBuffer.get()&0xFF : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(@NotNull final byte[] b, final int off, final int len) {
+        if (len == 0) {
+            return 0;
+        }
+
+        final int remaining = byteBuffer.remaining();
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        final int result = Math.min(len, remaining);
+        byteBuffer.get(b, off, result);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long skip(final long n) {
+        if (n <= 0) {
+            return 0;
+        }
+
+        final int result = (int)Math.min(n, byteBuffer.remaining());
+        byteBuffer.position(byteBuffer.position()+result);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int available() {
+        return byteBuffer.remaining();
+    }
+
+}
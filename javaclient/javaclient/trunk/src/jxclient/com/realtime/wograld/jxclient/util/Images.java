@@ -22,12 +22,15 @@
 package com.realtime.wograld.jxclient.util;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Utility class for manipulating images.
@@ -57,4 +60,41 @@ public class Images {
         }
     }
 
+    /**
+     * Encodes an {@link ImageIcon} as .png data.
+     * @param imageIcon the image to encode
+     * @return the .png data
+     * @throws IOException if the image cannot be encoded
+     */
+    @NotNull
+    public static byte[] encodeImageIcon(@NotNull final Icon imageIcon) throws IOException {
+        final BufferedImage bufferedImage = new BufferedImage(imageIcon.getIconWidth(), imageIcon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        imageIcon.paintIcon(null, bufferedImage.getGraphics(), 0, 0);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (!ImageIO.write(bufferedImage, "png", baos)) {
+            throw new IOException("no .png encoder available");
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Decodes image data into an {@link ImageIcon}. Unlike {@link
+     * ImageIcon#ImageIcon(byte[])} this function does not wait on the
+     * {@link java.awt.MediaTracker} shared by all image icons; it can be
+     * called from several threads in parallel.
+     * @param data the image data
+     * @return the image icon or <code>null</code> if the data cannot be
+     *         decoded
+     */
+    @Nullable
+    public static ImageIcon decodeImageIcon(@NotNull final byte[] data) {
+        final BufferedImage bufferedImage;
+        try {
+            bufferedImage = ImageIO.read(new ByteArrayInputStream(data));
+        } catch (final IOException ignored) {
+            return null;
+        }
+        return bufferedImage == null ? null : new ImageIcon(bufferedImage);
+    }
+
 }
@@ -39,7 +39,7 @@ public class JXCConnection {
     /**
      * The default port number for Wograld servers.
      */
-    private static final int DEFAULT_WOGRALD_PORT = 13327;
+    public static final int DEFAULT_WOGRALD_PORT = 13327;
 
     /**
      * The prefix for the window title.
@@ -0,0 +1,105 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.faces;
+
+import java.awt.image.BufferedImage;
+import javax.swing.ImageIcon;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link FaceImagesPool}.
+ * @author Andreas Kirschbaum
+ */
+public class FaceImagesPoolTest {
+
+    /**
+     * Checks that identical images are shared.
+     */
+    @Test
+    public void testShare() {
+        final FaceImagesPool pool = new FaceImagesPool(null);
+        final FaceImages faceImages1 = newFaceImages(32, 32, 0xFF102030);
+        final FaceImages faceImages2 = newFaceImages(32, 32, 0xFF102030);
+        final FaceImages faceImages3 = newFaceImages(32, 32, 0xFF102031);
+        final FaceImages faceImages4 = newFaceImages(32, 64, 0xFF102030);
+        Assert.assertSame(faceImages1, pool.intern(faceImages1));
+        Assert.assertSame(faceImages1, pool.intern(faceImages2));
+        Assert.assertSame(faceImages3, pool.intern(faceImages3));
+        Assert.assertSame(faceImages4, pool.intern(faceImages4));
+        Assert.assertEquals(1, pool.getDuplicates());
+
+        pool.clear();
+        Assert.assertSame(faceImages2, pool.intern(faceImages2));
+    }
+
+    /**
+     * Checks that images are packed into a {@link FaceAtlas}.
+     */
+    @Test
+    public void testAtlas() {
+        final FaceAtlas faceAtlas = new FaceAtlas();
+        final FaceImagesPool pool = new FaceImagesPool(faceAtlas);
+        final FaceImages faceImages1 = pool.intern(newFaceImages(32, 32, 0xFF102030));
+        final FaceImages faceImages2 = pool.intern(newFaceImages(32, 64, 0x80405060));
+        final FaceImages faceImages3 = pool.intern(newFaceImages(128, 128, 0xFF000000));
+        Assert.assertSame(faceImages1, pool.intern(newFaceImages(32, 32, 0xFF102030)));
+
+        final BufferedImage image1 = (BufferedImage)faceImages1.getOriginalImageIcon().getImage();
+        final BufferedImage image2 = (BufferedImage)faceImages2.getOriginalImageIcon().getImage();
+        final BufferedImage image3 = (BufferedImage)faceImages3.getOriginalImageIcon().getImage();
+        Assert.assertSame(image1.getRaster().getDataBuffer(), image2.getRaster().getDataBuffer());
+        Assert.assertNotSame(image1.getRaster().getDataBuffer(), image3.getRaster().getDataBuffer());
+        Assert.assertEquals(32, image2.getWidth());
+        Assert.assertEquals(64, image2.getHeight());
+        Assert.assertEquals(0xFF102030, image1.getRGB(31, 31));
+        Assert.assertEquals(0x80405060, image2.getRGB(0, 0));
+        Assert.assertEquals(0x80405060, image2.getRGB(31, 63));
+        Assert.assertEquals(1, faceAtlas.getPages());
+
+        for (int i = 0; i < 256; i++) {
+            pool.intern(newFaceImages(32, 32, 0xFF000000+i));
+        }
+        Assert.assertEquals(2, faceAtlas.getPages());
+    }
+
+    /**
+     * Creates a new {@link FaceImages} instance with a single colored
+     * image.
+     * @param width the image width
+     * @param height the image height
+     * @param color the image color
+     * @return the face images
+     */
+    @NotNull
+    private static FaceImages newFaceImages(final int width, final int height, final int color) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, color);
+            }
+        }
+        return new FaceImages(new ImageIcon(image), new ImageIcon(image));
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.faces;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link FacePriorityQueue}.
+ * @author Andreas Kirschbaum
+ */
+public class FacePriorityQueueTest {
+
+    /**
+     * Checks that faces are returned by priority, most recently added first.
+     */
+    @Test
+    public void testOrder() {
+        final FacePriorityQueue queue = new FacePriorityQueue();
+        Assert.assertTrue(queue.add(newFace(1), FacePriority.OTHER));
+        Assert.assertTrue(queue.add(newFace(2), FacePriority.MAP));
+        Assert.assertTrue(queue.add(newFace(3), FacePriority.VISIBLE));
+        Assert.assertTrue(queue.add(newFace(4), FacePriority.MAP));
+        Assert.assertTrue(queue.add(newFace(5), FacePriority.OTHER));
+        Assert.assertEquals(5, queue.size());
+        checkPoll(queue, 3, 4, 2, 5, 1);
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertNull(queue.poll());
+    }
+
+    /**
+     * Checks that re-adding a face raises its priority but never lowers it.
+     */
+    @Test
+    public void testUpdate() {
+        final FacePriorityQueue queue = new FacePriorityQueue();
+        queue.add(newFace(1), FacePriority.MAP);
+        queue.add(newFace(2), FacePriority.MAP);
+        queue.add(newFace(3), FacePriority.OTHER);
+        queue.add(newFace(4), FacePriority.VISIBLE);
+        Assert.assertFalse(queue.add(newFace(1), FacePriority.OTHER));
+        Assert.assertFalse(queue.add(newFace(3), FacePriority.VISIBLE));
+        Assert.assertEquals(4, queue.size());
+        checkPoll(queue, 3, 4, 1, 2);
+    }
+
+    /**
+     * Checks that faces can be removed.
+     */
+    @Test
+    public void testRemove() {
+        final FacePriorityQueue queue = new FacePriorityQueue();
+        for (int i = 1; i <= 100; i++) {
+            queue.add(newFace(i), FacePriority.values()[i%3]);
+        }
+        for (int i = 1; i <= 100; i += 2) {
+            Assert.assertTrue(queue.remove(newFace(i)));
+        }
+        Assert.assertFalse(queue.remove(newFace(1)));
+        Assert.assertFalse(queue.contains(newFace(1)));
+        Assert.assertTrue(queue.contains(newFace(2)));
+        Assert.assertEquals(50, queue.size());
+
+        FacePriority prevPriority = FacePriority.VISIBLE;
+        int prevFaceNum = Integer.MAX_VALUE;
+        while (!queue.isEmpty()) {
+            final Face face = queue.poll();
+            assert face != null;
+            final FacePriority priority = FacePriority.values()[face.getFaceNum()%3];
+            Assert.assertTrue(priority.compareTo(prevPriority) >= 0);
+            Assert.assertTrue(priority != prevPriority || face.getFaceNum() < prevFaceNum);
+            Assert.assertEquals(0, face.getFaceNum()%2);
+            prevPriority = priority;
+            prevFaceNum = face.getFaceNum();
+        }
+    }
+
+    /**
+     * Checks that {@link FacePriorityQueue#poll()} returns the expected
+     * faces.
+     * @param queue the queue to check
+     * @param faceNums the expected face numbers
+     */
+    private static void checkPoll(@NotNull final FacePriorityQueue queue, @NotNull final int... faceNums) {
+        for (final int faceNum : faceNums) {
+            final Face face = queue.poll();
+            Assert.assertNotNull(face);
+            Assert.assertEquals(faceNum, face.getFaceNum());
+        }
+    }
+
+    /**
+     * Creates a new face.
+     * @param faceNum the face number
+     * @return the face
+     */
+    @NotNull
+    private static Face newFace(final int faceNum) {
+        return new Face(faceNum, "face"+faceNum, 0);
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.faces;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import javax.swing.ImageIcon;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link PackedFileCache}.
+ * @author Andreas Kirschbaum
+ */
+public class PackedFileCacheTest {
+
+    /**
+     * Checks that saved images can be loaded after re-opening the cache.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testSaveLoad() throws IOException {
+        final File dir = createTempDir();
+        try {
+            final PackedFileCache cache1 = new PackedFileCache(dir, null);
+            cache1.save(new Face(1, "a", 1), newImageIcon(10));
+            cache1.save(new Face(2, "b", 2), newImageIcon(20));
+            checkImage(cache1, "a", 1, 10);
+            checkImage(cache1, "b", 2, 20);
+            Assert.assertNull(cache1.load(new Face(1, "a", 2)));
+            cache1.close();
+
+            final PackedFileCache cache2 = new PackedFileCache(dir, null);
+            checkImage(cache2, "a", 1, 10);
+            checkImage(cache2, "b", 2, 20);
+            cache2.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Checks that a partially written record is discarded.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testTruncated() throws IOException {
+        final File dir = createTempDir();
+        try {
+            final PackedFileCache cache1 = new PackedFileCache(dir, null);
+            cache1.save(new Face(1, "a", 1), newImageIcon(10));
+            cache1.save(new Face(2, "b", 2), newImageIcon(20));
+            cache1.close();
+
+            final File file = new File(dir, PackedFileCache.DATA_FILE_NAME);
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(randomAccessFile.length()-1);
+            } finally {
+                randomAccessFile.close();
+            }
+
+            final PackedFileCache cache2 = new PackedFileCache(dir, null);
+            checkImage(cache2, "a", 1, 10);
+            Assert.assertNull(cache2.load(new Face(2, "b", 2)));
+            cache2.save(new Face(3, "c", 3), newImageIcon(30));
+            cache2.close();
+
+            final PackedFileCache cache3 = new PackedFileCache(dir, null);
+            checkImage(cache3, "a", 1, 10);
+            checkImage(cache3, "c", 3, 30);
+            cache3.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Checks that replaced records are removed when opening the cache.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testCompact() throws IOException {
+        final File dir = createTempDir();
+        try {
+            final PackedFileCache cache1 = new PackedFileCache(dir, null);
+            for (int i = 0; i < 10; i++) {
+                cache1.save(new Face(1, "a", 1), newImageIcon(i+1));
+            }
+            cache1.save(new Face(2, "b", 2), newImageIcon(20));
+            cache1.close();
+
+            final File file = new File(dir, PackedFileCache.DATA_FILE_NAME);
+            final long oldSize = file.length();
+            final PackedFileCache cache2 = new PackedFileCache(dir, null);
+            Assert.assertTrue(file.length() < oldSize);
+            checkImage(cache2, "a", 1, 10);
+            checkImage(cache2, "b", 2, 20);
+            cache2.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Checks that records replaced by a newer checksum of the same face are
+     * removed when opening the cache.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testCompactChangedChecksum() throws IOException {
+        final File dir = createTempDir();
+        try {
+            final PackedFileCache cache1 = new PackedFileCache(dir, null);
+            for (int i = 0; i < 10; i++) {
+                cache1.save(new Face(1, "a", i+1), newImageIcon(i+1));
+            }
+            cache1.save(new Face(2, "b", 2), newImageIcon(20));
+            Assert.assertNull(cache1.load(new Face(1, "a", 1)));
+            cache1.close();
+
+            final File file = new File(dir, PackedFileCache.DATA_FILE_NAME);
+            final long oldSize = file.length();
+            final PackedFileCache cache2 = new PackedFileCache(dir, null);
+            Assert.assertTrue(file.length() < oldSize);
+            checkImage(cache2, "a", 10, 10);
+            checkImage(cache2, "b", 2, 20);
+            cache2.save(new Face(3, "c", 3), newImageIcon(30));
+            cache2.close();
+
+            final PackedFileCache cache3 = new PackedFileCache(dir, null);
+            checkImage(cache3, "a", 10, 10);
+            checkImage(cache3, "b", 2, 20);
+            checkImage(cache3, "c", 3, 30);
+            cache3.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Checks that images encoding to more than 64 KiB are cached.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testLargeImage() throws IOException {
+        final File dir = createTempDir();
+        try {
+            final ImageIcon imageIcon = newNoiseImageIcon(256);
+            final PackedFileCache cache1 = new PackedFileCache(dir, null);
+            cache1.save(new Face(1, "a", 1), imageIcon);
+            cache1.save(new Face(2, "b", 2), newImageIcon(20));
+            checkImage(cache1, "a", 1, 256);
+            cache1.close();
+
+            final File file = new File(dir, PackedFileCache.DATA_FILE_NAME);
+            Assert.assertTrue(file.length() >= 0x10000);
+            final PackedFileCache cache2 = new PackedFileCache(dir, null);
+            checkImage(cache2, "a", 1, 256);
+            checkImage(cache2, "b", 2, 20);
+            cache2.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Checks that images are taken over from the fallback cache.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testFallback() throws IOException {
+        final File dir = createTempDir();
+        try {
+            final FileCache fileCache = new FileCache(dir);
+            fileCache.save(new Face(1, "a", 1), newImageIcon(10));
+
+            final PackedFileCache cache1 = new PackedFileCache(dir, fileCache);
+            checkImage(cache1, "a", 1, 10);
+            cache1.close();
+
+            final PackedFileCache cache2 = new PackedFileCache(dir, null);
+            checkImage(cache2, "a", 1, 10);
+            cache2.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Checks that an image is cached.
+     * @param cache the cache to check
+     * @param faceName the face name
+     * @param faceChecksum the face checksum
+     * @param width the expected image width
+     */
+    private static void checkImage(@NotNull final ImageCache cache, @NotNull final String faceName, final int faceChecksum, final int width) {
+        final ImageIcon imageIcon = cache.load(new Face(0, faceName, faceChecksum));
+        Assert.assertNotNull(imageIcon);
+        Assert.assertEquals(width, imageIcon.getIconWidth());
+    }
+
+    /**
+     * Creates a new image.
+     * @param width the image width
+     * @return the image
+     */
+    @NotNull
+    private static ImageIcon newImageIcon(final int width) {
+        final BufferedImage image = new BufferedImage(width, 8, BufferedImage.TYPE_INT_ARGB);
+        final Graphics g = image.createGraphics();
+        try {
+            g.setColor(Color.RED);
+            g.fillRect(0, 0, width/2, 4);
+        } finally {
+            g.dispose();
+        }
+        return new ImageIcon(image);
+    }
+
+    /**
+     * Creates a new square image of random pixels that does not compress
+     * well.
+     * @param size the image width and height
+     * @return the image
+     */
+    @NotNull
+    private static ImageIcon newNoiseImageIcon(final int size) {
+        final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        final Random random = new Random(1);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return new ImageIcon(image);
+    }
+
+    /**
+     * Creates a new empty temporary directory.
+     * @return the directory
+     * @throws IOException if the directory cannot be created
+     */
+    @NotNull
+    private static File createTempDir() throws IOException {
+        final File dir = File.createTempFile("jxclient", ".cache");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("cannot create "+dir);
+        }
+        return dir;
+    }
+
+    /**
+     * Deletes a file or a directory including its contents.
+     * @param file the file to delete
+     */
+    private static void delete(@NotNull final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File tmp : files) {
+                delete(tmp);
+            }
+        }
+        if (!file.delete()) {
+            System.err.println(file+": cannot delete");
+        }
+    }
+
+}
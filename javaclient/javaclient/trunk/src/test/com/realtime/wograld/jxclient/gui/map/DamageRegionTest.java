@@ -0,0 +1,66 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.gui.map;
+
+import java.awt.Rectangle;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link DamageRegion}.
+ * @author Andreas Kirschbaum
+ */
+public class DamageRegionTest {
+
+    /**
+     * Checks that overlapping and touching areas are merged while separate
+     * areas are kept.
+     */
+    @Test
+    public void testMerge() {
+        final DamageRegion damageRegion = new DamageRegion();
+        Assert.assertTrue(damageRegion.isEmpty());
+        damageRegion.add(0, 0, 96, 192);
+        damageRegion.add(48, 48, 96, 192);
+        Assert.assertEquals(1, damageRegion.getRectangles().size());
+        Assert.assertEquals(new Rectangle(0, 0, 144, 240), damageRegion.getBounds());
+        damageRegion.add(500, 500, 96, 192);
+        Assert.assertEquals(2, damageRegion.getRectangles().size());
+        damageRegion.add(144, 0, 356, 500);
+        Assert.assertEquals(1, damageRegion.getRectangles().size());
+        Assert.assertEquals(new Rectangle(0, 0, 596, 692), damageRegion.getBounds());
+    }
+
+    /**
+     * Checks that many separate areas are collapsed into their bounding box.
+     */
+    @Test
+    public void testCollapse() {
+        final DamageRegion damageRegion = new DamageRegion();
+        for (int i = 0; i < 20; i++) {
+            damageRegion.add(i*200, 0, 96, 192);
+        }
+        Assert.assertTrue(damageRegion.getRectangles().size() <= 8);
+        Assert.assertEquals(new Rectangle(0, 0, 19*200+96, 192), damageRegion.getBounds());
+    }
+
+}
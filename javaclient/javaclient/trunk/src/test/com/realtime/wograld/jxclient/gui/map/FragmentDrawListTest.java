@@ -0,0 +1,96 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.gui.map;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link FragmentDrawList}.
+ * @author Andreas Kirschbaum
+ */
+public class FragmentDrawListTest {
+
+    /**
+     * Checks that fragments covered by opaque fragments are skipped.
+     */
+    @Test
+    public void testCovered() {
+        final BufferedImage target = new BufferedImage(192, 192, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = target.createGraphics();
+        try {
+            final FragmentDrawList fragmentDrawList = new FragmentDrawList();
+            fragmentDrawList.begin();
+            fragmentDrawList.add(createImage(Color.RED), TileFragment.FULL, 15, 48, 48);
+            fragmentDrawList.add(createImage(Color.BLUE), TileFragment.FULL, 15, 48, 48);
+            fragmentDrawList.end(g, 0, 0, 192, 192);
+            Assert.assertEquals(1L, fragmentDrawList.getSkipped());
+        } finally {
+            g.dispose();
+        }
+        Assert.assertEquals(Color.BLUE.getRGB(), target.getRGB(100, 100));
+    }
+
+    /**
+     * Checks that partly covered fragments are painted.
+     */
+    @Test
+    public void testPartlyCovered() {
+        final BufferedImage target = new BufferedImage(192, 192, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = target.createGraphics();
+        try {
+            final FragmentDrawList fragmentDrawList = new FragmentDrawList();
+            fragmentDrawList.begin();
+            fragmentDrawList.add(createImage(Color.RED), TileFragment.FULL, 15, 48, 48);
+            fragmentDrawList.add(createImage(Color.BLUE), TileFragment.FULL, 3, 48, 48);
+            fragmentDrawList.add(createImage(Color.GREEN), TileFragment.FULL, 15, 24, 48);
+            fragmentDrawList.end(g, 0, 0, 192, 192);
+            Assert.assertEquals(0L, fragmentDrawList.getSkipped());
+        } finally {
+            g.dispose();
+        }
+        Assert.assertEquals(Color.GREEN.getRGB(), target.getRGB(100, 100));
+    }
+
+    /**
+     * Creates a filled fragment image.
+     * @param color the color to fill with
+     * @return the image
+     */
+    @NotNull
+    private static BufferedImage createImage(@NotNull final Color color) {
+        final BufferedImage image = new BufferedImage(96, 96, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(color);
+            g.fillRect(0, 0, 96, 96);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.history;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for {@link MessageHistory}.
+ * @author Andreas Kirschbaum
+ */
+public class MessageHistoryTest {
+
+    /**
+     * Checks that {@link MessageHistory#getWords(CharSequence)} works as
+     * expected.
+     */
+    @Test
+    public void testGetWords() {
+        Assert.assertEquals(Arrays.asList("you", "hit", "the", "orc"), Arrays.asList(MessageHistory.getWords("You hit [b]the[/b] orc.").toArray()));
+        Assert.assertEquals(Arrays.asList("abc", "123"), Arrays.asList(MessageHistory.getWords("a abc 123 ABC").toArray()));
+    }
+
+    /**
+     * Checks that messages can be found before and after re-opening the
+     * history.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testSearch() throws IOException {
+        final File dir = createTempDir();
+        try {
+            final MessageHistory history1 = new MessageHistory(dir);
+            addMessages(history1);
+            checkSearch(history1);
+            history1.close();
+
+            final MessageHistory history2 = new MessageHistory(dir);
+            checkSearch(history2);
+            history2.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Checks that missing index files are rebuilt and that partially written
+     * blocks are discarded.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testRebuildIndex() throws IOException {
+        final File dir = createTempDir();
+        try {
+            final MessageHistory history1 = new MessageHistory(dir);
+            addMessages(history1);
+            history1.close();
+
+            final File[] files = dir.listFiles();
+            Assert.assertNotNull(files);
+            for (final File file : files) {
+                if (file.getName().endsWith(".idx")) {
+                    Assert.assertTrue(file.delete());
+                } else {
+                    final FileOutputStream fos = new FileOutputStream(file, true);
+                    try {
+                        fos.write(new byte[] { 0, 0, 0, 10, 0, 0, 0, 1, 1, 2, 3, 4, 5, });
+                    } finally {
+                        fos.close();
+                    }
+                }
+            }
+
+            final MessageHistory history2 = new MessageHistory(dir);
+            checkSearch(history2);
+            history2.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Adds some messages to a history.
+     * @param history the history
+     */
+    private static void addMessages(@NotNull final MessageHistory history) {
+        for (int i = 0; i < 1000; i++) {
+            history.addMessage(0, 1, 2, "You hit the orc number "+i+".");
+        }
+        history.addMessage(3, 0, 0, "Fred tells you: meet me at the [b]tavern[/b]");
+    }
+
+    /**
+     * Checks that the messages added by {@link #addMessages(MessageHistory)}
+     * can be found.
+     * @param history the history
+     * @throws IOException if the test fails
+     */
+    private static void checkSearch(@NotNull final MessageHistory history) throws IOException {
+        final List<HistoryMessage> result1 = history.search("TAVERN fred", 10);
+        Assert.assertEquals(1, result1.size());
+        Assert.assertEquals(3, result1.get(0).getColor());
+        Assert.assertEquals("Fred tells you: meet me at the [b]tavern[/b]", result1.get(0).getText());
+
+        final List<HistoryMessage> result2 = history.search("orc 123", 10);
+        Assert.assertEquals(1, result2.size());
+        Assert.assertEquals(1, result2.get(0).getType());
+        Assert.assertEquals(2, result2.get(0).getSubtype());
+
+        final List<HistoryMessage> result3 = history.search("orc", 10);
+        Assert.assertEquals(10, result3.size());
+        Assert.assertEquals("You hit the orc number 999.", result3.get(0).getText());
+
+        Assert.assertTrue(history.search("goblin", 10).isEmpty());
+        Assert.assertTrue(history.search("tavern orc", 10).isEmpty());
+    }
+
+    /**
+     * Creates a new empty temporary directory.
+     * @return the directory
+     * @throws IOException if the directory cannot be created
+     */
+    @NotNull
+    private static File createTempDir() throws IOException {
+        final File dir = File.createTempFile("jxclient", ".history");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("cannot create "+dir);
+        }
+        return dir;
+    }
+
+    /**
+     * Deletes a file or a directory including its contents.
+     * @param file the file to delete
+     */
+    private static void delete(@NotNull final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File tmp : files) {
+                delete(tmp);
+            }
+        }
+        if (!file.delete()) {
+            System.err.println(file+": cannot delete");
+        }
+    }
+
+}
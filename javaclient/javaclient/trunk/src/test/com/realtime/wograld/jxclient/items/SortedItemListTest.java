@@ -0,0 +1,110 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.items;
+
+import com.realtime.wograld.jxclient.faces.Face;
+import com.realtime.wograld.jxclient.server.wograld.messages.UpdItem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for {@link SortedItemList}.
+ * @author Andreas Kirschbaum
+ */
+public class SortedItemListTest {
+
+    /**
+     * The {@link Face} for all items.
+     */
+    @NotNull
+    private static final Face FACE = new Face(1, "face", 0);
+
+    /**
+     * Checks that items are kept in order when inserted, removed, and renamed.
+     */
+    @Test
+    public void testRandomOperations() {
+        final Comparator<CfItem> comparator = new InventoryComparator();
+        final SortedItemList list = new SortedItemList(comparator);
+        final List<CfItem> expected = new ArrayList<CfItem>();
+        final Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            final int operation = random.nextInt(3);
+            if (operation == 0 || expected.isEmpty()) {
+                final CfItem item = newItem(i, random.nextInt(5), "item"+random.nextInt(20));
+                Assert.assertEquals(list.insert(item), insertionIndex(expected, item, comparator));
+                expected.add(item);
+            } else if (operation == 1) {
+                final CfItem item = expected.remove(random.nextInt(expected.size()));
+                final int index = list.indexOf(item);
+                Assert.assertSame(item, list.remove(index));
+            } else {
+                final CfItem item = expected.get(random.nextInt(expected.size()));
+                final String name = "item"+random.nextInt(20);
+                item.update(UpdItem.UPD_NAME, 0, 0, FACE, name, name, 0, 0, 1);
+                Assert.assertEquals(insertionIndex(expected, item, comparator), list.move(list.indexOf(item)));
+            }
+            Collections.sort(expected, comparator);
+            Assert.assertEquals(expected.size(), list.size());
+            for (int j = 0; j < expected.size(); j++) {
+                Assert.assertSame(expected.get(j), list.get(j));
+            }
+        }
+    }
+
+    /**
+     * Returns the sorted position of an item.
+     * @param items the other items; may include <code>item</code>
+     * @param item the item
+     * @param comparator the comparator defining the order
+     * @return the number of items other than <code>item</code> sorting before
+     *         it
+     */
+    private static int insertionIndex(@NotNull final Iterable<CfItem> items, @NotNull final CfItem item, @NotNull final Comparator<CfItem> comparator) {
+        int result = 0;
+        for (final CfItem tmp : items) {
+            if (tmp != item && comparator.compare(tmp, item) < 0) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new {@link CfItem}.
+     * @param tag the item's tag
+     * @param type the item's type
+     * @param name the item's name
+     * @return the item
+     */
+    @NotNull
+    private static CfItem newItem(final int tag, final int type, @NotNull final String name) {
+        return new CfItem(0, tag, 0, 0, FACE, name, name, 0, 0, 1, type);
+    }
+
+}
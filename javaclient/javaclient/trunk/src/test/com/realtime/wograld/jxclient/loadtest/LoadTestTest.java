@@ -0,0 +1,177 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link LoadTest}.
+ * @author Andreas Kirschbaum
+ */
+public class LoadTestTest {
+
+    /**
+     * Checks that many sessions can run against a local stand-in server.
+     * @throws IOException if the test fails
+     * @throws InterruptedException if the test was interrupted
+     */
+    @Test(timeout = 60000)
+    public void testSessions() throws IOException, InterruptedException {
+        final ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress("127.0.0.1", 0));
+        final Thread serverThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                acceptConnections(serverSocket);
+            }
+
+        }, "JXClient:LoadTestServer");
+        serverThread.start();
+        try {
+            final LoadTestScript script = LoadTestScript.parse(new StringReader("# test\nloop 3\ncommand north\nwait 10\nend\n"));
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final PrintStream out = new PrintStream(output, true, "UTF-8");
+            final LoadTest loadTest = new LoadTest(script, "127.0.0.1", serverSocket.getLocalPort(), 20, 200, "test", out);
+            Assert.assertTrue(loadTest.run());
+            final String report = output.toString("UTF-8");
+            Assert.assertTrue(report, report.contains("total: sessions=20 failed=0 commands=60 "));
+            Assert.assertTrue(report, report.contains("session 20: commands=3 "));
+        } finally {
+            serverSocket.close();
+            serverThread.join();
+        }
+    }
+
+    /**
+     * Checks that invalid scripts are rejected.
+     */
+    @Test
+    public void testInvalidScripts() {
+        checkInvalidScript("loop 2\ncommand north\n");
+        checkInvalidScript("end\n");
+        checkInvalidScript("loop 2\nloop 2\nend\nend\n");
+        checkInvalidScript("login account\n");
+        checkInvalidScript("wait soon\n");
+        checkInvalidScript("dance\n");
+    }
+
+    /**
+     * Checks that a script is rejected.
+     * @param script the script
+     */
+    private static void checkInvalidScript(@NotNull final String script) {
+        try {
+            LoadTestScript.parse(new StringReader(script));
+            Assert.fail();
+        } catch (final IOException ignored) {
+            // expected
+        }
+    }
+
+    /**
+     * Accepts connections until the server socket has been closed.
+     * @param serverSocket the server socket
+     */
+    private static void acceptConnections(@NotNull final ServerSocket serverSocket) {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (final IOException ignored) {
+                return;
+            }
+            final Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        try {
+                            serve(socket);
+                        } finally {
+                            socket.close();
+                        }
+                    } catch (final IOException ignored) {
+                        // connection closed
+                    }
+                }
+
+            }, "JXClient:LoadTestServerConnection");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Implements the parts of the Wograld protocol needed by the load test:
+     * the handshake of servers without account support and acknowledgement
+     * of commands.
+     * @param socket the client connection
+     * @throws IOException if an I/O error occurs
+     */
+    private static void serve(@NotNull final Socket socket) throws IOException {
+        final DataInputStream in = new DataInputStream(socket.getInputStream());
+        final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        while (true) {
+            final byte[] packet = new byte[in.readUnsignedShort()];
+            in.readFully(packet);
+            final String command = new String(packet, "ISO-8859-1");
+            if (command.startsWith("version ")) {
+                writePacket(out, "version 1023 1029 stand-in".getBytes("ISO-8859-1"));
+            } else if (command.startsWith("setup ")) {
+                writePacket(out, "setup spellmon 1".getBytes("ISO-8859-1"));
+            } else if (command.trim().equals("addme")) {
+                writePacket(out, "addme_success".getBytes("ISO-8859-1"));
+            } else if (command.startsWith("ncom ")) {
+                final byte[] comc = new byte[11];
+                System.arraycopy("comc ".getBytes("ISO-8859-1"), 0, comc, 0, 5);
+                comc[5] = packet[5];
+                comc[6] = packet[6];
+                writePacket(out, comc);
+            }
+        }
+    }
+
+    /**
+     * Sends a packet.
+     * @param out the output stream to write to
+     * @param packet the packet's payload
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writePacket(@NotNull final DataOutputStream out, @NotNull final byte[] packet) throws IOException {
+        out.writeShort(packet.length);
+        out.write(packet);
+        out.flush();
+    }
+
+}
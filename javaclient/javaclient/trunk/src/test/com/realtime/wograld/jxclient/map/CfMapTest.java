@@ -0,0 +1,74 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.map;
+
+import com.realtime.wograld.jxclient.faces.Face;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link CfMap}.
+ * @author Andreas Kirschbaum
+ */
+public class CfMapTest {
+
+    /**
+     * Checks that scrolling moves the map contents.
+     */
+    @Test
+    public void testScroll() {
+        final CfMap map = new CfMap();
+        final Face face = new Face(1, "face", 0);
+        synchronized (map) {
+            map.reset(25, 25);
+            map.setFace(10, 10, 0, face);
+            map.processMapScroll(1, 0, 25, 25);
+            Assert.assertSame(face, map.getFace(9, 10, 0));
+            Assert.assertNull(map.getFace(10, 10, 0));
+            map.processMapScroll(0, -1, 25, 25);
+            Assert.assertSame(face, map.getFace(9, 11, 0));
+        }
+    }
+
+    /**
+     * Checks that patches are re-used for new areas when scrolling far away.
+     */
+    @Test
+    public void testRecycle() {
+        final CfMap map = new CfMap();
+        final Face face = new Face(1, "face", 0);
+        synchronized (map) {
+            map.reset(25, 25);
+            map.setFace(10, 10, 0, face);
+            final CfMapSquare mapSquare = map.getMapSquare(10, 10);
+            final int x = mapSquare.getX();
+            for (int i = 0; i < 200; i++) {
+                map.processMapScroll(1, 0, 25, 25);
+                map.setFace(12, 10, 0, face);
+            }
+            Assert.assertNull(map.getFace(-190, 10, 0));
+            Assert.assertSame(face, map.getFace(12, 10, 0));
+            Assert.assertFalse(x == mapSquare.getX());
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link AbstractSubscription}.
+ * @author Andreas Kirschbaum
+ */
+public class AbstractSubscriptionTest {
+
+    /**
+     * Checks that changes are batched until the subscription is encoded.
+     * @throws InterruptedException if the test fails
+     */
+    @Test
+    public void testBatching() throws InterruptedException {
+        final ScriptOutputQueue<ScriptMessage> queue = new ScriptOutputQueue<ScriptMessage>(10, OverflowPolicy.DROP_NEWEST);
+        final CountingSubscription subscription = new CountingSubscription(queue);
+        subscription.change();
+        Assert.assertEquals(0, queue.getSize());
+
+        subscription.subscribe();
+        subscription.change();
+        subscription.change();
+        Assert.assertEquals(1, queue.getSize());
+        Assert.assertEquals("snapshot", encode(queue.take()));
+
+        subscription.change();
+        subscription.change();
+        subscription.change();
+        Assert.assertEquals(1, queue.getSize());
+        Assert.assertEquals("changes 3", encode(queue.take()));
+
+        subscription.change();
+        subscription.unsubscribe();
+        Assert.assertNull(queue.take().encode(true));
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Encodes a message.
+     * @param message the message
+     * @return the encoded message as a string
+     */
+    @NotNull
+    private static String encode(@Nullable final ScriptMessage message) {
+        Assert.assertNotNull(message);
+        final byte[] data = message.encode(true);
+        Assert.assertNotNull(data);
+        return new String(data);
+    }
+
+    /**
+     * An {@link AbstractSubscription} that counts changes.
+     */
+    private static class CountingSubscription extends AbstractSubscription {
+
+        /**
+         * The number of changes not yet taken.
+         */
+        private int pendingChanges = 0;
+
+        /**
+         * The number of changes to encode.
+         */
+        private int changes = 0;
+
+        /**
+         * Creates a new instance.
+         * @param outputQueue the output queue for sending frames
+         */
+        private CountingSubscription(@NotNull final ScriptOutputQueue<ScriptMessage> outputQueue) {
+            super(outputQueue);
+        }
+
+        /**
+         * Records a change.
+         */
+        public void change() {
+            synchronized (this) {
+                pendingChanges++;
+            }
+            changed();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void addListeners() {
+            // ignore
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void removeListeners() {
+            // ignore
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void takeChanges() {
+            changes = pendingChanges;
+            pendingChanges = 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void discardChanges() {
+            pendingChanges = 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @NotNull
+        @Override
+        protected byte[] encodeSnapshot() {
+            return "snapshot".getBytes();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @NotNull
+        @Override
+        protected byte[] encodeChanges() {
+            return ("changes "+changes).getBytes();
+        }
+
+    }
+
+}
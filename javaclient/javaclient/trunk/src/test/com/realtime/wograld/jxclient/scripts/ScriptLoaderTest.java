@@ -0,0 +1,95 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link ScriptLoader}.
+ * @author Andreas Kirschbaum
+ */
+public class ScriptLoaderTest {
+
+    /**
+     * Checks that classes implementing {@link ClientScript} can be loaded.
+     * @throws IOException if the test fails
+     * @throws URISyntaxException if the test fails
+     */
+    @Test
+    public void testLoadClass() throws IOException, URISyntaxException {
+        final File classPath = getClassPath();
+        Assert.assertTrue(ScriptLoader.isClassPath(classPath));
+        Assert.assertTrue(ScriptLoader.loadClass(classPath, TestClientScript.class.getName()) instanceof TestClientScript);
+    }
+
+    /**
+     * Checks that other classes are rejected.
+     * @throws URISyntaxException if the test fails
+     */
+    @Test
+    public void testLoadInvalidClass() throws URISyntaxException {
+        final File classPath = getClassPath();
+        try {
+            ScriptLoader.loadClass(classPath, ScriptLoaderTest.class.getName());
+            Assert.fail();
+        } catch (final IOException ignored) {
+            // expected
+        }
+        try {
+            ScriptLoader.loadClass(classPath, "com.example.DoesNotExist");
+            Assert.fail();
+        } catch (final IOException ignored) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns the class directory or .jar file containing the test classes.
+     * @return the class path
+     * @throws URISyntaxException if the class path cannot be determined
+     */
+    @NotNull
+    private static File getClassPath() throws URISyntaxException {
+        return new File(ScriptLoaderTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    /**
+     * A {@link ClientScript} for the tests.
+     */
+    public static class TestClientScript extends AbstractClientScript {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start(@NotNull final ScriptContext context, @NotNull final String[] args) {
+            // ignore
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link ScriptOutputQueue}.
+ * @author Andreas Kirschbaum
+ */
+public class ScriptOutputQueueTest {
+
+    /**
+     * Checks that {@link OverflowPolicy#DROP_NEWEST} discards new messages.
+     * @throws InterruptedException if the test fails
+     */
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        final ScriptOutputQueue<String> queue = new ScriptOutputQueue<String>(2, OverflowPolicy.DROP_NEWEST);
+        Assert.assertTrue(queue.offer("a", null, true));
+        Assert.assertTrue(queue.offer("b", null, true));
+        Assert.assertFalse(queue.offer("c", null, true));
+        Assert.assertEquals(1, queue.getDroppedMessages());
+        checkContents(queue, "a", "b");
+    }
+
+    /**
+     * Checks that {@link OverflowPolicy#DROP_OLDEST} discards the oldest
+     * droppable message.
+     * @throws InterruptedException if the test fails
+     */
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        final ScriptOutputQueue<String> queue = new ScriptOutputQueue<String>(2, OverflowPolicy.DROP_OLDEST);
+        Assert.assertTrue(queue.offer("r", null, false));
+        Assert.assertTrue(queue.offer("a", null, true));
+        Assert.assertTrue(queue.offer("b", null, true));
+        Assert.assertTrue(queue.offer("c", null, true));
+        Assert.assertEquals(1, queue.getDroppedMessages());
+        checkContents(queue, "r", "b", "c");
+    }
+
+    /**
+     * Checks that {@link OverflowPolicy#COALESCE} replaces pending messages
+     * having the same key.
+     * @throws InterruptedException if the test fails
+     */
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        final ScriptOutputQueue<String> queue = new ScriptOutputQueue<String>(2, OverflowPolicy.COALESCE);
+        Assert.assertTrue(queue.offer("hp 1", "hp", true));
+        Assert.assertTrue(queue.offer("sp 1", "sp", true));
+        Assert.assertTrue(queue.offer("hp 2", "hp", true));
+        Assert.assertEquals(1, queue.getCoalescedMessages());
+        Assert.assertEquals(0, queue.getDroppedMessages());
+        Assert.assertTrue(queue.offer("x", null, true));
+        Assert.assertEquals(1, queue.getDroppedMessages());
+        Assert.assertTrue(queue.offer("hp 3", "hp", true));
+        Assert.assertEquals(2, queue.getDroppedMessages());
+        checkContents(queue, "x", "hp 3");
+    }
+
+    /**
+     * Checks that closing the queue returns pending messages and then
+     * <code>null</code>.
+     * @throws InterruptedException if the test fails
+     */
+    @Test
+    public void testClose() throws InterruptedException {
+        final ScriptOutputQueue<String> queue = new ScriptOutputQueue<String>(2, OverflowPolicy.DROP_NEWEST);
+        Assert.assertTrue(queue.offer("a", null, true));
+        queue.close();
+        Assert.assertFalse(queue.offer("b", null, false));
+        Assert.assertEquals("a", queue.take());
+        Assert.assertNull(queue.take());
+    }
+
+    /**
+     * Checks that a queue returns the expected messages.
+     * @param queue the queue to check
+     * @param messages the expected messages
+     * @throws InterruptedException if the test fails
+     */
+    private static void checkContents(@NotNull final ScriptOutputQueue<String> queue, @NotNull final String... messages) throws InterruptedException {
+        Assert.assertEquals(messages.length, queue.getSize());
+        for (final String message : messages) {
+            Assert.assertEquals(message, queue.take());
+        }
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.scripts;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link TextMessage}.
+ * @author Andreas Kirschbaum
+ */
+public class TextMessageTest {
+
+    /**
+     * Checks that the text protocol sends lines.
+     */
+    @Test
+    public void testText() {
+        Assert.assertTrue(Arrays.equals("watch stats hp 10\n".getBytes(), new TextMessage("watch stats hp 10").encode(false)));
+    }
+
+    /**
+     * Checks that the binary protocol sends length-prefixed frames.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testBinary() throws IOException {
+        final byte[] data = new TextMessage("request range ä").encode(true);
+        final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+        final int length = dis.readInt();
+        Assert.assertEquals(data.length-4, length);
+        Assert.assertEquals(ScriptFrame.TEXT, dis.readUnsignedByte());
+        final byte[] text = new byte[length-1];
+        dis.readFully(text);
+        Assert.assertEquals("request range ä", new String(text, "UTF-8"));
+    }
+
+}
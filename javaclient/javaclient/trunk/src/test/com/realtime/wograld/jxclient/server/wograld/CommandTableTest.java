@@ -0,0 +1,110 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.server.wograld;
+
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link CommandTable}.
+ * @author Andreas Kirschbaum
+ */
+public class CommandTableTest {
+
+    /**
+     * A {@link CommandHandler} that does nothing.
+     */
+    @NotNull
+    private static final CommandHandler HANDLER = new CommandHandler() {
+
+        @Override
+        public void process(@NotNull final ByteBuffer packet) {
+            // ignore
+        }
+
+    };
+
+    /**
+     * Checks that {@link CommandTable#lookup(ByteBuffer)} finds commands.
+     */
+    @Test
+    public void testLookup() {
+        final CommandTable commandTable = new CommandTable();
+        commandTable.add("sound ", false, HANDLER);
+        commandTable.add("sound2 ", false, HANDLER);
+        commandTable.add("newmap", false, HANDLER);
+        commandTable.add("addme_failed", true, HANDLER);
+        Assert.assertEquals(4, commandTable.size());
+        Assert.assertEquals("sound2", commandTable.getName(1));
+
+        checkLookup(commandTable, "sound abc", 0, 6);
+        checkLookup(commandTable, "sound2 abc", 1, 7);
+        checkLookup(commandTable, "sound", -1, -1);
+        checkLookup(commandTable, "sound3 abc", -1, -1);
+        checkLookup(commandTable, "newmap", 2, 6);
+        checkLookup(commandTable, "newmapX", 2, 6);
+        checkLookup(commandTable, "addme_failed", 3, 12);
+        checkLookup(commandTable, "addme_failed ", -1, -1);
+        checkLookup(commandTable, "", -1, -1);
+    }
+
+    /**
+     * Checks that {@link CommandTable#add(String, boolean, CommandHandler)}
+     * rejects ambiguous commands.
+     */
+    @Test
+    public void testAmbiguous() {
+        final CommandTable commandTable = new CommandTable();
+        commandTable.add("map", false, HANDLER);
+        try {
+            commandTable.add("map2 ", false, HANDLER);
+            Assert.fail();
+        } catch (final IllegalArgumentException ignored) {
+            // expected
+        }
+        try {
+            commandTable.add("ma", false, HANDLER);
+            Assert.fail();
+        } catch (final IllegalArgumentException ignored) {
+            // expected
+        }
+    }
+
+    /**
+     * Looks up a packet and checks the result.
+     * @param commandTable the command table to use
+     * @param packet the packet contents
+     * @param expectedCommand the expected command number
+     * @param expectedPosition the expected packet position after a
+     * successful lookup
+     */
+    private static void checkLookup(@NotNull final CommandTable commandTable, @NotNull final String packet, final int expectedCommand, final int expectedPosition) {
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(packet.getBytes());
+        Assert.assertEquals(expectedCommand, commandTable.lookup(byteBuffer));
+        if (expectedCommand != -1) {
+            Assert.assertEquals(expectedPosition, byteBuffer.position());
+        }
+    }
+
+}
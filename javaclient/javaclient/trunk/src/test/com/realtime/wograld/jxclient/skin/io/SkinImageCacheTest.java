@@ -0,0 +1,138 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.skin.io;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for class {@link SkinImageCache}.
+ * @author Andreas Kirschbaum
+ */
+public class SkinImageCacheTest {
+
+    /**
+     * Checks that saved images can be loaded after re-opening the cache.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testSaveLoad() throws IOException {
+        final File file = File.createTempFile("jxclient", ".dat");
+        try {
+            final byte[] digestA = SkinImageCache.getDigest(new byte[] { 1, });
+            final byte[] digestB = SkinImageCache.getDigest(new byte[] { 2, });
+            final SkinImageCache cache1 = new SkinImageCache(file);
+            Assert.assertNull(cache1.load("a", digestA));
+            cache1.save("a", digestA, newImage(10, BufferedImage.TYPE_INT_ARGB));
+            cache1.save("b", digestB, newImage(20, BufferedImage.TYPE_INT_RGB));
+            cache1.save();
+
+            final SkinImageCache cache2 = new SkinImageCache(file);
+            checkImage(cache2.load("a", digestA), 10, true);
+            checkImage(cache2.load("b", digestB), 20, false);
+            Assert.assertNull(cache2.load("a", digestB));
+            cache2.save();
+
+            final SkinImageCache cache3 = new SkinImageCache(file);
+            checkImage(cache3.load("a", digestA), 10, true);
+            cache3.close();
+        } finally {
+            if (!file.delete()) {
+                System.err.println(file+": cannot delete");
+            }
+        }
+    }
+
+    /**
+     * Checks that an invalid cache file is ignored.
+     * @throws IOException if the test fails
+     */
+    @Test
+    public void testInvalidFile() throws IOException {
+        final File file = File.createTempFile("jxclient", ".dat");
+        try {
+            final FileOutputStream fos = new FileOutputStream(file);
+            try {
+                fos.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, });
+            } finally {
+                fos.close();
+            }
+
+            final byte[] digest = SkinImageCache.getDigest(new byte[] { 1, });
+            final SkinImageCache cache1 = new SkinImageCache(file);
+            Assert.assertNull(cache1.load("a", digest));
+            cache1.save("a", digest, newImage(10, BufferedImage.TYPE_INT_ARGB));
+            cache1.save();
+
+            final SkinImageCache cache2 = new SkinImageCache(file);
+            checkImage(cache2.load("a", digest), 10, true);
+            cache2.close();
+        } finally {
+            if (!file.delete()) {
+                System.err.println(file+": cannot delete");
+            }
+        }
+    }
+
+    /**
+     * Checks that an image was loaded from the cache.
+     * @param image the loaded image
+     * @param width the expected image width
+     * @param alpha whether the image is expected to have an alpha channel
+     */
+    private static void checkImage(@Nullable final BufferedImage image, final int width, final boolean alpha) {
+        Assert.assertNotNull(image);
+        Assert.assertEquals(width, image.getWidth());
+        Assert.assertEquals(8, image.getHeight());
+        Assert.assertEquals(alpha, image.getColorModel().hasAlpha());
+        Assert.assertEquals(Color.RED.getRGB(), image.getRGB(0, 0));
+        Assert.assertEquals(alpha ? 0 : Color.BLACK.getRGB(), image.getRGB(width-1, 7));
+    }
+
+    /**
+     * Creates a new image.
+     * @param width the image width
+     * @param type the image type
+     * @return the image
+     */
+    @NotNull
+    private static BufferedImage newImage(final int width, final int type) {
+        final BufferedImage image = new BufferedImage(width, 8, type);
+        final Graphics g = image.createGraphics();
+        try {
+            g.setColor(Color.RED);
+            g.fillRect(0, 0, width/2, 4);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+}
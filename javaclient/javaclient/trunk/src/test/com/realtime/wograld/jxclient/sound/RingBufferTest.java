@@ -0,0 +1,112 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.sound;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for {@link RingBuffer}.
+ * @author Andreas Kirschbaum
+ */
+public class RingBufferTest {
+
+    /**
+     * Checks that data wraps around the end of the buffer.
+     * @throws InterruptedException if the test fails
+     */
+    @Test
+    public void testWrapAround() throws InterruptedException {
+        final RingBuffer ringBuffer = new RingBuffer(4);
+        final byte[] buf = new byte[4];
+        Assert.assertTrue(ringBuffer.write(new byte[] { 1, 2, 3, }, 0, 3));
+        Assert.assertEquals(2, ringBuffer.read(buf, 0, 2, false));
+        Assert.assertTrue(ringBuffer.write(new byte[] { 4, 5, 6, }, 0, 3));
+        Assert.assertEquals(4, ringBuffer.available());
+        Assert.assertEquals(4, ringBuffer.read(buf, 0, 4, false));
+        Assert.assertTrue(Arrays.equals(new byte[] { 3, 4, 5, 6, }, buf));
+        Assert.assertEquals(0, ringBuffer.read(buf, 0, 4, false));
+    }
+
+    /**
+     * Checks that closing keeps buffered data and aborting discards it.
+     * @throws InterruptedException if the test fails
+     */
+    @Test
+    public void testCloseAbort() throws InterruptedException {
+        final RingBuffer ringBuffer = new RingBuffer(4);
+        final byte[] buf = new byte[4];
+        Assert.assertTrue(ringBuffer.write(new byte[] { 1, 2, }, 0, 2));
+        ringBuffer.close();
+        Assert.assertFalse(ringBuffer.write(new byte[] { 3, }, 0, 1));
+        Assert.assertEquals(2, ringBuffer.read(buf, 0, 4, true));
+        Assert.assertEquals(-1, ringBuffer.read(buf, 0, 4, true));
+
+        final RingBuffer ringBuffer2 = new RingBuffer(4);
+        Assert.assertTrue(ringBuffer2.write(new byte[] { 1, 2, }, 0, 2));
+        ringBuffer2.abort();
+        Assert.assertEquals(-1, ringBuffer2.read(buf, 0, 4, false));
+        Assert.assertFalse(ringBuffer2.write(new byte[] { 3, }, 0, 1));
+    }
+
+    /**
+     * Checks that a blocked writer continues when data is read.
+     * @throws InterruptedException if the test fails
+     */
+    @Test
+    public void testBlockingWrite() throws InterruptedException {
+        final RingBuffer ringBuffer = new RingBuffer(4);
+        final Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    final byte[] data = new byte[100];
+                    for (int i = 0; i < data.length; i++) {
+                        data[i] = (byte)i;
+                    }
+                    ringBuffer.write(data, 0, data.length);
+                    ringBuffer.close();
+                } catch (final InterruptedException ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+
+        });
+        thread.start();
+        final byte[] buf = new byte[3];
+        int expected = 0;
+        while (true) {
+            final int len = ringBuffer.read(buf, 0, buf.length, true);
+            if (len == -1) {
+                break;
+            }
+            for (int i = 0; i < len; i++) {
+                Assert.assertEquals((byte)expected++, buf[i]);
+            }
+        }
+        Assert.assertEquals(100, expected);
+        thread.join();
+    }
+
+}
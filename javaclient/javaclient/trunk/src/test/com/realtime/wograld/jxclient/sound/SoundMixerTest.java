@@ -0,0 +1,105 @@
+/*
+ * This file is part of JXClient, the Fullscreen Java Wograld Client.
+ *
+ * JXClient is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * JXClient is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JXClient; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * Copyright (C) 2005-2008 Yann Chachkoff.
+ * Copyright (C) 2006-2011 Andreas Kirschbaum.
+ */
+
+package com.realtime.wograld.jxclient.sound;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.sound.sampled.AudioFormat;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Regression tests for {@link SoundMixer}.
+ * @author Andreas Kirschbaum
+ */
+public class SoundMixerTest {
+
+    /**
+     * Checks that overlapping voices are added, gained, clipped and removed
+     * when finished.
+     */
+    @Test
+    public void testMix() {
+        final List<SoundMixer.Voice> voices = new ArrayList<SoundMixer.Voice>();
+        voices.add(new SoundMixer.Voice(newSoundClip(1000, 2000), 100F, 1F));
+        voices.add(new SoundMixer.Voice(newSoundClip(30000, 30000, 30000), 100F, 0.5F));
+        final int[] mix = new int[4];
+        final byte[] buf = new byte[8];
+        SoundMixer.mix(voices, mix, buf);
+        Assert.assertEquals(1, voices.size());
+        Assert.assertEquals(16000, getSample(buf, 0));
+        Assert.assertEquals(16000, getSample(buf, 1));
+        Assert.assertEquals(17000, getSample(buf, 2));
+        Assert.assertEquals(17000, getSample(buf, 3));
+
+        voices.add(new SoundMixer.Voice(newSoundClip(30000, 30000), 100F, 1F));
+        SoundMixer.mix(voices, mix, buf);
+        Assert.assertEquals(0, voices.size());
+        Assert.assertEquals((int)Short.MAX_VALUE, getSample(buf, 0));
+        Assert.assertEquals((int)Short.MAX_VALUE, getSample(buf, 1));
+        Assert.assertEquals(30000, getSample(buf, 2));
+    }
+
+    /**
+     * Checks that voices are resampled to the output sample rate.
+     */
+    @Test
+    public void testResample() {
+        final List<SoundMixer.Voice> voices = new ArrayList<SoundMixer.Voice>();
+        voices.add(new SoundMixer.Voice(newSoundClip(0, 1000), 200F, 1F));
+        final int[] mix = new int[8];
+        final byte[] buf = new byte[16];
+        SoundMixer.mix(voices, mix, buf);
+        Assert.assertEquals(0, getSample(buf, 0));
+        Assert.assertEquals(500, getSample(buf, 2));
+        Assert.assertEquals(1000, getSample(buf, 4));
+        Assert.assertEquals(1000, getSample(buf, 6));
+        Assert.assertEquals(0, voices.size());
+    }
+
+    /**
+     * Creates a mono sound clip with a sample rate of 100.
+     * @param samples the sample values
+     * @return the sound clip
+     */
+    @NotNull
+    private static SoundClip newSoundClip(@NotNull final int... samples) {
+        final byte[] data = new byte[2*samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            data[2*i] = (byte)samples[i];
+            data[2*i+1] = (byte)(samples[i]>>8);
+        }
+        return new SoundClip(new AudioFormat(100F, 16, 1, true, false), data);
+    }
+
+    /**
+     * Returns one sample of a mixed buffer.
+     * @param buf the buffer
+     * @param index the sample index
+     * @return the sample value
+     */
+    private static int getSample(@NotNull final byte[] buf, final int index) {
+        return (short)((buf[2*index]&0xFF)|(buf[2*index+1]<<8));
+    }
+
+}
@@ -61,6 +61,41 @@ public class TestScriptProcess implements ScriptProcess {
         Assert.fail();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commandSent(@NotNull final String cmd, @Nullable final String key) {
+        Assert.fail();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPendingMessages() {
+        Assert.fail();
+        throw new AssertionError();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDroppedMessages() {
+        Assert.fail();
+        throw new AssertionError();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCpuTime() {
+        Assert.fail();
+        throw new AssertionError();
+    }
+
     /**
      * {@inheritDoc}
      */
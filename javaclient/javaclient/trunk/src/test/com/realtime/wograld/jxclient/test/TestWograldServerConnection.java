@@ -195,6 +195,14 @@ public class TestWograldServerConnection implements WograldServerConnection {
         Assert.fail();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeWograldTickListener(@NotNull final WograldTickListener listener) {
+        Assert.fail();
+    }
+
     /**
      * {@inheritDoc}
      */